@@ -54,6 +54,7 @@ import eu.larkc.core.data.workflow.IllegalWorkflowGraphException;
 import eu.larkc.core.endpoint.EndpointShutdownException;
 import eu.larkc.core.executor.Executor;
 import eu.larkc.core.management.ManagementInterfaceMain;
+import eu.larkc.core.pluginManager.PluginManagerScheduler;
 import eu.larkc.core.pluginregistry.PluginRegistry;
 import eu.larkc.core.resourceregistry.ResourceRegistry;
 import eu.larkc.shared.Resources;
@@ -118,6 +119,15 @@ public final class Larkc {
 					if (param.startsWith("-plugindir=")) {
 						PLUGIN_PATH_PARAMETER = param.substring(11);
 						logger.debug("Got runtime parameter=" + param);
+					} else if (param.startsWith("-pluginthreads=")) {
+						try {
+							PluginManagerScheduler.setPoolSize(Integer
+									.parseInt(param.substring(15)));
+							logger.debug("Got runtime parameter=" + param);
+						} catch (IllegalArgumentException e) {
+							logger.warn("Ignoring invalid runtime parameter="
+									+ param);
+						}
 					}
 				}
 			}
@@ -0,0 +1,325 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.codec.binary.Base64;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * Compact binary encoding of an RDF graph, used to embed graphs in the
+ * statements passed between plug-ins instead of TriG text. Every distinct term
+ * is written once to a term table; the statements follow as variable-length
+ * indexes into that table. The encoding is optionally deflated and embedded
+ * as a Base64 literal.
+ */
+public final class BinaryGraphEncoding {
+
+	/** The format version, stored in the low bits of the header byte. */
+	private static final int VERSION = 1;
+
+	/** Header flag of deflated encodings. */
+	private static final int DEFLATED = 0x80;
+
+	private static final byte URI_TERM = 0;
+	private static final byte BNODE_TERM = 1;
+	private static final byte PLAIN_LITERAL = 2;
+	private static final byte LANGUAGE_LITERAL = 3;
+	private static final byte TYPED_LITERAL = 4;
+
+	private BinaryGraphEncoding() {
+	}
+
+	/**
+	 * Encodes a graph as a Base64 string.
+	 * 
+	 * @param name
+	 *            the name of the graph
+	 * @param statements
+	 *            the statements of the graph; the iterator is closed
+	 *            afterwards
+	 * @param deflate
+	 *            whether to compress the encoding
+	 * @return the encoded graph
+	 */
+	public static String encode(URI name,
+			CloseableIterator<Statement> statements, boolean deflate) {
+		try {
+			return new String(Base64.encodeBase64(toBytes(name, statements,
+					deflate)), "US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Decodes a graph encoded by
+	 * {@link #encode(URI, CloseableIterator, boolean)}.
+	 * 
+	 * @param encoded
+	 *            the encoded graph
+	 * @param statements
+	 *            the list to add the statements of the graph to
+	 * @return the name of the graph
+	 */
+	public static URI decode(String encoded, List<Statement> statements) {
+		try {
+			return fromBytes(Base64.decodeBase64(encoded.getBytes("US-ASCII")),
+					statements);
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	static byte[] toBytes(URI name, CloseableIterator<Statement> statements,
+			boolean deflate) {
+		Map<Value, Integer> ids = new HashMap<Value, Integer>();
+		List<Value> terms = new ArrayList<Value>();
+		// s, p, o and context + 1 of every statement, context 0 for none
+		int[] triples = new int[64];
+		int size = 0;
+		try {
+			while (statements.hasNext()) {
+				Statement s = statements.next();
+				if (size + 4 > triples.length) {
+					int[] larger = new int[triples.length * 2];
+					System.arraycopy(triples, 0, larger, 0, size);
+					triples = larger;
+				}
+				triples[size++] = id(s.getSubject(), ids, terms);
+				triples[size++] = id(s.getPredicate(), ids, terms);
+				triples[size++] = id(s.getObject(), ids, terms);
+				triples[size++] = s.getContext() == null ? 0 : id(s
+						.getContext(), ids, terms) + 1;
+			}
+		} finally {
+			statements.close();
+		}
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+					16 * size + 64);
+			bytes.write(VERSION | (deflate ? DEFLATED : 0));
+			OutputStream target = bytes;
+			// the native memory of a deflater passed to the stream is only
+			// freed by end()
+			Deflater compressor = null;
+			DeflaterOutputStream deflater = null;
+			try {
+				if (deflate) {
+					compressor = new Deflater(Deflater.BEST_SPEED);
+					deflater = new DeflaterOutputStream(bytes, compressor);
+					target = deflater;
+				}
+				DataOutputStream out = new DataOutputStream(target);
+				writeString(out, name.stringValue());
+				writeNumber(out, terms.size());
+				for (Value term : terms) {
+					writeTerm(out, term, ids);
+				}
+				writeNumber(out, size / 4);
+				for (int i = 0; i < size; i++) {
+					writeNumber(out, triples[i]);
+				}
+				out.flush();
+				if (deflater != null) {
+					deflater.finish();
+				}
+			} finally {
+				if (compressor != null) {
+					compressor.end();
+				}
+			}
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			// cannot happen in memory
+			throw new RuntimeException(e);
+		}
+	}
+
+	static URI fromBytes(byte[] encoded, List<Statement> statements) {
+		int header = encoded.length == 0 ? 0 : encoded[0] & 0xFF;
+		if ((header & ~DEFLATED) != VERSION) {
+			throw new IllegalArgumentException("Unsupported graph encoding!");
+		}
+		InputStream source = new ByteArrayInputStream(encoded, 1,
+				encoded.length - 1);
+		if ((header & DEFLATED) != 0) {
+			// closing the stream frees the native memory of its inflater
+			source = new InflaterInputStream(source);
+		}
+		DataInputStream in = new DataInputStream(source);
+		try {
+			URI name = new URIImpl(readString(in));
+			Value[] terms = new Value[readNumber(in)];
+			for (int i = 0; i < terms.length; i++) {
+				terms[i] = readTerm(in, terms);
+			}
+			int count = readNumber(in);
+			for (int i = 0; i < count; i++) {
+				Resource subject = (Resource) terms[readNumber(in)];
+				URI predicate = (URI) terms[readNumber(in)];
+				Value object = terms[readNumber(in)];
+				int context = readNumber(in);
+				if (context == 0) {
+					statements.add(new StatementImpl(subject, predicate, object));
+				} else {
+					statements.add(new ContextStatementImpl(subject, predicate,
+							object, (Resource) terms[context - 1]));
+				}
+			}
+			return name;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Corrupt graph encoding!", e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing to release for an in-memory stream
+			}
+		}
+	}
+
+	private static int id(Value term, Map<Value, Integer> ids,
+			List<Value> terms) {
+		// the datatype of a literal is written before, and referred to by,
+		// the literal itself
+		if (term instanceof Literal && ((Literal) term).getDatatype() != null) {
+			id(((Literal) term).getDatatype(), ids, terms);
+		}
+		Integer id = ids.get(term);
+		if (id == null) {
+			id = terms.size();
+			ids.put(term, id);
+			terms.add(term);
+		}
+		return id;
+	}
+
+	private static void writeTerm(DataOutputStream out, Value term,
+			Map<Value, Integer> ids) throws IOException {
+		if (term instanceof URI) {
+			out.writeByte(URI_TERM);
+			writeString(out, term.stringValue());
+		} else if (term instanceof BNode) {
+			out.writeByte(BNODE_TERM);
+			writeString(out, ((BNode) term).getID());
+		} else {
+			Literal literal = (Literal) term;
+			if (literal.getLanguage() != null) {
+				out.writeByte(LANGUAGE_LITERAL);
+				writeString(out, literal.getLabel());
+				writeString(out, literal.getLanguage());
+			} else if (literal.getDatatype() != null) {
+				out.writeByte(TYPED_LITERAL);
+				writeString(out, literal.getLabel());
+				writeNumber(out, ids.get(literal.getDatatype()));
+			} else {
+				out.writeByte(PLAIN_LITERAL);
+				writeString(out, literal.getLabel());
+			}
+		}
+	}
+
+	private static Value readTerm(DataInputStream in, Value[] terms)
+			throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+		case URI_TERM:
+			return new URIImpl(readString(in));
+		case BNODE_TERM:
+			return new BNodeImpl(readString(in));
+		case PLAIN_LITERAL:
+			return new LiteralImpl(readString(in));
+		case LANGUAGE_LITERAL:
+			return new LiteralImpl(readString(in), readString(in));
+		case TYPED_LITERAL:
+			return new LiteralImpl(readString(in), (URI) terms[readNumber(in)]);
+		default:
+			throw new IOException("Unknown term type " + type);
+		}
+	}
+
+	/**
+	 * Writes a string of any length, unlike
+	 * {@link DataOutputStream#writeUTF(String)}.
+	 */
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		writeNumber(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readNumber(in)];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Writes a non-negative number in 7 bit groups, so that small numbers take
+	 * a single byte.
+	 */
+	private static void writeNumber(DataOutputStream out, int value)
+			throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readNumber(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed number");
+	}
+}
@@ -0,0 +1,179 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openrdf.model.Statement;
+
+/**
+ * A read-only view of several sets of statements one after the other. The
+ * statements of the parts are not copied; they are iterated lazily when
+ * {@link #getStatements()} is called.
+ */
+public class ConcatenatedSetOfStatements implements SetOfStatements,
+		StatementStatistics {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<SetOfStatements> parts;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param parts
+	 *            the sets of statements to concatenate; null elements are
+	 *            skipped
+	 */
+	public ConcatenatedSetOfStatements(List<SetOfStatements> parts) {
+		if (parts == null) {
+			throw new IllegalArgumentException();
+		}
+		this.parts = new ArrayList<SetOfStatements>(parts.size());
+		for (SetOfStatements part : parts) {
+			if (part != null) {
+				this.parts.add(part);
+			}
+		}
+	}
+
+	/**
+	 * Returns the concatenated sets of statements.
+	 * 
+	 * @return the parts of this view
+	 */
+	public List<SetOfStatements> getParts() {
+		return Collections.unmodifiableList(parts);
+	}
+
+	public CloseableIterator<Statement> getStatements() {
+		return new ConcatenatingIterator(parts.iterator());
+	}
+
+	/**
+	 * Returns the sum of the statement counts of the parts, or
+	 * {@link StatementStatistics#UNKNOWN} if the count of a part is not known.
+	 */
+	public long getStatementCount() {
+		long count = 0;
+		for (SetOfStatements part : parts) {
+			if (part instanceof StatementStatistics == false) {
+				return UNKNOWN;
+			}
+			long partCount = ((StatementStatistics) part).getStatementCount();
+			if (partCount == UNKNOWN) {
+				return UNKNOWN;
+			}
+			count += partCount;
+		}
+		return count;
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.data.InformationSet#toRDF(eu.larkc.core.data.SetOfStatements
+	 * )
+	 */
+	@Override
+	public SetOfStatements toRDF(SetOfStatements data) {
+		return new SetOfStatementsImpl(getStatements()).toRDF(data);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "ConcatenatedSetOfStatements" + parts;
+	}
+
+	/**
+	 * Iterates the statements of all parts, opening the iterator of a part
+	 * only when the previous one is exhausted.
+	 */
+	private static class ConcatenatingIterator implements
+			CloseableIterator<Statement> {
+
+		private final Iterator<SetOfStatements> parts;
+		private CloseableIterator<Statement> current;
+		private boolean isClosed;
+
+		ConcatenatingIterator(Iterator<SetOfStatements> parts) {
+			this.parts = parts;
+			this.current = null;
+			this.isClosed = false;
+		}
+
+		public boolean hasNext() {
+			if (isClosed) {
+				throw new RuntimeException("Iterator is closed!");
+			}
+			while (current == null || !current.hasNext()) {
+				if (current != null) {
+					current.close();
+					current = null;
+				}
+				if (!parts.hasNext()) {
+					return false;
+				}
+				current = parts.next().getStatements();
+			}
+			return true;
+		}
+
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			if (current != null) {
+				current.close();
+				current = null;
+			}
+			isClosed = true;
+		}
+
+		public boolean isClosed() {
+			return isClosed;
+		}
+	}
+}
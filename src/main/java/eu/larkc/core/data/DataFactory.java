@@ -61,6 +61,41 @@ public interface DataFactory {
 	 */
 	public RdfGraph createRdfGraph(Iterable<Statement> sts, URI graph);
 
+	/**
+	 * Creates an in-memory set of statements that stores the statements as the
+	 * ids of their terms in a {@link TermDictionary} of the set.
+	 * 
+	 * @param sts
+	 *            collection of the statements
+	 * @return the set of statements
+	 */
+	public SetOfStatements createEncodedSetOfStatements(Iterable<Statement> sts);
+
+	/**
+	 * Creates an encoded copy of a set of statements, see
+	 * {@link #createEncodedSetOfStatements(Iterable)}. A set that is encoded
+	 * already is returned as is.
+	 * 
+	 * @param statements
+	 *            the set of statements
+	 * @return the encoded set of statements
+	 */
+	public SetOfStatements createEncodedSetOfStatements(
+			SetOfStatements statements);
+
+	/**
+	 * Creates an in-memory RDF graph with indexes for triple pattern lookups,
+	 * see {@link IndexedRdfGraph}.
+	 * 
+	 * @param sts
+	 *            collection of the statements
+	 * @param graph
+	 *            name of the graph
+	 * @return the graph
+	 */
+	public IndexedRdfGraph createIndexedRdfGraph(Iterable<Statement> sts,
+			URI graph);
+
 	/**
 	 * Creates RDF graph from a remote location. If the URI could not be
 	 * resolved an exception will be generated during the construction of the
@@ -181,6 +216,17 @@ public interface DataFactory {
 	public AttributeValueMap createAttributeValueList(SetOfStatements rdf,
 			URI invocationID);
 
+	/**
+	 * Reads the objects embedded in RDF data at once, so that a graph, a query
+	 * and attribute/value pairs can be decoded without reading the data again
+	 * for each of them.
+	 * 
+	 * @param rdf
+	 * @param invocationID
+	 * @return the embedded objects
+	 */
+	public DecodedInput decode(SetOfStatements rdf, URI invocationID);
+
 	/**
 	 * 
 	 * TODO Describe the purpose of this method.
@@ -22,12 +22,12 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
 import org.openrdf.rio.RDFHandlerException;
@@ -35,14 +35,13 @@ import org.openrdf.rio.RDFParseException;
 import org.openrdf.rio.RDFParser;
 import org.openrdf.rio.helpers.RDFHandlerBase;
 import org.openrdf.rio.ntriples.NTriplesParser;
-import org.openrdf.rio.trig.TriGParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.larkc.core.data.iterator.Iterators;
 import eu.larkc.core.query.SPARQLQuery;
 import eu.larkc.core.query.SPARQLQueryImpl;
 import eu.larkc.core.query.VariableBindingBase;
-import eu.larkc.core.util.RDFConstants;
 
 /**
  * This is a dummy factory to abstract ORDI creation specifics.
@@ -65,24 +64,27 @@ public class DataFactoryImpl implements DataFactory {
 	}
 
 	/**
-	 * TODO Gets VariableBindings for the SetOfStatements FIXME: This is using
-	 * the cheating object store
+	 * Gets the VariableBindings whose handle in the
+	 * {@link ObjectHandleRegistry} is among the SetOfStatements, see
+	 * {@link VariableBindingBase#toRDF()}.
 	 * 
 	 * @param sts
-	 * @return
+	 * @return the variable bindings, or null if there is no handle
+	 * @throws RuntimeException
+	 *             if the handle has expired
 	 */
 	public VariableBindingBase createVariableBindingBase(SetOfStatements sts) {
-		CloseableIterator<Statement> it = sts.getStatements();
-		while (it.hasNext()) {
-			Statement s = it.next();
-			if (s.getSubject().equals(VariableBindingBase.vbbBNode)
-					&& s.getPredicate()
-							.equals(VariableBindingBase.vbbPredicate)) {
-				return (VariableBindingBase) CheatingInMemoryObjectStore
-						.getInstance().get(s.getObject().stringValue());
-			}
-		}
-		return null;
+		return decode(sts, null).getVariableBindingBase();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see eu.larkc.core.data.DataFactory#decode(eu.larkc.core.data.
+	 * SetOfStatements, org.openrdf.model.URI)
+	 */
+	public DecodedInput decode(SetOfStatements rdf, URI invocationID) {
+		return new DecodedInput(this, rdf, invocationID);
 	}
 
 	/**
@@ -98,6 +100,48 @@ public class DataFactoryImpl implements DataFactory {
 		return new RdfGraphInMemory(graph, sts);
 	}
 
+	/**
+	 * Creates an in-memory set of statements that stores the statements as the
+	 * ids of their terms in a {@link TermDictionary} of the set.
+	 * 
+	 * @param sts
+	 *            collection of the statements
+	 * @return the set of statements
+	 */
+	public SetOfStatements createEncodedSetOfStatements(Iterable<Statement> sts) {
+		return new EncodedSetOfStatements(sts);
+	}
+
+	/**
+	 * Creates an encoded copy of a set of statements. A set that is encoded
+	 * already is returned as is.
+	 * 
+	 * @param statements
+	 *            the set of statements
+	 * @return the encoded set of statements
+	 */
+	public SetOfStatements createEncodedSetOfStatements(
+			SetOfStatements statements) {
+		if (statements instanceof EncodedSetOfStatements) {
+			return statements;
+		}
+		return new EncodedSetOfStatements(statements.getStatements());
+	}
+
+	/**
+	 * Creates an in-memory RDF graph with indexes for triple pattern lookups.
+	 * 
+	 * @param sts
+	 *            collection of the statements
+	 * @param graph
+	 *            name of the graph
+	 * @return the graph
+	 */
+	public IndexedRdfGraph createIndexedRdfGraph(Iterable<Statement> sts,
+			URI graph) {
+		return new IndexedRdfGraph(graph, sts);
+	}
+
 	/**
 	 * Creates RDF graph from a remote location. If the URI could not be
 	 * resolved an exception will be generated during the construction of the
@@ -183,48 +227,7 @@ public class DataFactoryImpl implements DataFactory {
 	}
 
 	public RdfGraph createRdfGraph(SetOfStatements rdf, URI invocationID) {
-		CloseableIterator<Statement> i = rdf.getStatements();
-		final ArrayList<Statement> list = new ArrayList<Statement>();
-		RdfGraph result = null;
-
-		while (i.hasNext()) {
-			Statement s = i.next();
-
-			if ((s.getContext() == null && invocationID == null)
-					|| (s.getContext() != null && invocationID != null && s
-							.getContext().equals(invocationID))) {
-				// success
-			} else {
-				continue;
-			}
-
-			if (s.getPredicate().stringValue()
-					.equals(LARKC_NS + "RDFGraphInMemory")) {
-				StringReader sr = new StringReader(s.getObject().stringValue());
-				TriGParser parser = new TriGParser();
-				parser.setRDFHandler(new RDFHandlerBase() {
-					public void handleStatement(Statement arg0)
-							throws RDFHandlerException {
-						list.add(arg0);
-					}
-
-				});
-				try {
-					parser.parse(sr, LARKC_NS);
-					result = createRdfGraph(list, ((URI) list.get(0)
-							.getContext()));
-				} catch (Exception e) {
-					throw new RuntimeException(e);
-				}
-			} else if (s.getContext() == null
-					&& s.getPredicate().stringValue()
-							.equals(LARKC_NS + "RDFGraphRemote")
-					&& s.getObject() instanceof URI) {
-				result = createRemoteRdfGraph((URI) s.getObject());
-			}
-		}
-
-		return result;
+		return decode(rdf, invocationID).getRdfGraph();
 	}
 
 	public SPARQLQuery createSPARQLQuery(SetOfStatements rdf) {
@@ -233,34 +236,7 @@ public class DataFactoryImpl implements DataFactory {
 	}
 
 	public SPARQLQuery createSPARQLQuery(SetOfStatements rdf, URI invocationID) {
-		CloseableIterator<Statement> i = rdf.getStatements();
-		while (i.hasNext()) {
-			Statement s = i.next();
-
-			if ((s.getContext() == null && invocationID == null)
-					|| (s.getContext() != null && invocationID != null && s
-							.getContext().equals(invocationID))) {
-				// success
-			} else {
-				continue;
-			}
-
-			if (s.getPredicate().equals(RDFConstants.LARKC_HASSERIALIZEDFORM)) {
-				return createSPARQLQuery(s.getObject().stringValue()); // FIXME
-				// this
-				// is
-				// not
-				// compatible
-				// with
-				// the
-				// toRDF
-				// method
-				// of
-				// SPARQLQuery
-			}
-		}
-
-		return null;
+		return decode(rdf, invocationID).getSPARQLQuery();
 	}
 
 	/**
@@ -270,27 +246,7 @@ public class DataFactoryImpl implements DataFactory {
 
 	public AttributeValueMap createAttributeValueList(SetOfStatements rdf,
 			URI invocationID) {
-		AttributeValueMap r = new AttributeValueMap();
-
-		CloseableIterator<Statement> i = rdf.getStatements();
-		while (i.hasNext()) {
-			Statement s = i.next();
-
-			if ((s.getContext() == null && invocationID == null)
-					|| (s.getContext() != null && invocationID != null && s
-							.getContext().equals(invocationID))) {
-				// success
-			} else {
-				continue;
-			}
-
-			if (s.getPredicate().equals(RDFConstants.LARKC_ATTVALUE)) {
-				String[] f = s.getObject().stringValue().split("->", 2);
-				r.put(f[0], f[1]);
-			}
-		}
-
-		return r;
+		return decode(rdf, invocationID).getAttributeValueMap();
 	}
 
 	@Override
@@ -402,14 +358,12 @@ public class DataFactoryImpl implements DataFactory {
 	@Override
 	public List<String> extractObjectsForPredicate(SetOfStatements statements,
 			URI predicate) {
-		CloseableIterator<Statement> s = statements.getStatements();
+		CloseableIterator<Value> s = Iterators.objects(Iterators.match(
+				statements.getStatements(), null, predicate, null));
 
 		List<String> objects = new ArrayList<String>();
 		while (s.hasNext()) {
-			Statement stmt = s.next();
-			if (stmt.getPredicate().equals(predicate)) {
-				objects.add(stmt.getObject().stringValue());
-			}
+			objects.add(s.next().stringValue());
 		}
 		s.close();
 		return objects;
@@ -35,7 +35,7 @@ import eu.larkc.shared.SampleQueries;
  * 
  * @author vassil
  */
-public class DataSetImpl implements DataSet {
+public class DataSetImpl implements DataSet, StatementStatistics {
 
 	/** Generated Serial Version UID. */
 	private static final long serialVersionUID = -2488891715384699605L;
@@ -49,6 +49,12 @@ public class DataSetImpl implements DataSet {
 	/** The time stamp. */
 	private final long timeStamp = System.currentTimeMillis();
 
+	/** The result of the last iteration, see {@link #getStatementCount()}. */
+	private transient volatile SetOfStatements lastResult;
+
+	/** The time of the last iteration. */
+	private transient volatile long lastResultTime;
+
 	/**
 	 * Instantiates a new data set impl.
 	 * 
@@ -136,7 +142,32 @@ public class DataSetImpl implements DataSet {
 		String q = SampleQueries.CONSTRUCT_ALL_TRIPLES;
 		SPARQLQuery query = new SPARQLQueryImpl(q);
 		query.setDataSet(this);
-		return endpoint.executeConstruct(query).getStatements();
+		SetOfStatements result = endpoint.executeConstruct(query);
+		lastResultTime = System.currentTimeMillis();
+		lastResult = result;
+		return result.getStatements();
+	}
+
+	/**
+	 * Returns the number of statements counted by the last iteration over
+	 * the data set, if the endpoint reported it and it is not older than
+	 * {@link DataFactoryImpl#REFERENCE_TYPES_CACHE_TIME}.
+	 */
+	public long getStatementCount() {
+		SetOfStatements result = lastResult;
+		if (result instanceof StatementStatistics
+				&& System.currentTimeMillis() - lastResultTime <= DataFactoryImpl.REFERENCE_TYPES_CACHE_TIME) {
+			return ((StatementStatistics) result).getStatementCount();
+		}
+		return UNKNOWN;
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
 	}
 
 	/*
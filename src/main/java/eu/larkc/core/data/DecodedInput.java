@@ -0,0 +1,253 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.trig.TriGParser;
+
+import eu.larkc.core.query.SPARQLQuery;
+import eu.larkc.core.query.VariableBindingBase;
+import eu.larkc.core.util.RDFConstants;
+
+/**
+ * The objects embedded in the input of a plug-in invocation, i.e. the
+ * statements that carry a graph, a query, attribute/value pairs or variable
+ * bindings. The input is read once: the statements with one of the payload
+ * predicates are collected with a single hash lookup of their predicate, and
+ * the objects are only built from them when they are requested. Decoding
+ * several objects from the same input therefore does not scan it again.
+ * 
+ * Only the statements of the invocation, i.e. whose context is the
+ * invocation id, are considered, except for the handles of variable bindings
+ * which are found in any context.
+ */
+public class DecodedInput {
+
+	/** The kinds of payload statements. */
+	private enum Kind {
+		GRAPH_IN_MEMORY, GRAPH_BINARY, GRAPH_HANDLE, GRAPH_REMOTE, QUERY,
+		ATTRIBUTE_VALUE, BINDING_HANDLE
+	}
+
+	private static final Map<URI, Kind> PAYLOAD_PREDICATES = new HashMap<URI, Kind>();
+
+	static {
+		PAYLOAD_PREDICATES.put(RdfGraphInMemory.TRIG_PREDICATE,
+				Kind.GRAPH_IN_MEMORY);
+		PAYLOAD_PREDICATES.put(RdfGraphInMemory.BINARY_PREDICATE,
+				Kind.GRAPH_BINARY);
+		PAYLOAD_PREDICATES.put(RdfGraphInMemory.HANDLE_PREDICATE,
+				Kind.GRAPH_HANDLE);
+		PAYLOAD_PREDICATES.put(new URIImpl(DataFactory.LARKC_NS
+				+ "RDFGraphRemote"), Kind.GRAPH_REMOTE);
+		PAYLOAD_PREDICATES.put(RDFConstants.LARKC_HASSERIALIZEDFORM,
+				Kind.QUERY);
+		PAYLOAD_PREDICATES.put(RDFConstants.LARKC_ATTVALUE,
+				Kind.ATTRIBUTE_VALUE);
+		PAYLOAD_PREDICATES.put(VariableBindingBase.vbbPredicate,
+				Kind.BINDING_HANDLE);
+	}
+
+	private final DataFactory factory;
+	/** The graph statements, in the order of the input. */
+	private final List<Statement> graphs;
+	private final List<Statement> queries;
+	private final List<Statement> attributeValues;
+	private final List<Statement> bindingHandles;
+
+	/**
+	 * Constructor. Reads the input once.
+	 * 
+	 * @param factory
+	 *            the factory to create the decoded objects with
+	 * @param input
+	 *            the input of the invocation
+	 * @param invocationID
+	 *            the id of the invocation, or null for the statements without
+	 *            a context
+	 */
+	DecodedInput(DataFactory factory, SetOfStatements input, URI invocationID) {
+		if (factory == null || input == null) {
+			throw new IllegalArgumentException();
+		}
+		this.factory = factory;
+		graphs = new ArrayList<Statement>(1);
+		queries = new ArrayList<Statement>(1);
+		attributeValues = new ArrayList<Statement>();
+		bindingHandles = new ArrayList<Statement>(1);
+
+		CloseableIterator<Statement> i = input.getStatements();
+		try {
+			while (i.hasNext()) {
+				Statement s = i.next();
+				Kind kind = PAYLOAD_PREDICATES.get(s.getPredicate());
+				if (kind == null) {
+					continue;
+				}
+				if (kind == Kind.BINDING_HANDLE) {
+					if (s.getSubject().equals(VariableBindingBase.vbbBNode)) {
+						bindingHandles.add(s);
+					}
+					continue;
+				}
+				if (invocationID == null ? s.getContext() != null
+						: !invocationID.equals(s.getContext())) {
+					continue;
+				}
+				switch (kind) {
+				case GRAPH_IN_MEMORY:
+				case GRAPH_BINARY:
+				case GRAPH_HANDLE:
+					graphs.add(s);
+					break;
+				case GRAPH_REMOTE:
+					if (s.getContext() == null && s.getObject() instanceof URI) {
+						graphs.add(s);
+					}
+					break;
+				case QUERY:
+					queries.add(s);
+					break;
+				default:
+					attributeValues.add(s);
+				}
+			}
+		} finally {
+			i.close();
+		}
+	}
+
+	/**
+	 * Returns the embedded RDF graph. If several graphs are embedded, the
+	 * statements of all in-memory graphs up to the last graph are merged.
+	 * 
+	 * @return null or the RdfGraph
+	 */
+	public RdfGraph getRdfGraph() {
+		final List<Statement> list = new ArrayList<Statement>();
+		RdfGraph result = null;
+		for (Statement s : graphs) {
+			if (s.getObject() instanceof URI) {
+				result = factory.createRemoteRdfGraph((URI) s.getObject());
+				continue;
+			}
+			Kind kind = PAYLOAD_PREDICATES.get(s.getPredicate());
+			if (kind == Kind.GRAPH_HANDLE) {
+				RdfGraphInMemory graph = (RdfGraphInMemory) ObjectHandleRegistry
+						.getInstance().resolve(s.getObject().stringValue());
+				if (graph == null) {
+					throw new RuntimeException("The graph handle "
+							+ s.getObject().stringValue() + " has expired!");
+				}
+				if (graphs.size() == 1) {
+					// shared rather than copied
+					result = graph;
+					continue;
+				}
+				CloseableIterator<Statement> i = graph.getStatements();
+				while (i.hasNext()) {
+					list.add(i.next());
+				}
+				result = factory.createRdfGraph(list, graph.getName());
+				continue;
+			}
+			if (kind == Kind.GRAPH_BINARY) {
+				URI name = BinaryGraphEncoding.decode(s.getObject()
+						.stringValue(), list);
+				result = factory.createRdfGraph(list, name);
+				continue;
+			}
+			TriGParser parser = new TriGParser();
+			parser.setRDFHandler(new RDFHandlerBase() {
+				public void handleStatement(Statement arg0)
+						throws RDFHandlerException {
+					list.add(arg0);
+				}
+			});
+			try {
+				parser.parse(new StringReader(s.getObject().stringValue()),
+						DataFactory.LARKC_NS);
+				result = factory.createRdfGraph(list, ((URI) list.get(0)
+						.getContext()));
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the embedded SPARQL query.
+	 * 
+	 * @return null or the SPARQLQuery
+	 */
+	public SPARQLQuery getSPARQLQuery() {
+		if (queries.isEmpty()) {
+			return null;
+		}
+		// FIXME this is not compatible with the toRDF method of SPARQLQuery
+		return factory.createSPARQLQuery(queries.get(0).getObject()
+				.stringValue());
+	}
+
+	/**
+	 * Returns the embedded attribute/value pairs.
+	 * 
+	 * @return the AttributeValueMap, empty if there are no pairs
+	 */
+	public AttributeValueMap getAttributeValueMap() {
+		AttributeValueMap r = new AttributeValueMap();
+		for (Statement s : attributeValues) {
+			String[] f = s.getObject().stringValue().split("->", 2);
+			r.put(f[0], f[1]);
+		}
+		return r;
+	}
+
+	/**
+	 * Returns the variable bindings whose handle is embedded, see
+	 * {@link VariableBindingBase#toRDF()}.
+	 * 
+	 * @return null if no handle is embedded, or the variable bindings
+	 * @throws RuntimeException
+	 *             if the handle has been dropped
+	 */
+	public VariableBindingBase getVariableBindingBase() {
+		if (bindingHandles.isEmpty()) {
+			return null;
+		}
+		String handle = bindingHandles.get(0).getObject().stringValue();
+		Object result = ObjectHandleRegistry.getInstance().resolve(handle);
+		if (result == null) {
+			throw new RuntimeException("The variable binding handle "
+					+ handle + " has expired!");
+		}
+		return (VariableBindingBase) result;
+	}
+}
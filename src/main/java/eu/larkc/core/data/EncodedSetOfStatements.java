@@ -0,0 +1,323 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+
+/**
+ * An immutable in-memory set of RDF statements that stores every statement as
+ * the ids of its terms in a {@link TermDictionary}. A statement takes three
+ * ints (four if the set contains statements with a context) instead of a
+ * statement object and its term objects, and terms shared by many statements
+ * (or by the sets sharing a dictionary) are kept in memory only once. The
+ * statement objects are created when the statements are iterated.
+ * 
+ * The set is thread safe. When it is serialised, the terms are written rather
+ * than their ids, and they are encoded with a new dictionary when the set is
+ * read.
+ */
+public class EncodedSetOfStatements implements SetOfStatements,
+		StatementStatistics {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private transient TermDictionary dictionary;
+	/** The subject, predicate and object ids of the statements in a row. */
+	private transient int[] triples;
+	/** The context ids of the statements, null if none has a context. */
+	private transient int[] contexts;
+	private transient int size;
+	/** The distinct subject and predicate counts, computed when first asked. */
+	private transient volatile long[] distinctCounts;
+
+	/**
+	 * Constructor that encodes the statements with a dictionary of the set.
+	 * 
+	 * @param statements
+	 *            the statements
+	 */
+	public EncodedSetOfStatements(Iterable<Statement> statements) {
+		this(statements, new TermDictionary());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param statements
+	 *            the statements
+	 * @param dictionary
+	 *            the dictionary to encode the statements with
+	 */
+	public EncodedSetOfStatements(Iterable<Statement> statements,
+			TermDictionary dictionary) {
+		if (statements == null || dictionary == null) {
+			throw new IllegalArgumentException();
+		}
+		this.dictionary = dictionary;
+		encode(statements.iterator());
+	}
+
+	/**
+	 * Constructor that encodes the statements with a dictionary of the set.
+	 * The iterator is closed afterwards.
+	 * 
+	 * @param statements
+	 *            the statements
+	 */
+	public EncodedSetOfStatements(CloseableIterator<Statement> statements) {
+		this(statements, new TermDictionary());
+	}
+
+	/**
+	 * Constructor. The iterator is closed afterwards.
+	 * 
+	 * @param statements
+	 *            the statements
+	 * @param dictionary
+	 *            the dictionary to encode the statements with
+	 */
+	public EncodedSetOfStatements(CloseableIterator<Statement> statements,
+			TermDictionary dictionary) {
+		if (statements == null || dictionary == null) {
+			throw new IllegalArgumentException();
+		}
+		this.dictionary = dictionary;
+		try {
+			encode(statements);
+		} finally {
+			statements.close();
+		}
+	}
+
+	/**
+	 * Returns the number of statements.
+	 * 
+	 * @return the number of statements
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long getStatementCount() {
+		return size;
+	}
+
+	public long getDistinctSubjectCount() {
+		return getDistinctCounts()[0];
+	}
+
+	public long getDistinctPredicateCount() {
+		return getDistinctCounts()[1];
+	}
+
+	/**
+	 * Returns the dictionary the statements are encoded with.
+	 * 
+	 * @return the dictionary
+	 */
+	public TermDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public CloseableIterator<Statement> getStatements() {
+		return new DecodingIterator();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.data.InformationSet#toRDF(eu.larkc.core.data.SetOfStatements
+	 * )
+	 */
+	@Override
+	public SetOfStatements toRDF(SetOfStatements data) {
+		return new SetOfStatementsImpl(getStatements()).toRDF(data);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer(1000);
+		for (int i = 0; i < 50 && i < size; i++) {
+			sb.append(decode(i));
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Counts the distinct subject and predicate ids. The set does not change,
+	 * so they are counted only once.
+	 */
+	private long[] getDistinctCounts() {
+		long[] counts = distinctCounts;
+		if (counts == null) {
+			BitSet subjects = new BitSet();
+			BitSet predicates = new BitSet();
+			for (int i = 0; i < size; i++) {
+				subjects.set(triples[3 * i]);
+				predicates.set(triples[3 * i + 1]);
+			}
+			counts = new long[] { subjects.cardinality(),
+					predicates.cardinality() };
+			distinctCounts = counts;
+		}
+		return counts;
+	}
+
+	private void encode(Iterator<Statement> statements) {
+		triples = new int[3 * INITIAL_CAPACITY];
+		contexts = null;
+		size = 0;
+		while (statements.hasNext()) {
+			Statement s = statements.next();
+			add(s.getSubject(), s.getPredicate(), s.getObject(), s.getContext());
+		}
+		if (3 * size < triples.length) {
+			int[] trimmed = new int[3 * size];
+			System.arraycopy(triples, 0, trimmed, 0, trimmed.length);
+			triples = trimmed;
+			if (contexts != null) {
+				int[] trimmedContexts = new int[size];
+				System.arraycopy(contexts, 0, trimmedContexts, 0, size);
+				contexts = trimmedContexts;
+			}
+		}
+	}
+
+	private void add(Resource subject, URI predicate, Value object,
+			Resource context) {
+		if (3 * size == triples.length) {
+			int[] larger = new int[triples.length * 2];
+			System.arraycopy(triples, 0, larger, 0, triples.length);
+			triples = larger;
+		}
+		triples[3 * size] = dictionary.encode(subject);
+		triples[3 * size + 1] = dictionary.encode(predicate);
+		triples[3 * size + 2] = dictionary.encode(object);
+		if (context != null && contexts == null) {
+			contexts = new int[triples.length / 3];
+		}
+		if (contexts != null) {
+			if (contexts.length < triples.length / 3) {
+				int[] larger = new int[triples.length / 3];
+				System.arraycopy(contexts, 0, larger, 0, contexts.length);
+				contexts = larger;
+			}
+			contexts[size] = dictionary.encode(context);
+		}
+		size++;
+	}
+
+	private Statement decode(int index) {
+		Resource subject = (Resource) dictionary.decode(triples[3 * index]);
+		URI predicate = (URI) dictionary.decode(triples[3 * index + 1]);
+		Value object = dictionary.decode(triples[3 * index + 2]);
+		if (contexts == null || contexts[index] == TermDictionary.NO_TERM) {
+			return new StatementImpl(subject, predicate, object);
+		}
+		return new ContextStatementImpl(subject, predicate, object,
+				(Resource) dictionary.decode(contexts[index]));
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			Statement s = decode(i);
+			out.writeObject(s.getSubject());
+			out.writeObject(s.getPredicate());
+			out.writeObject(s.getObject());
+			out.writeObject(s.getContext());
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		dictionary = new TermDictionary();
+		int count = in.readInt();
+		triples = new int[3 * count];
+		contexts = null;
+		size = 0;
+		for (int i = 0; i < count; i++) {
+			add((Resource) in.readObject(), (URI) in.readObject(),
+					(Value) in.readObject(), (Resource) in.readObject());
+		}
+	}
+
+	/**
+	 * Creates the statements one at a time while iterating.
+	 */
+	private class DecodingIterator implements CloseableIterator<Statement> {
+
+		private int next;
+		private boolean isClosed;
+
+		DecodingIterator() {
+			this.next = 0;
+			this.isClosed = false;
+		}
+
+		public boolean hasNext() {
+			if (isClosed) {
+				throw new RuntimeException("Iterator is closed!");
+			}
+			return next < size;
+		}
+
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return decode(next++);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			isClosed = true;
+		}
+
+		public boolean isClosed() {
+			return isClosed;
+		}
+	}
+}
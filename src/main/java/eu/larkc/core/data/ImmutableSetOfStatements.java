@@ -0,0 +1,381 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+/**
+ * An immutable in-memory set of RDF statements. Since it cannot change, the
+ * same set can be handed to any number of plug-ins and queues without
+ * copying it, and the sets derived from it with {@link #subSet(int, int)} and
+ * {@link #match(Resource, URI, Value)} share its statements instead of
+ * copying them. The statement objects themselves are never copied either.
+ */
+public class ImmutableSetOfStatements implements SetOfStatements,
+		StatementStatistics, Iterable<Statement> {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Statement[] EMPTY = new Statement[0];
+
+	/** The statements, possibly shared with other sets. */
+	private transient Statement[] statements;
+	/**
+	 * The indexes of the statements of this set within {@link #statements}, or
+	 * null if the set consists of the statements from {@link #offset} on.
+	 */
+	private transient int[] selection;
+	private transient int offset;
+	private transient int size;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param statements
+	 *            the statements
+	 */
+	public ImmutableSetOfStatements(Collection<Statement> statements) {
+		if (statements == null) {
+			throw new IllegalArgumentException();
+		}
+		this.statements = statements.toArray(new Statement[statements.size()]);
+		this.size = this.statements.length;
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param statements
+	 *            the statements
+	 */
+	public ImmutableSetOfStatements(Iterable<Statement> statements) {
+		this(statements.iterator());
+	}
+
+	/**
+	 * Constructor. The iterator is closed afterwards.
+	 * 
+	 * @param statements
+	 *            the statements
+	 */
+	public ImmutableSetOfStatements(CloseableIterator<Statement> statements) {
+		try {
+			init(statements);
+		} finally {
+			statements.close();
+		}
+	}
+
+	private ImmutableSetOfStatements(Iterator<Statement> statements) {
+		init(statements);
+	}
+
+	private ImmutableSetOfStatements(Statement[] statements, int[] selection,
+			int offset, int size) {
+		this.statements = statements;
+		this.selection = selection;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	/**
+	 * Returns an immutable set with the statements of the given set. Sets that
+	 * cannot change, i.e. immutable, encoded and off-heap sets, and
+	 * concatenations of such sets, are returned as they are; other sets are
+	 * read once and their statements are copied by reference.
+	 * 
+	 * @param statements
+	 *            the set of statements
+	 * @return an immutable set of statements with the same statements
+	 */
+	public static SetOfStatements copyOf(SetOfStatements statements) {
+		if (isImmutable(statements)) {
+			return statements;
+		}
+		if (statements instanceof SetOfStatementsImpl) {
+			return new ImmutableSetOfStatements(
+					((SetOfStatementsImpl) statements).getData());
+		}
+		return new ImmutableSetOfStatements(statements.getStatements());
+	}
+
+	private static boolean isImmutable(SetOfStatements statements) {
+		if (statements instanceof ConcatenatedSetOfStatements) {
+			for (SetOfStatements part : ((ConcatenatedSetOfStatements) statements)
+					.getParts()) {
+				if (!isImmutable(part)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return statements instanceof ImmutableSetOfStatements
+				|| statements instanceof EncodedSetOfStatements
+				|| statements instanceof OffHeapSetOfStatements;
+	}
+
+	/**
+	 * Returns the number of statements.
+	 * 
+	 * @return the number of statements
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long getStatementCount() {
+		return size;
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
+	/**
+	 * Returns the statement at the given position.
+	 * 
+	 * @param index
+	 *            the position, from 0 to {@link #size()} - 1
+	 * @return the statement
+	 */
+	public Statement get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return statements[selection == null ? offset + index
+				: selection[index]];
+	}
+
+	/**
+	 * Returns the statements from one position to another. The returned set
+	 * shares the statements of this set.
+	 * 
+	 * @param from
+	 *            the first position, inclusive
+	 * @param to
+	 *            the last position, exclusive
+	 * @return the statements in the given range
+	 */
+	public ImmutableSetOfStatements subSet(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException(from + ", " + to);
+		}
+		if (selection == null) {
+			return new ImmutableSetOfStatements(statements, null, offset
+					+ from, to - from);
+		}
+		int[] range = new int[to - from];
+		System.arraycopy(selection, from, range, 0, range.length);
+		return new ImmutableSetOfStatements(statements, range, 0, range.length);
+	}
+
+	/**
+	 * Returns the statements that match a pattern. The returned set shares
+	 * the statements of this set.
+	 * 
+	 * @param subject
+	 *            the subject, or null for any subject
+	 * @param predicate
+	 *            the predicate, or null for any predicate
+	 * @param object
+	 *            the object, or null for any object
+	 * @return the matching statements
+	 */
+	public ImmutableSetOfStatements match(Resource subject, URI predicate,
+			Value object) {
+		int[] matches = new int[size];
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			int index = selection == null ? offset + i : selection[i];
+			Statement s = statements[index];
+			if ((subject == null || subject.equals(s.getSubject()))
+					&& (predicate == null || predicate.equals(s.getPredicate()))
+					&& (object == null || object.equals(s.getObject()))) {
+				matches[count++] = index;
+			}
+		}
+		if (count == size) {
+			return this;
+		}
+		int[] trimmed = new int[count];
+		System.arraycopy(matches, 0, trimmed, 0, count);
+		return new ImmutableSetOfStatements(statements, trimmed, 0, count);
+	}
+
+	public Iterator<Statement> iterator() {
+		return getStatements();
+	}
+
+	public CloseableIterator<Statement> getStatements() {
+		return new IndexIterator();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.data.InformationSet#toRDF(eu.larkc.core.data.SetOfStatements
+	 * )
+	 */
+	@Override
+	public SetOfStatements toRDF(SetOfStatements data) {
+		return new SetOfStatementsImpl(getStatements()).toRDF(data);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof ImmutableSetOfStatements == false) {
+			return false;
+		}
+		ImmutableSetOfStatements other = (ImmutableSetOfStatements) o;
+		if (other.size != size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (!get(i).equals(other.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = 1;
+		for (int i = 0; i < size; i++) {
+			hashCode = 31 * hashCode + get(i).hashCode();
+		}
+		return hashCode;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer(1000);
+		for (int i = 0; i < 50 && i < size; i++) {
+			sb.append(get(i));
+			sb.append("\n");
+		}
+		return sb.toString();
+	}
+
+	private void init(Iterator<Statement> iterator) {
+		if (iterator == null) {
+			throw new IllegalArgumentException();
+		}
+		Statement[] array = EMPTY;
+		int count = 0;
+		while (iterator.hasNext()) {
+			if (count == array.length) {
+				Statement[] larger = new Statement[Math.max(16,
+						array.length * 2)];
+				System.arraycopy(array, 0, larger, 0, count);
+				array = larger;
+			}
+			array[count++] = iterator.next();
+		}
+		if (count < array.length) {
+			Statement[] trimmed = new Statement[count];
+			System.arraycopy(array, 0, trimmed, 0, count);
+			array = trimmed;
+		}
+		statements = array;
+		size = count;
+	}
+
+	/**
+	 * Writes only the statements of this set, not the shared ones of other
+	 * sets.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeObject(get(i));
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		size = in.readInt();
+		statements = new Statement[size];
+		for (int i = 0; i < size; i++) {
+			statements[i] = (Statement) in.readObject();
+		}
+	}
+
+	/**
+	 * Iterates the statements by position.
+	 */
+	private class IndexIterator implements CloseableIterator<Statement> {
+
+		private int next;
+		private boolean isClosed;
+
+		IndexIterator() {
+			this.next = 0;
+			this.isClosed = false;
+		}
+
+		public boolean hasNext() {
+			if (isClosed) {
+				throw new RuntimeException("Iterator is closed!");
+			}
+			return next < size;
+		}
+
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return get(next++);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			isClosed = true;
+		}
+
+		public boolean isClosed() {
+			return isClosed;
+		}
+	}
+}
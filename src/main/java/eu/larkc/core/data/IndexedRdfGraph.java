@@ -0,0 +1,550 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+
+/**
+ * An immutable in-memory RDF graph that answers triple patterns with index
+ * lookups instead of scanning all statements. The statements are encoded with
+ * a {@link TermDictionary} and indexed by three sorted arrays of statement
+ * positions: in subject-predicate-object, predicate-object-subject and
+ * object-subject-predicate order. Every pattern is answered by a binary
+ * search in one of them, and the index costs three ints per statement.
+ * 
+ * The graph is meant for small and medium working sets that plug-ins query
+ * many times, e.g. within one invocation; larger or shared data belongs in
+ * the RDF store.
+ */
+public class IndexedRdfGraph extends RdfGraphBase {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** Ranges up to this length are sorted by insertion. */
+	private static final int INSERTION_SORT_THRESHOLD = 12;
+
+	private transient TermDictionary dictionary;
+	private transient int size;
+	private transient int[] subjects;
+	private transient int[] predicates;
+	private transient int[] objects;
+	/** The context ids, null if no statement has a context. */
+	private transient int[] contexts;
+
+	/** The statement positions in subject-predicate-object order. */
+	private transient int[] spo;
+	/** The statement positions in predicate-object-subject order. */
+	private transient int[] pos;
+	/** The statement positions in object-subject-predicate order. */
+	private transient int[] osp;
+
+	private transient int distinctSubjects;
+	private transient int distinctPredicates;
+
+	/**
+	 * Constructor that encodes the statements with a dictionary of the graph.
+	 * 
+	 * @param graph
+	 *            is the name of the graph
+	 * @param data
+	 *            are the statements of the graph
+	 */
+	public IndexedRdfGraph(URI graph, Iterable<Statement> data) {
+		this(graph, data, new TermDictionary());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param graph
+	 *            is the name of the graph
+	 * @param data
+	 *            are the statements of the graph
+	 * @param dictionary
+	 *            the dictionary to encode the statements with
+	 */
+	public IndexedRdfGraph(URI graph, Iterable<Statement> data,
+			TermDictionary dictionary) {
+		super(graph);
+		if (data == null || dictionary == null) {
+			throw new IllegalArgumentException();
+		}
+		this.dictionary = dictionary;
+		build(data.iterator());
+	}
+
+	/**
+	 * Constructor that encodes the statements with a dictionary of the graph.
+	 * The iterator is closed afterwards.
+	 * 
+	 * @param graph
+	 *            is the name of the graph
+	 * @param data
+	 *            are the statements of the graph
+	 */
+	public IndexedRdfGraph(URI graph, CloseableIterator<Statement> data) {
+		this(graph, data, new TermDictionary());
+	}
+
+	/**
+	 * Constructor. The iterator is closed afterwards.
+	 * 
+	 * @param graph
+	 *            is the name of the graph
+	 * @param data
+	 *            are the statements of the graph
+	 * @param dictionary
+	 *            the dictionary to encode the statements with
+	 */
+	public IndexedRdfGraph(URI graph, CloseableIterator<Statement> data,
+			TermDictionary dictionary) {
+		super(graph);
+		if (data == null || dictionary == null) {
+			throw new IllegalArgumentException();
+		}
+		this.dictionary = dictionary;
+		try {
+			build(data);
+		} finally {
+			data.close();
+		}
+	}
+
+	/**
+	 * Creates a statement iterator based on simple pattern matching, like
+	 * {@link RdfStoreConnection#search(Resource, URI, Value, URI, URI)}.
+	 * 
+	 * @param subj
+	 *            is subject of the statements to be matched (may be null)
+	 * @param pred
+	 *            is predicate of the statements to be matched (may be null)
+	 * @param obj
+	 *            is object of the statements to be matched (may be null)
+	 * @param graph
+	 *            is graph of the statements to be matched (may be null)
+	 * @return closeable statement iterator
+	 */
+	public CloseableIterator<Statement> search(Resource subj, URI pred,
+			Value obj, URI graph) {
+		int c = dictionary.getId(graph);
+		Range range = find(subj, pred, obj);
+		if (range == null || c == TermDictionary.UNKNOWN_TERM) {
+			return new RangeIterator(new Range(null, 0, 0),
+					TermDictionary.NO_TERM);
+		}
+		return new RangeIterator(range, c);
+	}
+
+	/**
+	 * Returns the number of statements that match a pattern, in any graph.
+	 * The statements are not created.
+	 * 
+	 * @param subj
+	 *            is subject of the statements to be matched (may be null)
+	 * @param pred
+	 *            is predicate of the statements to be matched (may be null)
+	 * @param obj
+	 *            is object of the statements to be matched (may be null)
+	 * @return the number of matching statements
+	 */
+	public int count(Resource subj, URI pred, Value obj) {
+		Range range = find(subj, pred, obj);
+		return range == null ? 0 : range.to - range.from;
+	}
+
+	/**
+	 * Returns the dictionary the statements are encoded with.
+	 * 
+	 * @return the dictionary
+	 */
+	public TermDictionary getDictionary() {
+		return dictionary;
+	}
+
+	public CloseableIterator<Statement> getStatements() {
+		return new RangeIterator(new Range(null, 0, size),
+				TermDictionary.NO_TERM);
+	}
+
+	@Override
+	public long getStatementCount() {
+		return size;
+	}
+
+	@Override
+	public long getDistinctSubjectCount() {
+		return distinctSubjects;
+	}
+
+	@Override
+	public long getDistinctPredicateCount() {
+		return distinctPredicates;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.data.InformationSet#toRDF(eu.larkc.core.data.SetOfStatements
+	 * )
+	 */
+	public SetOfStatements toRDF(SetOfStatements data) {
+		return new SetOfStatementsImpl(getStatements()).toRDF(data);
+	}
+
+	/**
+	 * Finds the positions of the statements matching a pattern in the index
+	 * whose order starts with the bound terms of the pattern.
+	 * 
+	 * @return the range within the chosen index, or null if a term of the
+	 *         pattern does not occur in the graph
+	 */
+	private Range find(Resource subj, URI pred, Value obj) {
+		int s = dictionary.getId(subj);
+		int p = dictionary.getId(pred);
+		int o = dictionary.getId(obj);
+		if (s == TermDictionary.UNKNOWN_TERM
+				|| p == TermDictionary.UNKNOWN_TERM
+				|| o == TermDictionary.UNKNOWN_TERM) {
+			return null;
+		}
+		int any = TermDictionary.NO_TERM;
+		if (s != any && p != any) {
+			return range(spo, subjects, predicates, objects, s, p, o);
+		} else if (s != any && o != any) {
+			return range(osp, objects, subjects, predicates, o, s, any);
+		} else if (s != any) {
+			return range(spo, subjects, predicates, objects, s, any, any);
+		} else if (p != any) {
+			return range(pos, predicates, objects, subjects, p, o, any);
+		} else if (o != any) {
+			return range(osp, objects, subjects, predicates, o, any, any);
+		}
+		return new Range(null, 0, size);
+	}
+
+	/**
+	 * Returns the range of an index whose keys start with the given key; the
+	 * bound parts of the key must come first.
+	 */
+	private Range range(int[] order, int[] first, int[] second, int[] third,
+			int k1, int k2, int k3) {
+		int length = k2 == TermDictionary.NO_TERM ? 1
+				: k3 == TermDictionary.NO_TERM ? 2 : 3;
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compare(order[middle], first, second, third, k1, k2, k3,
+					length) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		int from = low;
+		high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compare(order[middle], first, second, third, k1, k2, k3,
+					length) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return new Range(order, from, low);
+	}
+
+	/**
+	 * Compares the first terms of a statement with a key.
+	 */
+	private static int compare(int statement, int[] first, int[] second,
+			int[] third, int k1, int k2, int k3, int length) {
+		if (first[statement] != k1) {
+			return first[statement] < k1 ? -1 : 1;
+		}
+		if (length > 1 && second[statement] != k2) {
+			return second[statement] < k2 ? -1 : 1;
+		}
+		if (length > 2 && third[statement] != k3) {
+			return third[statement] < k3 ? -1 : 1;
+		}
+		return 0;
+	}
+
+	private void build(Iterator<Statement> statements) {
+		subjects = new int[INITIAL_CAPACITY];
+		predicates = new int[INITIAL_CAPACITY];
+		objects = new int[INITIAL_CAPACITY];
+		contexts = null;
+		size = 0;
+		while (statements.hasNext()) {
+			add(statements.next());
+		}
+		subjects = trim(subjects, size);
+		predicates = trim(predicates, size);
+		objects = trim(objects, size);
+		if (contexts != null) {
+			contexts = trim(contexts, size);
+		}
+
+		spo = sort(subjects, predicates, objects);
+		pos = sort(predicates, objects, subjects);
+		osp = sort(objects, subjects, predicates);
+		distinctSubjects = countDistinct(spo, subjects);
+		distinctPredicates = countDistinct(pos, predicates);
+	}
+
+	private void add(Statement statement) {
+		if (size == subjects.length) {
+			subjects = trim(subjects, size * 2);
+			predicates = trim(predicates, size * 2);
+			objects = trim(objects, size * 2);
+			if (contexts != null) {
+				contexts = trim(contexts, size * 2);
+			}
+		}
+		subjects[size] = dictionary.encode(statement.getSubject());
+		predicates[size] = dictionary.encode(statement.getPredicate());
+		objects[size] = dictionary.encode(statement.getObject());
+		if (statement.getContext() != null && contexts == null) {
+			contexts = new int[subjects.length];
+		}
+		if (contexts != null) {
+			contexts[size] = dictionary.encode(statement.getContext());
+		}
+		size++;
+	}
+
+	private static int[] trim(int[] array, int length) {
+		int[] result = new int[length];
+		System.arraycopy(array, 0, result, 0, Math.min(length, array.length));
+		return result;
+	}
+
+	/**
+	 * Returns the statement positions sorted by the given columns.
+	 */
+	private int[] sort(int[] first, int[] second, int[] third) {
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		quickSort(order, 0, size - 1, first, second, third);
+		return order;
+	}
+
+	private static void quickSort(int[] order, int low, int high,
+			int[] first, int[] second, int[] third) {
+		while (high - low > INSERTION_SORT_THRESHOLD) {
+			int middle = (low + high) >>> 1;
+			// median of three as pivot, moved to the end of the range
+			if (compareStatements(order[middle], order[low], first, second,
+					third) < 0) {
+				swap(order, middle, low);
+			}
+			if (compareStatements(order[high], order[low], first, second,
+					third) < 0) {
+				swap(order, high, low);
+			}
+			if (compareStatements(order[high], order[middle], first, second,
+					third) < 0) {
+				swap(order, high, middle);
+			}
+			swap(order, middle, high);
+			int pivot = order[high];
+			int store = low;
+			for (int i = low; i < high; i++) {
+				if (compareStatements(order[i], pivot, first, second, third) < 0) {
+					swap(order, i, store++);
+				}
+			}
+			swap(order, store, high);
+			// recurse into the smaller part to bound the stack depth
+			if (store - low < high - store) {
+				quickSort(order, low, store - 1, first, second, third);
+				low = store + 1;
+			} else {
+				quickSort(order, store + 1, high, first, second, third);
+				high = store - 1;
+			}
+		}
+		for (int i = low + 1; i <= high; i++) {
+			int current = order[i];
+			int j = i - 1;
+			while (j >= low
+					&& compareStatements(order[j], current, first, second,
+							third) > 0) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = current;
+		}
+	}
+
+	private static int compareStatements(int a, int b, int[] first,
+			int[] second, int[] third) {
+		if (first[a] != first[b]) {
+			return first[a] < first[b] ? -1 : 1;
+		}
+		if (second[a] != second[b]) {
+			return second[a] < second[b] ? -1 : 1;
+		}
+		if (third[a] != third[b]) {
+			return third[a] < third[b] ? -1 : 1;
+		}
+		return a < b ? -1 : (a == b ? 0 : 1);
+	}
+
+	private static void swap(int[] array, int i, int j) {
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+	private int countDistinct(int[] order, int[] column) {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || column[order[i]] != column[order[i - 1]]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private Statement decode(int statement) {
+		Resource subject = (Resource) dictionary.decode(subjects[statement]);
+		URI predicate = (URI) dictionary.decode(predicates[statement]);
+		Value object = dictionary.decode(objects[statement]);
+		if (contexts == null || contexts[statement] == TermDictionary.NO_TERM) {
+			return new StatementImpl(subject, predicate, object);
+		}
+		return new ContextStatementImpl(subject, predicate, object,
+				(Resource) dictionary.decode(contexts[statement]));
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeObject(decode(i));
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException,
+			ClassNotFoundException {
+		in.defaultReadObject();
+		dictionary = new TermDictionary();
+		int count = in.readInt();
+		List<Statement> statements = new ArrayList<Statement>(count);
+		for (int i = 0; i < count; i++) {
+			statements.add((Statement) in.readObject());
+		}
+		build(statements.iterator());
+	}
+
+	/**
+	 * A range of positions within an index, or within the statements in their
+	 * original order if the index is null.
+	 */
+	private static class Range {
+
+		final int[] order;
+		final int from;
+		final int to;
+
+		Range(int[] order, int from, int to) {
+			this.order = order;
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	/**
+	 * Iterates a range and skips the statements of other graphs.
+	 */
+	private class RangeIterator implements CloseableIterator<Statement> {
+
+		private final int[] order;
+		private final int to;
+		private final int context;
+		private int next;
+		private boolean isClosed;
+
+		RangeIterator(Range range, int context) {
+			this.order = range.order;
+			this.next = range.from;
+			this.to = range.to;
+			this.context = context;
+			this.isClosed = false;
+		}
+
+		public boolean hasNext() {
+			if (isClosed) {
+				throw new RuntimeException("Iterator is closed!");
+			}
+			if (context != TermDictionary.NO_TERM) {
+				while (next < to
+						&& (contexts == null || contexts[statement(next)] != context)) {
+					next++;
+				}
+			}
+			return next < to;
+		}
+
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return decode(statement(next++));
+		}
+
+		private int statement(int position) {
+			return order == null ? position : order[position];
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			isClosed = true;
+		}
+
+		public boolean isClosed() {
+			return isClosed;
+		}
+	}
+}
@@ -33,7 +33,8 @@ import org.openrdf.model.Value;
  * @author vassil
  * 
  */
-public interface LabelledGroupOfStatements extends SetOfStatements {
+public interface LabelledGroupOfStatements extends SetOfStatements,
+		StatementStatistics {
 
 	/**
 	 * Returns the name of the group label.
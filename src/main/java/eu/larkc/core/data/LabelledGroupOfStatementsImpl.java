@@ -30,6 +30,8 @@ import org.openrdf.model.URI;
 import org.openrdf.model.Value;
 import org.openrdf.model.impl.URIImpl;
 
+import eu.larkc.core.data.iterator.ORDICloseableIterator;
+
 /**
  * @author vassil
  */
@@ -39,6 +41,9 @@ public class LabelledGroupOfStatementsImpl implements LabelledGroupOfStatements
 	private transient RdfStoreConnection con;
 	private URI label;
 	private int transId;
+	/** The last full search of the group, see {@link #getStatementCount()}. */
+	private transient volatile ORDICloseableIterator lastSearch;
+	private transient volatile int lastSearchTransId;
 
 	/**
 	 * Constructor
@@ -133,7 +138,35 @@ public class LabelledGroupOfStatementsImpl implements LabelledGroupOfStatements
 	}
 
 	public CloseableIterator<Statement> getStatements() {
-		return con.search(null, null, null, null, label);
+		CloseableIterator<Statement> iter = con.search(null, null, null, null,
+				label);
+		if (iter instanceof ORDICloseableIterator) {
+			lastSearchTransId = transId;
+			lastSearch = (ORDICloseableIterator) iter;
+		}
+		return iter;
+	}
+
+	/**
+	 * Returns the number of statements counted by the last iteration over
+	 * all statements of the group, if the group was not changed through this
+	 * object since.
+	 */
+	public long getStatementCount() {
+		ORDICloseableIterator search = lastSearch;
+		if (search != null && search.isExhausted()
+				&& lastSearchTransId == transId) {
+			return search.getCount();
+		}
+		return UNKNOWN;
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
 	}
 
 	public boolean equals(Object o) {
@@ -0,0 +1,315 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.util.SystemProperties;
+
+/**
+ * Registry of objects that are passed through RDF as a handle, i.e. a literal
+ * that identifies the object within this JVM, e.g. variable bindings that are
+ * handed from one plug-in to the next. The registry is thread safe.
+ * 
+ * A handle that was not resolved yet is in flight: its object is strongly
+ * referenced, and it expires {@value #TTL_PROPERTY} milliseconds after its
+ * registration, so that the handles of results nobody consumes are dropped
+ * as well. Once the handle is resolved, the consumer holds the object, and
+ * the registry keeps it only softly referenced, so that the garbage collector
+ * may reclaim it when memory runs short, and further consumers of the same
+ * handle can still resolve it. A resolved handle expires
+ * {@value #TTL_PROPERTY} milliseconds after its first resolution, and when
+ * more than {@value #MAX_SIZE_PROPERTY} handles are live the resolved handles
+ * that were resolved first are dropped. Handles in flight are not dropped
+ * before they expire, even above the maximum size. Resolving a dropped handle
+ * returns null.
+ */
+public class ObjectHandleRegistry {
+
+	/** System property defining the maximum number of live handles. */
+	public static final String MAX_SIZE_PROPERTY = "larkc.handles.maxSize";
+
+	/**
+	 * System property defining the lifetime of a handle in flight or resolved,
+	 * in milliseconds.
+	 */
+	public static final String TTL_PROPERTY = "larkc.handles.ttl";
+
+	/** Default maximum number of live handles. */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/** Default lifetime of a handle, in milliseconds. */
+	public static final long DEFAULT_TTL = 10 * 60 * 1000;
+
+	private static Logger logger = LoggerFactory
+			.getLogger(ObjectHandleRegistry.class);
+
+	private static final ObjectHandleRegistry instance = new ObjectHandleRegistry(
+			SystemProperties.getInt(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE),
+			SystemProperties.getLong(TTL_PROPERTY, DEFAULT_TTL));
+
+	private final int maxSize;
+	private final long ttl;
+	private final ReferenceQueue<Object> collected;
+
+	// the following fields are guarded by this
+	private long counter;
+	private long bytes;
+	/** The handles that were not resolved yet in the order of expiry. */
+	private final LinkedHashMap<String, Entry> inFlight;
+	/** The resolved handles in the order of their resolution, i.e. of expiry. */
+	private final LinkedHashMap<String, Entry> resolved;
+	/** Whether the handles in flight alone exceed the maximum size. */
+	private boolean exceeded;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxSize
+	 *            the maximum number of live handles
+	 * @param ttl
+	 *            the lifetime of a handle in flight or resolved, in
+	 *            milliseconds
+	 */
+	public ObjectHandleRegistry(int maxSize, long ttl) {
+		if (maxSize <= 0 || ttl <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.maxSize = maxSize;
+		this.ttl = ttl;
+		collected = new ReferenceQueue<Object>();
+		inFlight = new LinkedHashMap<String, Entry>();
+		resolved = new LinkedHashMap<String, Entry>();
+	}
+
+	/**
+	 * Returns the registry shared within the JVM, configured by the system
+	 * properties.
+	 * 
+	 * @return the shared registry
+	 */
+	public static ObjectHandleRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Registers an object of unknown size.
+	 * 
+	 * @param object
+	 *            the object
+	 * @return the handle of the object, or the empty string for null
+	 */
+	public String register(Object object) {
+		return register(object, 0);
+	}
+
+	/**
+	 * Registers an object. The object is kept until its handle is resolved,
+	 * released or expires.
+	 * 
+	 * @param object
+	 *            the object
+	 * @param estimatedBytes
+	 *            the estimated memory used by the object, 0 if unknown
+	 * @return the handle of the object, or the empty string for null
+	 */
+	public synchronized String register(Object object, long estimatedBytes) {
+		if (object == null) {
+			return "";
+		}
+		String handle = Long.toString(++counter);
+		Entry entry = new Entry(handle, object, estimatedBytes, collected);
+		entry.expiry = System.currentTimeMillis() + ttl;
+		inFlight.put(handle, entry);
+		bytes += estimatedBytes;
+		evict();
+		return handle;
+	}
+
+	/**
+	 * Returns the object of a handle.
+	 * 
+	 * @param handle
+	 *            the handle
+	 * @return the object, or null if the handle is unknown, released,
+	 *         expired or its object was garbage collected
+	 */
+	public synchronized Object resolve(String handle) {
+		Entry entry = inFlight.remove(handle);
+		if (entry != null && entry.expiry < System.currentTimeMillis()) {
+			dropped(entry);
+			return null;
+		}
+		if (entry != null) {
+			Object object = entry.object;
+			entry.object = null;
+			entry.expiry = System.currentTimeMillis() + ttl;
+			resolved.put(handle, entry);
+			evict();
+			return object;
+		}
+		entry = resolved.get(handle);
+		if (entry == null) {
+			return null;
+		}
+		Object object = entry.get();
+		if (object == null || entry.expiry < System.currentTimeMillis()) {
+			remove(entry);
+			return null;
+		}
+		return object;
+	}
+
+	/**
+	 * Drops a handle, whether it was resolved or not.
+	 * 
+	 * @param handle
+	 *            the handle
+	 */
+	public synchronized void release(String handle) {
+		Entry entry = inFlight.get(handle);
+		if (entry == null) {
+			entry = resolved.get(handle);
+		}
+		if (entry != null) {
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Returns the number of handles that have neither expired nor been
+	 * dropped yet. Handles whose objects were just garbage collected may be
+	 * included.
+	 * 
+	 * @return the number of live handles
+	 */
+	public synchronized int getLiveHandleCount() {
+		purge();
+		return inFlight.size() + resolved.size();
+	}
+
+	/**
+	 * Returns the number of handles that were not resolved yet.
+	 * 
+	 * @return the number of handles in flight
+	 */
+	public synchronized int getInFlightHandleCount() {
+		return inFlight.size();
+	}
+
+	/**
+	 * Returns the sum of the estimated sizes of the objects of the live
+	 * handles; objects of unknown size are not included.
+	 * 
+	 * @return the estimated number of bytes
+	 */
+	public synchronized long getEstimatedBytes() {
+		purge();
+		return bytes;
+	}
+
+	/**
+	 * Drops the collected and expired handles and, above the maximum size, the
+	 * first resolved handles. The handles of each map expire in the order of
+	 * the map, so only the heads of the maps need to be checked. Handles in
+	 * flight are only dropped when they expire.
+	 */
+	private void evict() {
+		purge();
+		long now = System.currentTimeMillis();
+		Iterator<Entry> i = inFlight.values().iterator();
+		while (i.hasNext()) {
+			Entry oldest = i.next();
+			if (oldest.expiry >= now) {
+				break;
+			}
+			i.remove();
+			dropped(oldest);
+		}
+		i = resolved.values().iterator();
+		while (i.hasNext()) {
+			Entry oldest = i.next();
+			if (oldest.expiry >= now
+					&& inFlight.size() + resolved.size() <= maxSize) {
+				break;
+			}
+			i.remove();
+			dropped(oldest);
+		}
+		boolean wasExceeded = exceeded;
+		exceeded = inFlight.size() > maxSize;
+		if (exceeded && !wasExceeded) {
+			logger.warn("{} handles are in flight, more than the maximum of "
+					+ "{}; they are kept until they are resolved or expire",
+					inFlight.size(), maxSize);
+		}
+	}
+
+	private void purge() {
+		Reference<? extends Object> reference;
+		while ((reference = collected.poll()) != null) {
+			remove((Entry) reference);
+		}
+	}
+
+	private void remove(Entry entry) {
+		if (inFlight.get(entry.handle) == entry) {
+			inFlight.remove(entry.handle);
+			dropped(entry);
+		} else if (resolved.get(entry.handle) == entry) {
+			resolved.remove(entry.handle);
+			dropped(entry);
+		}
+	}
+
+	private void dropped(Entry entry) {
+		bytes -= entry.bytes;
+		entry.object = null;
+		entry.clear();
+		logger.debug("Dropped handle {}", entry.handle);
+	}
+
+	/**
+	 * A registered object, strongly referenced while its handle is in flight.
+	 */
+	private static class Entry extends SoftReference<Object> {
+
+		final String handle;
+		final long bytes;
+		/** The object until the handle is resolved; guarded by the registry. */
+		Object object;
+		/** The expiry time of the handle; guarded by the registry. */
+		long expiry;
+
+		Entry(String handle, Object object, long bytes,
+				ReferenceQueue<Object> queue) {
+			super(object, queue);
+			this.handle = handle;
+			this.object = object;
+			this.bytes = bytes;
+		}
+	}
+}
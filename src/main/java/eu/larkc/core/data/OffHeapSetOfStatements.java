@@ -0,0 +1,490 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.util.SystemProperties;
+
+/**
+ * An immutable set of RDF statements that is kept outside of the Java heap, so
+ * that large intermediate results of a workflow do not slow down the garbage
+ * collector. The statements are encoded with a {@link TermDictionary} of
+ * the set and stored as four ints each (subject, predicate, object and
+ * context id) in direct byte buffers. Once the buffers of a set reach
+ * {@value #MEMORY_PROPERTY} bytes, the remaining statements are spilled to a
+ * memory mapped temporary file in the directory {@value #DIRECTORY_PROPERTY}.
+ * 
+ * The statements are released once they are no longer referenced: the set
+ * drops its buffers and dictionary, and deletes the temporary file. The owner
+ * of the set holds a reference until it calls {@link #close()}, and every
+ * iterator over the statements holds one until it is closed or exhausted, so
+ * that the results derived from the statements stay readable after the owner
+ * closed the set. Whoever keeps the set itself beyond the lifetime of its
+ * owner takes a reference with {@link #retain()} and gives it back with
+ * {@link #release()}. The direct memory is reclaimed with the buffers, at the
+ * latest when the JVM runs short of direct memory. The temporary file of a
+ * set that was not released is deleted when the set is garbage collected, or
+ * when the JVM exits.
+ * 
+ * The set is thread safe. It is serialised as an
+ * {@link EncodedSetOfStatements}.
+ */
+public class OffHeapSetOfStatements implements SetOfStatements,
+		StatementStatistics {
+
+	/**
+	 * System property defining the number of statements above which the
+	 * plug-in managers move an input off the heap; 0 disables it.
+	 */
+	public static final String THRESHOLD_PROPERTY = "larkc.offHeap.threshold";
+
+	/**
+	 * System property defining the number of bytes of direct memory a set may
+	 * use before it spills to a file.
+	 */
+	public static final String MEMORY_PROPERTY = "larkc.offHeap.memory";
+
+	/** System property defining the directory of the spill files. */
+	public static final String DIRECTORY_PROPERTY = "larkc.offHeap.directory";
+
+	/** Default threshold, in statements. */
+	public static final long DEFAULT_THRESHOLD = 1000000;
+
+	/** Default direct memory per set, in bytes. */
+	public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+
+	private static final long serialVersionUID = 1L;
+
+	private static Logger logger = LoggerFactory
+			.getLogger(OffHeapSetOfStatements.class);
+
+	private static final int INTS_PER_STATEMENT = 4;
+
+	private static final int BYTES_PER_STATEMENT = 4 * INTS_PER_STATEMENT;
+
+	/** The number of statements per buffer. */
+	private static final int SEGMENT_STATEMENTS = 1 << 16;
+
+	private static final int SEGMENT_BYTES = SEGMENT_STATEMENTS
+			* BYTES_PER_STATEMENT;
+
+	private static final long threshold = SystemProperties.getLong(
+			THRESHOLD_PROPERTY, DEFAULT_THRESHOLD, 0);
+
+	private static final long defaultMemory = SystemProperties.getLong(
+			MEMORY_PROPERTY, DEFAULT_MEMORY, 0);
+
+	private static final File defaultDirectory = new File(System.getProperty(
+			DIRECTORY_PROPERTY, System.getProperty("java.io.tmpdir")));
+
+	/** The spill files of the sets that were neither closed nor collected. */
+	private static final Set<SpillFile> spillFiles = Collections
+			.synchronizedSet(new HashSet<SpillFile>());
+
+	/** The spill files of the sets that were garbage collected. */
+	private static final ReferenceQueue<OffHeapSetOfStatements> collected = new ReferenceQueue<OffHeapSetOfStatements>();
+
+	/** The dictionary, null once the set is closed. */
+	private transient volatile TermDictionary dictionary;
+	/** The buffers, null once the set is closed. */
+	private transient volatile List<ByteBuffer> segments;
+	private final transient int size;
+	private final transient long memory;
+	private final transient File directory;
+	/** The spill file, null if all statements fit in direct memory. */
+	private transient SpillFile file;
+	private transient RandomAccessFile fileAccess;
+	/** The number of references to the statements, see {@link #retain()}. */
+	private transient int references;
+	/** Whether the owner released its reference. */
+	private transient boolean ownerClosed;
+
+	/**
+	 * Constructor that uses the memory limit and spill directory given by the
+	 * system properties. The iterator is closed afterwards.
+	 * 
+	 * @param statements
+	 *            the statements
+	 */
+	public OffHeapSetOfStatements(CloseableIterator<Statement> statements) {
+		this(statements, defaultMemory, defaultDirectory);
+	}
+
+	/**
+	 * Constructor. The iterator is closed afterwards.
+	 * 
+	 * @param statements
+	 *            the statements
+	 * @param memory
+	 *            the number of bytes of direct memory to use before spilling
+	 * @param directory
+	 *            the directory of the spill file
+	 */
+	public OffHeapSetOfStatements(CloseableIterator<Statement> statements,
+			long memory, File directory) {
+		if (statements == null || directory == null) {
+			throw new IllegalArgumentException();
+		}
+		deleteCollectedSpillFiles();
+		this.references = 1;
+		this.ownerClosed = false;
+		this.memory = memory;
+		this.directory = directory;
+		dictionary = new TermDictionary();
+		segments = new ArrayList<ByteBuffer>();
+		int count = 0;
+		try {
+			ByteBuffer segment = null;
+			while (statements.hasNext()) {
+				if (segment == null || !segment.hasRemaining()) {
+					segment = allocate();
+					segments.add(segment);
+				}
+				Statement s = statements.next();
+				segment.putInt(dictionary.encode(s.getSubject()));
+				segment.putInt(dictionary.encode(s.getPredicate()));
+				segment.putInt(dictionary.encode(s.getObject()));
+				segment.putInt(dictionary.encode(s.getContext()));
+				count++;
+			}
+		} catch (IOException e) {
+			close();
+			throw new RuntimeException("Cannot spill statements to "
+					+ directory, e);
+		} finally {
+			statements.close();
+		}
+		size = count;
+		closeFile();
+	}
+
+	/**
+	 * Returns the number of statements above which the plug-in managers move
+	 * an input off the heap, see {@value #THRESHOLD_PROPERTY}.
+	 * 
+	 * @return the threshold, 0 if disabled
+	 */
+	public static long getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Returns the number of statements.
+	 * 
+	 * @return the number of statements
+	 */
+	public int size() {
+		return size;
+	}
+
+	public long getStatementCount() {
+		return size;
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
+	/**
+	 * Checks whether some statements were spilled to a file.
+	 * 
+	 * @return true if the set uses a spill file
+	 */
+	public synchronized boolean isSpilled() {
+		return file != null;
+	}
+
+	/**
+	 * Releases the reference of the owner. Once no iterator over the
+	 * statements is open and no other reference is held, the statements are
+	 * released: the buffers and the dictionary are dropped, and the spill file
+	 * is deleted. Closing a closed set has no effect.
+	 */
+	public synchronized void close() {
+		if (ownerClosed) {
+			return;
+		}
+		ownerClosed = true;
+		release();
+	}
+
+	/**
+	 * Takes a reference to the statements, which keeps them readable until it
+	 * is given back with {@link #release()}.
+	 * 
+	 * @return this set
+	 * @throws IllegalStateException
+	 *             if the statements were already released
+	 */
+	public synchronized OffHeapSetOfStatements retain() {
+		if (isClosed()) {
+			throw new IllegalStateException("Set of statements is closed!");
+		}
+		references++;
+		return this;
+	}
+
+	/**
+	 * Gives back a reference taken with {@link #retain()}. The statements are
+	 * released with the last reference.
+	 */
+	public synchronized void release() {
+		if (references == 0) {
+			return;
+		}
+		references--;
+		if (references > 0) {
+			return;
+		}
+		segments = null;
+		dictionary = null;
+		closeFile();
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Checks whether the statements were released.
+	 * 
+	 * @return true if the statements were released
+	 */
+	public boolean isClosed() {
+		return segments == null;
+	}
+
+	/**
+	 * Returns the statements. The iterator keeps the statements readable until
+	 * it is closed or exhausted.
+	 * 
+	 * @return an iterator over the statements
+	 * @throws IllegalStateException
+	 *             if the statements were released
+	 */
+	public CloseableIterator<Statement> getStatements() {
+		retain();
+		return new DecodingIterator();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.data.InformationSet#toRDF(eu.larkc.core.data.SetOfStatements
+	 * )
+	 */
+	@Override
+	public SetOfStatements toRDF(SetOfStatements data) {
+		return new SetOfStatementsImpl(getStatements()).toRDF(data);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "OffHeapSetOfStatements[" + size + " statements"
+				+ (file != null ? ", spilled to " + file.path : "") + "]";
+	}
+
+	private Object writeReplace() throws ObjectStreamException {
+		return new EncodedSetOfStatements(getStatements());
+	}
+
+	/**
+	 * Returns the buffer for the next statements: a direct buffer while the
+	 * memory limit is not reached, a mapped region of the spill file after.
+	 */
+	private synchronized ByteBuffer allocate() throws IOException {
+		long used = (long) segments.size() * SEGMENT_BYTES;
+		if (file == null && used + SEGMENT_BYTES <= memory) {
+			return ByteBuffer.allocateDirect(SEGMENT_BYTES);
+		}
+		if (file == null) {
+			File path = File.createTempFile("larkc-statements", ".bin",
+					directory);
+			path.deleteOnExit();
+			file = new SpillFile(this, path);
+			fileAccess = new RandomAccessFile(path, "rw");
+			logger.debug("Spilling statements to {}", path);
+		}
+		long offset = fileAccess.length();
+		return fileAccess.getChannel().map(FileChannel.MapMode.READ_WRITE,
+				offset, SEGMENT_BYTES);
+	}
+
+	/**
+	 * Closes the spill file. The mapped regions stay readable until they are
+	 * garbage collected.
+	 */
+	private synchronized void closeFile() {
+		if (fileAccess != null) {
+			try {
+				fileAccess.close();
+			} catch (IOException e) {
+				logger.warn("Cannot close " + file.path, e);
+			}
+			fileAccess = null;
+		}
+	}
+
+	/**
+	 * Deletes the spill files of the sets that were garbage collected without
+	 * being closed.
+	 */
+	private static void deleteCollectedSpillFiles() {
+		SpillFile file;
+		while ((file = (SpillFile) collected.poll()) != null) {
+			file.delete();
+		}
+	}
+
+	private Statement decode(int index) {
+		List<ByteBuffer> segments = this.segments;
+		TermDictionary dictionary = this.dictionary;
+		if (segments == null || dictionary == null) {
+			throw new IllegalStateException("Set of statements is closed!");
+		}
+		ByteBuffer segment = segments.get(index / SEGMENT_STATEMENTS);
+		int position = (index % SEGMENT_STATEMENTS) * BYTES_PER_STATEMENT;
+		Resource subject = (Resource) dictionary.decode(segment
+				.getInt(position));
+		URI predicate = (URI) dictionary.decode(segment.getInt(position + 4));
+		Value object = dictionary.decode(segment.getInt(position + 8));
+		int context = segment.getInt(position + 12);
+		if (context == TermDictionary.NO_TERM) {
+			return new StatementImpl(subject, predicate, object);
+		}
+		return new ContextStatementImpl(subject, predicate, object,
+				(Resource) dictionary.decode(context));
+	}
+
+	/**
+	 * The spill file of a set. The reference is enqueued once the set is
+	 * garbage collected, so that the file of a set that was not closed is
+	 * deleted as well.
+	 */
+	private static class SpillFile extends
+			PhantomReference<OffHeapSetOfStatements> {
+
+		private final File path;
+
+		SpillFile(OffHeapSetOfStatements set, File path) {
+			super(set, collected);
+			this.path = path;
+			spillFiles.add(this);
+		}
+
+		/**
+		 * Deletes the file. The mapped regions of the file stay readable until
+		 * they are garbage collected.
+		 */
+		void delete() {
+			spillFiles.remove(this);
+			clear();
+			if (path.exists() && !path.delete()) {
+				logger.debug("Cannot delete {} yet", path);
+			}
+		}
+	}
+
+	/**
+	 * Creates the statements one at a time while iterating. The iterator holds
+	 * a reference to the statements until it is closed or exhausted.
+	 */
+	private class DecodingIterator implements CloseableIterator<Statement> {
+
+		private int next;
+		private boolean isClosed;
+		private boolean released;
+
+		DecodingIterator() {
+			this.next = 0;
+			this.isClosed = false;
+			this.released = false;
+		}
+
+		public boolean hasNext() {
+			if (isClosed) {
+				throw new RuntimeException("Iterator is closed!");
+			}
+			if (next < size) {
+				return true;
+			}
+			releaseSet();
+			return false;
+		}
+
+		public Statement next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return decode(next++);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			isClosed = true;
+			releaseSet();
+		}
+
+		public boolean isClosed() {
+			return isClosed;
+		}
+
+		private void releaseSet() {
+			if (!released) {
+				released = true;
+				release();
+			}
+		}
+	}
+}
@@ -23,10 +23,14 @@ import org.openrdf.model.URI;
 /**
  * Named RDF graph pass by value or reference.
  * 
+ * The statistics of a graph passed by reference are usually not known
+ * without querying its store, so they may be
+ * {@link StatementStatistics#UNKNOWN}.
+ * 
  * @author vassil
  * 
  */
-public interface RdfGraph extends SetOfStatements {
+public interface RdfGraph extends SetOfStatements, StatementStatistics {
 
 	/**
 	 * 
@@ -46,6 +46,30 @@ public abstract class RdfGraphBase implements RdfGraph {
 		return name;
 	}
 
+	/**
+	 * Returns {@link StatementStatistics#UNKNOWN}; graphs that know their
+	 * size override it.
+	 */
+	public long getStatementCount() {
+		return UNKNOWN;
+	}
+
+	/**
+	 * Returns {@link StatementStatistics#UNKNOWN}; graphs that know the
+	 * number override it.
+	 */
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	/**
+	 * Returns {@link StatementStatistics#UNKNOWN}; graphs that know the
+	 * number override it.
+	 */
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
 	public String toString() {
 		return name.stringValue();
 	}
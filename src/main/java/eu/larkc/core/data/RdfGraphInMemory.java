@@ -29,18 +29,58 @@ import org.openrdf.model.impl.LiteralImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.model.impl.URIImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.rio.RDFHandlerException;
 import org.openrdf.rio.trig.TriGWriter;
 
 /**
+ * An RDF graph held in memory. When the graph is passed to another plug-in,
+ * i.e. embedded in RDF by {@link #toRDF(SetOfStatements)}, the encoding is
+ * chosen by the system property {@value #EMBEDDING_PROPERTY}:
+ * <ul>
+ * <li><code>binary</code> (default): the {@link BinaryGraphEncoding} of the
+ * statements, deflated unless {@value #DEFLATE_PROPERTY} is false</li>
+ * <li><code>handle</code>: a handle of the graph in the
+ * {@link ObjectHandleRegistry}; only usable within the same JVM</li>
+ * <li><code>trig</code>: the TriG text of the statements</li>
+ * </ul>
+ * 
  * @author vassil
  */
 public class RdfGraphInMemory extends RdfGraphBase {
 
-	private SetOfStatements data;
+	/** System property selecting how graphs are embedded in RDF. */
+	public static final String EMBEDDING_PROPERTY = "larkc.graphEmbedding";
+
+	/** System property disabling the compression of binary embeddings. */
+	public static final String DEFLATE_PROPERTY = "larkc.graphEmbedding.deflate";
+
+	/** Predicate of a graph embedded in TriG. */
+	public static final URI TRIG_PREDICATE = new URIImpl(DataFactory.LARKC_NS
+			+ "RDFGraphInMemory");
+
+	/** Predicate of a graph embedded in the binary encoding. */
+	public static final URI BINARY_PREDICATE = new URIImpl(
+			DataFactory.LARKC_NS + "RDFGraphBinary");
+
+	/** Predicate of a graph embedded as a handle. */
+	public static final URI HANDLE_PREDICATE = new URIImpl(
+			DataFactory.LARKC_NS + "RDFGraphHandle");
+
+	/** Rough memory used by a statement, in bytes. */
+	private static final long ESTIMATED_STATEMENT_BYTES = 100;
+
+	private static final String embedding = System.getProperty(
+			EMBEDDING_PROPERTY, "binary").trim();
+
+	private static final boolean deflate = !"false".equalsIgnoreCase(System
+			.getProperty(DEFLATE_PROPERTY));
+
+	private ImmutableSetOfStatements data;
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * Constructor
+	 * Constructor. An {@link ImmutableSetOfStatements} is shared rather than
+	 * copied.
 	 * 
 	 * @param graph
 	 *            is the named of the graph
@@ -49,7 +89,11 @@ public class RdfGraphInMemory extends RdfGraphBase {
 	 */
 	public RdfGraphInMemory(URI graph, Iterable<Statement> data) {
 		super(graph);
-		this.data = new SetOfStatementsImpl(data);
+		if (data instanceof ImmutableSetOfStatements) {
+			this.data = (ImmutableSetOfStatements) data;
+		} else {
+			this.data = new ImmutableSetOfStatements(data);
+		}
 	}
 
 	/**
@@ -62,13 +106,28 @@ public class RdfGraphInMemory extends RdfGraphBase {
 	 */
 	public RdfGraphInMemory(URI graph, Collection<Statement> data) {
 		super(graph);
-		this.data = new SetOfStatementsImpl(data);
+		this.data = new ImmutableSetOfStatements(data);
 	}
 
 	public CloseableIterator<Statement> getStatements() {
 		return data.getStatements();
 	}
 
+	@Override
+	public long getStatementCount() {
+		return data.getStatementCount();
+	}
+
+	@Override
+	public long getDistinctSubjectCount() {
+		return data.getDistinctSubjectCount();
+	}
+
+	@Override
+	public long getDistinctPredicateCount() {
+		return data.getDistinctPredicateCount();
+	}
+
 	public boolean equals(Object o) {
 		if (o instanceof RdfGraphInMemory == false) {
 			return false;
@@ -89,22 +148,11 @@ public class RdfGraphInMemory extends RdfGraphBase {
 	 */
 	public SetOfStatements toRDF(SetOfStatements data) {
 		try {
-			StringWriter sw = new StringWriter();
-			final TriGWriter writer = new TriGWriter(sw);
-			writer.startRDF();
-			CloseableIterator<Statement> iter = getStatements();
-			while (iter.hasNext()) {
-				Statement s = iter.next();
-				writer.handleStatement(s);
-			}
-
-			writer.endRDF();
-
 			ArrayList<Statement> list = new ArrayList<Statement>();
 			list.add(new StatementImpl(ValueFactoryImpl.getInstance()
-					.createBNode(), new URIImpl(DataFactory.LARKC_NS
-					+ "RDFGraphInMemory"), new LiteralImpl(sw.toString())));
-			iter = data.getStatements();
+					.createBNode(), getEmbeddingPredicate(), new LiteralImpl(
+					getEmbedding())));
+			CloseableIterator<Statement> iter = data.getStatements();
 			while (iter.hasNext()) {
 				Statement s = iter.next();
 				URI uri = (URI) s.getContext();
@@ -123,4 +171,32 @@ public class RdfGraphInMemory extends RdfGraphBase {
 		}
 
 	}
+
+	private URI getEmbeddingPredicate() {
+		if ("handle".equals(embedding)) {
+			return HANDLE_PREDICATE;
+		}
+		return "trig".equals(embedding) ? TRIG_PREDICATE : BINARY_PREDICATE;
+	}
+
+	private String getEmbedding() throws RDFHandlerException {
+		if ("handle".equals(embedding)) {
+			return ObjectHandleRegistry.getInstance().register(this,
+					data.size() * ESTIMATED_STATEMENT_BYTES);
+		}
+		if ("trig".equals(embedding)) {
+			StringWriter sw = new StringWriter();
+			final TriGWriter writer = new TriGWriter(sw);
+			writer.startRDF();
+			CloseableIterator<Statement> iter = getStatements();
+			while (iter.hasNext()) {
+				Statement s = iter.next();
+				writer.handleStatement(s);
+			}
+
+			writer.endRDF();
+			return sw.toString();
+		}
+		return BinaryGraphEncoding.encode(getName(), getStatements(), deflate);
+	}
 }
@@ -18,6 +18,9 @@
  */
 package eu.larkc.core.data;
 
+import java.util.List;
+import java.util.Map;
+
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
@@ -35,6 +38,30 @@ import eu.larkc.core.query.SPARQLQuery;
  */
 public interface RdfStoreConnection extends SPARQLEndpoint {
 
+	/**
+	 * Name of the variable that holds the index of the input row of a result
+	 * of {@link #executeSelect(SPARQLQuery, List)}.
+	 */
+	public static final String INPUT_ROW_VARIABLE = "larkcInputRow";
+
+	/**
+	 * Executes a SELECT query for a batch of input bindings in a single
+	 * evaluation, instead of executing it once per input. The input rows are
+	 * joined with the query like a VALUES clause. Every solution has an
+	 * additional last variable {@link #INPUT_ROW_VARIABLE}, which holds the
+	 * index of its input row as an integer literal. The solution modifiers of
+	 * the query, such as LIMIT, apply to all rows together.
+	 * 
+	 * @param query
+	 *            is select query to be executed, possibly prepared with
+	 *            {@link #prepareQuery(String)}
+	 * @param inputs
+	 *            the input bindings, one map of variable values per row
+	 * @return list of solutions of all rows
+	 */
+	public VariableBinding executeSelect(SPARQLQuery query,
+			List<Map<String, Value>> inputs);
+
 	/**
 	 * Adds a new statement.
 	 * 
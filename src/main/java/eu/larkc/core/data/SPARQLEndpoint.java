@@ -81,4 +81,20 @@ public interface SPARQLEndpoint {
 	 */
 	public VariableBinding executeSelect(SPARQLQuery query);
 
+	/**
+	 * Prepares a query for repeated execution. The query is parsed once; its
+	 * variables may be bound with {@link SPARQLQuery#setBinding} before every
+	 * execution.
+	 * 
+	 * Bound variables are only supported by the local store: a remote
+	 * endpoint, see {@link eu.larkc.core.query.RemoteSPARQLEndpoint}, sends
+	 * the text of the query and throws an {@link IllegalArgumentException}
+	 * when a query with bound variables is executed.
+	 * 
+	 * @param query
+	 *            is the SPARQL query
+	 * @return the prepared query
+	 */
+	public SPARQLQuery prepareQuery(String query);
+
 }
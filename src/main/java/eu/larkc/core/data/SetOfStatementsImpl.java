@@ -39,7 +39,8 @@ import eu.larkc.core.data.iterator.SimpleCloseableIterator;
  * @author vassil
  * 
  */
-public class SetOfStatementsImpl implements SetOfStatements {
+public class SetOfStatementsImpl implements SetOfStatements,
+		StatementStatistics {
 
 	private static final long serialVersionUID = 1L;
 	private final ArrayList<Statement> data;
@@ -63,8 +64,12 @@ public class SetOfStatementsImpl implements SetOfStatements {
 		}
 		this.data = new ArrayList<Statement>();
 		for (Statement st : data) {
-			this.data.add(new StatementImpl(st.getSubject(), st.getPredicate(),
-					st.getObject()));
+			if (st.getContext() == null) {
+				this.data.add(st);
+			} else {
+				this.data.add(new StatementImpl(st.getSubject(), st
+						.getPredicate(), st.getObject()));
+			}
 		}
 	}
 
@@ -102,6 +107,18 @@ public class SetOfStatementsImpl implements SetOfStatements {
 		return new SimpleCloseableIterator<Statement>(data.iterator());
 	}
 
+	public long getStatementCount() {
+		return data.size();
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
 	public boolean equals(Object o) {
 		if (o instanceof SetOfStatementsImpl == false) {
 			return false;
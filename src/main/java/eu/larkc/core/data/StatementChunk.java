@@ -0,0 +1,139 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openrdf.model.Statement;
+
+import eu.larkc.core.data.iterator.SimpleCloseableIterator;
+
+/**
+ * A bounded batch of statements that is part of a larger result streamed from
+ * one plug-in to the next. The last chunk of a stream is marked by
+ * {@link #isLast()}; it may be empty and then only serves as end-of-stream
+ * marker.
+ * 
+ * A plain {@link SetOfStatements} on a queue between two plug-ins is treated
+ * like a stream consisting of a single, last chunk.
+ */
+public class StatementChunk implements SetOfStatements,
+		StatementStatistics {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Statement> data;
+	private final boolean last;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param data
+	 *            the statements of this chunk, which are not copied
+	 * @param last
+	 *            whether this is the last chunk of the stream
+	 */
+	public StatementChunk(List<Statement> data, boolean last) {
+		if (data == null) {
+			throw new IllegalArgumentException();
+		}
+		this.data = data;
+		this.last = last;
+	}
+
+	/**
+	 * Creates the empty chunk that terminates a stream.
+	 * 
+	 * @return an end-of-stream marker
+	 */
+	public static StatementChunk endOfStream() {
+		return new StatementChunk(new ArrayList<Statement>(0), true);
+	}
+
+	/**
+	 * Checks whether the given queue element completes a stream, i.e. whether
+	 * it is a plain set of statements, null, or the last chunk of a stream.
+	 * 
+	 * @param element
+	 *            an element taken from a queue between two plug-ins
+	 * @return true if no more chunks follow the element
+	 */
+	public static boolean isEndOfStream(SetOfStatements element) {
+		return !(element instanceof StatementChunk)
+				|| ((StatementChunk) element).isLast();
+	}
+
+	/**
+	 * Returns whether this is the last chunk of the stream.
+	 * 
+	 * @return true if no more chunks follow
+	 */
+	public boolean isLast() {
+		return last;
+	}
+
+	/**
+	 * Returns the number of statements in this chunk.
+	 * 
+	 * @return the number of statements
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	public long getStatementCount() {
+		return data.size();
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
+	public CloseableIterator<Statement> getStatements() {
+		return new SimpleCloseableIterator<Statement>(data.iterator());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.data.InformationSet#toRDF(eu.larkc.core.data.SetOfStatements
+	 * )
+	 */
+	@Override
+	public SetOfStatements toRDF(SetOfStatements data) {
+		return new SetOfStatementsImpl(this.data).toRDF(data);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "StatementChunk[" + data.size() + " statements"
+				+ (last ? ", last" : "") + "]";
+	}
+}
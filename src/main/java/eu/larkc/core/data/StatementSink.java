@@ -0,0 +1,51 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import org.openrdf.model.Statement;
+
+/**
+ * Receiver of the statements a streaming plug-in produces. The statements are
+ * handed on to the next plug-ins in bounded chunks as soon as enough of them
+ * have been emitted.
+ */
+public interface StatementSink {
+
+	/**
+	 * Emits a single statement.
+	 * 
+	 * @param statement
+	 *            the statement
+	 */
+	public void emit(Statement statement);
+
+	/**
+	 * Emits all statements of the given set.
+	 * 
+	 * @param statements
+	 *            the statements, may be null
+	 */
+	public void emit(SetOfStatements statements);
+
+	/**
+	 * Hands on all statements emitted so far, even if they do not fill a
+	 * whole chunk.
+	 */
+	public void flush();
+}
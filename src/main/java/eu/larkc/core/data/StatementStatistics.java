@@ -0,0 +1,56 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+/**
+ * Size information of a set of statements that is available without iterating
+ * the statements, e.g. for schedulers, caches and metrics. Sets of statements
+ * may implement this interface; RDF graphs and labelled groups of statements
+ * always do.
+ * 
+ * The numbers are estimates: a set whose statements are stored elsewhere
+ * reports the numbers it observed last and may be outdated. Numbers that
+ * cannot be obtained cheaply are reported as {@link #UNKNOWN}.
+ */
+public interface StatementStatistics {
+
+	/** The value of a number that is not known. */
+	public static final long UNKNOWN = -1;
+
+	/**
+	 * Returns the number of statements.
+	 * 
+	 * @return the number of statements, or {@link #UNKNOWN}
+	 */
+	public long getStatementCount();
+
+	/**
+	 * Returns the number of distinct subjects of the statements.
+	 * 
+	 * @return the number of subjects, or {@link #UNKNOWN}
+	 */
+	public long getDistinctSubjectCount();
+
+	/**
+	 * Returns the number of distinct predicates of the statements.
+	 * 
+	 * @return the number of predicates, or {@link #UNKNOWN}
+	 */
+	public long getDistinctPredicateCount();
+}
@@ -0,0 +1,135 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openrdf.model.Value;
+
+/**
+ * Maps the RDF terms (URIs, blank nodes and literals) to integer ids, so that
+ * statements can be stored as triples of ids and every term is kept in memory
+ * only once. The dictionary is thread safe; looking up a term by its id does
+ * not lock.
+ * 
+ * Terms are never removed from a dictionary, so a dictionary lives as long as
+ * the data encoded with it: by default every encoded set of statements has a
+ * dictionary of its own, and sets that are used together, e.g. within one
+ * workflow, may share one to store their common terms once.
+ */
+public class TermDictionary {
+
+	/** The id of the absent term, e.g. the context of a statement without. */
+	public static final int NO_TERM = 0;
+
+	/** The id returned by {@link #getId(Value)} for a term not contained. */
+	public static final int UNKNOWN_TERM = -1;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final ConcurrentMap<Value, Integer> ids;
+	/** The terms by id; replaced by a larger copy when full. */
+	private volatile Value[] terms;
+	/** The next free id, guarded by this. */
+	private int nextId;
+
+	/**
+	 * Constructor for an empty dictionary.
+	 */
+	public TermDictionary() {
+		ids = new ConcurrentHashMap<Value, Integer>();
+		terms = new Value[INITIAL_CAPACITY];
+		nextId = NO_TERM + 1;
+	}
+
+	/**
+	 * Returns the id of a term, adding the term to the dictionary if it is
+	 * not contained yet.
+	 * 
+	 * @param term
+	 *            the term, may be null
+	 * @return the id of the term, {@link #NO_TERM} for null
+	 */
+	public int encode(Value term) {
+		if (term == null) {
+			return NO_TERM;
+		}
+		Integer id = ids.get(term);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			id = ids.get(term);
+			if (id != null) {
+				return id;
+			}
+			Value[] current = terms;
+			if (nextId == current.length) {
+				Value[] larger = new Value[current.length * 2];
+				System.arraycopy(current, 0, larger, 0, current.length);
+				current = larger;
+			}
+			id = nextId++;
+			current[id] = term;
+			terms = current;
+			ids.put(term, id);
+			return id;
+		}
+	}
+
+	/**
+	 * Returns the id of a term without adding it to the dictionary.
+	 * 
+	 * @param term
+	 *            the term, may be null
+	 * @return the id of the term, {@link #NO_TERM} for null, or
+	 *         {@link #UNKNOWN_TERM} if the term is not contained
+	 */
+	public int getId(Value term) {
+		if (term == null) {
+			return NO_TERM;
+		}
+		Integer id = ids.get(term);
+		return id == null ? UNKNOWN_TERM : id;
+	}
+
+	/**
+	 * Returns the term with the given id.
+	 * 
+	 * @param id
+	 *            the id returned by {@link #encode(Value)}
+	 * @return the term, or null for {@link #NO_TERM}
+	 */
+	public Value decode(int id) {
+		if (id == NO_TERM) {
+			return null;
+		}
+		return terms[id];
+	}
+
+	/**
+	 * Returns the number of terms in the dictionary.
+	 * 
+	 * @return the number of terms
+	 */
+	public int size() {
+		return ids.size();
+	}
+}
@@ -0,0 +1,440 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data.iterator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+
+import eu.larkc.core.data.CloseableIterator;
+
+/**
+ * Lazy operators over closeable iterators. The operators do not copy the
+ * iterated items: every item is pulled from the source iterator only when it
+ * is requested, so streams of any size are processed in constant memory.
+ * 
+ * Closing an operator closes its source iterators. An operator also closes
+ * its sources as soon as it has no more items to return, e.g. when a limit
+ * is reached, so that a consumer that stops at the end of the stream does
+ * not keep store resources open.
+ */
+public final class Iterators {
+
+	private Iterators() {
+	}
+
+	/**
+	 * A condition on the iterated items.
+	 * 
+	 * @param <T>
+	 *            type of the items
+	 */
+	public interface Condition<T> {
+
+		/**
+		 * Checks whether an item is accepted.
+		 * 
+		 * @param item
+		 *            the item
+		 * @return true to keep the item, false to skip it
+		 */
+		public boolean accept(T item);
+	}
+
+	/**
+	 * A mapping of the iterated items to other items.
+	 * 
+	 * @param <S>
+	 *            type of the source items
+	 * @param <T>
+	 *            type of the mapped items
+	 */
+	public interface Mapping<S, T> {
+
+		/**
+		 * Maps an item.
+		 * 
+		 * @param item
+		 *            the source item
+		 * @return the mapped item
+		 */
+		public T map(S item);
+	}
+
+	/**
+	 * Returns the items that satisfy a condition.
+	 * 
+	 * @param source
+	 *            the source iterator
+	 * @param condition
+	 *            the condition
+	 * @return the accepted items
+	 */
+	public static <T> CloseableIterator<T> filter(
+			final CloseableIterator<T> source,
+			final Condition<? super T> condition) {
+		if (source == null || condition == null) {
+			throw new IllegalArgumentException();
+		}
+		return new LazyIterator<T>(source) {
+			@Override
+			protected boolean fetch() {
+				while (source.hasNext()) {
+					T item = source.next();
+					if (condition.accept(item)) {
+						setNext(item);
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the statements that match a pattern.
+	 * 
+	 * @param source
+	 *            the source statements
+	 * @param subj
+	 *            the subject, or null for any subject
+	 * @param pred
+	 *            the predicate, or null for any predicate
+	 * @param obj
+	 *            the object, or null for any object
+	 * @return the matching statements
+	 */
+	public static CloseableIterator<Statement> match(
+			CloseableIterator<Statement> source, final Resource subj,
+			final URI pred, final Value obj) {
+		return filter(source, new Condition<Statement>() {
+			public boolean accept(Statement s) {
+				return (subj == null || subj.equals(s.getSubject()))
+						&& (pred == null || pred.equals(s.getPredicate()))
+						&& (obj == null || obj.equals(s.getObject()));
+			}
+		});
+	}
+
+	/**
+	 * Returns the statements of a context.
+	 * 
+	 * @param source
+	 *            the source statements
+	 * @param context
+	 *            the context; null selects the statements without a context
+	 * @return the statements of the context
+	 */
+	public static CloseableIterator<Statement> inContext(
+			CloseableIterator<Statement> source, final Resource context) {
+		return filter(source, new Condition<Statement>() {
+			public boolean accept(Statement s) {
+				return context == null ? s.getContext() == null : context
+						.equals(s.getContext());
+			}
+		});
+	}
+
+	/**
+	 * Maps every item to another one, e.g. projects statements to one of their
+	 * terms.
+	 * 
+	 * @param source
+	 *            the source iterator
+	 * @param mapping
+	 *            the mapping
+	 * @return the mapped items
+	 */
+	public static <S, T> CloseableIterator<T> map(
+			final CloseableIterator<S> source,
+			final Mapping<? super S, ? extends T> mapping) {
+		if (source == null || mapping == null) {
+			throw new IllegalArgumentException();
+		}
+		return new LazyIterator<T>(source) {
+			@Override
+			protected boolean fetch() {
+				if (source.hasNext()) {
+					setNext(mapping.map(source.next()));
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the objects of the statements.
+	 * 
+	 * @param source
+	 *            the source statements
+	 * @return the objects
+	 */
+	public static CloseableIterator<Value> objects(
+			CloseableIterator<Statement> source) {
+		return map(source, new Mapping<Statement, Value>() {
+			public Value map(Statement s) {
+				return s.getObject();
+			}
+		});
+	}
+
+	/**
+	 * Skips a number of items and returns at most a number of the following
+	 * ones.
+	 * 
+	 * @param source
+	 *            the source iterator
+	 * @param offset
+	 *            the number of items to skip
+	 * @param limit
+	 *            the maximum number of items to return, or a negative number
+	 *            for no limit
+	 * @return the items within the range
+	 */
+	public static <T> CloseableIterator<T> slice(
+			final CloseableIterator<T> source, final long offset,
+			final long limit) {
+		if (source == null || offset < 0) {
+			throw new IllegalArgumentException();
+		}
+		return new LazyIterator<T>(source) {
+			private long skipped = 0;
+			private long returned = 0;
+
+			@Override
+			protected boolean fetch() {
+				while (skipped < offset && source.hasNext()) {
+					source.next();
+					skipped++;
+				}
+				if ((limit >= 0 && returned >= limit) || !source.hasNext()) {
+					return false;
+				}
+				setNext(source.next());
+				returned++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Returns at most a number of items.
+	 * 
+	 * @param source
+	 *            the source iterator
+	 * @param limit
+	 *            the maximum number of items to return
+	 * @return the first items
+	 */
+	public static <T> CloseableIterator<T> limit(CloseableIterator<T> source,
+			long limit) {
+		return slice(source, 0, limit);
+	}
+
+	/**
+	 * Removes duplicate items. To bound the memory used, only the last
+	 * distinct items are remembered; a duplicate that follows more than that
+	 * number of distinct items after its original is returned again.
+	 * 
+	 * @param source
+	 *            the source iterator
+	 * @param remembered
+	 *            the number of distinct items to remember
+	 * @return the items without duplicates
+	 */
+	public static <T> CloseableIterator<T> distinct(
+			final CloseableIterator<T> source, final int remembered) {
+		if (source == null || remembered <= 0) {
+			throw new IllegalArgumentException();
+		}
+		final Map<T, Boolean> seen = new LinkedHashMap<T, Boolean>(16, 0.75f,
+				true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<T, Boolean> eldest) {
+				return size() > remembered;
+			}
+		};
+		return new LazyIterator<T>(source) {
+			@Override
+			protected boolean fetch() {
+				while (source.hasNext()) {
+					T item = source.next();
+					if (seen.put(item, Boolean.TRUE) == null) {
+						setNext(item);
+						return true;
+					}
+				}
+				seen.clear();
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the items of several iterators, one after the other. Every
+	 * source is closed as soon as it is exhausted.
+	 * 
+	 * @param sources
+	 *            the source iterators
+	 * @return the items of all sources
+	 */
+	public static <T> CloseableIterator<T> concat(
+			final CloseableIterator<? extends T>... sources) {
+		return concat(Arrays.asList(sources));
+	}
+
+	/**
+	 * Returns the items of several iterators, one after the other. Every
+	 * source is closed as soon as it is exhausted.
+	 * 
+	 * @param sources
+	 *            the source iterators
+	 * @return the items of all sources
+	 */
+	public static <T> CloseableIterator<T> concat(
+			final List<? extends CloseableIterator<? extends T>> sources) {
+		if (sources == null) {
+			throw new IllegalArgumentException();
+		}
+		return new LazyIterator<T>(sources.toArray(new CloseableIterator<?>[0])) {
+			private int current = 0;
+
+			@Override
+			protected boolean fetch() {
+				while (current < sources.size()) {
+					CloseableIterator<? extends T> source = sources.get(current);
+					if (source.hasNext()) {
+						setNext(source.next());
+						return true;
+					}
+					source.close();
+					current++;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Adapts a plain iterator.
+	 * 
+	 * @param iterator
+	 *            the iterator
+	 * @return the closeable iterator
+	 */
+	public static <T> CloseableIterator<T> of(Iterator<T> iterator) {
+		if (iterator instanceof CloseableIterator) {
+			return (CloseableIterator<T>) iterator;
+		}
+		return new SimpleCloseableIterator<T>(iterator);
+	}
+
+	/**
+	 * Base of the operators: looks one item ahead and closes the sources once
+	 * there are no more items. An exhausted operator keeps answering that it
+	 * has no next item; only an explicitly closed one raises an exception.
+	 * 
+	 * @param <T>
+	 *            type of the returned items
+	 */
+	private abstract static class LazyIterator<T> implements
+			CloseableIterator<T> {
+
+		private final CloseableIterator<?>[] sources;
+		private T next;
+		private boolean hasNext;
+		private boolean isExhausted;
+		private boolean isClosed;
+
+		LazyIterator(CloseableIterator<?>... sources) {
+			this.sources = sources;
+			this.hasNext = false;
+			this.isExhausted = false;
+			this.isClosed = false;
+		}
+
+		/**
+		 * Fetches the next item and passes it to {@link #setNext(Object)}.
+		 * 
+		 * @return false if there are no more items
+		 */
+		protected abstract boolean fetch();
+
+		protected void setNext(T item) {
+			next = item;
+		}
+
+		public boolean hasNext() {
+			if (isClosed) {
+				throw new RuntimeException("Iterator is closed!");
+			}
+			if (!hasNext && !isExhausted) {
+				hasNext = fetch();
+				if (!hasNext) {
+					isExhausted = true;
+					closeSources();
+				}
+			}
+			return hasNext;
+		}
+
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T result = next;
+			next = null;
+			hasNext = false;
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			isClosed = true;
+			next = null;
+			closeSources();
+		}
+
+		public boolean isClosed() {
+			return isClosed;
+		}
+
+		private void closeSources() {
+			for (CloseableIterator<?> source : sources) {
+				if (source != null && !source.isClosed()) {
+					source.close();
+				}
+			}
+		}
+	}
+}
@@ -30,6 +30,8 @@ public class ORDICloseableIterator implements CloseableIterator<Statement> {
 
 	private com.ontotext.ordi.iterator.CloseableIterator<? extends TStatement> iter;
 	private boolean isClosed;
+	private volatile long count;
+	private volatile boolean exhausted;
 
 	public ORDICloseableIterator(
 			com.ontotext.ordi.iterator.CloseableIterator<? extends TStatement> iter) {
@@ -38,22 +40,48 @@ public class ORDICloseableIterator implements CloseableIterator<Statement> {
 		}
 		this.iter = iter;
 		isClosed = false;
+		count = 0;
+		exhausted = false;
 	}
 
 	public boolean hasNext() {
 		if (isClosed) {
 			throw new IllegalStateException("Iterator is closed!");
 		}
-		return iter.hasNext();
+		if (iter.hasNext()) {
+			return true;
+		}
+		exhausted = true;
+		return false;
 	}
 
 	public Statement next() {
 		if (hasNext() == false) {
 			throw new NoSuchElementException();
 		}
+		count++;
 		return (Statement) iter.next();
 	}
 
+	/**
+	 * Returns the number of statements returned so far; once the iterator is
+	 * exhausted, this is the number of statements that matched the search.
+	 * 
+	 * @return the number of statements returned by {@link #next()}
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Checks whether all statements were returned.
+	 * 
+	 * @return true if {@link #hasNext()} returned false
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
 	public void remove() {
 		iter.remove();
 	}
@@ -61,6 +89,7 @@ public class ORDICloseableIterator implements CloseableIterator<Statement> {
 	public void close() {
 		iter.close();
 		iter = null;
+		isClosed = true;
 	}
 
 	public boolean isClosed() {
@@ -0,0 +1,295 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data.util;
+
+import info.aduna.iteration.CloseableIteration;
+import info.aduna.iteration.CloseableIteratorIteration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.ValueFactoryImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.Dataset;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.algebra.QueryRoot;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Var;
+import org.openrdf.query.algebra.evaluation.TripleSource;
+import org.openrdf.query.algebra.evaluation.impl.BindingAssigner;
+import org.openrdf.query.algebra.evaluation.impl.CompareOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.ConjunctiveConstraintSplitter;
+import org.openrdf.query.algebra.evaluation.impl.ConstantOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.EvaluationStatistics;
+import org.openrdf.query.algebra.evaluation.impl.EvaluationStrategyImpl;
+import org.openrdf.query.algebra.evaluation.impl.FilterOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.QueryJoinOptimizer;
+import org.openrdf.query.algebra.evaluation.impl.SameTermFilterOptimizer;
+import org.openrdf.query.impl.EmptyBindingSet;
+import org.openrdf.query.parser.ParsedQuery;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.ImmutableSetOfStatements;
+import eu.larkc.core.data.IndexedRdfGraph;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.VariableBinding;
+import eu.larkc.core.data.VariableBindingImpl;
+import eu.larkc.core.query.SPARQLQuery;
+import eu.larkc.core.query.SPARQLQueryImpl;
+
+/**
+ * Evaluates SPARQL queries over an {@link IndexedRdfGraph} in memory, with the
+ * query algebra of Sesame: the parsed query is optimised, with the join order
+ * based on the number of statements matching every triple pattern, and then
+ * evaluated against the indexes of the graph. Nothing is written to the RDF
+ * store.
+ */
+public class InMemoryQueryEvaluator {
+
+	private final IndexedRdfGraph graph;
+	private final ValueFactory valueFactory;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param graph
+	 *            the graph to evaluate the queries against
+	 */
+	public InMemoryQueryEvaluator(IndexedRdfGraph graph) {
+		if (graph == null) {
+			throw new IllegalArgumentException();
+		}
+		this.graph = graph;
+		this.valueFactory = new ValueFactoryImpl();
+	}
+
+	/**
+	 * Evaluates a SPARQL ASK query.
+	 * 
+	 * @param query
+	 *            the query
+	 * @return whether the query has a solution
+	 */
+	public boolean executeAsk(SPARQLQuery query) {
+		CloseableIteration<BindingSet, QueryEvaluationException> solutions = evaluate(query);
+		try {
+			return solutions.hasNext();
+		} catch (QueryEvaluationException e) {
+			throw new RuntimeException(e);
+		} finally {
+			close(solutions);
+		}
+	}
+
+	/**
+	 * Evaluates a SPARQL SELECT query.
+	 * 
+	 * @param query
+	 *            the query
+	 * @return the variable bindings
+	 */
+	public VariableBinding executeSelect(SPARQLQuery query) {
+		List<String> variables = new ArrayList<String>(getParsedQuery(query)
+				.getTupleExpr().getBindingNames());
+		List<VariableBinding.Binding> rows = new ArrayList<VariableBinding.Binding>();
+		CloseableIteration<BindingSet, QueryEvaluationException> solutions = evaluate(query);
+		try {
+			while (solutions.hasNext()) {
+				BindingSet solution = solutions.next();
+				VariableBindingImpl.BindingRow row = new VariableBindingImpl.BindingRow();
+				for (String variable : variables) {
+					row.addValue(solution.getValue(variable));
+				}
+				rows.add(row);
+			}
+		} catch (QueryEvaluationException e) {
+			throw new RuntimeException(e);
+		} finally {
+			close(solutions);
+		}
+		return new VariableBindingImpl(rows, variables);
+	}
+
+	/**
+	 * Evaluates a SPARQL CONSTRUCT or DESCRIBE query.
+	 * 
+	 * @param query
+	 *            the query
+	 * @return the constructed statements
+	 */
+	public SetOfStatements executeConstruct(SPARQLQuery query) {
+		List<Statement> statements = new ArrayList<Statement>();
+		CloseableIteration<BindingSet, QueryEvaluationException> solutions = evaluate(query);
+		try {
+			while (solutions.hasNext()) {
+				BindingSet solution = solutions.next();
+				Value subject = solution.getValue("subject");
+				Value predicate = solution.getValue("predicate");
+				Value object = solution.getValue("object");
+				Value context = solution.getValue("context");
+				// partial matches of the template are dropped, as by Sesame
+				if (subject instanceof Resource == false
+						|| predicate instanceof URI == false || object == null
+						|| (context != null && context instanceof Resource == false)) {
+					continue;
+				}
+				if (context == null) {
+					statements.add(new StatementImpl((Resource) subject,
+							(URI) predicate, object));
+				} else {
+					statements.add(new ContextStatementImpl((Resource) subject,
+							(URI) predicate, object, (Resource) context));
+				}
+			}
+		} catch (QueryEvaluationException e) {
+			throw new RuntimeException(e);
+		} finally {
+			close(solutions);
+		}
+		return new ImmutableSetOfStatements(statements);
+	}
+
+	private CloseableIteration<BindingSet, QueryEvaluationException> evaluate(
+			SPARQLQuery query) {
+		ParsedQuery parsed = getParsedQuery(query);
+		TupleExpr tupleExpr = parsed.getTupleExpr().clone();
+		if (tupleExpr instanceof QueryRoot == false) {
+			tupleExpr = new QueryRoot(tupleExpr);
+		}
+		Dataset dataset = parsed.getDataset();
+		BindingSet bindings = EmptyBindingSet.getInstance();
+		EvaluationStrategyImpl strategy = new EvaluationStrategyImpl(
+				new GraphTripleSource(), dataset);
+
+		new BindingAssigner().optimize(tupleExpr, dataset, bindings);
+		new ConstantOptimizer(strategy).optimize(tupleExpr, dataset, bindings);
+		new CompareOptimizer().optimize(tupleExpr, dataset, bindings);
+		new ConjunctiveConstraintSplitter().optimize(tupleExpr, dataset,
+				bindings);
+		new SameTermFilterOptimizer().optimize(tupleExpr, dataset, bindings);
+		new QueryJoinOptimizer(new GraphStatistics()).optimize(tupleExpr,
+				dataset, bindings);
+		new FilterOptimizer().optimize(tupleExpr, dataset, bindings);
+
+		try {
+			return strategy.evaluate(tupleExpr, bindings);
+		} catch (QueryEvaluationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private ParsedQuery getParsedQuery(SPARQLQuery query) {
+		if (query instanceof SPARQLQueryImpl == false) {
+			throw new IllegalArgumentException(
+					"Only SPARQLQueryImpl is supported now!");
+		}
+		return ((SPARQLQueryImpl) query).getParsedQuery();
+	}
+
+	private void close(
+			CloseableIteration<BindingSet, QueryEvaluationException> iteration) {
+		try {
+			iteration.close();
+		} catch (QueryEvaluationException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Gives the query algebra access to the statements of the graph.
+	 */
+	private class GraphTripleSource implements TripleSource {
+
+		public CloseableIteration<? extends Statement, QueryEvaluationException> getStatements(
+				Resource subj, URI pred, Value obj, Resource... contexts)
+				throws QueryEvaluationException {
+			if (contexts.length == 1 && contexts[0] instanceof URI) {
+				return iteration(graph.search(subj, pred, obj,
+						(URI) contexts[0]));
+			}
+			CloseableIterator<Statement> statements = graph.search(subj, pred,
+					obj, null);
+			if (contexts.length == 0) {
+				return iteration(statements);
+			}
+			// the null context stands for the statements without a context
+			List<Statement> matches = new ArrayList<Statement>();
+			List<Resource> accepted = Arrays.asList(contexts);
+			while (statements.hasNext()) {
+				Statement statement = statements.next();
+				if (accepted.contains(statement.getContext())) {
+					matches.add(statement);
+				}
+			}
+			statements.close();
+			return iteration(matches.iterator());
+		}
+
+		public ValueFactory getValueFactory() {
+			return valueFactory;
+		}
+
+		private CloseableIteration<Statement, QueryEvaluationException> iteration(
+				Iterator<Statement> statements) {
+			return new CloseableIteratorIteration<Statement, QueryEvaluationException>(
+					statements);
+		}
+	}
+
+	/**
+	 * Estimates the number of solutions of a triple pattern with the indexes
+	 * of the graph, so that the most selective patterns are joined first.
+	 */
+	private class GraphStatistics extends EvaluationStatistics {
+
+		@Override
+		protected CardinalityCalculator createCardinalityCalculator() {
+			return new GraphCardinalityCalculator();
+		}
+
+		private class GraphCardinalityCalculator extends CardinalityCalculator {
+
+			@Override
+			protected double getCardinality(StatementPattern sp) {
+				Value subject = getValue(sp.getSubjectVar());
+				Value predicate = getValue(sp.getPredicateVar());
+				Value object = getValue(sp.getObjectVar());
+				if ((subject != null && subject instanceof Resource == false)
+						|| (predicate != null && predicate instanceof URI == false)) {
+					return 0;
+				}
+				return graph.count((Resource) subject, (URI) predicate, object);
+			}
+
+			private Value getValue(Var var) {
+				return var != null && var.hasValue() ? var.getValue() : null;
+			}
+		}
+	}
+}
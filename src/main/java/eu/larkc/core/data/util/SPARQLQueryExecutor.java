@@ -18,17 +18,19 @@
  */
 package eu.larkc.core.data.util;
 
-import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.impl.URIImpl;
 
-import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.DataFactory;
 import eu.larkc.core.data.DataSet;
+import eu.larkc.core.data.IndexedRdfGraph;
 import eu.larkc.core.data.LabelledGroupOfStatements;
 import eu.larkc.core.data.RdfStoreConnection;
 import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.TermDictionary;
 import eu.larkc.core.data.VariableBinding;
 import eu.larkc.core.query.SPARQLQuery;
+import eu.larkc.core.util.RDFConstants;
 
 /**
  * SPARQLQueryExecutor is an utility class to execute SPARQL queries over
@@ -36,11 +38,19 @@ import eu.larkc.core.query.SPARQLQuery;
  * RDF data types. Please note that some of the RDF data merges could be IO and
  * computationally expensive operations and should be performed with care.
  * 
+ * Queries over RDF data in memory are evaluated in memory, see
+ * {@link InMemoryQueryEvaluator}; only data sets and labelled groups of
+ * statements are queried in the RDF store.
+ * 
  * @author vassil
  * 
  */
 public class SPARQLQueryExecutor {
 
+	/** The name of the graphs built to evaluate queries in memory. */
+	private static final URI LOCAL_GRAPH = new URIImpl(
+			RDFConstants.LARKC_NAMESPACE + "LocalQueryGraph");
+
 	/**
 	 * Executes SPARQL ASK query against arbitrary RDF data type.
 	 * 
@@ -62,7 +72,7 @@ public class SPARQLQueryExecutor {
 			query.setLabelledGroup(label);
 			return (Boolean) executeLocalStoreQuery(query);
 		}
-		return (Boolean) executeLocalMemoryQuery(query, rdf);
+		return createEvaluator(rdf).executeAsk(query);
 	}
 
 	/**
@@ -88,7 +98,7 @@ public class SPARQLQueryExecutor {
 			query.setLabelledGroup(label);
 			return (SetOfStatements) executeLocalStoreQuery(query);
 		}
-		return (SetOfStatements) executeLocalMemoryQuery(query, rdf);
+		return createEvaluator(rdf).executeConstruct(query);
 	}
 
 	/**
@@ -112,7 +122,7 @@ public class SPARQLQueryExecutor {
 			query.setLabelledGroup(label);
 			return (VariableBinding) executeLocalStoreQuery(query);
 		}
-		return (VariableBinding) executeLocalMemoryQuery(query, rdf);
+		return createEvaluator(rdf).executeSelect(query);
 	}
 
 	private Object executeLocalStoreQuery(SPARQLQuery query) {
@@ -127,29 +137,16 @@ public class SPARQLQueryExecutor {
 		}
 	}
 
-	private Object executeLocalMemoryQuery(SPARQLQuery query,
-			SetOfStatements rdf) {
-		RdfStoreConnection con = DataFactory.INSTANCE
-				.createRdfStoreConnection();
-		LabelledGroupOfStatements label = con.createLabelledGroupOfStatements();
-		try {
-			CloseableIterator<Statement> iter = rdf.getStatements();
-			while (iter.hasNext()) {
-				Statement s = iter.next();
-
-				if (s != null) {
-					con.addStatement(s.getSubject(), s.getPredicate(), s
-							.getObject(),
-							s.getContext() instanceof URI ? (URI) s
-									.getContext() : label.getLabel(), label
-									.getLabel());
-				}
-			}
-			query.setLabelledGroup(label.getLabel());
-			Object result = executeLocalStoreQuery(query);
-			return result;
-		} finally {
-			// con.removeStatement(null, null, null, label.getLabel());
+	/**
+	 * Creates an evaluator for RDF data in memory. The data is indexed first,
+	 * unless it is an indexed graph already; its terms are encoded with a
+	 * dictionary of their own, which is dropped with the index.
+	 */
+	private InMemoryQueryEvaluator createEvaluator(SetOfStatements rdf) {
+		if (rdf instanceof IndexedRdfGraph) {
+			return new InMemoryQueryEvaluator((IndexedRdfGraph) rdf);
 		}
+		return new InMemoryQueryEvaluator(new IndexedRdfGraph(LOCAL_GRAPH,
+				rdf.getStatements(), new TermDictionary()));
 	}
 }
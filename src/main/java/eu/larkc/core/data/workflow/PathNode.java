@@ -32,6 +32,7 @@ public class PathNode {
 
 	private List<String> inputIds;
 	private String ouputId;
+	private int pipelineDepth;
 
 	/**
 	 * Constructor.
@@ -39,6 +40,7 @@ public class PathNode {
 	public PathNode() {
 		inputIds = new ArrayList<String>();
 		ouputId = null;
+		pipelineDepth = 1;
 	}
 
 	/**
@@ -79,4 +81,24 @@ public class PathNode {
 		return ouputId;
 	}
 
+	/**
+	 * Setter. Sets or updates the pipeline depth to the passed value.
+	 * 
+	 * @param depth
+	 *            the number of queries the plug-ins of the path may work on at
+	 *            the same time
+	 */
+	public void setPipelineDepth(int depth) {
+		this.pipelineDepth = depth;
+	}
+
+	/**
+	 * Getter. Retrieves the pipeline depth.
+	 * 
+	 * @return the pipeline depth, 1 if the path is not pipelined
+	 */
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
 }
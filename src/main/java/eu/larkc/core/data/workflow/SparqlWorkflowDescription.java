@@ -47,6 +47,7 @@ import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.SetOfStatementsImpl;
 import eu.larkc.core.pluginManager.remote.GAT.ResourceDescription;
 import eu.larkc.core.pluginregistry.PluginRegistryQueryException;
+import eu.larkc.core.queue.Queue;
 
 /**
  * This class provides functions for extracting information out of a workflow
@@ -347,6 +348,49 @@ public class SparqlWorkflowDescription {
 		return new SetOfStatementsImpl(stmtList);
 	}
 
+	/**
+	 * Returns the capacity of the queues connecting a plugin to its previous
+	 * plugins, as given by the plugin parameter
+	 * {@link WorkflowDescriptionPredicates#HAS_INPUT_QUEUE_CAPACITY}.
+	 * 
+	 * @param pluginID
+	 *            the plugin ID
+	 * @return the capacity of each input queue of the plugin, or
+	 *         {@link Queue#DEFAULT_CAPACITY} if none (or an invalid one) is
+	 *         specified
+	 * @throws QueryEvaluationException
+	 * @throws MalformedQueryException
+	 * @throws RepositoryException
+	 */
+	public int getInputQueueCapacity(String pluginID)
+			throws RepositoryException, MalformedQueryException,
+			QueryEvaluationException {
+		int capacity = Queue.DEFAULT_CAPACITY;
+
+		CloseableIterator<Statement> statements = getPluginParameters(
+				pluginID).getStatements();
+		Statement stmt;
+		while (statements.hasNext()) {
+			stmt = statements.next();
+			if (stmt.getPredicate().equals(
+					WorkflowDescriptionPredicates.HAS_INPUT_QUEUE_CAPACITY)) {
+				try {
+					capacity = Integer.parseInt(stmt.getObject().stringValue());
+				} catch (NumberFormatException e) {
+					logger.warn("Invalid input queue capacity for plugin {}: {}",
+							pluginID, stmt.getObject().stringValue());
+				}
+			}
+		}
+
+		if (capacity < 1) {
+			logger.warn("Input queue capacity for plugin {} must be positive",
+					pluginID);
+			capacity = Queue.DEFAULT_CAPACITY;
+		}
+		return capacity;
+	}
+
 	/**
 	 * Returns the deployment properties for one plugin
 	 * 
@@ -563,6 +607,24 @@ public class SparqlWorkflowDescription {
 					throw new IllegalWorkflowGraphException(
 							"Multiple outputs are connected to one path!");
 				}
+			} else if (stmt.getPredicate().equals(
+					WorkflowDescriptionPredicates.PATH_HAS_PIPELINE_DEPTH)) {
+				String subjectValue = stmt.getSubject().stringValue();
+				if (!paths.containsKey(subjectValue)) {
+					paths.put(subjectValue, new PathNode());
+				}
+				int depth = 0;
+				try {
+					depth = Integer.parseInt(stmt.getObject().stringValue());
+				} catch (NumberFormatException e) {
+					// handled below
+				}
+				if (depth < 1) {
+					logger.warn("Invalid pipeline depth for path {}: {}",
+							subjectValue, stmt.getObject().stringValue());
+				} else {
+					paths.get(subjectValue).setPipelineDepth(depth);
+				}
 			}
 		}
 
@@ -96,10 +96,12 @@ public class SparqlWorkflowDescriptionQueries {
 	 */
 	public static String getPaths() {
 		return  "CONSTRUCT { ?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_INPUT_URI + "> ?input .\n" +
-				"			 ?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_OUTPUT_URI + "> ?output }\n" +
+				"			 ?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_OUTPUT_URI + "> ?output .\n" +
+				"			 ?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_PIPELINE_DEPTH + "> ?depth }\n" +
 				"WHERE {\n" +
 				"	?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_INPUT_URI + "> ?input .\n" +
 				"	?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_OUTPUT_URI + "> ?output .\n" +
+				"	OPTIONAL { ?plugin1 <" + WorkflowDescriptionPredicates.PATH_HAS_PIPELINE_DEPTH + "> ?depth }\n" +
 				"}";
 	}
 
@@ -105,6 +105,21 @@ public class WorkflowDescriptionPredicates {
 	public static final URI HAS_OUTPUT_BEHAVIOUR = new URIImpl(LARKC
 			+ "hasOutputBehaviour");
 
+	/**
+	 * Predicate to determine how many outputs of previous plug-ins may be
+	 * buffered on each incoming connection of a plug-in before the previous
+	 * plug-ins are blocked.
+	 */
+	public static final URI HAS_INPUT_QUEUE_CAPACITY = new URIImpl(LARKC
+			+ "hasInputQueueCapacity");
+
+	/**
+	 * Predicate to determine the maximum number of statements in the chunks a
+	 * streaming plug-in emits.
+	 */
+	public static final URI HAS_CHUNK_SIZE = new URIImpl(LARKC
+			+ "hasChunkSize");
+
 	/*
 	 * ==== Paths (Pipes) ====
 	 */
@@ -119,6 +134,13 @@ public class WorkflowDescriptionPredicates {
 	public static final URI PATH_HAS_OUTPUT_URI = new URIImpl(LARKC
 			+ "hasOutput");
 
+	/**
+	 * Sets the number of queries the plug-ins of a path may work on at the same
+	 * time. A path with a depth greater than 1 is pipelined.
+	 */
+	public static final URI PATH_HAS_PIPELINE_DEPTH = new URIImpl(LARKC
+			+ "hasPipelineDepth");
+
 	/** An endpoint is linked to a path */
 	public static final URI ENDPOINT_LINKS_PATH_URI = new URIImpl(LARKC
 			+ "links");
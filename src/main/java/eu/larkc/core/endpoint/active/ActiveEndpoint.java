@@ -19,8 +19,12 @@
 package eu.larkc.core.endpoint.active;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.openrdf.model.BNode;
 import org.openrdf.model.Literal;
@@ -42,6 +46,8 @@ import eu.larkc.core.data.VariableBinding.Binding;
 import eu.larkc.core.endpoint.Endpoint;
 import eu.larkc.core.endpoint.push.PushEndpoint;
 import eu.larkc.core.executor.Executor;
+import eu.larkc.core.executor.path.Invocation;
+import eu.larkc.core.query.SPARQLQuery;
 import eu.larkc.core.query.SPARQLQueryImpl;
 
 /**
@@ -88,9 +94,17 @@ public class ActiveEndpoint extends Endpoint {
 		logger.debug("Using Executor " + ex.toString());
 
 		// ex.execute(new SetOfStatementsImpl(statements), this.getPathId());
-		ex.execute(new SetOfStatementsImpl(), this.getPathId());
-
-		SetOfStatements st = ex.getNextResults(this.getPathId());
+		Invocation invocation = ex.submit(new SetOfStatementsImpl(),
+				this.getPathId());
+
+		SetOfStatements st;
+		try {
+			st = invocation.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted while waiting for the results of " + invocation);
+		}
 
 		StringBuffer sResponse = new StringBuffer();
 		sResponse.append(HTML_PART1 + generateEvents(st) + "</body></html>");
@@ -128,6 +142,24 @@ public class ActiveEndpoint extends Endpoint {
 								+ "  ?P cyc:preferredNameString ?NAME."
 								+ "  ?P cyc:starts ?START."
 								+ "  ?P cyc:ends ?END." + "}"));
+		// the same queries are executed for every event and attendee
+		SPARQLQuery attendees = con
+				.prepareQuery("PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>"
+						+ "PREFIX cyc:<http://example.com/cyc#>"
+						+ "SELECT ?OWNER ?P WHERE" + "{ "
+						+ " ?P rdf:type cyc:event."
+						+ " ?P cyc:preferredNameString ?NAME."
+						+ " ?P cyc:eventHasOwner ?OWNER.}");
+		SPARQLQuery lodging = con
+				.prepareQuery("PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>"
+						+ "PREFIX cyc:<http://example.com/cyc#>"
+						+ "SELECT ?LODGING ?LNAME WHERE"
+						+ "{"
+						+ " ?P rdf:type cyc:event."
+						+ " ?P cyc:preferredNameString ?NAME."
+						+ " ?P cyc:eventHasOwner ?OWNER."
+						+ " ?LODGING cyc:preferredNameString ?LNAME."
+						+ " ?P cyc:ProvidingLodging ?LODGING.}");
 		CloseableIterator<Binding> iter = vb.iterator();
 		int iPersonNum = 0;
 		while (iter.hasNext()) {
@@ -159,50 +191,50 @@ public class ActiveEndpoint extends Endpoint {
 
 			sResponse += " </br>";
 
-			VariableBinding vbAttendees = con
-					.executeSelect(new SPARQLQueryImpl(
-							"PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>"
-									+ "PREFIX cyc:<http://example.com/cyc#>"
-									+ "SELECT ?OWNER ?P WHERE" + "{ "
-									+ " ?P rdf:type cyc:event."
-									+ " ?P cyc:preferredNameString \""
-									+ eventName + "\"."
-									+ " ?P cyc:eventHasOwner ?OWNER.}"));
+			attendees.setBinding("NAME", values.get(0));
+			VariableBinding vbAttendees = con.executeSelect(attendees);
 			CloseableIterator<Binding> iterAtendees = vbAttendees.iterator();
 			// all events with the same name
-
+			List<Binding> owners = new ArrayList<Binding>();
+			List<Map<String, Value>> ownerRows = new ArrayList<Map<String, Value>>();
 			while (iterAtendees.hasNext()) {
+				Binding bOwner = iterAtendees.next();
+				owners.add(bOwner);
+				Map<String, Value> row = new HashMap<String, Value>();
+				row.put("OWNER", bOwner.getValues().get(0));
+				ownerRows.add(row);
+			}
+
+			// get the lodging info of all attendees at once
+			List<List<String>> lodgings = new ArrayList<List<String>>();
+			for (int i = 0; i < owners.size(); i++) {
+				lodgings.add(new ArrayList<String>());
+			}
+			lodging.setBinding("NAME", values.get(0));
+			VariableBinding vbLodging = con.executeSelect(lodging, ownerRows);
+			int rowIndex = vbLodging.getVariables().indexOf(
+					RdfStoreConnection.INPUT_ROW_VARIABLE);
+			CloseableIterator<Binding> iterLodging = vbLodging.iterator();
+			while (iterLodging.hasNext()) {
+				List<Value> lodgingValues = iterLodging.next().getValues();
+				int row = ((Literal) lodgingValues.get(rowIndex)).intValue();
+				lodgings.get(row).add(
+						lodgingValues.get(1).toString().replaceAll("\"", ""));
+			}
+
+			for (int i = 0; i < owners.size(); i++) {
 				boolean bThisOneHaveErr = false;
 
-				Binding bOwner = iterAtendees.next();
+				Binding bOwner = owners.get(i);
 				BNode btrip = (BNode) bOwner.getValues().get(1);
 				sResponse += " - "
 						+ bOwner.getValues().get(0).toString()
 								.replaceAll("\"", "") + " <img src=\"niceimage"
 						+ iPersonNum + ".png\" width=\"14\" height=\"14\" /> ";
 
-				// get the lodging info
-				VariableBinding vbLodging = con
-						.executeSelect(new SPARQLQueryImpl(
-								"PREFIX rdf:<http://www.w3.org/1999/02/22-rdf-syntax-ns#>"
-										+ "PREFIX cyc:<http://example.com/cyc#>"
-										+ "SELECT ?LODGING ?LNAME WHERE"
-										+ "{"
-										+ " ?P rdf:type cyc:event."
-										+ " ?P cyc:preferredNameString \""
-										+ eventName
-										+ "\"."
-										+ " ?P cyc:eventHasOwner "
-										+ bOwner.getValues().get(0).toString()
-										+ "."
-										+ " ?LODGING cyc:preferredNameString ?LNAME."
-										+ " ?P cyc:ProvidingLodging ?LODGING.}"));
-
-				CloseableIterator<Binding> iterLodging = vbLodging.iterator();
-				if (iterLodging.hasNext()) {
-					while (iterLodging.hasNext()) {
-						sResponse += okResponse(iterLodging.next().getValues()
-								.get(1).toString().replaceAll("\"", ""));
+				if (lodgings.get(i).isEmpty() == false) {
+					for (String lodgingName : lodgings.get(i)) {
+						sResponse += okResponse(lodgingName);
 					}
 				} else {
 					bThisOneHaveErr = true;
@@ -18,7 +18,10 @@
  */
 package eu.larkc.core.endpoint.query;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -29,9 +32,13 @@ import org.openrdf.model.Value;
 import org.openrdf.model.impl.BNodeImpl;
 import org.openrdf.model.impl.StatementImpl;
 import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFWriter;
+import org.openrdf.rio.Rio;
 import org.restlet.Application;
 import org.restlet.data.Form;
 import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
 import org.restlet.resource.Get;
@@ -40,12 +47,13 @@ import org.restlet.resource.ServerResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.SetOfStatementsImpl;
 import eu.larkc.core.data.workflow.WorkflowDescriptionPredicates;
 import eu.larkc.core.endpoint.Endpoint;
 import eu.larkc.core.executor.Executor;
-import eu.larkc.shared.SerializationHelper;
+import eu.larkc.core.executor.path.ResultStream;
 
 /**
  * The QueryEndpoint implementations offers two basic methods:
@@ -54,8 +62,10 @@ import eu.larkc.shared.SerializationHelper;
  * <code>HTTP POST http://host:port/queryendpoint</code> with a parameter named
  * <b>query</b><br/>
  * passes any query to the corresponding path and starts execution,</li>
- * <li><code>HTTP GET http://host:port/queryendpoint</code><br/>
- * retrieves the results as RDF/XML.</li>
+ * <li><code>HTTP GET http://host:port/queryendpoint</code> with the optional
+ * parameters <b>offset</b> and <b>limit</b><br/>
+ * retrieves the results as RDF/XML. The results are sent as soon as the
+ * workflow produces them.</li>
  * </ul>
  * 
  * @author Norbert Lanzanasto, Christoph Fuchs
@@ -67,6 +77,8 @@ public class QueryEndpointResource extends ServerResource {
 	 * Accepted parameter
 	 */
 	private static final String PARAMETER_NAME = "query";
+	private static final String OFFSET_PARAMETER_NAME = "offset";
+	private static final String LIMIT_PARAMETER_NAME = "limit";
 	private static Logger logger = LoggerFactory
 			.getLogger(QueryEndpointResource.class);
 
@@ -137,24 +149,66 @@ public class QueryEndpointResource extends ServerResource {
 		assert (ep != null);
 		assert (ex != null);
 
+		int offset = getIntParameter(OFFSET_PARAMETER_NAME, 0);
+		int limit = getIntParameter(LIMIT_PARAMETER_NAME, -1);
+
 		// Get the next results
-		SetOfStatements nextResults = ex.getNextResults(ep.getPathId());
+		final ResultStream nextResults = ex.getNextResultStream(
+				ep.getPathId(), offset, limit);
 
-		// If the result is empty, return an empty rdf/xml document
+		// If there are no results, return an empty rdf/xml document
 		if (nextResults == null) {
 			return new StringRepresentation("", MediaType.APPLICATION_RDF_XML);
 		}
 
-		// Transform the SetOfStatements in an RDF/XML string
-		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-		SerializationHelper.printSetOfStatements(nextResults, byteStream,
-				RDFFormat.RDFXML);
-		String serializedStatements = new String(byteStream.toByteArray());
-
-		// Set mime-type to APP RDF/XML and return result
-		Representation rep = new StringRepresentation(serializedStatements,
-				MediaType.APPLICATION_RDF_XML);
+		// Serialize the results as RDF/XML while they arrive
+		return new OutputRepresentation(MediaType.APPLICATION_RDF_XML) {
+			@Override
+			public void write(OutputStream outputStream) throws IOException {
+				Writer out = new OutputStreamWriter(outputStream, "UTF-8");
+				RDFWriter writer = Rio.createWriter(RDFFormat.RDFXML, out);
+				try {
+					writer.startRDF();
+					while (nextResults.hasNext()) {
+						CloseableIterator<Statement> statements = nextResults
+								.next().getStatements();
+						while (statements.hasNext()) {
+							writer.handleStatement(statements.next());
+						}
+						statements.close();
+						out.flush();
+					}
+					writer.endRDF();
+				} catch (RDFHandlerException e) {
+					throw new IOException(
+							"Unable to serialize the results", e);
+				} finally {
+					nextResults.close();
+				}
+				out.flush();
+			}
+		};
+	}
 
-		return rep;
+	/**
+	 * Returns the value of an integer parameter of the request.
+	 * 
+	 * @param name
+	 *            the name of the parameter
+	 * @param defaultValue
+	 *            the value if the parameter is missing or invalid
+	 * @return the value of the parameter
+	 */
+	private int getIntParameter(String name, int defaultValue) {
+		String value = getQuery().getFirstValue(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			logger.warn("Invalid value for parameter {}: {}", name, value);
+			return defaultValue;
+		}
 	}
 }
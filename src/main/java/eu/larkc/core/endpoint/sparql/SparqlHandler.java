@@ -37,6 +37,7 @@ import eu.larkc.core.endpoint.sparql.exceptions.MalformedSparqlQueryException;
 import eu.larkc.core.endpoint.sparql.exceptions.SparqlException;
 import eu.larkc.core.endpoint.sparql.exceptions.SparqlQueryRefusedException;
 import eu.larkc.core.executor.Executor;
+import eu.larkc.core.qos.QoSParametersImpl;
 
 /**
  * Simple HTTP Server Handler which is routed to SPARQLProtocol servlet
@@ -47,6 +48,18 @@ public class SparqlHandler extends Endpoint {
 
 	private static Logger logger = LoggerFactory.getLogger(SparqlHandler.class);
 
+	/**
+	 * Request parameter (LarKC extension) giving the maximum runtime of the
+	 * query in milliseconds.
+	 */
+	public static final String TIMEOUT_PARAMETER = "timeout";
+
+	/**
+	 * Response header that is set if the maximum runtime of the query passed
+	 * before all results were computed.
+	 */
+	public static final String INCOMPLETE_HEADER = "X-LarKC-Incomplete";
+
 	/**
 	 * Constructor. The endpoint has to know which {@link Executor} is
 	 * responsible for it, hence an Executor has to be passed as an argument.
@@ -112,11 +125,22 @@ public class SparqlHandler extends Endpoint {
 				qr.addDefaultGraphUri(value);
 			} else if (name.equals("named-graph-uri")) {
 				qr.addNamedGraphUri(value);
+			} else if (name.equals(TIMEOUT_PARAMETER)) {
+				try {
+					qr.setQoSParameters(new QoSParametersImpl(0, Long
+							.parseLong(value)));
+				} catch (NumberFormatException e) {
+					throw new MalformedSparqlQueryException(
+							"The value of the \"" + name
+									+ "\" parameter is not a number: \""
+									+ value + "\".");
+				}
 			} else {
 				throw new MalformedSparqlQueryException(
 						"Unknown parameter name: \""
 								+ name
-								+ "\"; should be \"query\", \"default-graph-uri\" or \"named-graph-uri\".");
+								+ "\"; should be \"query\", \"default-graph-uri\", \"named-graph-uri\" or \""
+								+ TIMEOUT_PARAMETER + "\".");
 			}
 		}
 		if (!hasQuery) {
@@ -232,6 +256,10 @@ public class SparqlHandler extends Endpoint {
 
 			String xmlResult = SparqlQueryHandler.xmlToString(
 					queryRequest.getQuery(), queryResult.getDocument());
+			if (queryResult.isIncomplete()) {
+				httpExchange.getResponseHeaders().add(INCOMPLETE_HEADER,
+						"true");
+			}
 			sendResponse(httpExchange, HttpURLConnection.HTTP_OK,
 					queryResult.getContentType(), xmlResult);
 		} catch (MalformedSparqlQueryException e) {
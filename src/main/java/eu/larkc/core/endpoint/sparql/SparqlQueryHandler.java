@@ -36,6 +36,8 @@ import eu.larkc.core.endpoint.Endpoint;
 import eu.larkc.core.endpoint.sparql.exceptions.SparqlException;
 import eu.larkc.core.endpoint.sparql.exceptions.SparqlQueryRefusedException;
 import eu.larkc.core.executor.Executor;
+import eu.larkc.core.executor.path.Invocation;
+import eu.larkc.core.qos.QoSParameters;
 import eu.larkc.core.query.SPARQLQuery;
 import eu.larkc.core.query.SPARQLQueryImpl;
 
@@ -75,11 +77,17 @@ public class SparqlQueryHandler {
 		String queryString = queryRequest.getQuery();
 		SPARQLQuery query = new SPARQLQueryImpl(queryString);
 
-		return handleParsedQuery(query);
+		return handleParsedQuery(query, queryRequest.getQoSParameters());
 	}
 
 	protected SparqlQueryResult handleParsedQuery(SPARQLQuery query)
 			throws SparqlQueryRefusedException, SparqlException {
+		return handleParsedQuery(query, null);
+	}
+
+	protected SparqlQueryResult handleParsedQuery(SPARQLQuery query,
+			QoSParameters qos) throws SparqlQueryRefusedException,
+			SparqlException {
 		// prepare results formatter
 		SparqlResultFormatter formatter;
 		SparqlQueryResult queryResult = new SparqlQueryResult();
@@ -92,11 +100,22 @@ public class SparqlQueryHandler {
 		}
 
 		// execute the query
-		this.ex.execute(query.toRDF(), ep.getPathId());
+		Invocation invocation = this.ex.submit(query.toRDF(), ep.getPathId(),
+				qos);
+
+		// retrieve the results of this query from executor
+		SetOfStatements resultsSetOfStatements;
+		try {
+			resultsSetOfStatements = invocation.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SparqlQueryRefusedException(
+					"Interrupted while waiting for the results of the query (\""
+							+ query + "\")");
+		}
 
-		// retrieve results from executor
-		SetOfStatements resultsSetOfStatements = ex.getNextResults(ep
-				.getPathId());
+		// the maximum runtime may have passed before all results arrived
+		queryResult.setIncomplete(invocation.isIncomplete());
 
 		// parse the results
 		if (query.isSelect()) {
@@ -21,6 +21,8 @@ package eu.larkc.core.endpoint.sparql;
 import java.util.ArrayList;
 import java.util.List;
 
+import eu.larkc.core.qos.QoSParameters;
+
 /**
  * Encapsulates the data of a SPARQL query request, as described in sec. 2.1.2
  * of the SPARQL Protocol for RDF.
@@ -37,11 +39,14 @@ public class SparqlQueryRequest {
 	 */
 	protected ArrayList<String> defaultGraphUris; // 0 or more
 	protected ArrayList<String> namedGraphUris; // 0 or more
+	/** The requested quality of service, null if none. */
+	protected QoSParameters qosParameters;
 
 	public SparqlQueryRequest() {
 		query = null;
 		defaultGraphUris = new ArrayList<String>();
 		namedGraphUris = new ArrayList<String>();
+		qosParameters = null;
 	}
 
 	public String getQuery() {
@@ -67,4 +72,12 @@ public class SparqlQueryRequest {
 	public List<String> getNamedGraphUris() {
 		return namedGraphUris;
 	}
+
+	public QoSParameters getQoSParameters() {
+		return qosParameters;
+	}
+
+	public void setQoSParameters(QoSParameters qosParameters_) {
+		qosParameters = qosParameters_;
+	}
 }
\ No newline at end of file
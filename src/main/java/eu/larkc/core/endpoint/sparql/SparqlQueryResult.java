@@ -24,6 +24,7 @@ public class SparqlQueryResult {
 
 	String contentType;
 	Document document;
+	boolean incomplete;
 
 	public String getContentType() {
 		return contentType;
@@ -40,4 +41,18 @@ public class SparqlQueryResult {
 	public void setDocument(Document document_) {
 		document = document_;
 	}
+
+	/**
+	 * Returns whether the results are incomplete, because the maximum runtime
+	 * of the query passed before all results were computed.
+	 * 
+	 * @return true if the results are incomplete
+	 */
+	public boolean isIncomplete() {
+		return incomplete;
+	}
+
+	public void setIncomplete(boolean incomplete_) {
+		incomplete = incomplete_;
+	}
 }
@@ -19,6 +19,7 @@
 package eu.larkc.core.executor;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,7 +27,6 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 
-import org.apache.http.MethodNotSupportedException;
 import org.gridlab.gat.security.SecurityContext;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleDirectedGraph;
@@ -38,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import eu.larkc.core.Larkc;
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.workflow.EndpointNode;
 import eu.larkc.core.data.workflow.GraphNode;
@@ -52,10 +53,13 @@ import eu.larkc.core.endpoint.EndpointException;
 import eu.larkc.core.endpoint.EndpointFactory;
 import eu.larkc.core.endpoint.EndpointShutdownException;
 import eu.larkc.core.executor.path.Input;
+import eu.larkc.core.executor.path.Invocation;
 import eu.larkc.core.executor.path.Output;
 import eu.larkc.core.executor.path.Path;
+import eu.larkc.core.executor.path.ResultStream;
 import eu.larkc.core.pluginManager.ControlMessage;
 import eu.larkc.core.pluginManager.Message;
+import eu.larkc.core.pluginManager.NodeSchedule;
 import eu.larkc.core.pluginManager.PluginManager;
 import eu.larkc.core.pluginManager.local.LocalPluginManager;
 import eu.larkc.core.pluginManager.remote.GAT.GatPluginManager;
@@ -64,6 +68,7 @@ import eu.larkc.core.pluginManager.remote.GAT.ResourceDescription;
 import eu.larkc.core.pluginManager.remote.GAT.UriList;
 import eu.larkc.core.pluginManager.remote.Servlet.Tomcat.JeePluginManager;
 import eu.larkc.core.pluginManager.remote.Servlet.Tomcat.JeeResourceDescription;
+import eu.larkc.core.qos.QoSParameters;
 import eu.larkc.core.queue.Queue;
 import eu.larkc.plugin.Plugin;
 
@@ -89,6 +94,9 @@ public class Executor {
 
 	private Map<String, Endpoint> endpointMap;
 
+	/** The plug-ins of every path, in topological order. */
+	private Map<String, List<String>> pathNodes;
+
 	/**
 	 * Constructor. Initializes an executor for the given workflow, with the
 	 * given <code>decider</code> in charge.
@@ -112,6 +120,7 @@ public class Executor {
 		pathInstances = new HashMap<String, Path>();
 
 		endpointMap = new HashMap<String, Endpoint>();
+		pathNodes = new HashMap<String, List<String>>();
 
 		sparqlWorkflowDescription = new SparqlWorkflowDescription(wd);
 		initializeWorkflow();
@@ -229,6 +238,8 @@ public class Executor {
 			output = new Output();
 			outputPluginId = entry.getValue().getPluginId();
 
+			// the path output stays unbounded since not every endpoint pulls
+			// the results of the queries it pushes
 			outputOutputQueue = new Queue<SetOfStatements>();
 			outputPluginManager = pluginManagerInstances.get(outputPluginId);
 			outputPluginManager.addOutputQueue(outputOutputQueue,
@@ -251,26 +262,24 @@ public class Executor {
 		List<String> inputPluginIds;
 		PluginManager inputPluginManager;
 		Queue<SetOfStatements> inputInputQueue;
+		int inputCapacity;
 		for (Entry<String, InputNode> entry : inputs.entrySet()) {
 			input = new Input();
 			inputPluginIds = entry.getValue().getPluginIds();
 
 			for (String pluginId : inputPluginIds) {
 				inputPluginManager = pluginManagerInstances.get(pluginId);
-				for (Entry<String, PathNode> pathEntry : stringPaths.entrySet()) {
-					inputInputQueue = new Queue<SetOfStatements>();
-					inputPluginManager.addInputQueue(inputInputQueue,
-							pathEntry.getKey());
-					logger.debug("Added input queue for {} ({})",
-							pluginInstances.get(pluginId).toString(),
-							pathEntry.getKey());
-					if (pathEntry.getKey().equals(entry.getKey())) {
-						input.addPathInputQueue(inputInputQueue);
-						logger.debug("Added path input queue for {} ({})",
-								pluginInstances.get(pluginId).toString(),
-								pathEntry.getKey());
-					}
-				}
+				inputCapacity = sparqlWorkflowDescription
+						.getInputQueueCapacity(pluginId);
+				// the queries of other paths never arrive on this queue, a
+				// plugin of those paths must not wait for it
+				inputInputQueue = new Queue<SetOfStatements>(inputCapacity);
+				inputPluginManager.addInputQueue(inputInputQueue,
+						entry.getKey());
+				input.addPathInputQueue(inputInputQueue);
+				logger.debug("Added path input queue for {} ({})",
+						pluginInstances.get(pluginId).toString(),
+						entry.getKey());
 			}
 
 			inputInstances.put(entry.getKey(), input);
@@ -286,8 +295,10 @@ public class Executor {
 
 			if (tmpInput != null && tmpOutput != null) {
 				pathInstances.put(path.getKey(), new Path(path.getKey(),
-						tmpInput, tmpOutput));
-				logger.debug("Added path {}", path.getKey());
+						tmpInput, tmpOutput, path.getValue()
+								.getPipelineDepth()));
+				logger.debug("Added path {} with pipeline depth {}",
+						path.getKey(), path.getValue().getPipelineDepth());
 			} else {
 				throw new InstantiationException(
 						"Path could not be created: input or output is null");
@@ -417,6 +428,19 @@ public class Executor {
 		PluginManager targetPluginManager;
 		Set<String> paths = sparqlWorkflowDescription.getPaths().keySet();
 
+		WorkflowTopology topology = new WorkflowTopology();
+		for (GraphNode node : graph.vertexSet()) {
+			topology.addNode(node.getPluginID());
+		}
+		for (DefaultEdge edge : graph.edgeSet()) {
+			topology.addEdge(graph.getEdgeSource(edge).getPluginID(), graph
+					.getEdgeTarget(edge).getPluginID());
+		}
+		initializeSchedules(topology, paths);
+
+		int capacity;
+		List<String> nodes;
+
 		for (DefaultEdge edge : graph.edgeSet()) {
 			logger.debug("Creating edge {}", edge.toString());
 			sourceNode = graph.getEdgeSource(edge);
@@ -426,11 +450,24 @@ public class Executor {
 					.getPluginID());
 			targetPluginManager = pluginManagerInstances.get(targetNode
 					.getPluginID());
+			// bounded queues block the source plug-in if the target plug-in
+			// does not keep up
+			capacity = sparqlWorkflowDescription
+					.getInputQueueCapacity(targetNode.getPluginID());
 			for (String path : paths) {
-				queue = new Queue<SetOfStatements>();
+				nodes = pathNodes.get(path);
+				if (nodes != null
+						&& !(nodes.contains(sourceNode.getPluginID()) && nodes
+								.contains(targetNode.getPluginID()))) {
+					// the edge does not carry the queries of this path
+					continue;
+				}
+				queue = new Queue<SetOfStatements>(capacity);
 				logger.debug("Created queue: "
 						+ path
-						+ ", "
+						+ " (capacity "
+						+ capacity
+						+ "), "
 						+ pluginInstances.get(sourceNode.getPluginID())
 								.toString()
 						+ ", "
@@ -445,6 +482,56 @@ public class Executor {
 		}
 	}
 
+	/**
+	 * Computes the plugins of every path from the topology of the workflow and
+	 * tells every plugin manager how many plugins of a path consume the output
+	 * of its plugin, so that the plugin runs once per query even if its output
+	 * fans out to several branches. The branches of a path run concurrently
+	 * and are joined by the plugins they feed, according to the input
+	 * behavior of these plugins.
+	 * 
+	 * @param topology
+	 *            the topology of the workflow graph
+	 * @param paths
+	 *            the ids of the paths
+	 * @throws IllegalWorkflowGraphException
+	 * @throws QueryEvaluationException
+	 * @throws MalformedQueryException
+	 * @throws RepositoryException
+	 */
+	private void initializeSchedules(WorkflowTopology topology,
+			Set<String> paths) throws IllegalWorkflowGraphException,
+			RepositoryException, MalformedQueryException,
+			QueryEvaluationException {
+		Map<String, InputNode> inputs = sparqlWorkflowDescription.getInputs();
+		Map<String, OutputNode> outputs = sparqlWorkflowDescription
+				.getOutputs();
+
+		Map<String, NodeSchedule> schedules = new HashMap<String, NodeSchedule>();
+		for (Entry<String, PluginManager> entry : pluginManagerInstances
+				.entrySet()) {
+			NodeSchedule schedule = new NodeSchedule(entry.getKey());
+			entry.getValue().setSchedule(schedule);
+			schedules.put(entry.getKey(), schedule);
+		}
+
+		for (String path : paths) {
+			if (inputs.get(path) == null || outputs.get(path) == null) {
+				continue;
+			}
+			String output = outputs.get(path).getPluginId();
+			List<String> nodes = topology.getPathNodes(inputs.get(path)
+					.getPluginIds(), output);
+			pathNodes.put(path, nodes);
+			for (String node : nodes) {
+				schedules.get(node).setConsumers(path,
+						topology.getConsumers(node, nodes, output));
+			}
+			logger.debug("Stages of path {}: {}", path,
+					topology.getStages(nodes));
+		}
+	}
+
 	/**
 	 * Execute the given workflow by invoking the plugins.
 	 * 
@@ -463,7 +550,9 @@ public class Executor {
 	}
 
 	/**
-	 * Execute the given workflow by invoking the plugins.
+	 * Execute the given workflow by invoking the plugins. The results can be
+	 * retrieved with {@link #getNextResults(String)}, in the order the queries
+	 * were executed.
 	 * 
 	 * @param query
 	 *            the query
@@ -475,10 +564,6 @@ public class Executor {
 
 		Path path = pathInstances.get(pathId);
 		if (path != null) {
-			logger.debug("Stop previous execution ...");
-			for (PluginManager pluginManager : pluginManagerInstances.values()) {
-				pluginManager.stopWaiting();
-			}
 			path.execute(query);
 		} else {
 			logger.debug("No path defined to execute the query!");
@@ -487,17 +572,116 @@ public class Executor {
 	}
 
 	/**
-	 * Get the next x results.
+	 * Execute the given workflow by invoking the plugins. Other queries can be
+	 * executed on the same path at the same time; the results of this query
+	 * are only delivered to the returned invocation.
+	 * 
+	 * @param query
+	 *            the query
+	 * @param pathId
+	 *            the ID of the path that should be called
+	 * @return the handle of the invocation, which is used to wait for its
+	 *         results
+	 */
+	public Invocation submit(SetOfStatements query, String pathId) {
+		return submitToPath(query, pathId, null);
+	}
+
+	/**
+	 * Execute the given workflow by invoking the plugins, with the given
+	 * quality of service. Once the maximum runtime of the query passed, the
+	 * plugins stop working on it and the invocation returns the results
+	 * computed so far, flagged as incomplete. If only a number of answers is
+	 * required, the path is stopped as soon as that many statements arrived,
+	 * e.g. from a plugin that streams its results.
+	 * 
+	 * @param query
+	 *            the query
+	 * @param pathId
+	 *            the ID of the path that should be called
+	 * @param qos
+	 *            the QoS parameters, may be null
+	 * @return the handle of the invocation, which is used to wait for its
+	 *         results
+	 */
+	public Invocation submit(SetOfStatements query, String pathId,
+			QoSParameters qos) {
+		return submitToPath(query, pathId, qos);
+	}
+
+	private Invocation submitToPath(SetOfStatements query, String pathId,
+			QoSParameters qos) {
+		Path path = pathInstances.get(pathId);
+		if (path != null) {
+			Invocation invocation = path.submit(query, qos);
+			logger.debug("Submitted query: {}", invocation);
+			return invocation;
+		} else {
+			logger.debug("No path defined to execute the query!");
+			throw new RuntimeException("No path defined to execute the query!");
+		}
+	}
+
+	/**
+	 * Get the next x results. Returns the statements of the results of the
+	 * oldest query executed with {@link #execute(SetOfStatements)} whose
+	 * results were not retrieved yet, starting at the given offset. Returns as
+	 * soon as the limit is reached, even if the workflow is still producing
+	 * further results.
 	 * 
 	 * @param offset
+	 *            the number of statements to skip
 	 * @param limit
+	 *            the maximum number of statements to return, negative for no
+	 *            limit
 	 * @return a set of statements containing the specified results
-	 * @throws MethodNotSupportedException
 	 */
-	public SetOfStatements getNextResults(int offset, int limit)
-			throws MethodNotSupportedException {
-		throw new MethodNotSupportedException(
-				"In the current platform version specific pulling of N results is not implemented.");
+	public SetOfStatements getNextResults(int offset, int limit) {
+		String pathId = getOnlyPathId();
+
+		if (pathId == null) {
+			logger.debug("No path defined to execute the query!");
+			throw new RuntimeException("No path defined to execute the query!");
+		}
+		ResultStream results = getNextResultStream(pathId, offset, limit);
+		if (results == null) {
+			return null;
+		}
+		List<SetOfStatements> batches = new ArrayList<SetOfStatements>();
+		try {
+			while (results.hasNext()) {
+				batches.add(results.next());
+			}
+		} finally {
+			results.close();
+		}
+		return new ConcatenatedSetOfStatements(batches);
+	}
+
+	/**
+	 * Streams the results of the oldest query executed on the path with
+	 * {@link #execute(SetOfStatements, String)} whose results were not
+	 * retrieved yet. The batches of the results can be read while the
+	 * workflow is still producing them.
+	 * 
+	 * @param pathId
+	 *            the ID of the path
+	 * @param offset
+	 *            the number of statements to skip
+	 * @param limit
+	 *            the maximum number of statements to return, negative for no
+	 *            limit
+	 * @return the stream of the results
+	 */
+	public ResultStream getNextResultStream(String pathId, int offset,
+			int limit) {
+		Path path = pathInstances.get(pathId);
+		if (path != null) {
+			return path.getNextResultStream(offset, limit);
+		} else {
+			logger.debug("No path defined to execute the query!");
+			throw new RuntimeException("No path defined to execute the query!");
+		}
 	}
 
 	/**
@@ -553,7 +737,9 @@ public class Executor {
 	}
 
 	/**
-	 * Returns the next results of the workflow.
+	 * Returns the results of the oldest query executed on the path with
+	 * {@link #execute(SetOfStatements, String)} whose results were not
+	 * retrieved yet.
 	 * 
 	 * @param pathId
 	 *            the ID of the path that sould be called
@@ -0,0 +1,214 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.larkc.core.data.workflow.IllegalWorkflowGraphException;
+
+/**
+ * The topology of a workflow graph, i.e. which plug-in feeds which, used by
+ * the executor to schedule the plug-ins of every path.
+ * 
+ * A path consists of the plug-ins that lie between its inputs and its output.
+ * Only the edges between these plug-ins carry the queries of the path, and a
+ * plug-in whose output feeds several plug-ins of the path is invoked once per
+ * query for all of them. The plug-ins of a path fall into stages: the plug-ins
+ * of a stage do not depend on each other and run concurrently, so a wide
+ * workflow takes as long as its slowest branch.
+ */
+public class WorkflowTopology {
+
+	/** The next nodes of every node, in the order the edges were added. */
+	private final Map<String, Set<String>> successors;
+	/** The previous nodes of every node, in the order the edges were added. */
+	private final Map<String, Set<String>> predecessors;
+
+	/**
+	 * Constructor for an empty graph.
+	 */
+	public WorkflowTopology() {
+		successors = new LinkedHashMap<String, Set<String>>();
+		predecessors = new LinkedHashMap<String, Set<String>>();
+	}
+
+	/**
+	 * Adds a node to the graph, if it is not contained yet.
+	 * 
+	 * @param node
+	 *            the node id
+	 */
+	public void addNode(String node) {
+		if (!successors.containsKey(node)) {
+			successors.put(node, new LinkedHashSet<String>());
+			predecessors.put(node, new LinkedHashSet<String>());
+		}
+	}
+
+	/**
+	 * Adds an edge to the graph, i.e. the output of the source node is the
+	 * input of the target node. The nodes are added if necessary.
+	 * 
+	 * @param source
+	 *            the id of the source node
+	 * @param target
+	 *            the id of the target node
+	 */
+	public void addEdge(String source, String target) {
+		addNode(source);
+		addNode(target);
+		successors.get(source).add(target);
+		predecessors.get(target).add(source);
+	}
+
+	/**
+	 * Returns the nodes of a path, i.e. the nodes that can be reached from one
+	 * of the inputs and lead to the output.
+	 * 
+	 * @param inputs
+	 *            the ids of the input nodes of the path
+	 * @param output
+	 *            the id of the output node of the path
+	 * @return the node ids in topological order
+	 * @throws IllegalWorkflowGraphException
+	 *             if the path contains a cycle
+	 */
+	public List<String> getPathNodes(Collection<String> inputs, String output)
+			throws IllegalWorkflowGraphException {
+		Set<String> reachable = reach(inputs, successors);
+		List<String> outputs = new ArrayList<String>();
+		outputs.add(output);
+		reachable.retainAll(reach(outputs, predecessors));
+
+		List<String> nodes = new ArrayList<String>();
+		for (Set<String> stage : getStages(reachable)) {
+			nodes.addAll(stage);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Divides the given nodes into stages. The nodes of a stage only depend on
+	 * nodes of earlier stages, so they can run concurrently once the earlier
+	 * stages delivered their output.
+	 * 
+	 * @param nodes
+	 *            the ids of the nodes, e.g. the nodes of a path
+	 * @return the stages, first stage first
+	 * @throws IllegalWorkflowGraphException
+	 *             if the nodes contain a cycle
+	 */
+	public List<Set<String>> getStages(Collection<String> nodes)
+			throws IllegalWorkflowGraphException {
+		Map<String, Integer> previousCount = new HashMap<String, Integer>();
+		LinkedList<String> ready = new LinkedList<String>();
+		for (String node : successors.keySet()) {
+			if (!nodes.contains(node)) {
+				continue;
+			}
+			int count = 0;
+			for (String previous : predecessors.get(node)) {
+				if (nodes.contains(previous)) {
+					count++;
+				}
+			}
+			previousCount.put(node, count);
+			if (count == 0) {
+				ready.add(node);
+			}
+		}
+
+		List<Set<String>> stages = new ArrayList<Set<String>>();
+		int scheduled = 0;
+		while (!ready.isEmpty()) {
+			Set<String> stage = new LinkedHashSet<String>(ready);
+			ready.clear();
+			for (String node : stage) {
+				for (String next : successors.get(node)) {
+					Integer count = previousCount.get(next);
+					if (count != null) {
+						previousCount.put(next, count - 1);
+						if (count == 1) {
+							ready.add(next);
+						}
+					}
+				}
+			}
+			stages.add(stage);
+			scheduled += stage.size();
+		}
+		if (scheduled < previousCount.size()) {
+			throw new IllegalWorkflowGraphException(
+					"Cycles exist in the graph!");
+		}
+		return stages;
+	}
+
+	/**
+	 * Returns the number of consumers of the output of a node on a path, i.e.
+	 * the number of its next nodes on the path, plus one for the output of the
+	 * path if the node is the output node.
+	 * 
+	 * @param node
+	 *            the node id
+	 * @param pathNodes
+	 *            the ids of the nodes of the path
+	 * @param output
+	 *            the id of the output node of the path
+	 * @return the number of consumers
+	 */
+	public int getConsumers(String node, Collection<String> pathNodes,
+			String output) {
+		int consumers = node.equals(output) ? 1 : 0;
+		Set<String> next = successors.get(node);
+		if (next != null) {
+			for (String target : next) {
+				if (pathNodes.contains(target)) {
+					consumers++;
+				}
+			}
+		}
+		return consumers;
+	}
+
+	/**
+	 * Returns the nodes that can be reached from the given nodes, including
+	 * them.
+	 */
+	private Set<String> reach(Collection<String> start,
+			Map<String, Set<String>> edges) {
+		Set<String> reached = new LinkedHashSet<String>();
+		LinkedList<String> pending = new LinkedList<String>(start);
+		while (!pending.isEmpty()) {
+			String node = pending.poll();
+			if (edges.containsKey(node) && reached.add(node)) {
+				pending.addAll(edges.get(node));
+			}
+		}
+		return reached;
+	}
+}
@@ -21,6 +21,7 @@ package eu.larkc.core.executor.path;
 import java.util.ArrayList;
 import java.util.List;
 
+import eu.larkc.core.data.ImmutableSetOfStatements;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.queue.Queue;
 
@@ -44,13 +45,17 @@ public class Input {
 	}
 
 	/**
-	 * This method starts the execution of the workflow.
+	 * This method starts the execution of the workflow. If the workflow has
+	 * several input queues, they all get the same immutable copy of the query.
 	 * 
 	 * @param query
 	 *            The query which is passed to the workflow.
 	 * 
 	 */
 	public void putQuery(SetOfStatements query) {
+		if (pathInputQueues.size() > 1 && query != null) {
+			query = ImmutableSetOfStatements.copyOf(query);
+		}
 		for (Queue<SetOfStatements> pathInputQueue : pathInputQueues) {
 			pathInputQueue.put(query);
 		}
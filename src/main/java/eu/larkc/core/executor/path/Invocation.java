@@ -0,0 +1,507 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.executor.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.StatementChunk;
+import eu.larkc.core.data.StatementStatistics;
+import eu.larkc.core.pluginManager.ExecutionTrace;
+import eu.larkc.core.qos.Deadline;
+
+/**
+ * Handle for a single execution of a query on a path. Every invocation has a
+ * correlation id, which is sent along with the control messages through the
+ * workflow, and receives exactly the results that the workflow computed for
+ * its own query, no matter how many other queries are in flight on the same
+ * path.
+ * 
+ * The results can also be read batch by batch with {@link #getResults(int, int)}
+ * while the workflow is still producing them, e.g. if the last plug-in
+ * streams its results in chunks.
+ * 
+ * An invocation may have a {@link Deadline}. Once it passes, waiting for the
+ * results returns the results that arrived so far, flagged as incomplete
+ * (see {@link #isIncomplete()}), and the plug-ins skip the query. Cancelling
+ * an invocation expires its deadline as well; a plug-in that is already
+ * invoked finishes, but its results are discarded.
+ * 
+ * An invocation may also require only a number of answers, i.e. statements.
+ * It is then complete as soon as the parts of the results that arrived hold
+ * at least as many statements, and its deadline is cancelled so that the
+ * plug-ins stop working on the query. This is how anytime plug-ins, which
+ * stream their results in chunks, are stopped early. The parts are never read
+ * for this, since a streamed result can be read only once: only the parts
+ * whose size is known, such as chunks, are counted, and the others are
+ * assumed to be non-empty.
+ * 
+ * The time until the first statement arrived and until the required answers
+ * arrived are recorded, see {@link #getTimeToFirstResult(TimeUnit)} and
+ * {@link #getTimeToRequiredResults(TimeUnit)}, as well as when each plug-in
+ * of the workflow worked on the query, see {@link #getTrace()}.
+ */
+public class Invocation implements Future<SetOfStatements> {
+
+	private static Logger logger = LoggerFactory.getLogger(Invocation.class);
+
+	/** Marks a point in time that was not reached yet. */
+	private static final long NOT_YET = -1;
+
+	private final String correlationId;
+	private final String pathId;
+	private final CountDownLatch done;
+	private volatile SetOfStatements result;
+	private volatile boolean cancelled;
+	private volatile boolean incomplete;
+	private final Deadline deadline;
+	/** The parts of the results received so far, guarded by itself. */
+	private final List<SetOfStatements> parts;
+	/** The number of answers that suffice, 0 or less for all answers. */
+	private final int requiredAnswers;
+	/** The number of statements in the parts of known size, if counted. */
+	private int answers;
+	/** The value of {@link System#nanoTime()} when the query was submitted. */
+	private final long submitted;
+	private volatile long firstResultArrived;
+	private volatile long requiredResultsArrived;
+	private final ExecutionTrace trace;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param correlationId
+	 *            the correlation id of the invocation
+	 * @param pathId
+	 *            the id of the path the query is executed on
+	 */
+	public Invocation(String correlationId, String pathId) {
+		this(correlationId, pathId, Deadline.none());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param correlationId
+	 *            the correlation id of the invocation
+	 * @param pathId
+	 *            the id of the path the query is executed on
+	 * @param deadline
+	 *            the deadline of the invocation
+	 */
+	public Invocation(String correlationId, String pathId, Deadline deadline) {
+		this(correlationId, pathId, deadline, 0);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param correlationId
+	 *            the correlation id of the invocation
+	 * @param pathId
+	 *            the id of the path the query is executed on
+	 * @param deadline
+	 *            the deadline of the invocation
+	 * @param requiredAnswers
+	 *            the number of statements that suffice, 0 or less if all
+	 *            results are required
+	 */
+	public Invocation(String correlationId, String pathId, Deadline deadline,
+			int requiredAnswers) {
+		if (deadline == null) {
+			throw new IllegalArgumentException();
+		}
+		this.correlationId = correlationId;
+		this.pathId = pathId;
+		this.deadline = deadline;
+		this.done = new CountDownLatch(1);
+		this.result = null;
+		this.cancelled = false;
+		this.incomplete = false;
+		this.parts = new ArrayList<SetOfStatements>();
+		this.requiredAnswers = requiredAnswers;
+		this.answers = 0;
+		this.submitted = System.nanoTime();
+		this.firstResultArrived = NOT_YET;
+		this.requiredResultsArrived = NOT_YET;
+		this.trace = new ExecutionTrace();
+	}
+
+	/**
+	 * Returns the correlation id of the invocation.
+	 * 
+	 * @return the correlation id
+	 */
+	public String getCorrelationId() {
+		return correlationId;
+	}
+
+	/**
+	 * Returns the id of the path the query is executed on.
+	 * 
+	 * @return the path id
+	 */
+	public String getPathId() {
+		return pathId;
+	}
+
+	/**
+	 * Returns the deadline of the invocation.
+	 * 
+	 * @return the deadline
+	 */
+	public Deadline getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Returns the trace in which the plug-ins record when they started and
+	 * finished to work on the query.
+	 * 
+	 * @return the execution trace
+	 */
+	public ExecutionTrace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * Checks whether the results are incomplete, because the deadline passed
+	 * before the workflow computed all of them.
+	 * 
+	 * @return true if the results are incomplete
+	 */
+	public boolean isIncomplete() {
+		return incomplete;
+	}
+
+	/**
+	 * Returns the number of answers that suffice for the query.
+	 * 
+	 * @return the number of statements, 0 or less if all results are required
+	 */
+	public int getRequiredAnswers() {
+		return requiredAnswers;
+	}
+
+	/**
+	 * Returns the time from submitting the query until the first statement of
+	 * the results arrived.
+	 * 
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the time, or -1 if no statement arrived yet
+	 */
+	public long getTimeToFirstResult(TimeUnit unit) {
+		return elapsed(firstResultArrived, unit);
+	}
+
+	/**
+	 * Returns the time from submitting the query until the required number of
+	 * answers arrived, or until the results were complete if fewer answers
+	 * were computed or all of them are required.
+	 * 
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the time, or -1 if the results did not arrive yet or the
+	 *         invocation expired or was cancelled before
+	 */
+	public long getTimeToRequiredResults(TimeUnit unit) {
+		return elapsed(requiredResultsArrived, unit);
+	}
+
+	/**
+	 * Adds a part of the results, e.g. a chunk streamed by the last plug-in,
+	 * and wakes up all result streams waiting for it. Completes the invocation
+	 * once the required number of answers arrived. Has no effect if the
+	 * invocation is already done.
+	 * 
+	 * @param part
+	 *            the part of the results, may be null
+	 */
+	void addResults(SetOfStatements part) {
+		if (part == null) {
+			return;
+		}
+		synchronized (parts) {
+			if (done.getCount() == 0) {
+				return;
+			}
+			parts.add(part);
+			if (firstResultArrived == NOT_YET && !isEmpty(part)) {
+				firstResultArrived = System.nanoTime();
+			}
+			if (requiredAnswers > 0) {
+				// parts of unknown size do not count as answers
+				answers += (int) Math.max(size(part), 0);
+				if (answers >= requiredAnswers) {
+					// enough answers, stop the plug-ins working on the query
+					result = new ConcatenatedSetOfStatements(parts);
+					requiredResultsArrived = System.nanoTime();
+					deadline.cancel();
+					finish();
+				}
+			}
+			parts.notifyAll();
+		}
+	}
+
+	/**
+	 * Sets the results of the invocation and wakes up all threads waiting for
+	 * them. Has no effect if the invocation is already done. Results that
+	 * arrive after the deadline are incomplete, since the plug-ins skip
+	 * expired invocations.
+	 * 
+	 * @param results
+	 *            the results, may be null if the workflow did not compute any
+	 */
+	void complete(SetOfStatements results) {
+		synchronized (parts) {
+			if (done.getCount() == 0) {
+				return;
+			}
+			result = results;
+			incomplete = deadline.hasPassed();
+			long now = System.nanoTime();
+			if (firstResultArrived == NOT_YET && results != null
+					&& !isEmpty(results)) {
+				firstResultArrived = now;
+			}
+			if (!incomplete) {
+				requiredResultsArrived = now;
+			}
+			finish();
+			parts.notifyAll();
+		}
+	}
+
+	/**
+	 * Completes the invocation with the parts of the results that arrived so
+	 * far, because the deadline passed.
+	 */
+	private void expire() {
+		synchronized (parts) {
+			if (done.getCount() == 0) {
+				return;
+			}
+			result = new ConcatenatedSetOfStatements(parts);
+			incomplete = true;
+			finish();
+			parts.notifyAll();
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (parts) {
+			if (done.getCount() == 0) {
+				return false;
+			}
+			cancelled = true;
+			deadline.cancel();
+			parts.clear();
+			done.countDown();
+			parts.notifyAll();
+			return true;
+		}
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Waits until the workflow computed the results of the query, or until
+	 * the deadline passes.
+	 * 
+	 * @return the results, or null if the workflow did not compute any
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws CancellationException
+	 *             if the invocation was cancelled
+	 */
+	@Override
+	public SetOfStatements get() throws InterruptedException {
+		if (!deadline.isBounded()) {
+			done.await();
+		} else if (!done.await(deadline.remaining(TimeUnit.NANOSECONDS),
+				TimeUnit.NANOSECONDS)) {
+			expire();
+		}
+		return getResult();
+	}
+
+	/**
+	 * Waits at most the given time until the workflow computed the results of
+	 * the query, or until the deadline passes.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait
+	 * @param unit
+	 *            the time unit of the timeout
+	 * @return the results, or null if the workflow did not compute any
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws TimeoutException
+	 *             if the results did not arrive in time
+	 * @throws CancellationException
+	 *             if the invocation was cancelled
+	 */
+	@Override
+	public SetOfStatements get(long timeout, TimeUnit unit)
+			throws InterruptedException, TimeoutException {
+		long nanos = unit.toNanos(timeout);
+		long untilDeadline = deadline.remaining(TimeUnit.NANOSECONDS);
+		if (untilDeadline <= nanos) {
+			if (!done.await(untilDeadline, TimeUnit.NANOSECONDS)) {
+				expire();
+			}
+		} else if (!done.await(nanos, TimeUnit.NANOSECONDS)) {
+			throw new TimeoutException("No results for invocation "
+					+ correlationId + " on path " + pathId);
+		}
+		return getResult();
+	}
+
+	/**
+	 * Returns a stream of the results, which provides every part of the
+	 * results as soon as it arrives.
+	 * 
+	 * @param offset
+	 *            the number of statements to skip
+	 * @param limit
+	 *            the maximum number of statements to return, negative for no
+	 *            limit
+	 * @return the stream of the results
+	 */
+	public ResultStream getResults(int offset, int limit) {
+		return new ResultStream(this, offset, limit);
+	}
+
+	/**
+	 * Waits until the part of the results with the given index arrived, or
+	 * until the deadline passes.
+	 * 
+	 * @param index
+	 *            the index of the part
+	 * @return the part, or null if the results are complete or the deadline
+	 *         passed, and they have fewer parts
+	 * @throws InterruptedException
+	 *             if the current thread was interrupted while waiting
+	 * @throws CancellationException
+	 *             if the invocation was cancelled
+	 */
+	SetOfStatements awaitPart(int index) throws InterruptedException {
+		synchronized (parts) {
+			while (index >= parts.size() && done.getCount() > 0) {
+				if (!deadline.isBounded()) {
+					parts.wait();
+				} else if (deadline.hasPassed()) {
+					expire();
+				} else {
+					TimeUnit.NANOSECONDS.timedWait(parts, deadline
+							.remaining(TimeUnit.NANOSECONDS));
+				}
+			}
+			if (cancelled) {
+				throw new CancellationException("Invocation " + correlationId
+						+ " was cancelled");
+			}
+			return index < parts.size() ? parts.get(index) : null;
+		}
+	}
+
+	/**
+	 * Marks the invocation as done and logs how long the results took.
+	 */
+	private void finish() {
+		done.countDown();
+		if (logger.isDebugEnabled()) {
+			logger.debug(this + " done" + (incomplete ? " (incomplete)" : "")
+					+ ", first result after "
+					+ getTimeToFirstResult(TimeUnit.MILLISECONDS)
+					+ " ms, required results after "
+					+ getTimeToRequiredResults(TimeUnit.MILLISECONDS)
+					+ " ms, plugins: " + trace);
+		}
+	}
+
+	private long elapsed(long time, TimeUnit unit) {
+		if (time == NOT_YET) {
+			return NOT_YET;
+		}
+		return unit.convert(time - submitted, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Checks whether a part is known to be empty. The statements are never
+	 * read here, since a streamed result may be read once only, by its
+	 * consumer.
+	 */
+	private static boolean isEmpty(SetOfStatements statements) {
+		return size(statements) == 0;
+	}
+
+	/**
+	 * Returns the number of statements of a part if it is known without
+	 * reading them, or {@link StatementStatistics#UNKNOWN}.
+	 */
+	private static long size(SetOfStatements statements) {
+		if (statements instanceof StatementChunk) {
+			return ((StatementChunk) statements).size();
+		}
+		if (statements instanceof StatementStatistics) {
+			return ((StatementStatistics) statements).getStatementCount();
+		}
+		return StatementStatistics.UNKNOWN;
+	}
+
+	private SetOfStatements getResult() {
+		if (cancelled) {
+			throw new CancellationException("Invocation " + correlationId
+					+ " was cancelled");
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Invocation " + correlationId + " on path " + pathId;
+	}
+}
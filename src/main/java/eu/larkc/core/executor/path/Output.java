@@ -18,39 +18,103 @@
  */
 package eu.larkc.core.executor.path;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
 import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.StatementChunk;
 import eu.larkc.core.pluginManager.ControlMessage;
+import eu.larkc.core.pluginManager.Message;
 import eu.larkc.core.pluginManager.PluginManager;
 import eu.larkc.core.queue.Queue;
+import eu.larkc.core.queue.QueueListener;
 
 /**
  * This class implements an output. An output is used to get the output of a
  * workflow after executing it and providing the output to endpoints that are
  * connected to this output.
  * 
+ * The plug-in manager of the last plug-in answers the NEXT messages of a path
+ * one after the other, so the results on the path output queue arrive in the
+ * order the invocations were registered. Each result is handed to the oldest
+ * invocation still waiting for its results as soon as it arrives. The chunks
+ * of a streamed result are handed to the invocation one by one, so that they
+ * can be read before the last chunk arrived.
+ * 
+ * If the path is pipelined, at most as many NEXT messages as the pipeline
+ * depth are sent to the plug-ins at a time; further messages are held back
+ * until the results of an earlier invocation arrive.
+ * 
  * @author Norbert Lanzanasto
  * 
  */
-public class Output {
+public class Output implements QueueListener<SetOfStatements> {
+
+	private static Logger logger = LoggerFactory.getLogger(Output.class);
 
 	/** The output queue of the workflow that is connected to the output. */
 	private Queue<SetOfStatements> pathOutputQueue;
 	/** The plugin manager of the workflow that is connected to the output. */
 	private PluginManager workflowPluginManager;
+	/** The invocations waiting for their results, oldest first. */
+	private final LinkedList<Invocation> pendingInvocations;
+	/** The chunks received so far of a streamed result. */
+	private List<SetOfStatements> chunks;
+	/** The maximum number of pipelined NEXT messages sent at a time. */
+	private int pipelineDepth;
+	/** The number of pipelined NEXT messages whose results did not arrive. */
+	private int messagesInFlight;
+	/** The pipelined NEXT messages waiting to be sent, oldest first. */
+	private final LinkedList<ControlMessage> waitingMessages;
 
 	/**
 	 * Constructor to create a new sink.
 	 */
 	public Output() {
+		pendingInvocations = new LinkedList<Invocation>();
+		chunks = new ArrayList<SetOfStatements>();
+		pipelineDepth = 1;
+		messagesInFlight = 0;
+		waitingMessages = new LinkedList<ControlMessage>();
 	}
 
 	/**
-	 * Sends a message to the plugin manager.
+	 * Sends a message to the plugin manager. A pipelined NEXT message is held
+	 * back while the pipeline is full.
 	 * 
 	 * @param next
 	 */
-	public void accept(ControlMessage next) {
-		workflowPluginManager.accept(next);
+	public synchronized void accept(ControlMessage next) {
+		if (!next.isPipelined() || !next.getMessage().equals(Message.NEXT)) {
+			workflowPluginManager.accept(next);
+		} else if (messagesInFlight < pipelineDepth) {
+			messagesInFlight++;
+			workflowPluginManager.accept(next);
+		} else {
+			waitingMessages.add(next);
+		}
+	}
+
+	/**
+	 * Sets the maximum number of pipelined NEXT messages the plug-ins work on
+	 * at the same time.
+	 * 
+	 * @param depth
+	 *            the pipeline depth
+	 * @throws IllegalArgumentException
+	 *             if the depth is smaller than 1
+	 */
+	public synchronized void setPipelineDepth(int depth) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Pipeline depth must be >= 1: "
+					+ depth);
+		}
+		pipelineDepth = depth;
 	}
 
 	/**
@@ -61,15 +125,66 @@ public class Output {
 	 */
 	public void setPathOutputQueue(Queue<SetOfStatements> outputQueue) {
 		pathOutputQueue = outputQueue;
+		pathOutputQueue.addListener(this);
 	}
 
 	/**
-	 * Returns the next results that the workflow produces.
+	 * Registers an invocation that receives the next results of the workflow
+	 * that are not claimed by an invocation registered before. Has to be called
+	 * before the NEXT message of the invocation is sent.
 	 * 
-	 * @return the next results
+	 * @param invocation
+	 *            the invocation
 	 */
-	public SetOfStatements getNextResults() {
-		return pathOutputQueue.take();
+	public synchronized void register(Invocation invocation) {
+		pendingInvocations.add(invocation);
+	}
+
+	/**
+	 * Takes the element that was just put on the path output queue and
+	 * completes the oldest pending invocation once its results are complete.
+	 * If the last plug-in streams its results, the chunks are collected until
+	 * the end of the stream.
+	 * 
+	 * @see eu.larkc.core.queue.QueueListener#elementAdded(java.lang.Object)
+	 */
+	@Override
+	public synchronized void elementAdded(SetOfStatements e) {
+		SetOfStatements element = pathOutputQueue.take();
+		Invocation oldest = pendingInvocations.peek();
+		if (oldest != null) {
+			// streams of the results can already read this part
+			oldest.addResults(element);
+		}
+
+		SetOfStatements results;
+		if (StatementChunk.isEndOfStream(element) && chunks.isEmpty()) {
+			results = element;
+		} else {
+			chunks.add(element);
+			if (!StatementChunk.isEndOfStream(element)) {
+				return;
+			}
+			results = new ConcatenatedSetOfStatements(chunks);
+			chunks = new ArrayList<SetOfStatements>();
+		}
+
+		Invocation invocation = pendingInvocations.poll();
+		if (invocation == null) {
+			logger.warn("Discarding results that no invocation is waiting for.");
+		} else {
+			logger.debug("Completed {}", invocation);
+			invocation.complete(results);
+		}
+
+		if (messagesInFlight > 0) {
+			messagesInFlight--;
+			ControlMessage next = waitingMessages.poll();
+			if (next != null) {
+				messagesInFlight++;
+				workflowPluginManager.accept(next);
+			}
+		}
 	}
 
 	/**
@@ -18,15 +18,29 @@
  */
 package eu.larkc.core.executor.path;
 
+import java.util.UUID;
+
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.pluginManager.ControlMessage;
 import eu.larkc.core.pluginManager.Message;
+import eu.larkc.core.qos.Deadline;
+import eu.larkc.core.qos.QoSParameters;
+import eu.larkc.core.queue.Queue;
 
 /**
  * This class represents a path. One workflow can contain multiple paths. Each
  * path has to have exactly one input and one output. Multiple endpoints can be
  * associated with a path.
  * 
+ * Several queries can be in flight on a path at the same time. Each of them is
+ * an {@link Invocation} with its own correlation id, and receives only its own
+ * results.
+ * 
+ * A path with a pipeline depth greater than one is pipelined: the plug-ins of
+ * the path work on up to that many queries at the same time, each on a
+ * different one, so that a plug-in can compute the results of the next query
+ * while the following plug-ins are still busy with an earlier query.
+ * 
  * @author Norbert Lanzanasto
  * 
  */
@@ -39,6 +53,12 @@ public class Path implements PathInterface {
 	/** The output of this path. */
 	private Output output;
 
+	/** The number of queries the plug-ins work on at the same time. */
+	private int pipelineDepth;
+
+	/** The invocations started by execute whose results were not retrieved. */
+	private Queue<Invocation> detachedInvocations;
+
 	/**
 	 * Custom constructor that takes an input and an output as parameter.
 	 * 
@@ -50,9 +70,41 @@ public class Path implements PathInterface {
 	 *            the output.
 	 */
 	public Path(String pathId, Input in, Output out) {
+		this(pathId, in, out, 1);
+	}
+
+	/**
+	 * Custom constructor that takes an input, an output and the pipeline depth
+	 * as parameter.
+	 * 
+	 * @param pathId
+	 *            the id.
+	 * @param in
+	 *            the input.
+	 * @param out
+	 *            the output.
+	 * @param depth
+	 *            the pipeline depth, 1 if the path is not pipelined.
+	 * @throws IllegalArgumentException
+	 *             if the depth is smaller than 1
+	 */
+	public Path(String pathId, Input in, Output out, int depth) {
 		id = pathId;
 		input = in;
 		output = out;
+		output.setPipelineDepth(depth);
+		pipelineDepth = depth;
+		detachedInvocations = new Queue<Invocation>();
+	}
+
+	/**
+	 * Returns the number of queries the plug-ins of the path work on at the
+	 * same time.
+	 * 
+	 * @return the pipeline depth, 1 if the path is not pipelined
+	 */
+	public int getPipelineDepth() {
+		return pipelineDepth;
 	}
 
 	/*
@@ -62,11 +114,43 @@ public class Path implements PathInterface {
 	 * SetOfStatements)
 	 */
 	@Override
-	public void execute(SetOfStatements query) {
-		input.putQuery(query);
+	public synchronized void execute(SetOfStatements query) {
+		detachedInvocations.put(submit(query));
+	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.executor.path.PathInterface#submit(eu.larkc.core.data.
+	 * SetOfStatements)
+	 */
+	@Override
+	public Invocation submit(SetOfStatements query) {
+		return submit(query, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * eu.larkc.core.executor.path.PathInterface#submit(eu.larkc.core.data.
+	 * SetOfStatements, eu.larkc.core.qos.QoSParameters)
+	 */
+	@Override
+	public synchronized Invocation submit(SetOfStatements query,
+			QoSParameters qos) {
+		Invocation invocation = new Invocation(UUID.randomUUID().toString(),
+				id, Deadline.of(qos), qos == null ? 0 : qos
+						.getRequiredNumberOfAnswers());
+		// register before sending NEXT, the results may arrive any time after
+		output.register(invocation);
+		input.putQuery(query);
 		// send NEXT instruction to the manager of the last plugin
-		output.accept(new ControlMessage(Message.NEXT, id));
+		output.accept(new ControlMessage(Message.NEXT, id, invocation
+				.getCorrelationId(), pipelineDepth > 1, invocation
+				.getDeadline(), invocation.getTrace()));
+		return invocation;
 	}
 
 	/*
@@ -76,7 +160,37 @@ public class Path implements PathInterface {
 	 */
 	@Override
 	public SetOfStatements getNextResults() {
-		return output.getNextResults();
+		try {
+			Invocation invocation = detachedInvocations.takeInterruptibly();
+			if (invocation == null) {
+				return null;
+			}
+			return invocation.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see eu.larkc.core.executor.path.PathInterface#getNextResultStream(int,
+	 * int)
+	 */
+	@Override
+	public ResultStream getNextResultStream(int offset, int limit) {
+		Invocation invocation;
+		try {
+			invocation = detachedInvocations.takeInterruptibly();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		if (invocation == null) {
+			return null;
+		}
+		return invocation.getResults(offset, limit);
 	}
 
 }
@@ -19,6 +19,7 @@
 package eu.larkc.core.executor.path;
 
 import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.qos.QoSParameters;
 
 /**
  * Interface that defines the methods a path must have.
@@ -37,10 +38,50 @@ public interface PathInterface {
 	public void execute(SetOfStatements query);
 
 	/**
-	 * Method to retrieve the next results from the workflow.
+	 * Method to give the query to the input and execute the workflow. The
+	 * results of the query are only delivered to the returned invocation.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @return the handle of the invocation.
+	 */
+	public Invocation submit(SetOfStatements query);
+
+	/**
+	 * Method to give the query to the input and execute the workflow with the
+	 * given quality of service. Once the maximum runtime passed, the plug-ins
+	 * stop working on the query and the invocation returns the results
+	 * computed so far. Likewise, the plug-ins are stopped as soon as the
+	 * required number of answers arrived.
+	 * 
+	 * @param query
+	 *            the query.
+	 * @param qos
+	 *            the QoS parameters, may be null.
+	 * @return the handle of the invocation.
+	 */
+	public Invocation submit(SetOfStatements query, QoSParameters qos);
+
+	/**
+	 * Method to retrieve the results of the oldest query given to
+	 * {@link #execute(SetOfStatements)} whose results were not retrieved yet.
 	 * 
 	 * @return The results of the execution.
 	 */
 	public SetOfStatements getNextResults();
 
+	/**
+	 * Method to stream the results of the oldest query given to
+	 * {@link #execute(SetOfStatements)} whose results were not retrieved yet.
+	 * The results can be read while the workflow is still producing them.
+	 * 
+	 * @param offset
+	 *            the number of statements to skip
+	 * @param limit
+	 *            the maximum number of statements to return, negative for no
+	 *            limit
+	 * @return The stream of the results of the execution.
+	 */
+	public ResultStream getNextResultStream(int offset, int limit);
+
 }
@@ -0,0 +1,201 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.executor.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+
+import org.openrdf.model.Statement;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.SetOfStatementsImpl;
+import eu.larkc.core.data.StatementChunk;
+
+/**
+ * Iterates the results of an {@link Invocation} batch by batch, while the
+ * workflow is still producing them. {@link #hasNext()} blocks until the next
+ * batch arrived or the results are complete.
+ * 
+ * The batches are the parts in which the results arrive at the output of the
+ * path, e.g. the chunks streamed by the last plug-in. Only the window given by
+ * offset and limit is returned; a batch that lies completely inside the window
+ * is returned as it is, without copying its statements. The stream ends as
+ * soon as the limit is reached, without waiting for the remaining results.
+ * 
+ * If the deadline of the invocation passes, the stream ends after the batches
+ * that arrived so far and the invocation is flagged as incomplete.
+ */
+public class ResultStream implements CloseableIterator<SetOfStatements> {
+
+	private final Invocation invocation;
+	/** The number of statements still to skip. */
+	private int offset;
+	/** The number of statements still to return, negative for no limit. */
+	private int limit;
+	/** The index of the next part of the results to read. */
+	private int nextPart;
+	private SetOfStatements nextBatch;
+	private boolean isClosed;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param invocation
+	 *            the invocation whose results are iterated
+	 * @param offset
+	 *            the number of statements to skip
+	 * @param limit
+	 *            the maximum number of statements to return, negative for no
+	 *            limit
+	 */
+	ResultStream(Invocation invocation, int offset, int limit) {
+		if (invocation == null) {
+			throw new IllegalArgumentException();
+		}
+		this.invocation = invocation;
+		this.offset = Math.max(0, offset);
+		this.limit = limit;
+		this.nextPart = 0;
+		this.nextBatch = null;
+		this.isClosed = false;
+	}
+
+	/**
+	 * Returns the invocation whose results are iterated.
+	 * 
+	 * @return the invocation
+	 */
+	public Invocation getInvocation() {
+		return invocation;
+	}
+
+	/**
+	 * Waits until the next batch of results arrived or the results are
+	 * complete.
+	 * 
+	 * @return true if there is a next batch
+	 * @throws CancellationException
+	 *             if the invocation was cancelled
+	 * @throws RuntimeException
+	 *             if the stream is closed or the current thread was
+	 *             interrupted while waiting
+	 */
+	public boolean hasNext() {
+		if (isClosed) {
+			throw new RuntimeException("Iterator is closed!");
+		}
+		while (nextBatch == null && limit != 0) {
+			SetOfStatements part;
+			try {
+				part = invocation.awaitPart(nextPart);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(
+						"Interrupted while waiting for the results of "
+								+ invocation, e);
+			}
+			if (part == null) {
+				return false;
+			}
+			nextPart++;
+			nextBatch = window(part);
+		}
+		return nextBatch != null;
+	}
+
+	/**
+	 * Returns the next batch of results, waiting for it if necessary.
+	 * 
+	 * @return the next batch
+	 */
+	public SetOfStatements next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		SetOfStatements batch = nextBatch;
+		nextBatch = null;
+		return batch;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops iterating the results. The invocation is not affected; use
+	 * {@link #cancel()} to discard its results.
+	 */
+	public void close() {
+		isClosed = true;
+		nextBatch = null;
+	}
+
+	public boolean isClosed() {
+		return isClosed;
+	}
+
+	/**
+	 * Cancels the invocation and closes the stream.
+	 */
+	public void cancel() {
+		invocation.cancel(false);
+		close();
+	}
+
+	/**
+	 * Cuts the part of the results that lies inside the window.
+	 * 
+	 * @param part
+	 *            a part of the results
+	 * @return the statements inside the window, or null if there are none
+	 */
+	private SetOfStatements window(SetOfStatements part) {
+		if (part instanceof StatementChunk
+				&& ((StatementChunk) part).size() == 0) {
+			// end-of-stream marker
+			return null;
+		}
+		if (offset == 0 && limit < 0) {
+			return part;
+		}
+
+		List<Statement> statements = new ArrayList<Statement>();
+		CloseableIterator<Statement> it = part.getStatements();
+		try {
+			while (limit != 0 && it.hasNext()) {
+				Statement statement = it.next();
+				if (offset > 0) {
+					offset--;
+				} else {
+					statements.add(statement);
+					if (limit > 0) {
+						limit--;
+					}
+				}
+			}
+		} finally {
+			it.close();
+		}
+		return statements.isEmpty() ? null : new SetOfStatementsImpl(
+				statements);
+	}
+}
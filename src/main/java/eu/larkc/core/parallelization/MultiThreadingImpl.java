@@ -29,14 +29,11 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
-import org.openrdf.model.Statement;
-import org.openrdf.model.impl.StatementImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
 import eu.larkc.core.data.SetOfStatements;
-import eu.larkc.core.data.SetOfStatementsImpl;
 import eu.larkc.plugin.Plugin;
 
 /**
@@ -185,7 +182,8 @@ public class MultiThreadingImpl implements MultiThreading {
 	}
 
 	/**
-	 * Merges the individual outputs into a synchronized result set.
+	 * Merges the individual outputs into a synchronized result set. The
+	 * outputs are not copied; the result is a view of all of them.
 	 * 
 	 * @return SetOfStatements
 	 * @throws MultiThreadingException
@@ -193,7 +191,7 @@ public class MultiThreadingImpl implements MultiThreading {
 	public synchronized SetOfStatements getSynchronizedResults()
 			throws MultiThreadingException {
 
-		List<Statement> allStatements = new ArrayList<Statement>();
+		List<SetOfStatements> outputs = new ArrayList<SetOfStatements>();
 
 		if (futures != null) {
 
@@ -209,21 +207,7 @@ public class MultiThreadingImpl implements MultiThreading {
 					try {
 
 						if (instances != null) {
-
-							CloseableIterator<Statement> itInput = instances
-									.get().getStatements();
-
-							while (itInput.hasNext()) {
-
-								Statement statement = itInput.next();
-
-								if (statement != null) {
-									allStatements.add(new StatementImpl(
-											statement.getSubject(), statement
-													.getPredicate(), statement
-													.getObject()));
-								}
-							}
+							outputs.add(instances.get());
 						}
 					} catch (InterruptedException e) {
 						throw new MultiThreadingException(e.getMessage());
@@ -233,10 +217,7 @@ public class MultiThreadingImpl implements MultiThreading {
 					}
 				}
 
-				SetOfStatementsImpl output = new SetOfStatementsImpl(
-						allStatements);
-
-				return output;
+				return new ConcatenatedSetOfStatements(outputs);
 			}
 		} else
 			return null;
@@ -0,0 +1,117 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openrdf.model.Statement;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.StatementChunk;
+import eu.larkc.core.data.StatementSink;
+import eu.larkc.core.queue.Queue;
+
+/**
+ * The sink a plug-in manager hands to a streaming plug-in. Emitted statements
+ * are collected into chunks of a bounded size, which are put on the output
+ * queues of the plug-in as soon as they are full. {@link #close()} terminates
+ * the stream.
+ */
+public class ChunkedOutput implements StatementSink {
+
+	private final List<Queue<SetOfStatements>> queues;
+	private final int chunkSize;
+	private List<Statement> buffer;
+	private boolean closed;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param outputQueues
+	 *            the queues to put the chunks on, may be null
+	 * @param chunkSize
+	 *            the maximum number of statements in a chunk
+	 */
+	public ChunkedOutput(List<Queue<SetOfStatements>> outputQueues,
+			int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be >= 1: "
+					+ chunkSize);
+		}
+		if (outputQueues == null) {
+			outputQueues = Collections.emptyList();
+		}
+		this.queues = outputQueues;
+		this.chunkSize = chunkSize;
+		this.buffer = new ArrayList<Statement>();
+		this.closed = false;
+	}
+
+	public void emit(Statement statement) {
+		if (closed) {
+			throw new IllegalStateException("Output stream is closed!");
+		}
+		buffer.add(statement);
+		if (buffer.size() >= chunkSize) {
+			put(false);
+		}
+	}
+
+	public void emit(SetOfStatements statements) {
+		if (statements == null) {
+			return;
+		}
+		CloseableIterator<Statement> it = statements.getStatements();
+		try {
+			while (it.hasNext()) {
+				emit(it.next());
+			}
+		} finally {
+			it.close();
+		}
+	}
+
+	public void flush() {
+		if (!closed && !buffer.isEmpty()) {
+			put(false);
+		}
+	}
+
+	/**
+	 * Puts the remaining statements on the output queues as the last chunk of
+	 * the stream. Further calls have no effect.
+	 */
+	public void close() {
+		if (!closed) {
+			put(true);
+			closed = true;
+		}
+	}
+
+	private void put(boolean last) {
+		StatementChunk chunk = new StatementChunk(buffer, last);
+		buffer = new ArrayList<Statement>();
+		for (Queue<SetOfStatements> queue : queues) {
+			PluginManagerScheduler.put(queue, chunk);
+		}
+	}
+}
@@ -18,9 +18,24 @@
  */
 package eu.larkc.core.pluginManager;
 
+import eu.larkc.core.qos.Deadline;
+
 /**
- * This class represents a control message, containing the command and the path
- * id.
+ * This class represents a control message, containing the command, the path
+ * id and the correlation id of the invocation the message belongs to.
+ * 
+ * A pipelined NEXT message is passed on to the previous plug-ins as soon as it
+ * is received, instead of when the plug-in starts to work on it. The previous
+ * plug-ins can thus compute the input of the next query while the plug-in is
+ * still busy with an earlier one.
+ * 
+ * A NEXT message may carry the {@link Deadline} of the invocation. Once it is
+ * expired, the plug-in managers no longer invoke their plug-ins for the
+ * message, but still answer it so that the queries and results on the queues
+ * stay in order.
+ * 
+ * A NEXT message may also carry the {@link ExecutionTrace} of the invocation,
+ * in which the plug-in managers record when they worked on it.
  * 
  * @author Norbert Lanzanasto
  * 
@@ -29,6 +44,10 @@ public class ControlMessage {
 
 	private Message message;
 	private String pathId;
+	private String correlationId;
+	private boolean pipelined;
+	private Deadline deadline;
+	private ExecutionTrace trace;
 
 	/**
 	 * Constructor.
@@ -39,8 +58,85 @@ public class ControlMessage {
 	 *            the path id
 	 */
 	public ControlMessage(Message m, String p) {
+		this(m, p, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param m
+	 *            the message
+	 * @param p
+	 *            the path id
+	 * @param c
+	 *            the correlation id of the invocation
+	 */
+	public ControlMessage(Message m, String p, String c) {
+		this(m, p, c, false);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param m
+	 *            the message
+	 * @param p
+	 *            the path id
+	 * @param c
+	 *            the correlation id of the invocation
+	 * @param pipelined
+	 *            true if the message is passed on to the previous plug-ins as
+	 *            soon as it is received
+	 */
+	public ControlMessage(Message m, String p, String c, boolean pipelined) {
+		this(m, p, c, pipelined, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param m
+	 *            the message
+	 * @param p
+	 *            the path id
+	 * @param c
+	 *            the correlation id of the invocation
+	 * @param pipelined
+	 *            true if the message is passed on to the previous plug-ins as
+	 *            soon as it is received
+	 * @param deadline
+	 *            the deadline of the invocation, may be null
+	 */
+	public ControlMessage(Message m, String p, String c, boolean pipelined,
+			Deadline deadline) {
+		this(m, p, c, pipelined, deadline, null);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param m
+	 *            the message
+	 * @param p
+	 *            the path id
+	 * @param c
+	 *            the correlation id of the invocation
+	 * @param pipelined
+	 *            true if the message is passed on to the previous plug-ins as
+	 *            soon as it is received
+	 * @param deadline
+	 *            the deadline of the invocation, may be null
+	 * @param trace
+	 *            the execution trace of the invocation, may be null
+	 */
+	public ControlMessage(Message m, String p, String c, boolean pipelined,
+			Deadline deadline, ExecutionTrace trace) {
 		message = m;
 		pathId = p;
+		correlationId = c;
+		this.pipelined = pipelined;
+		this.deadline = deadline;
+		this.trace = trace;
 	}
 
 	/**
@@ -61,4 +157,51 @@ public class ControlMessage {
 		return pathId;
 	}
 
+	/**
+	 * Returns the correlation id of the invocation this message belongs to.
+	 * 
+	 * @return correlation id, or null if the message does not belong to a
+	 *         particular invocation
+	 */
+	public String getCorrelationId() {
+		return correlationId;
+	}
+
+	/**
+	 * Returns whether the message is passed on to the previous plug-ins as soon
+	 * as it is received.
+	 * 
+	 * @return true if the message is pipelined
+	 */
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	/**
+	 * Returns the deadline of the invocation this message belongs to.
+	 * 
+	 * @return the deadline, or null if the invocation has none
+	 */
+	public Deadline getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * Returns the execution trace of the invocation this message belongs to.
+	 * 
+	 * @return the trace, or null if the invocation is not traced
+	 */
+	public ExecutionTrace getTrace() {
+		return trace;
+	}
+
+	/**
+	 * Checks whether the deadline of the invocation is expired.
+	 * 
+	 * @return true if the work on the invocation has to stop
+	 */
+	public boolean isExpired() {
+		return deadline != null && deadline.isExpired();
+	}
+
 }
@@ -0,0 +1,137 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records when the plug-ins of a workflow started and finished to work on one
+ * invocation. The trace is passed along with the NEXT messages of the
+ * invocation, and every plug-in manager records the times of its own node of
+ * the workflow graph. All times are relative to the creation of the trace,
+ * i.e. to the submission of the query.
+ */
+public class ExecutionTrace {
+
+	/** The value of {@link System#nanoTime()} when the trace was created. */
+	private final long created;
+	private final ConcurrentMap<String, Long> startTimes;
+	private final ConcurrentMap<String, Long> endTimes;
+
+	/**
+	 * Constructor.
+	 */
+	public ExecutionTrace() {
+		created = System.nanoTime();
+		startTimes = new ConcurrentHashMap<String, Long>();
+		endTimes = new ConcurrentHashMap<String, Long>();
+	}
+
+	/**
+	 * Records that the plug-in of the given node was invoked.
+	 * 
+	 * @param node
+	 *            the id of the node
+	 */
+	public void started(String node) {
+		startTimes.putIfAbsent(node, System.nanoTime());
+	}
+
+	/**
+	 * Records that the plug-in of the given node returned its output, which
+	 * is put on the output queues next.
+	 * 
+	 * @param node
+	 *            the id of the node
+	 */
+	public void finished(String node) {
+		endTimes.put(node, System.nanoTime());
+	}
+
+	/**
+	 * Returns the ids of the nodes whose plug-ins were invoked.
+	 * 
+	 * @return the node ids, sorted
+	 */
+	public Set<String> getNodes() {
+		return Collections.unmodifiableSet(new TreeSet<String>(startTimes
+				.keySet()));
+	}
+
+	/**
+	 * Returns the time from the submission of the query until the plug-in of
+	 * the given node was invoked.
+	 * 
+	 * @param node
+	 *            the id of the node
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the time, or -1 if the plug-in was not invoked
+	 */
+	public long getStartTime(String node, TimeUnit unit) {
+		return elapsed(startTimes.get(node), unit);
+	}
+
+	/**
+	 * Returns the time from the submission of the query until the plug-in of
+	 * the given node finished.
+	 * 
+	 * @param node
+	 *            the id of the node
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the time, or -1 if the plug-in did not finish
+	 */
+	public long getEndTime(String node, TimeUnit unit) {
+		return elapsed(endTimes.get(node), unit);
+	}
+
+	private long elapsed(Long time, TimeUnit unit) {
+		if (time == null) {
+			return -1;
+		}
+		return unit.convert(time - created, TimeUnit.NANOSECONDS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (String node : getNodes()) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(node).append(" [")
+					.append(getStartTime(node, TimeUnit.MILLISECONDS))
+					.append(" ms, ")
+					.append(getEndTime(node, TimeUnit.MILLISECONDS))
+					.append(" ms]");
+		}
+		return sb.toString();
+	}
+}
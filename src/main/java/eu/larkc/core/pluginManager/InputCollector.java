@@ -0,0 +1,268 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.StatementChunk;
+import eu.larkc.core.queue.Queue;
+
+/**
+ * Collects the input of one plug-in invocation from the input queues without
+ * ever blocking. The plug-in manager calls {@link #collect()} whenever an
+ * element was added to one of the queues, and invokes the plug-in once the
+ * input is complete.
+ * 
+ * One element is taken from each of the needed queues. A stream of
+ * {@link StatementChunk}s counts as a single element once its last chunk has
+ * arrived.
+ * 
+ * If fewer elements are needed than there are queues, or the collector stops
+ * waiting, the queues that were not taken from still receive an element for
+ * the invocation. These late inputs are recorded in a map that is shared by
+ * the collectors of a plug-in manager, and the next collectors drop them
+ * before they take any input, so that the queues stay aligned with the
+ * invocations.
+ */
+public class InputCollector {
+
+	private final List<Queue<SetOfStatements>> pendingQueues;
+	private final boolean inOrder;
+	private int neededInputs;
+	private final List<SetOfStatements> inputs;
+
+	/** The queue of the stream that is currently collected, if any. */
+	private Queue<SetOfStatements> streamQueue;
+	private List<SetOfStatements> chunks;
+
+	/** The number of late inputs still to drop per queue. */
+	private final Map<Queue<SetOfStatements>, Integer> lateInputs;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param queues
+	 *            the input queues, may be null
+	 * @param neededInputs
+	 *            the number of queues an element is needed from; all queues
+	 *            if negative or larger than the number of queues
+	 * @param inOrder
+	 *            if true, the elements are taken from the queues in the order
+	 *            of the list; otherwise from the queues that provide an
+	 *            element first
+	 */
+	public InputCollector(List<Queue<SetOfStatements>> queues,
+			int neededInputs, boolean inOrder) {
+		this(queues, neededInputs, inOrder,
+				new HashMap<Queue<SetOfStatements>, Integer>());
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param queues
+	 *            the input queues, may be null
+	 * @param neededInputs
+	 *            the number of queues an element is needed from; all queues
+	 *            if negative or larger than the number of queues
+	 * @param inOrder
+	 *            if true, the elements are taken from the queues in the order
+	 *            of the list; otherwise from the queues that provide an
+	 *            element first
+	 * @param lateInputs
+	 *            the number of late inputs to drop per queue, which is
+	 *            updated by the collector
+	 */
+	public InputCollector(List<Queue<SetOfStatements>> queues,
+			int neededInputs, boolean inOrder,
+			Map<Queue<SetOfStatements>, Integer> lateInputs) {
+		this.pendingQueues = queues == null ? new ArrayList<Queue<SetOfStatements>>()
+				: new ArrayList<Queue<SetOfStatements>>(queues);
+		if (neededInputs < 0 || neededInputs > pendingQueues.size()) {
+			neededInputs = pendingQueues.size();
+		}
+		this.neededInputs = neededInputs;
+		this.inOrder = inOrder;
+		this.inputs = new ArrayList<SetOfStatements>();
+		this.streamQueue = null;
+		this.chunks = new ArrayList<SetOfStatements>();
+		this.lateInputs = lateInputs;
+	}
+
+	/**
+	 * Takes all elements that are available and needed.
+	 * 
+	 * @return true if the input is complete
+	 */
+	public boolean collect() {
+		while (hasNextChunk()) {
+			takeChunk();
+		}
+		return isComplete();
+	}
+
+	/**
+	 * Checks whether the next chunk of input is available.
+	 * 
+	 * @return true if {@link #takeChunk()} does not block
+	 */
+	public boolean hasNextChunk() {
+		dropLateInputs();
+		return nextQueue() != null;
+	}
+
+	/**
+	 * Takes the next chunk of input, which is a plain set of statements, a
+	 * {@link StatementChunk} or null. Each element that completes an input is
+	 * also added to the inputs returned by {@link #getInputs()}; the chunks of
+	 * a stream are added as one set of statements.
+	 * 
+	 * @return the next chunk
+	 * @throws IllegalStateException
+	 *             if no chunk is available
+	 */
+	public SetOfStatements takeChunk() {
+		dropLateInputs();
+		Queue<SetOfStatements> queue = nextQueue();
+		if (queue == null) {
+			throw new IllegalStateException("No input available");
+		}
+		SetOfStatements element = queue.take();
+		if (!StatementChunk.isEndOfStream(element)) {
+			streamQueue = queue;
+			chunks.add(element);
+		} else {
+			if (streamQueue == null) {
+				inputs.add(element);
+			} else {
+				chunks.add(element);
+				inputs.add(new ConcatenatedSetOfStatements(chunks));
+				chunks = new ArrayList<SetOfStatements>();
+				streamQueue = null;
+			}
+			pendingQueues.remove(queue);
+			neededInputs--;
+			if (neededInputs == 0) {
+				abandonPendingQueues();
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * Checks whether all needed inputs were taken.
+	 * 
+	 * @return true if the input is complete
+	 */
+	public boolean isComplete() {
+		return neededInputs <= 0;
+	}
+
+	/**
+	 * Stops collecting; the input is complete with the elements taken so far.
+	 * The chunks of an incomplete stream are dropped.
+	 */
+	public void stopWaiting() {
+		if (neededInputs > 0) {
+			abandonPendingQueues();
+		}
+		neededInputs = 0;
+		streamQueue = null;
+		chunks = new ArrayList<SetOfStatements>();
+	}
+
+	/**
+	 * Returns the complete elements taken from the queues. An element is null
+	 * if a previous plug-in did not compute any results.
+	 * 
+	 * @return the inputs
+	 */
+	public List<SetOfStatements> getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Returns the complete elements taken from the queues and forgets them, so
+	 * that the caller holds the only references to them.
+	 * 
+	 * @return the inputs
+	 */
+	public List<SetOfStatements> takeInputs() {
+		List<SetOfStatements> taken = new ArrayList<SetOfStatements>(inputs);
+		inputs.clear();
+		return taken;
+	}
+
+	private Queue<SetOfStatements> nextQueue() {
+		if (neededInputs <= 0) {
+			return null;
+		}
+		if (streamQueue != null) {
+			return streamQueue.isEmpty() ? null : streamQueue;
+		}
+		for (Queue<SetOfStatements> queue : pendingQueues) {
+			if (!queue.isEmpty() && !lateInputs.containsKey(queue)) {
+				return queue;
+			}
+			if (inOrder) {
+				break;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records that the queues not taken from owe an element of the current
+	 * invocation, which the next collectors drop.
+	 */
+	private void abandonPendingQueues() {
+		for (Queue<SetOfStatements> queue : pendingQueues) {
+			Integer late = lateInputs.get(queue);
+			lateInputs.put(queue, late == null ? 1 : late + 1);
+		}
+		pendingQueues.clear();
+	}
+
+	/**
+	 * Drops the late inputs of earlier invocations that are available. A late
+	 * stream is dropped chunk by chunk until its last chunk.
+	 */
+	private void dropLateInputs() {
+		Iterator<Map.Entry<Queue<SetOfStatements>, Integer>> it = lateInputs
+				.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Queue<SetOfStatements>, Integer> entry = it.next();
+			Queue<SetOfStatements> queue = entry.getKey();
+			while (entry.getValue() > 0 && !queue.isEmpty()) {
+				if (StatementChunk.isEndOfStream(queue.take())) {
+					entry.setValue(entry.getValue() - 1);
+				}
+			}
+			if (entry.getValue() == 0) {
+				it.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The place of a plug-in manager in the workflow graph, as computed by the
+ * executor from the topology of the workflow.
+ * 
+ * If the output of a plug-in feeds several plug-ins of a path, each of them
+ * sends a NEXT message for the same invocation. The plug-in has to be invoked
+ * only once per invocation though, since its output is put on all of its
+ * output queues; the schedule therefore lets only the first NEXT message of
+ * an invocation through and drops the others.
+ * 
+ * The schedule also records the start and end of the invocations of the
+ * plug-in in the {@link ExecutionTrace} of the invocation.
+ */
+public class NodeSchedule {
+
+	private final String nodeId;
+	/** The number of consumers of the output per path. */
+	private final Map<String, Integer> consumers;
+	/** The number of NEXT messages still expected per correlation id. */
+	private final Map<String, Integer> expectedMessages;
+
+	/**
+	 * Constructor for a node whose output has a single consumer on every path.
+	 * 
+	 * @param nodeId
+	 *            the id of the node in the workflow graph
+	 */
+	public NodeSchedule(String nodeId) {
+		this.nodeId = nodeId;
+		this.consumers = new HashMap<String, Integer>();
+		this.expectedMessages = new HashMap<String, Integer>();
+	}
+
+	/**
+	 * Returns the id of the node in the workflow graph.
+	 * 
+	 * @return the node id
+	 */
+	public String getNodeId() {
+		return nodeId;
+	}
+
+	/**
+	 * Sets the number of consumers of the output on a path, i.e. the number
+	 * of next plug-ins on the path, plus the output of the path if the node
+	 * is the last one.
+	 * 
+	 * @param pathId
+	 *            the path id
+	 * @param count
+	 *            the number of consumers
+	 */
+	public synchronized void setConsumers(String pathId, int count) {
+		consumers.put(pathId, count);
+	}
+
+	/**
+	 * Returns the number of consumers of the output on a path.
+	 * 
+	 * @param pathId
+	 *            the path id
+	 * @return the number of consumers, 1 if not set
+	 */
+	public synchronized int getConsumers(String pathId) {
+		Integer count = consumers.get(pathId);
+		return count == null ? 1 : count;
+	}
+
+	/**
+	 * Checks whether a control message has to be handled. Every message is
+	 * handled, except a NEXT message for an invocation whose NEXT message was
+	 * already received from another consumer.
+	 * 
+	 * @param message
+	 *            the control message
+	 * @return false if the message has to be dropped
+	 */
+	public synchronized boolean isFirstRequest(ControlMessage message) {
+		if (!message.getMessage().equals(Message.NEXT)
+				|| message.getCorrelationId() == null) {
+			return true;
+		}
+		int count = getConsumers(message.getPathId());
+		if (count <= 1) {
+			return true;
+		}
+		String correlationId = message.getCorrelationId();
+		Integer expected = expectedMessages.get(correlationId);
+		if (expected == null) {
+			expectedMessages.put(correlationId, count - 1);
+			return true;
+		}
+		if (expected <= 1) {
+			expectedMessages.remove(correlationId);
+		} else {
+			expectedMessages.put(correlationId, expected - 1);
+		}
+		return false;
+	}
+
+	/**
+	 * Records that the plug-in was invoked for the given NEXT message.
+	 * 
+	 * @param message
+	 *            the NEXT message
+	 */
+	public void started(ControlMessage message) {
+		if (message.getTrace() != null) {
+			message.getTrace().started(nodeId);
+		}
+	}
+
+	/**
+	 * Records that the plug-in finished the given NEXT message.
+	 * 
+	 * @param message
+	 *            the NEXT message
+	 */
+	public void finished(ControlMessage message) {
+		if (message.getTrace() != null) {
+			message.getTrace().finished(nodeId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return nodeId;
+	}
+}
@@ -118,6 +118,15 @@ public interface PluginManager {
 	 */
 	public void addOutputQueue(Queue<SetOfStatements> outputQueue, String pathId);
 
+	/**
+	 * Sets the place of the managed plugin in the workflow graph, i.e. the id
+	 * of its node and the number of consumers of its output on every path.
+	 * 
+	 * @param schedule
+	 *            the schedule of the node
+	 */
+	public void setSchedule(NodeSchedule schedule);
+
 	/**
 	 * The start method should be called to instruct the Plugin Manager that it
 	 * should begin the process of finding data for the plugin it manages and
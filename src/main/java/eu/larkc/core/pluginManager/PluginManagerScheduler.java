@@ -0,0 +1,198 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.queue.Queue;
+import eu.larkc.core.util.SystemProperties;
+
+/**
+ * The thread pool shared by the plug-in managers of all workflows. A plug-in
+ * manager only runs on a pool thread while it has work to do, i.e. while it
+ * handles control messages and invokes its plug-in; waiting for input does not
+ * occupy a thread.
+ * 
+ * The number of threads can be set with the system property
+ * {@value #THREADS_PROPERTY} or with {@link #setPoolSize(int)}. Idle threads
+ * are released after a while.
+ */
+public final class PluginManagerScheduler {
+
+	/** System property defining the number of pool threads. */
+	public static final String THREADS_PROPERTY = "larkc.pluginManager.threads";
+
+	/** Default number of pool threads. */
+	public static final int DEFAULT_POOL_SIZE = Math.max(4, 2 * Runtime
+			.getRuntime().availableProcessors());
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static Logger logger = LoggerFactory
+			.getLogger(PluginManagerScheduler.class);
+
+	private static final ThreadPoolExecutor pool;
+
+	/** Wakes up plug-in managers whose current invocation expires. */
+	private static final ScheduledThreadPoolExecutor timer;
+
+	private static int poolSize;
+
+	/** Number of pool threads currently blocked on a full queue. */
+	private static int blockedThreads = 0;
+
+	static {
+		poolSize = SystemProperties.getInt(THREADS_PROPERTY, DEFAULT_POOL_SIZE);
+
+		pool = new ThreadPoolExecutor(poolSize, poolSize, KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new PluginManagerThreadFactory());
+		pool.allowCoreThreadTimeOut(true);
+
+		timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "PluginManager-timer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		logger.debug("Initialized plug-in manager pool with {} threads",
+				poolSize);
+	}
+
+	private PluginManagerScheduler() {
+	}
+
+	/**
+	 * Runs the given task of a plug-in manager on a pool thread.
+	 * 
+	 * @param task
+	 *            the task
+	 */
+	public static void execute(Runnable task) {
+		pool.execute(task);
+	}
+
+	/**
+	 * Runs the given task of a plug-in manager on a pool thread after the
+	 * given delay.
+	 * 
+	 * @param task
+	 *            the task
+	 * @param delay
+	 *            the time until the task is run
+	 * @param unit
+	 *            the time unit of the delay
+	 */
+	public static void schedule(final Runnable task, long delay, TimeUnit unit) {
+		timer.schedule(new Runnable() {
+			public void run() {
+				pool.execute(task);
+			}
+		}, delay, unit);
+	}
+
+	/**
+	 * Puts an element on a queue. If the queue is full, the pool temporarily
+	 * gets an additional thread while the calling thread is blocked, so that
+	 * the plug-in manager draining the queue always finds a thread to run on.
+	 * 
+	 * @param queue
+	 *            the queue
+	 * @param element
+	 *            the element to put on the queue
+	 */
+	public static <E> void put(Queue<E> queue, E element) {
+		if (queue.offer(element)) {
+			return;
+		}
+		beginBlocking();
+		try {
+			queue.put(element);
+		} finally {
+			endBlocking();
+		}
+	}
+
+	/**
+	 * Returns the number of pool threads.
+	 * 
+	 * @return the number of threads that run plug-in managers
+	 */
+	public static synchronized int getPoolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * Sets the number of pool threads.
+	 * 
+	 * @param size
+	 *            the number of threads that run plug-in managers
+	 */
+	public static synchronized void setPoolSize(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be >= 1: "
+					+ size);
+		}
+		poolSize = size;
+		resize();
+		logger.debug("Set plug-in manager pool size to {}", size);
+	}
+
+	private static synchronized void beginBlocking() {
+		blockedThreads++;
+		resize();
+	}
+
+	private static synchronized void endBlocking() {
+		blockedThreads--;
+		resize();
+	}
+
+	private static void resize() {
+		int size = poolSize + blockedThreads;
+		if (size >= pool.getMaximumPoolSize()) {
+			pool.setMaximumPoolSize(size);
+			pool.setCorePoolSize(size);
+		} else {
+			pool.setCorePoolSize(size);
+			pool.setMaximumPoolSize(size);
+		}
+	}
+
+	/**
+	 * Creates the named pool threads.
+	 */
+	private static class PluginManagerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			return new Thread(r, "PluginManager-" + count.incrementAndGet());
+		}
+	}
+}
@@ -0,0 +1,533 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openrdf.model.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.SetOfStatementsImpl;
+import eu.larkc.core.data.workflow.WorkflowDescriptionPredicates;
+import eu.larkc.core.parallelization.MultiThreading;
+import eu.larkc.core.parallelization.MultiThreadingException;
+import eu.larkc.core.qos.Deadline;
+import eu.larkc.core.queue.Queue;
+import eu.larkc.core.queue.QueueListener;
+import eu.larkc.plugin.Plugin;
+
+/**
+ * The plugin management shared by the plug-in managers. The task runs on a
+ * thread of the {@link PluginManagerScheduler} whenever a control message or
+ * an input arrives, and returns the thread as soon as it has to wait for
+ * input. It collects the input of every NEXT message, answers the messages
+ * of expired invocations and puts the output of the plugin on the output
+ * queues.
+ * 
+ * The plug-in managers only implement how the plugin is reached, see
+ * {@link #invokePlugin(SetOfStatements)}.
+ */
+public abstract class PluginTask implements Runnable,
+		QueueListener<SetOfStatements> {
+
+	private static Logger logger = LoggerFactory.getLogger(PluginTask.class);
+
+	/** The plugin of the manager. */
+	protected final Plugin plugin;
+
+	private final Map<String, List<Queue<SetOfStatements>>> inputQueues;
+	private final Map<String, List<Queue<SetOfStatements>>> outputQueues;
+	private final Queue<ControlMessage> controlQueue;
+	private final int inputBehavior;
+
+	private final AtomicBoolean scheduled;
+	private volatile boolean started;
+	private volatile boolean stopped;
+	private volatile boolean stopWaiting;
+
+	/** The NEXT message that is currently handled. */
+	private volatile ControlMessage current;
+	/** The input of the current NEXT message. */
+	private volatile InputCollector collector;
+	/** The output of the current NEXT message if the plugin streams. */
+	private ChunkedOutput streamingOutput;
+	private boolean lastChunkSeen;
+	/**
+	 * Whether the current NEXT message was already answered because its
+	 * invocation expired; its input is dropped when it arrives.
+	 */
+	private volatile boolean answered;
+	/** Reschedules the task when the current invocation expires. */
+	private final Runnable wakeUp;
+	/** The late inputs of earlier invocations to drop per queue. */
+	private final Map<Queue<SetOfStatements>, Integer> lateInputs;
+
+	/**
+	 * Constructor. The queues are those of the plug-in manager; queues that
+	 * are added to the maps later are used as well.
+	 * 
+	 * @param thePlugin
+	 *            the plugin
+	 * @param theInputQueues
+	 *            the input queues per path id
+	 * @param theOutputQueues
+	 *            the output queues per path id
+	 * @param theControlQueue
+	 *            the queue of the control messages sent to the manager
+	 * @param theInputBehavior
+	 *            the number of inputs the plugin needs, see
+	 *            {@link Plugin#getInputBehavior()}
+	 */
+	protected PluginTask(Plugin thePlugin,
+			Map<String, List<Queue<SetOfStatements>>> theInputQueues,
+			Map<String, List<Queue<SetOfStatements>>> theOutputQueues,
+			Queue<ControlMessage> theControlQueue, int theInputBehavior) {
+		plugin = thePlugin;
+		inputQueues = theInputQueues;
+		outputQueues = theOutputQueues;
+		controlQueue = theControlQueue;
+		inputBehavior = theInputBehavior;
+		scheduled = new AtomicBoolean(false);
+		started = false;
+		stopped = false;
+		stopWaiting = false;
+		answered = false;
+		lateInputs = new HashMap<Queue<SetOfStatements>, Integer>();
+		wakeUp = new Runnable() {
+			public void run() {
+				schedule();
+			}
+		};
+	}
+
+	/**
+	 * Invokes the plugin with the complete input.
+	 * 
+	 * @param input
+	 *            the input
+	 * @return the output of the plugin
+	 */
+	protected abstract SetOfStatements invokePlugin(SetOfStatements input);
+
+	/**
+	 * Returns the place of the plugin in the workflow graph.
+	 * 
+	 * @return the schedule of the node
+	 */
+	protected abstract NodeSchedule getSchedule();
+
+	/**
+	 * Tells the previous plugins to send the input of the given NEXT message.
+	 * 
+	 * @param next
+	 *            the NEXT message this plugin received
+	 */
+	protected abstract void alertPrevious(ControlMessage next);
+
+	/**
+	 * Tells the previous plugins to stop.
+	 */
+	protected abstract void stopPrevious();
+
+	/**
+	 * Checks whether the input is fed to the plugin chunk by chunk, see
+	 * {@link Plugin#isStreaming()}. Streaming is not supported by default.
+	 * 
+	 * @return true if the plugin is invoked for every chunk
+	 */
+	protected boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * Merges the inputs collected from the input queues. The statements are
+	 * not copied: a single input is passed on as it is, several inputs are
+	 * concatenated while the plugin iterates them.
+	 * 
+	 * @param inputs
+	 *            the inputs, not null; the list holds the only references of
+	 *            the task to them
+	 * @return the input of the plugin
+	 */
+	protected SetOfStatements merge(List<SetOfStatements> inputs) {
+		if (inputs.isEmpty()) {
+			return new SetOfStatementsImpl();
+		} else if (inputs.size() == 1) {
+			return inputs.get(0);
+		}
+		return new ConcatenatedSetOfStatements(inputs);
+	}
+
+	/**
+	 * Called when the plugin returned or failed. The input is not used by the
+	 * plugin any more, but it may be part of the output. Nothing is done by
+	 * default.
+	 * 
+	 * @param input
+	 *            the input returned by {@link #merge(List)}
+	 * @param output
+	 *            the output of the plugin, null if it failed
+	 */
+	protected void invoked(SetOfStatements input, SetOfStatements output) {
+	}
+
+	/**
+	 * Starts listening on the input queues and handles the control messages
+	 * received so far.
+	 */
+	public void start() {
+		for (List<Queue<SetOfStatements>> queues : inputQueues.values()) {
+			for (Queue<SetOfStatements> queue : queues) {
+				queue.addListener(this);
+			}
+		}
+		started = true;
+		schedule();
+	}
+
+	/**
+	 * Runs the task on a pool thread unless it is already running.
+	 */
+	public void schedule() {
+		if (started && !stopped && scheduled.compareAndSet(false, true)) {
+			PluginManagerScheduler.execute(this);
+		}
+	}
+
+	public void run() {
+		// the plugin has to be initialized before this point (by the
+		// executor)
+		try {
+			while (!stopped && step()) {
+			}
+		} finally {
+			scheduled.set(false);
+		}
+		// work that arrived while the task was finishing
+		if (hasWork()) {
+			schedule();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see eu.larkc.core.queue.QueueListener#elementAdded(java.lang.Object)
+	 */
+	@Override
+	public void elementAdded(SetOfStatements queueElement) {
+		schedule();
+	}
+
+	/**
+	 * This method instructs the task to not longer wait for inputs (if it is
+	 * waiting).
+	 */
+	public void stopWaiting() {
+		if (current != null) {
+			stopWaiting = true;
+			schedule();
+		}
+	}
+
+	private boolean hasWork() {
+		if (stopped) {
+			return false;
+		}
+		InputCollector input = collector;
+		ControlMessage message = current;
+		if (input == null || message == null) {
+			return !controlQueue.isEmpty();
+		}
+		return stopWaiting || input.hasNextChunk()
+				|| (!answered && message.isExpired());
+	}
+
+	/**
+	 * Handles the next control message or continues with the current one.
+	 * 
+	 * @return false if the task has to wait for input or messages
+	 */
+	private boolean step() {
+		if (current == null) {
+			if (controlQueue.isEmpty()) {
+				return false;
+			}
+			ControlMessage controlMessage = controlQueue.take();
+
+			if (controlMessage.getMessage().equals(Message.STOP)) {
+				shutdown();
+				return false;
+			} else if (!controlMessage.getMessage().equals(Message.NEXT)) {
+				return true;
+			}
+
+			String pathId = controlMessage.getPathId();
+			if (!controlMessage.isPipelined()) {
+				alertPrevious(controlMessage);
+			}
+
+			if (inputQueues.get(pathId) == null) {
+				logger.debug("No input queues defined for {} ({})",
+						plugin.toString(), pathId);
+			}
+			// the join merges as many inputs as the input behavior asks
+			// for, taken from the queues that provide them first
+			collector = new InputCollector(inputQueues.get(pathId),
+					inputBehavior, false, lateInputs);
+			if (isStreaming()) {
+				streamingOutput = new ChunkedOutput(outputQueues.get(pathId),
+						plugin.getChunkSize());
+				lastChunkSeen = false;
+			}
+			answered = false;
+			current = controlMessage;
+			scheduleWakeUp(controlMessage);
+		}
+
+		if (stopWaiting) {
+			stopWaiting = false;
+			collector.stopWaiting();
+		}
+
+		if (!answered && current.isExpired()) {
+			answerExpired();
+		}
+
+		try {
+			if (streamingOutput != null) {
+				if (!invokeStreaming()) {
+					return false;
+				}
+			} else {
+				if (!collector.collect()) {
+					return false;
+				}
+				if (!answered) {
+					invoke(getInput(current.getPathId()), current.getPathId());
+				}
+			}
+		} catch (RuntimeException e) {
+			logger.error("Invocation of " + plugin.getIdentifier()
+					+ " failed", e);
+			// the next plugins must not wait for results forever
+			ControlMessage failed = current;
+			ChunkedOutput output = streamingOutput;
+			boolean alreadyAnswered = answered;
+			done();
+			if (alreadyAnswered) {
+				return true;
+			}
+			if (output != null) {
+				output.close();
+			} else {
+				putNextOutput(null, failed.getPathId());
+			}
+			return true;
+		}
+
+		done();
+		return true;
+	}
+
+	private void done() {
+		collector = null;
+		streamingOutput = null;
+		current = null;
+		answered = false;
+	}
+
+	/**
+	 * Makes sure the task runs when the deadline of the given message passes,
+	 * even if no input arrives until then.
+	 */
+	private void scheduleWakeUp(ControlMessage message) {
+		Deadline deadline = message.getDeadline();
+		if (deadline != null && deadline.isBounded() && !deadline.isExpired()) {
+			PluginManagerScheduler.schedule(wakeUp,
+					deadline.remaining(TimeUnit.NANOSECONDS),
+					TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Answers the current NEXT message of an expired invocation without
+	 * invoking the plugin any further. A streaming plugin ends its stream with
+	 * the chunks emitted so far.
+	 */
+	private void answerExpired() {
+		logger.debug("Invocation {} expired, skipping {}",
+				current.getCorrelationId(), plugin.getIdentifier());
+		answered = true;
+		if (streamingOutput != null) {
+			streamingOutput.close();
+		} else {
+			putNextOutput(new SetOfStatementsImpl(), current.getPathId());
+		}
+	}
+
+	/**
+	 * Invokes the plugin with the complete input and puts its output on the
+	 * output queues. A plugin whose input is splittable is invoked on several
+	 * threads by {@link MultiThreading}.
+	 * 
+	 * @param input
+	 *            the input
+	 * @param pathId
+	 *            path id
+	 */
+	private void invoke(SetOfStatements input, String pathId) {
+		getSchedule().started(current);
+		SetOfStatements output = null;
+		try {
+			if (isInputSplittable()) {
+				HashMap<List<Plugin>, SetOfStatements> map = new HashMap<List<Plugin>, SetOfStatements>();
+				List<Plugin> list = new ArrayList<Plugin>();
+				list.add(plugin);
+				map.put(list, input);
+				try {
+					MultiThreading.INSTANCE.invokeThreadPool(map);
+					output = MultiThreading.INSTANCE.getSynchronizedResults();
+				} catch (MultiThreadingException e) {
+					throw new RuntimeException("Parallel invocation of "
+							+ plugin.getIdentifier() + " failed", e);
+				}
+			} else {
+				output = invokePlugin(input);
+			}
+		} finally {
+			invoked(input, output);
+		}
+
+		getSchedule().finished(current);
+		putNextOutput(output, pathId);
+	}
+
+	private boolean isInputSplittable() {
+		CloseableIterator<Statement> statements = plugin.getPluginParameters()
+				.getStatements();
+		try {
+			while (statements.hasNext()) {
+				if (statements
+						.next()
+						.getPredicate()
+						.stringValue()
+						.equals(WorkflowDescriptionPredicates.IS_INPUT_SPLITTABLE_URI
+								.stringValue())) {
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			statements.close();
+		}
+	}
+
+	/**
+	 * Collects the complete inputs of the current NEXT message.
+	 * 
+	 * @return the input of the plugin
+	 */
+	private SetOfStatements getInput(String pathId) {
+		List<SetOfStatements> inputs = new ArrayList<SetOfStatements>();
+
+		for (SetOfStatements queueElement : collector.takeInputs()) {
+			if (queueElement == null) {
+				logger.warn("No data in input queue. Found a NULL element in the input queue, probably some plug-in did not compute any results.");
+			} else {
+				logger.debug("Used input queue on {} for plugin {}", pathId,
+						plugin.getIdentifier());
+				inputs.add(queueElement);
+			}
+		}
+		return merge(inputs);
+	}
+
+	/**
+	 * Feeds the input of a streaming plug-in to it chunk by chunk, as soon as
+	 * the chunks arrive on the input queues, and streams the output of the
+	 * plug-in to the output queues.
+	 * 
+	 * @return true if the whole input was fed to the plug-in, or dropped
+	 *         because the invocation expired
+	 */
+	private boolean invokeStreaming() {
+		while (collector.hasNextChunk()) {
+			SetOfStatements chunk = collector.takeChunk();
+			if (!answered && current.isExpired()) {
+				answerExpired();
+			}
+			if (answered) {
+				// the input of an expired invocation is dropped
+				continue;
+			}
+			if (chunk == null) {
+				logger.warn("No data in input queue. Found a NULL element in the input queue, probably some plug-in did not compute any results.");
+				chunk = new SetOfStatementsImpl();
+			}
+			lastChunkSeen = collector.isComplete();
+			getSchedule().started(current);
+			plugin.invokeStreaming(chunk, lastChunkSeen, streamingOutput);
+		}
+		if (!collector.isComplete()) {
+			return false;
+		}
+		if (answered) {
+			return true;
+		}
+
+		if (!lastChunkSeen) {
+			getSchedule().started(current);
+			plugin.invokeStreaming(new SetOfStatementsImpl(), true,
+					streamingOutput);
+		}
+		getSchedule().finished(current);
+		streamingOutput.close();
+		return true;
+	}
+
+	/**
+	 * This method should be called to put an output on the output queue.
+	 * 
+	 * @param theF
+	 *            The element to put on the output queue
+	 */
+	private void putNextOutput(SetOfStatements theF, String pathId) {
+		logger.debug("Wrote data to output queues ...");
+		for (Queue<SetOfStatements> queue : outputQueues.get(pathId)) {
+			PluginManagerScheduler.put(queue, theF);
+		}
+	}
+
+	private void shutdown() {
+		stopped = true;
+		logger.debug("Plugin is shutting down ...");
+		stopPrevious();
+		plugin.shutdown();
+	}
+}
@@ -23,26 +23,26 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.openrdf.model.Statement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.ConcatenatedSetOfStatements;
+import eu.larkc.core.data.EncodedSetOfStatements;
+import eu.larkc.core.data.OffHeapSetOfStatements;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.SetOfStatementsImpl;
-import eu.larkc.core.data.workflow.WorkflowDescriptionPredicates;
-import eu.larkc.core.parallelization.MultiThreading;
-import eu.larkc.core.parallelization.MultiThreadingException;
 import eu.larkc.core.pluginManager.ControlMessage;
 import eu.larkc.core.pluginManager.Message;
+import eu.larkc.core.pluginManager.NodeSchedule;
 import eu.larkc.core.pluginManager.PluginManager;
+import eu.larkc.core.pluginManager.PluginManagerScheduler;
+import eu.larkc.core.pluginManager.PluginTask;
 import eu.larkc.core.queue.Queue;
-import eu.larkc.core.queue.QueueListener;
 import eu.larkc.plugin.Plugin;
 
 /**
  * LocalPluginManager is a particular implementation of PluginManger that runs
- * within a thread on a local machine. A pipeline made using
+ * on the threads of the {@link PluginManagerScheduler} on a local machine. A pipeline made using
  * LocalPluginManager's has a number of strongly type queues between each
  * PluginManager that represent the input and output streams to and from the
  * plugin in question.
@@ -72,8 +72,8 @@ public class LocalPluginManager implements PluginManager {
 	/** The PluginManagers managing the previous plugins in the pipeline. */
 	private List<PluginManager> mPreviousPlugins;
 
-	/** The thread that the plugin management goes on within. */
-	private PluginThread pluginThread;
+	/** The task that the plugin management goes on within. */
+	private PluginTask pluginTask;
 
 	/**
 	 * The queues from which input messages will come from the previous plugin
@@ -96,6 +96,9 @@ public class LocalPluginManager implements PluginManager {
 	 */
 	private int inputBehavior;
 
+	/** The place of the plugin in the workflow graph. */
+	private NodeSchedule nodeSchedule;
+
 	/**
 	 * Constructor that takes only the plugin as input (input and output queues
 	 * have to be set later).
@@ -110,8 +113,10 @@ public class LocalPluginManager implements PluginManager {
 		outputQueues = new HashMap<String, List<Queue<SetOfStatements>>>();
 		mControlQueue = new Queue<ControlMessage>();
 		inputBehavior = plugin.getInputBehavior();
+		nodeSchedule = new NodeSchedule(String.valueOf(plugin
+				.getIdentifier()));
 
-		setThread(new PluginThread());
+		setTask(new LocalPluginTask());
 
 		logger.debug("Initialized plugin manager for {}", mPlugin.getClass());
 	}
@@ -137,8 +142,10 @@ public class LocalPluginManager implements PluginManager {
 		mPlugin = plugin;
 		mPreviousPlugins = new ArrayList<PluginManager>();
 		inputBehavior = plugin.getInputBehavior();
+		nodeSchedule = new NodeSchedule(String.valueOf(plugin
+				.getIdentifier()));
 
-		setThread(new PluginThread());
+		setTask(new LocalPluginTask());
 
 		logger.debug("Initialized plugin manager for {}", mPlugin.getClass());
 	}
@@ -190,7 +197,18 @@ public class LocalPluginManager implements PluginManager {
 	 *            the message
 	 */
 	public void accept(ControlMessage message) {
+		if (!nodeSchedule.isFirstRequest(message)) {
+			// another next plugin already requested this invocation
+			return;
+		}
+		if (message.isPipelined()) {
+			// the previous plugins start on the request right away
+			alertPrevious(message);
+		}
 		mControlQueue.put(message);
+		if (pluginTask != null) {
+			pluginTask.schedule();
+		}
 	}
 
 	/**
@@ -227,22 +245,41 @@ public class LocalPluginManager implements PluginManager {
 
 	/**
 	 * This method should be called in order to tell the previous plugin in the
-	 * pipeline to send the next piece of input on the input queue.
+	 * pipeline to send the next piece of input on the input queue. The
+	 * correlation id and the deadline of the invocation are passed on to the
+	 * previous plugin.
+	 * 
+	 * @param next
+	 *            the NEXT message this plugin received
 	 */
-	protected void alertPrevious(String pathId) {
+	protected void alertPrevious(ControlMessage next) {
 		for (PluginManager manager : mPreviousPlugins) {
-			manager.accept(new ControlMessage(Message.NEXT, pathId));
+			manager.accept(new ControlMessage(Message.NEXT, next.getPathId(),
+					next.getCorrelationId(), next.isPipelined(), next
+					.getDeadline(), next.getTrace()));
 		}
 	}
 
+	/**
+	 * Sets the place of the plugin in the workflow graph.
+	 * 
+	 * @param theSchedule
+	 *            the schedule of the node
+	 * 
+	 * @see eu.larkc.core.pluginManager.PluginManager#setSchedule(eu.larkc.core.pluginManager.NodeSchedule)
+	 */
+	public void setSchedule(NodeSchedule theSchedule) {
+		nodeSchedule = theSchedule;
+	}
+
 	/**
 	 * Start.
 	 * 
 	 * @see eu.larkc.core.pluginManager.PluginManager#start()
 	 */
 	public void start() {
-		if (pluginThread != null) {
-			pluginThread.start();
+		if (pluginTask != null) {
+			pluginTask.start();
 		}
 	}
 
@@ -252,186 +289,138 @@ public class LocalPluginManager implements PluginManager {
 	 * @see eu.larkc.core.pluginManager.PluginManager#stopWaiting()
 	 */
 	public void stopWaiting() {
-		if (pluginThread != null) {
-			pluginThread.stopWaiting();
+		if (pluginTask != null) {
+			pluginTask.stopWaiting();
 		}
 	}
 
 	/**
-	 * This method is used to specify the thread in which the plugin management
+	 * This method is used to specify the task in which the plugin management
 	 * occurs.
 	 * 
-	 * @param theThread
-	 *            The Thread in which the plugin management occurs
+	 * @param theTask
+	 *            The task in which the plugin management occurs
 	 */
-	protected void setThread(PluginThread theThread) {
-		pluginThread = theThread;
+	protected void setTask(PluginTask theTask) {
+		pluginTask = theTask;
 	}
 
-	class PluginThread extends Thread implements QueueListener<SetOfStatements> {
+	/**
+	 * The plugin management, which invokes the plugin on the thread of the
+	 * task.
+	 */
+	class LocalPluginTask extends PluginTask {
 
-		private int neededInputs;
-		private ArrayList<Statement> statements;
-		private boolean isWaiting;
+		/** The inputs of the current invocation that were moved off the heap. */
+		private final List<OffHeapSetOfStatements> offHeapInputs;
 
-		public PluginThread() {
-			super("LocalPluginManager");
-			neededInputs = inputBehavior;
-			statements = new ArrayList<Statement>();
-			isWaiting = false;
+		LocalPluginTask() {
+			super(mPlugin, inputQueues, outputQueues, mControlQueue,
+					inputBehavior);
+			offHeapInputs = new ArrayList<OffHeapSetOfStatements>();
 		}
 
-		public void run() {
-			// the plugin has to be initialized before this point (by the
-			// executor)
-			// mPlugin.initialise();
-			String pathId;
-
-			for (;;) {
-				ControlMessage controlMessage = getNextControlMessage();
-
-				if (controlMessage.getMessage().equals(Message.NEXT)) {
-					pathId = controlMessage.getPathId();
-					alertPrevious(pathId);
-
-					SetOfStatements input = getNextInput(pathId);
-					SetOfStatements output = null;
-					CloseableIterator<Statement> statements = mPlugin
-							.getPluginParameters().getStatements();
-
-					Statement stmt = null;
-					Statement tmpStmt = null;
-
-					while (statements.hasNext()) {
-						tmpStmt = statements.next();
-						if (tmpStmt
-								.getPredicate()
-								.stringValue()
-								.equals(WorkflowDescriptionPredicates.IS_INPUT_SPLITTABLE_URI
-										.stringValue())) {
-							stmt = tmpStmt;
-							break;
-						}
-					}
+		@Override
+		protected SetOfStatements invokePlugin(SetOfStatements input) {
+			return mPlugin.invoke(input);
+		}
 
-					if (stmt != null) {
-						HashMap<List<Plugin>, SetOfStatements> map = new HashMap<List<Plugin>, SetOfStatements>();
-						List<Plugin> list = new ArrayList<Plugin>();
-						list.add(mPlugin);
-						map.put(list, input);
-						try {
-							MultiThreading.INSTANCE.invokeThreadPool(map);
-							output = MultiThreading.INSTANCE
-									.getSynchronizedResults();
-						} catch (MultiThreadingException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-					} else {
-						output = mPlugin.invoke(input);
-					}
+		@Override
+		protected NodeSchedule getSchedule() {
+			return nodeSchedule;
+		}
 
-					putNextOutput(output, pathId);
-				} else if (controlMessage.getMessage().equals(Message.STOP)) {
-					break;
-				}
-			}
-			logger.debug("Plugin is shutting down ...");
-			stopPrevious();
-			mPlugin.shutdown();
+		@Override
+		protected void alertPrevious(ControlMessage next) {
+			LocalPluginManager.this.alertPrevious(next);
+		}
+
+		@Override
+		protected void stopPrevious() {
+			LocalPluginManager.this.stopPrevious();
+		}
+
+		@Override
+		protected boolean isStreaming() {
+			return mPlugin.isStreaming();
 		}
 
 		/**
-		 * This method should be called to get the next input from the input
-		 * queues.
-		 * 
-		 * @return the next element on the input queue
+		 * Merges the inputs without copying them, after moving large inputs
+		 * off the heap. An input is replaced in the list as soon as it was
+		 * moved, so that the heap original can be collected while the plugin
+		 * runs.
 		 */
-		private synchronized SetOfStatements getNextInput(String pathId) {
-			statements = new ArrayList<Statement>();
-			CloseableIterator<Statement> it;
-
-			if (inputQueues.get(pathId) != null) {
-				int numberOfInputs = inputQueues.get(pathId).size();
-
-				if (inputBehavior < 0 || inputBehavior > numberOfInputs) {
-					neededInputs = numberOfInputs;
-					logger.debug("Use standard input behavior for {}: {}",
-							mPlugin.toString(), neededInputs);
-				} else {
-					neededInputs = inputBehavior;
-					logger.debug("Found input behavior for {}: {}",
-							mPlugin.toString(), neededInputs);
-				}
-				while (neededInputs > 0) {
-					for (Queue<SetOfStatements> queue : inputQueues.get(pathId)) {
-						SetOfStatements queueElement = queue.take();
-						if (queueElement == null) {
-							logger.warn("No data in input queue. Found a NULL element in the input queue, probably some plug-in did not compute any results.");
-						} else {
-							logger.debug(
-									"Used input queue on {} for plugin {}",
-									pathId, mPlugin.getIdentifier());
-							it = queueElement.getStatements();
-							while (it.hasNext()) {
-								statements.add(it.next());
-							}
-						}
-						neededInputs--;
-					}
-				}
-			} else {
-				logger.debug("No input queues defined for {} ({})",
-						mPlugin.toString(), pathId);
+		@Override
+		protected SetOfStatements merge(List<SetOfStatements> inputs) {
+			for (int i = 0; i < inputs.size(); i++) {
+				inputs.set(i, moveOffHeap(inputs.get(i)));
 			}
-			return new SetOfStatementsImpl(statements);
+			return super.merge(inputs);
 		}
 
 		/**
-		 * This method should be called to put an output on the output queue.
-		 * 
-		 * @param theF
-		 *            The element to put on the output queue
+		 * Gives up the ownership of the inputs that were moved off the heap.
+		 * The iterators the plugin opened on them keep them readable for the
+		 * output until they are closed or exhausted. An input the plugin passed
+		 * on as (part of) its output is owned by the next plugins from now on;
+		 * a plugin that keeps an input in any other way takes a reference with
+		 * {@link OffHeapSetOfStatements#retain()}.
 		 */
-		private void putNextOutput(SetOfStatements theF, String pathId) {
-			logger.debug("Wrote data to output queues ...");
-			for (Queue<SetOfStatements> queue : outputQueues.get(pathId)) {
-				queue.put(theF);
+		@Override
+		protected void invoked(SetOfStatements input, SetOfStatements output) {
+			for (OffHeapSetOfStatements offHeap : offHeapInputs) {
+				if (!contains(output, offHeap)) {
+					offHeap.close();
+				}
 			}
+			offHeapInputs.clear();
 		}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see eu.larkc.core.queue.QueueListener#elementAdded(java.lang.Object)
-		 */
-		@Override
-		public synchronized void elementAdded(SetOfStatements queueElement) {
-			logger.debug("Element added: {}, {}", isWaiting, neededInputs - 1);
-			if (isWaiting) {
-				if (queueElement == null) {
-					logger.warn("No data in input queue. Found a NULL element in the input queue, probably some plug-in did not compute any results.");
-				} else {
-					CloseableIterator<Statement> it = queueElement
-							.getStatements();
-					while (it.hasNext()) {
-						statements.add(it.next());
+		private boolean contains(SetOfStatements output, SetOfStatements input) {
+			if (output == input) {
+				return true;
+			}
+			if (output instanceof ConcatenatedSetOfStatements) {
+				for (SetOfStatements part : ((ConcatenatedSetOfStatements) output)
+						.getParts()) {
+					if (contains(part, input)) {
+						return true;
 					}
 				}
-				neededInputs--;
-				this.notify();
 			}
+			return false;
 		}
 
 		/**
-		 * This method instructs the thread to not longer wait for inputs (if it
-		 * is waiting).
+		 * Moves an input with more statements than
+		 * {@link OffHeapSetOfStatements#getThreshold()} off the heap, so that it
+		 * does not burden the garbage collector while the plug-in works on it.
+		 * Only in-memory inputs, whose size is known without iterating them,
+		 * are moved.
 		 */
-		public synchronized void stopWaiting() {
-			if (isWaiting) {
-				neededInputs = 0;
-				this.notify();
+		private SetOfStatements moveOffHeap(SetOfStatements input) {
+			long threshold = OffHeapSetOfStatements.getThreshold();
+			if (threshold <= 0) {
+				return input;
+			}
+			long size;
+			if (input instanceof SetOfStatementsImpl) {
+				size = ((SetOfStatementsImpl) input).getData().size();
+			} else if (input instanceof EncodedSetOfStatements) {
+				size = ((EncodedSetOfStatements) input).size();
+			} else {
+				return input;
+			}
+			if (size <= threshold) {
+				return input;
 			}
+			logger.debug("Moving {} input statements of plugin {} off the heap",
+					size, mPlugin.getIdentifier());
+			OffHeapSetOfStatements offHeap = new OffHeapSetOfStatements(
+					input.getStatements());
+			offHeapInputs.add(offHeap);
+			return offHeap;
 		}
 	}
 
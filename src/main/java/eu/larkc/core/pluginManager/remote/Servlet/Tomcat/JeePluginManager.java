@@ -26,24 +26,20 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
 import org.openrdf.model.impl.URIImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.SetOfStatementsImpl;
-import eu.larkc.core.data.workflow.WorkflowDescriptionPredicates;
-import eu.larkc.core.parallelization.MultiThreading;
-import eu.larkc.core.parallelization.MultiThreadingException;
 import eu.larkc.core.pluginManager.ControlMessage;
 import eu.larkc.core.pluginManager.Message;
+import eu.larkc.core.pluginManager.NodeSchedule;
 import eu.larkc.core.pluginManager.PluginManager;
+import eu.larkc.core.pluginManager.PluginTask;
 import eu.larkc.core.pluginManager.remote.Servlet.Tomcat.servlet.HttpRequest;
 import eu.larkc.core.queue.Queue;
-import eu.larkc.core.queue.QueueListener;
 import eu.larkc.plugin.Plugin;
 
 /**
@@ -80,8 +76,8 @@ public class JeePluginManager implements PluginManager {
 	/** The PluginManagers managing the previous plugins in the pipeline. */
 	private List<PluginManager> mPreviousPlugins;
 
-	/** The thread that the plugin management goes on within. */
-	private PluginThread pluginThread;
+	/** The task that the plugin management goes on within. */
+	private PluginTask pluginTask;
 
 	/**
 	 * The queues from which input messages will come from the previous plugin
@@ -104,6 +100,9 @@ public class JeePluginManager implements PluginManager {
 	 */
 	private int inputBehavior;
 
+	/** The place of the plugin in the workflow graph. */
+	private NodeSchedule nodeSchedule;
+
 	/**
 	 * Constructor that takes only the plugin as input (input and output queues
 	 * have to be set later).
@@ -119,8 +118,10 @@ public class JeePluginManager implements PluginManager {
 		outputQueues = new HashMap<String, List<Queue<SetOfStatements>>>();
 		mControlQueue = new Queue<ControlMessage>();
 		inputBehavior = plugin.getInputBehavior();
+		nodeSchedule = new NodeSchedule(String.valueOf(plugin
+				.getIdentifier()));
 
-		setThread(new PluginThread());
+		setTask(new JeePluginTask());
 
 		logger.debug("Initialized plugin manager for " + mPlugin.getClass());
 	}
@@ -147,7 +148,10 @@ public class JeePluginManager implements PluginManager {
 		jeeResource = resource;
 		mPlugin = plugin;
 		mPreviousPlugins = new ArrayList<PluginManager>();
-		setThread(new PluginThread());
+		inputBehavior = plugin.getInputBehavior();
+		nodeSchedule = new NodeSchedule(String.valueOf(plugin
+				.getIdentifier()));
+		setTask(new JeePluginTask());
 
 		logger.debug("Initialized plugin manager for " + mPlugin.getClass());
 	}
@@ -199,7 +203,18 @@ public class JeePluginManager implements PluginManager {
 	 *            the message
 	 */
 	public void accept(ControlMessage message) {
+		if (!nodeSchedule.isFirstRequest(message)) {
+			// another next plugin already requested this invocation
+			return;
+		}
+		if (message.isPipelined()) {
+			// the previous plugins start on the request right away
+			alertPrevious(message);
+		}
 		mControlQueue.put(message);
+		if (pluginTask != null) {
+			pluginTask.schedule();
+		}
 	}
 
 	/**
@@ -236,22 +251,41 @@ public class JeePluginManager implements PluginManager {
 
 	/**
 	 * This method should be called in order to tell the previous plugin in the
-	 * pipeline to send the next piece of input on the input queue.
+	 * pipeline to send the next piece of input on the input queue. The
+	 * correlation id and the deadline of the invocation are passed on to the
+	 * previous plugin.
+	 * 
+	 * @param next
+	 *            the NEXT message this plugin received
 	 */
-	protected void alertPrevious(String pathId) {
+	protected void alertPrevious(ControlMessage next) {
 		for (PluginManager manager : mPreviousPlugins) {
-			manager.accept(new ControlMessage(Message.NEXT, pathId));
+			manager.accept(new ControlMessage(Message.NEXT, next.getPathId(),
+					next.getCorrelationId(), next.isPipelined(), next
+					.getDeadline(), next.getTrace()));
 		}
 	}
 
+	/**
+	 * Sets the place of the plugin in the workflow graph.
+	 * 
+	 * @param theSchedule
+	 *            the schedule of the node
+	 * 
+	 * @see eu.larkc.core.pluginManager.PluginManager#setSchedule(eu.larkc.core.pluginManager.NodeSchedule)
+	 */
+	public void setSchedule(NodeSchedule theSchedule) {
+		nodeSchedule = theSchedule;
+	}
+
 	/**
 	 * Start.
 	 * 
 	 * @see eu.larkc.core.pluginManager.PluginManager#start()
 	 */
 	public void start() {
-		if (pluginThread != null) {
-			pluginThread.start();
+		if (pluginTask != null) {
+			pluginTask.start();
 		}
 	}
 
@@ -261,218 +295,73 @@ public class JeePluginManager implements PluginManager {
 	 * @see eu.larkc.core.pluginManager.PluginManager#stopWaiting()
 	 */
 	public void stopWaiting() {
-		if (pluginThread != null) {
-			pluginThread.stopWaiting();
+		if (pluginTask != null) {
+			pluginTask.stopWaiting();
 		}
 	}
 
 	/**
-	 * This method is used to specify the thread in which the plugin management
+	 * This method is used to specify the task in which the plugin management
 	 * occurs.
 	 * 
-	 * @param theThread
-	 *            The Thread in which the plugin management occurs
+	 * @param theTask
+	 *            The task in which the plugin management occurs
 	 */
-	protected void setThread(PluginThread theThread) {
-		pluginThread = theThread;
+	protected void setTask(PluginTask theTask) {
+		pluginTask = theTask;
 	}
 
-	class PluginThread extends Thread implements QueueListener<SetOfStatements> {
-
-		private int neededInputs;
-		private ArrayList<Statement> statements;
-		private boolean isWaiting;
-
-		public PluginThread() {
-			super("JeePluginManager");
-			neededInputs = inputBehavior;
-			statements = new ArrayList<Statement>();
-			isWaiting = false;
-		}
+	/**
+	 * The plugin management, which calls a plugin instance of the servlet
+	 * container.
+	 */
+	class JeePluginTask extends PluginTask {
 
-		public void run() {
-			// the plugin has to be initialized before this point (by the
-			// executor)
-			// mPlugin.initialise();
-			String pathId;
-
-			for (;;) {
-				ControlMessage controlMessage = getNextControlMessage();
-
-				if (controlMessage.getMessage().equals(Message.NEXT)) {
-					pathId = controlMessage.getPathId();
-					alertPrevious(pathId);
-
-					SetOfStatements input = getNextInput(pathId);
-
-					if (input == null) {
-						putNextOutput(null, pathId);
-						break;
-					}
-
-					SetOfStatements output = null;
-
-					CloseableIterator<Statement> statements = mPlugin
-							.getPluginParameters().getStatements();
-
-					Statement stmt = null;
-					Statement tmpStmt = null;
-
-					while (statements.hasNext()) {
-						tmpStmt = statements.next();
-						if (tmpStmt
-								.getPredicate()
-								.stringValue()
-								.equals(WorkflowDescriptionPredicates.IS_INPUT_SPLITTABLE_URI
-										.stringValue())) {
-							stmt = tmpStmt;
-							break;
-						}
-					}
-
-					if (stmt != null) {
-						HashMap<List<Plugin>, SetOfStatements> map = new HashMap<List<Plugin>, SetOfStatements>();
-						List<Plugin> list = new ArrayList<Plugin>();
-						list.add(mPlugin);
-						map.put(list, input);
-						try {
-							MultiThreading.INSTANCE.invokeThreadPool(map);
-							output = MultiThreading.INSTANCE
-									.getSynchronizedResults();
-						} catch (MultiThreadingException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-					} else {
-						// The following operations are equivalent to the
-						// original call: output = mPlugin.invoke(input);
-
-						// InstantiatePlugin, should be moved to the Constructor
-						instantiatePlugin();
-
-						// CallPluginInstance
-						output = callPluginInstance(input,
-								OperationDescriptor.OP_INVOKE);
-
-						// Shutdown plug-in, should be moved to the Destructor
-						destroyPlugin();
-					}
-
-					putNextOutput(output, pathId);
-				} else if (controlMessage.getMessage().equals(Message.STOP)) {
-					break;
-				}
-			}
-			logger.debug("Plugin is shutting down ...");
-			stopPrevious();
-			mPlugin.shutdown();
+		JeePluginTask() {
+			super(mPlugin, inputQueues, outputQueues, mControlQueue,
+					inputBehavior);
 		}
 
 		/**
-		 * This method should be called to get the next input from the input
-		 * queue.
-		 * 
-		 * @return the next element on the input queue
+		 * The following operations are equivalent to the original call:
+		 * output = mPlugin.invoke(input);
 		 */
-		private synchronized SetOfStatements getNextInput(String pathId) {
-			statements = new ArrayList<Statement>();
-			CloseableIterator<Statement> it;
-
-			if (inputQueues.get(pathId) != null) {
-				int numberOfInputs = inputQueues.get(pathId).size();
-
-				if (inputBehavior < 0 || inputBehavior > numberOfInputs) {
-					neededInputs = numberOfInputs;
-					logger.debug("Use standard input behavior for {}: {}",
-							mPlugin.toString(), neededInputs);
-				} else {
-					neededInputs = inputBehavior;
-					logger.debug("Found input behavior for {}: {}",
-							mPlugin.toString(), neededInputs);
-				}
-
-				for (Queue<SetOfStatements> queue : inputQueues.get(pathId)) {
-					if (!queue.isEmpty()) {
-						SetOfStatements queueElement = queue.take();
-						if (queueElement == null) {
-							logger.warn("No data in input queue. Found a NULL element in the input queue, probably some plug-in did not compute any results.");
-						} else {
-							logger.debug(
-									"Used input queue on {} for plugin {}",
-									pathId, mPlugin.getIdentifier());
-							it = queueElement.getStatements();
-							while (it.hasNext()) {
-								statements.add(it.next());
-							}
-						}
-						neededInputs--;
-					} else {
-						queue.addListener(this);
-					}
-				}
-			} else {
-				logger.debug("No input queues defined for {} ({})",
-						mPlugin.toString(), pathId);
-			}
-
-			try {
-				while (neededInputs > 0) {
-					isWaiting = true;
-					wait();
-				}
-				isWaiting = false;
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-
-			return new SetOfStatementsImpl(statements);
+		@Override
+		protected SetOfStatements invokePlugin(SetOfStatements input) {
+			// InstantiatePlugin, should be moved to the Constructor
+			instantiatePlugin();
+
+			// CallPluginInstance
+			SetOfStatements output = callPluginInstance(input,
+					OperationDescriptor.OP_INVOKE);
+
+			// Shutdown plug-in, should be moved to the Destructor
+			destroyPlugin();
+			return output;
 		}
 
-		/**
-		 * This method should be called to put an output on the output queue.
-		 * 
-		 * @param theF
-		 *            The element to put on the output queue
-		 */
-		private void putNextOutput(SetOfStatements theF, String pathId) {
-			logger.debug("Wrote data to output queues ...");
-			for (Queue<SetOfStatements> queue : outputQueues.get(pathId)) {
-				queue.put(theF);
-			}
+		@Override
+		protected NodeSchedule getSchedule() {
+			return nodeSchedule;
 		}
 
-		/**
-		 * This method instructs the thread to not longer wait for inputs (if it
-		 * is waiting).
-		 */
-		public synchronized void stopWaiting() {
-			if (isWaiting) {
-				neededInputs = 0;
-				this.notify();
-			}
+		@Override
+		protected void alertPrevious(ControlMessage next) {
+			JeePluginManager.this.alertPrevious(next);
 		}
 
-		/*
-		 * (non-Javadoc)
-		 * 
-		 * @see eu.larkc.core.queue.QueueListener#elementAdded(java.lang.Object)
+		@Override
+		protected void stopPrevious() {
+			JeePluginManager.this.stopPrevious();
+		}
+
+		/**
+		 * Copies the inputs into a single set, which is sent to the remote
+		 * host.
 		 */
 		@Override
-		public synchronized void elementAdded(SetOfStatements queueElement) {
-			if (isWaiting) {
-				if (queueElement == null) {
-					logger.warn("No data in input queue. Found a NULL element in the input queue, probably some plug-in did not compute any results.");
-				} else {
-					CloseableIterator<Statement> it = queueElement
-							.getStatements();
-					while (it.hasNext()) {
-						statements.add(it.next());
-					}
-				}
-				neededInputs--;
-				this.notify();
-			}
+		protected SetOfStatements merge(List<SetOfStatements> inputs) {
+			return new SetOfStatementsImpl(super.merge(inputs).getStatements());
 		}
 	}
 
@@ -0,0 +1,153 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.qos;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time until which the workflow works on a query. The deadline of
+ * a query is passed along with its control messages to every plug-in manager,
+ * which stops working on the query once the deadline is expired, i.e. passed
+ * or cancelled.
+ */
+public class Deadline {
+
+	/** Marks a deadline that never passes. */
+	private static final long NEVER = Long.MAX_VALUE;
+
+	/** The value of {@link System#nanoTime()} when the deadline passes. */
+	private final long expiresAt;
+	private volatile boolean cancelled;
+
+	private Deadline(long expiresAt) {
+		this.expiresAt = expiresAt;
+		this.cancelled = false;
+	}
+
+	/**
+	 * Creates a deadline that never passes, but can be cancelled.
+	 * 
+	 * @return the deadline
+	 */
+	public static Deadline none() {
+		return new Deadline(NEVER);
+	}
+
+	/**
+	 * Creates a deadline that passes after the given time.
+	 * 
+	 * @param timeout
+	 *            the time until the deadline passes
+	 * @param unit
+	 *            the time unit of the timeout
+	 * @return the deadline
+	 */
+	public static Deadline after(long timeout, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * Creates the deadline requested by the given QoS parameters.
+	 * 
+	 * @param parameters
+	 *            the QoS parameters, may be null
+	 * @return the deadline, which never passes if no maximum runtime is given
+	 */
+	public static Deadline of(QoSParameters parameters) {
+		if (parameters == null || parameters.getMaximumRuntime() <= 0) {
+			return none();
+		}
+		return after(parameters.getMaximumRuntime(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Cancels the deadline, so that it is expired from now on.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Checks whether the deadline was cancelled.
+	 * 
+	 * @return true if cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Checks whether the deadline has passed.
+	 * 
+	 * @return true if the time is up
+	 */
+	public boolean hasPassed() {
+		return expiresAt != NEVER && System.nanoTime() - expiresAt >= 0;
+	}
+
+	/**
+	 * Checks whether the deadline has passed or was cancelled.
+	 * 
+	 * @return true if the work on the query has to stop
+	 */
+	public boolean isExpired() {
+		return cancelled || hasPassed();
+	}
+
+	/**
+	 * Checks whether the deadline ever passes.
+	 * 
+	 * @return true if the deadline has a time limit
+	 */
+	public boolean isBounded() {
+		return expiresAt != NEVER;
+	}
+
+	/**
+	 * Returns the time left until the deadline passes.
+	 * 
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the remaining time, 0 if passed, {@link Long#MAX_VALUE} if the
+	 *         deadline never passes
+	 */
+	public long remaining(TimeUnit unit) {
+		if (expiresAt == NEVER) {
+			return Long.MAX_VALUE;
+		}
+		long nanos = expiresAt - System.nanoTime();
+		return nanos <= 0 ? 0 : unit.convert(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (cancelled) {
+			return "Deadline[cancelled]";
+		}
+		if (expiresAt == NEVER) {
+			return "Deadline[none]";
+		}
+		return "Deadline[" + remaining(TimeUnit.MILLISECONDS) + "ms left]";
+	}
+}
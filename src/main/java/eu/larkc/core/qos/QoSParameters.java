@@ -18,8 +18,23 @@
  */
 package eu.larkc.core.qos;
 
+/**
+ * The quality of service requested for the execution of a query.
+ */
 public interface QoSParameters extends java.io.Serializable {
 
+	/**
+	 * Returns the number of answers that suffice for the query.
+	 * 
+	 * @return the number of answers, 0 or less if all answers are required
+	 */
 	public int getRequiredNumberOfAnswers();
+
+	/**
+	 * Returns the time after which the execution of the query is stopped and
+	 * the results computed so far are returned.
+	 * 
+	 * @return the maximum runtime in milliseconds, 0 or less if unlimited
+	 */
 	public long getMaximumRuntime();
 }
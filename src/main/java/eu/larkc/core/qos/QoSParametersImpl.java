@@ -0,0 +1,63 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.qos;
+
+/**
+ * Simple implementation of {@link QoSParameters}.
+ */
+public class QoSParametersImpl implements QoSParameters {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int requiredNumberOfAnswers;
+	private final long maximumRuntime;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param requiredNumberOfAnswers
+	 *            the number of answers that suffice, 0 or less if all answers
+	 *            are required
+	 * @param maximumRuntime
+	 *            the maximum runtime in milliseconds, 0 or less if unlimited
+	 */
+	public QoSParametersImpl(int requiredNumberOfAnswers, long maximumRuntime) {
+		this.requiredNumberOfAnswers = requiredNumberOfAnswers;
+		this.maximumRuntime = maximumRuntime;
+	}
+
+	public int getRequiredNumberOfAnswers() {
+		return requiredNumberOfAnswers;
+	}
+
+	public long getMaximumRuntime() {
+		return maximumRuntime;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "QoSParameters[answers=" + requiredNumberOfAnswers
+				+ ", runtime=" + maximumRuntime + "ms]";
+	}
+}
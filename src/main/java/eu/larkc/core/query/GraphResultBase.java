@@ -19,39 +19,70 @@
 package eu.larkc.core.query;
 
 import java.util.NoSuchElementException;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
-import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
-import org.openrdf.model.URI;
-import org.openrdf.model.Value;
 
 import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.StatementStatistics;
+import eu.larkc.core.queue.BatchQueue;
 
 /**
  * GraphResultBase is an abstract class to implement asynchronous streaming of
  * RDF statements. All implementing classes must: 1. Put the next statements
- * from the stream with results.put(X) 2. For the final statement to put
- * results.put(new FinalStatement())
+ * from the stream with results.put(X) 2. Call results.finish() after the
+ * final statement
+ * 
+ * The number of statements is known once the final statement was read.
  * 
  * @author vassil
  * 
  */
-public abstract class GraphResultBase implements SetOfStatements {
+public abstract class GraphResultBase implements SetOfStatements,
+		StatementStatistics {
 
-	protected transient boolean isClosed = false;
-	protected transient BlockingQueue<Statement> results;
+	protected transient volatile boolean isClosed = false;
+	protected transient BatchQueue<Statement> results;
 	protected transient CloseableIterator<Statement> iterator;
+	private transient volatile long statementCount = 0;
+	private transient volatile boolean complete = false;
+	/** Why the producer stopped before the end of the results, or null. */
+	private transient volatile Throwable failure;
 	private final static long serialVersionUID = 1L;
 
 	public GraphResultBase() {
-		this.results = new ArrayBlockingQueue<Statement>(1024);
+		this.results = new BatchQueue<Statement>();
 	}
 
-	public synchronized void close() {
+	/**
+	 * Closes the stream and stops the producer. Not synchronized, since the
+	 * producer may wait for space in the queue while holding the lock.
+	 */
+	public void close() {
 		isClosed = true;
+		results.close();
+	}
+
+	/**
+	 * Ends the results with a failure of the producer. The iterator returns
+	 * the statements received before, and then throws the failure instead of
+	 * reporting the end of the results. Called by the producer thread.
+	 * 
+	 * @param cause
+	 *            why the producer stopped
+	 */
+	public void fail(Throwable cause) {
+		failure = cause;
+		results.finish();
+	}
+
+	/**
+	 * Checks whether the consumer has closed the results.
+	 * 
+	 * @return true if the results are closed
+	 */
+	public boolean isClosed() {
+		return isClosed;
 	}
 
 	public synchronized CloseableIterator<Statement> getStatements() {
@@ -61,9 +92,26 @@ public abstract class GraphResultBase implements SetOfStatements {
 		return iterator;
 	}
 
+	/**
+	 * Returns the number of statements once all of them were read, and
+	 * {@link StatementStatistics#UNKNOWN} before.
+	 */
+	public long getStatementCount() {
+		return complete ? statementCount : UNKNOWN;
+	}
+
+	public long getDistinctSubjectCount() {
+		return UNKNOWN;
+	}
+
+	public long getDistinctPredicateCount() {
+		return UNKNOWN;
+	}
+
 	/**
 	 * Helper class to iterate the blocking queue used to simulate asynchrnous
-	 * streaming of RDF statements.
+	 * streaming of RDF statements. The statements are taken from the queue in
+	 * batches, so the iterator is meant for a single consumer thread.
 	 * 
 	 * @author vassil
 	 * 
@@ -72,64 +120,40 @@ public abstract class GraphResultBase implements SetOfStatements {
 
 		private Statement next;
 
-		public synchronized boolean hasNext() {
-			while (next == null) {
-				try {
-					next = results.take();
-				} catch (InterruptedException ie) {
-				}
+		public boolean hasNext() {
+			if (next == null) {
+				next = results.take();
 			}
-			if (next instanceof FinalStatement) {
+			if (next == null) {
+				if (failure != null && isClosed == false) {
+					throw new RuntimeException("Query evaluation failed",
+							failure);
+				}
+				complete = true;
 				return false;
 			}
 			return true;
 		}
 
-		public synchronized Statement next() {
+		public Statement next() {
 			if (hasNext() == false) {
 				throw new NoSuchElementException();
 			}
 			Statement result = next;
 			next = null;
+			statementCount++;
 			return result;
 		}
 
 		public void remove() {
 		}
 
-		public synchronized void close() {
-			isClosed = true;
+		public void close() {
+			GraphResultBase.this.close();
 		}
 
-		public synchronized boolean isClosed() {
+		public boolean isClosed() {
 			return isClosed;
 		}
 	}
-
-	/**
-	 * Helper class to denote the end of streamed statements.
-	 * 
-	 * @author vassil
-	 * 
-	 */
-	public class FinalStatement implements Statement {
-
-		private static final long serialVersionUID = 1L;
-
-		public Resource getSubject() {
-			throw new UnsupportedOperationException();
-		}
-
-		public URI getPredicate() {
-			throw new UnsupportedOperationException();
-		}
-
-		public Value getObject() {
-			throw new UnsupportedOperationException();
-		}
-
-		public Resource getContext() {
-			throw new UnsupportedOperationException();
-		}
-	}
 }
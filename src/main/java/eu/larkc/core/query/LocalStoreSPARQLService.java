@@ -19,9 +19,16 @@
 package eu.larkc.core.query;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.query.TupleQueryResultHandler;
+import org.openrdf.query.parser.ParsedQuery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.ontotext.ordi.tripleset.TConnection;
 import com.ontotext.ordi.tripleset.TriplesetQuery;
@@ -31,6 +38,7 @@ import eu.larkc.core.data.DataSet;
 import eu.larkc.core.data.DataSetImpl;
 import eu.larkc.core.data.RdfGraph;
 import eu.larkc.core.data.RdfGraphDataSet;
+import eu.larkc.core.data.RdfStoreConnection;
 import eu.larkc.core.data.SPARQLEndpoint;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.VariableBinding;
@@ -45,8 +53,10 @@ import eu.larkc.core.data.VariableBinding.Binding;
  */
 public class LocalStoreSPARQLService implements SPARQLEndpoint {
 
+	private static Logger logger = LoggerFactory
+			.getLogger(LocalStoreSPARQLService.class);
+
 	protected final TConnection con;
-	private static volatile int runningQueries;
 
 	public LocalStoreSPARQLService(TConnection con) {
 		if (con == null) {
@@ -101,35 +111,93 @@ public class LocalStoreSPARQLService implements SPARQLEndpoint {
 		return result;
 	}
 
-	private void startQuery(final SPARQLQuery query,
+	/**
+	 * Executes a SELECT query for a batch of input bindings in a single
+	 * evaluation, see {@link RdfStoreConnection#executeSelect(SPARQLQuery, List)}.
+	 * 
+	 * @param query
+	 *            is select query to be executed
+	 * @param inputs
+	 *            the input bindings, one map of variable values per row
+	 * @return list of solutions of all rows
+	 */
+	public VariableBinding executeSelect(SPARQLQuery query,
+			List<Map<String, Value>> inputs) {
+		if (query == null || inputs == null) {
+			throw new IllegalArgumentException("Null value is not supported!");
+		}
+		ParsedQuery parsed = getImpl(query).getParsedQuery(inputs,
+				RdfStoreConnection.INPUT_ROW_VARIABLE);
+		final ORDIVariableBinding result = new ORDIVariableBinding();
+		startQuery(query, getQuery(query, parsed), result);
+		return result;
+	}
+
+	@Override
+	public SPARQLQuery prepareQuery(String query) {
+		return new SPARQLQueryImpl(query);
+	}
+
+	private void startQuery(SPARQLQuery query, TupleQueryResultHandler result) {
+		startQuery(query, getQuery(query, getImpl(query).getParsedQuery()),
+				result);
+	}
+
+	/**
+	 * Evaluates the query on a thread of the {@link QueryScheduler}, which
+	 * streams the results to the handler. The query is parsed in the calling
+	 * thread, so that invalid queries are reported to the caller. A failure
+	 * of the evaluation is thrown to the consumer by the iterator of the
+	 * results.
+	 */
+	private void startQuery(final SPARQLQuery query, final TriplesetQuery tq,
 			final TupleQueryResultHandler result) {
-		Thread t = new Thread() {
+		QueryScheduler.getInstance().execute(new Runnable() {
 			public void run() {
-				synchronized(LocalStoreSPARQLService.class) {
 				try {
-					runningQueries++;
-					while (runningQueries > 10) {
-						LocalStoreSPARQLService.class.wait();
-					}
-					getQuery(query).evaluate(result);
-				} catch (Exception oe) {
-					throw new RuntimeException(oe);
-				} finally {
-					runningQueries--;
-					LocalStoreSPARQLService.class.notifyAll();
-				}
+					tq.evaluate(result);
+				} catch (Exception e) {
+					failed(query, result, e);
 				}
 			}
-		};
-		t.start();
+		});
 	}
 
-	private TriplesetQuery getQuery(SPARQLQuery query) {
+	/**
+	 * Ends the results of a query whose evaluation failed, so that the
+	 * consumer does not wait for more results and does not take the results
+	 * for complete. A consumer that closed the results early stops the
+	 * evaluation with a failure too, which is expected.
+	 */
+	private void failed(SPARQLQuery query, TupleQueryResultHandler result,
+			Exception e) {
+		boolean closed;
+		if (result instanceof VariableBindingBase) {
+			closed = ((VariableBindingBase) result).isClosed();
+		} else {
+			closed = ((GraphResultBase) result).isClosed();
+		}
+		if (closed) {
+			logger.debug("Query evaluation stopped by the consumer: {}", query);
+			return;
+		}
+		logger.error("Query evaluation failed: " + query, e);
+		if (result instanceof VariableBindingBase) {
+			((VariableBindingBase) result).fail(e);
+		} else {
+			((GraphResultBase) result).fail(e);
+		}
+	}
+
+	private SPARQLQueryImpl getImpl(SPARQLQuery query) {
 		if (query instanceof SPARQLQueryImpl == false) {
 			throw new IllegalArgumentException(
 					"Only SPARQLQueryImpl is supported now!");
 		}
-		SPARQLQueryImpl sqi = (SPARQLQueryImpl) query;
+		return (SPARQLQueryImpl) query;
+	}
+
+	private TriplesetQuery getQuery(SPARQLQuery query, ParsedQuery parsed) {
 		TriplesetQuery tq = null;
 		URI ts = null;
 
@@ -137,9 +205,9 @@ public class LocalStoreSPARQLService implements SPARQLEndpoint {
 			ts = query.getLabelledGroup();
 		}
 		if (ts == null) {
-			tq = new TriplesetQuery(sqi.getParsedQuery(), con);
+			tq = new TriplesetQuery(parsed, con);
 		} else {
-			tq = new TriplesetQuery(sqi.getParsedQuery(), con, ts);
+			tq = new TriplesetQuery(parsed, con, ts);
 		}
 		return tq;
 	}
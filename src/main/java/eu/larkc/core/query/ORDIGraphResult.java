@@ -22,7 +22,6 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 
 import org.openrdf.model.Resource;
 import org.openrdf.model.Statement;
@@ -34,6 +33,7 @@ import org.openrdf.query.TupleQueryResultHandlerException;
 
 import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.queue.BatchQueue;
 
 /**
  * ORDIGraphResult implements asynchronous RDF statement result reading from
@@ -54,17 +54,13 @@ public class ORDIGraphResult extends GraphResultBase implements TupleQueryResult
 		}
 	}
 
-	public synchronized void endQueryResult() {
-		while (true) {
-			try {
-				results.put(new FinalStatement());
-				return;
-			} catch (InterruptedException ie) {
-			}
-		}
+	// called by the producer thread only, which must not hold the lock while
+	// it waits for space in the queue
+	public void endQueryResult() {
+		results.finish();
 	}
 
-	public synchronized void handleSolution(BindingSet bindingset)
+	public void handleSolution(BindingSet bindingset)
 			throws TupleQueryResultHandlerException {
 		if (isClosed) {
 			throw new TupleQueryResultHandlerException("Closed!");
@@ -72,19 +68,10 @@ public class ORDIGraphResult extends GraphResultBase implements TupleQueryResult
 		Statement s = new StatementImpl((Resource) bindingset
 				.getValue(bindNames[0]), (URI) bindingset
 				.getValue(bindNames[1]), bindingset.getValue(bindNames[2]));
-
-		while (true) {
-			try {
-				results.put(s);
-				return;
-			} catch (InterruptedException ie) {
-			}
+		if (results.put(s) == false) {
+			throw new TupleQueryResultHandlerException("Closed!");
 		}
 	}
-
-	public synchronized void close() {
-		isClosed = true;
-	}
 	
 	// Custom serialization methods
 	private void writeObject(ObjectOutputStream out) throws IOException {
@@ -103,13 +90,13 @@ public class ORDIGraphResult extends GraphResultBase implements TupleQueryResult
 	@SuppressWarnings("unchecked")
 	private void readObject(ObjectInputStream in) throws IOException,
 			ClassNotFoundException {
-		this.results = new ArrayBlockingQueue<Statement>(1024);
+		this.results = new BatchQueue<Statement>(BatchQueue.UNBOUNDED);
 		bindNames = (String[]) in.readObject();
 		while (in.readBoolean()) {
 			Statement s = (Statement) in.readObject();
-			results.add(s);
+			results.put(s);
 		}
-		results.add(new FinalStatement());
+		results.finish();
 	}
 
 	/* (non-Javadoc)
@@ -50,38 +50,26 @@ public class ORDIVariableBinding extends VariableBindingBase implements
 	}
 
 	public void endQueryResult() {
-		while (true) {
-			try {
-				results.put(new FinalBindingSet());
-				return;
-			} catch (InterruptedException ie) {
-			}
-		}
+		results.finish();
 	}
 
 	public void handleSolution(BindingSet bindingset)
 			throws TupleQueryResultHandlerException {
-		if (isClosed.get()) {
+		if (isClosed.get() || results.put(bindingset) == false) {
 			throw new TupleQueryResultHandlerException("Closed!");
 		}
-		while (true) {
-			try {
-				results.put(bindingset);
-				return;
-			} catch (InterruptedException ie) {
-			}
-		}
 	}
 
 	// Custom serialization methods
 	private void writeObject(ObjectOutputStream out) throws IOException {
-		CloseableIterator<Binding> i = iterator();
+		// the values are copied, so the rows need not be
+		CloseableIterator<Binding> i = cursor();
 		// used to wait until the bindNames field is init
 		getVariables();
 		out.writeObject(bindNames);
 		out.writeBoolean(i.hasNext());
 		while (i.hasNext()) {
-			out.writeObject(i.next().getValues());
+			out.writeObject(new ArrayList<Value>(i.next().getValues()));
 			out.writeBoolean(i.hasNext());
 		}
 		out.flush();
@@ -0,0 +1,195 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.parser.ParsedBooleanQuery;
+import org.openrdf.query.parser.ParsedGraphQuery;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
+import org.openrdf.query.parser.sparql.SPARQLParser;
+
+import eu.larkc.core.util.SystemProperties;
+
+/**
+ * The least recently used SPARQL queries, in parsed form. The same queries are
+ * sent again and again by the endpoints and the plug-ins, and parsing them is
+ * much more expensive than copying the parsed form.
+ * 
+ * The cached queries are never handed out: every caller gets its own copy of
+ * the query model, which it may optimise or assign a dataset to. The cache is
+ * keyed by the query text without leading and trailing white space and by
+ * the base namespace. At most {@value #SIZE_PROPERTY} queries are kept.
+ */
+public final class ParsedQueryCache {
+
+	/** System property defining the number of cached queries. */
+	public static final String SIZE_PROPERTY = "larkc.query.cacheSize";
+
+	/** Default number of cached queries. */
+	public static final int DEFAULT_SIZE = 256;
+
+	private static final int maxSize = SystemProperties.getInt(SIZE_PROPERTY,
+			DEFAULT_SIZE);
+
+	private static final Map<Key, ParsedQuery> cache = new LinkedHashMap<Key, ParsedQuery>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, ParsedQuery> eldest) {
+			return size() > maxSize;
+		}
+	};
+
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+
+	private ParsedQueryCache() {
+	}
+
+	/**
+	 * Parses a SPARQL query, or copies it if it was parsed before.
+	 * 
+	 * @param query
+	 *            the SPARQL query
+	 * @param ns
+	 *            the base namespace
+	 * @return the parsed query, owned by the caller
+	 * @throws MalformedQueryException
+	 *             if the query is not valid
+	 */
+	public static ParsedQuery parse(String query, String ns)
+			throws MalformedQueryException {
+		Key key = new Key(query.trim(), ns);
+		ParsedQuery parsed;
+		synchronized (cache) {
+			parsed = cache.get(key);
+		}
+		if (parsed != null) {
+			hits.incrementAndGet();
+			return copy(parsed);
+		}
+		misses.incrementAndGet();
+		// the parser keeps no state between queries, but that is not
+		// guaranteed, so it is not shared between threads
+		parsed = new SPARQLParser().parseQuery(query, ns);
+		ParsedQuery result = copy(parsed);
+		if (result == null) {
+			// unknown query form, it cannot be copied
+			return parsed;
+		}
+		synchronized (cache) {
+			cache.put(key, parsed);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of queries that were found in the cache.
+	 * 
+	 * @return the number of hits
+	 */
+	public static long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of queries that had to be parsed.
+	 * 
+	 * @return the number of misses
+	 */
+	public static long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 * 
+	 * @return the size of the cache
+	 */
+	public static int getSize() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Removes all queries from the cache.
+	 */
+	public static void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Copies the query model of a parsed query. The dataset is shared, since
+	 * it is replaced rather than modified.
+	 * 
+	 * @return the copy, or null for an unknown query form
+	 */
+	static ParsedQuery copy(ParsedQuery query) {
+		ParsedQuery result;
+		if (query instanceof ParsedTupleQuery) {
+			result = new ParsedTupleQuery(query.getTupleExpr().clone());
+		} else if (query instanceof ParsedGraphQuery) {
+			result = new ParsedGraphQuery(query.getTupleExpr().clone(),
+					((ParsedGraphQuery) query).getQueryNamespaces());
+		} else if (query instanceof ParsedBooleanQuery) {
+			result = new ParsedBooleanQuery(query.getTupleExpr().clone());
+		} else {
+			return null;
+		}
+		result.setDataset(query.getDataset());
+		return result;
+	}
+
+	/**
+	 * The query text and the base namespace.
+	 */
+	private static class Key {
+
+		private final String query;
+		private final String ns;
+
+		Key(String query, String ns) {
+			this.query = query;
+			this.ns = ns;
+		}
+
+		@Override
+		public int hashCode() {
+			return query.hashCode() * 31 + ns.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof Key == false) {
+				return false;
+			}
+			Key other = (Key) o;
+			return query.equals(other.query) && ns.equals(other.ns);
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import eu.larkc.core.util.SystemProperties;
+
+/**
+ * The thread pool that evaluates the queries against the local RDF store. At
+ * most {@value #THREADS_PROPERTY} queries are evaluated concurrently; further
+ * queries wait in a queue of {@value #QUEUE_PROPERTY} entries. When the
+ * queue is full, a new query either waits for a free entry or, if
+ * {@value #REJECT_PROPERTY} is true, is rejected with a
+ * {@link RejectedExecutionException}.
+ * 
+ * The time the queries spend in the queue and in evaluation is recorded, so
+ * that an overloaded store can be told apart from slow queries.
+ */
+public final class QueryScheduler {
+
+	/** System property defining the number of query threads. */
+	public static final String THREADS_PROPERTY = "larkc.query.threads";
+
+	/** System property defining the number of queries that may wait. */
+	public static final String QUEUE_PROPERTY = "larkc.query.queueLength";
+
+	/** System property to reject queries instead of waiting for the queue. */
+	public static final String REJECT_PROPERTY = "larkc.query.reject";
+
+	/** Default number of query threads. */
+	public static final int DEFAULT_THREADS = Runtime.getRuntime()
+			.availableProcessors();
+
+	/** Default number of queries that may wait. */
+	public static final int DEFAULT_QUEUE_LENGTH = 100;
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private static Logger logger = LoggerFactory
+			.getLogger(QueryScheduler.class);
+
+	private static final QueryScheduler instance = new QueryScheduler(
+			SystemProperties.getInt(THREADS_PROPERTY, DEFAULT_THREADS),
+			SystemProperties.getInt(QUEUE_PROPERTY, DEFAULT_QUEUE_LENGTH),
+			Boolean.getBoolean(REJECT_PROPERTY));
+
+	private final ThreadPoolExecutor pool;
+
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+	private final AtomicLong executionNanos = new AtomicLong();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param threads
+	 *            the maximum number of queries evaluated concurrently
+	 * @param queueLength
+	 *            the maximum number of queries that wait for a thread
+	 * @param reject
+	 *            whether to reject queries when the queue is full, rather
+	 *            than to wait for a free entry
+	 */
+	public QueryScheduler(int threads, int queueLength, boolean reject) {
+		if (threads <= 0 || queueLength <= 0) {
+			throw new IllegalArgumentException();
+		}
+		pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(
+						queueLength), new QueryThreadFactory(),
+				reject ? new ThreadPoolExecutor.AbortPolicy()
+						: new WaitPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		logger.debug("Initialized query pool with {} threads", threads);
+	}
+
+	/**
+	 * Returns the scheduler shared within the JVM, configured by the system
+	 * properties.
+	 * 
+	 * @return the shared scheduler
+	 */
+	public static QueryScheduler getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Evaluates a query on a pool thread.
+	 * 
+	 * @param query
+	 *            the evaluation of the query
+	 * @throws RejectedExecutionException
+	 *             if the queue is full and queries are rejected, or the
+	 *             scheduler is shut down
+	 */
+	public void execute(final Runnable query) {
+		final long queued = System.nanoTime();
+		try {
+			pool.execute(new Runnable() {
+				public void run() {
+					long started = System.nanoTime();
+					waitNanos.addAndGet(started - queued);
+					try {
+						query.run();
+					} finally {
+						executionNanos.addAndGet(System.nanoTime() - started);
+						completed.incrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * Stops accepting queries. The queries that were accepted already are
+	 * still evaluated.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Returns the number of queries that are evaluated at the moment.
+	 * 
+	 * @return the number of running queries
+	 */
+	public int getRunningQueries() {
+		return pool.getActiveCount();
+	}
+
+	/**
+	 * Returns the number of queries that wait for a thread.
+	 * 
+	 * @return the number of queued queries
+	 */
+	public int getQueuedQueries() {
+		return pool.getQueue().size();
+	}
+
+	/**
+	 * Returns the number of queries that were rejected.
+	 * 
+	 * @return the number of rejected queries
+	 */
+	public long getRejectedQueries() {
+		return rejected.get();
+	}
+
+	/**
+	 * Returns the number of queries that were evaluated.
+	 * 
+	 * @return the number of completed queries
+	 */
+	public long getCompletedQueries() {
+		return completed.get();
+	}
+
+	/**
+	 * Returns the total time the completed and running queries waited for a
+	 * thread.
+	 * 
+	 * @return the waiting time in milliseconds
+	 */
+	public long getTotalWaitTime() {
+		return TimeUnit.NANOSECONDS.toMillis(waitNanos.get());
+	}
+
+	/**
+	 * Returns the total time the completed queries were evaluated.
+	 * 
+	 * @return the evaluation time in milliseconds
+	 */
+	public long getTotalExecutionTime() {
+		return TimeUnit.NANOSECONDS.toMillis(executionNanos.get());
+	}
+
+	/**
+	 * Lets the submitting thread wait for a free entry in the queue.
+	 */
+	private static class WaitPolicy implements RejectedExecutionHandler {
+
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("Query pool is shut down");
+			}
+			try {
+				executor.getQueue().put(r);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException(
+						"Interrupted while waiting for the query queue", e);
+			}
+		}
+	}
+
+	/**
+	 * Creates the named pool threads.
+	 */
+	private static class QueryThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Query-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -39,23 +39,13 @@ public class RDFXMLGraphResult extends GraphResultBase {
 
 	public class RDFHandlerHelper extends RDFHandlerBase {
 		public void endRDF() throws RDFHandlerException {
-			while (true) {
-				try {
-					results.put(new FinalStatement());
-					return;
-				} catch (InterruptedException ie) {
-				}
-			}
+			results.finish();
 		}
 
 		public void handleStatement(Statement statement)
 				throws RDFHandlerException {
-			while (true) {
-				try {
-					results.put(statement);
-					return;
-				} catch (InterruptedException ie) {
-				}
+			if (results.put(statement) == false) {
+				throw new RDFHandlerException("Closed!");
 			}
 		}
 	}
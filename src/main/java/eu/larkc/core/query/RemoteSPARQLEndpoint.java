@@ -147,7 +147,16 @@ public class RemoteSPARQLEndpoint implements SPARQLEndpoint {
 		}
 	}
 
+	@Override
+	public SPARQLQuery prepareQuery(String query) {
+		return new SPARQLQueryImpl(query);
+	}
+
 	public InputStream sendHTTPGet(SPARQLQuery query) {
+		if (query.getBindings().isEmpty() == false) {
+			throw new IllegalArgumentException(
+					"Bound variables are not supported by remote endpoints!");
+		}
 		URL queryURL = null;
 
 		try {
@@ -18,7 +18,10 @@
  */
 package eu.larkc.core.query;
 
+import java.util.Map;
+
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 
 import eu.larkc.core.data.DataSet;
 import eu.larkc.core.data.SetOfStatements;
@@ -95,6 +98,32 @@ public interface SPARQLQuery extends Query {
 	 *            of the labeled group (may be null)
 	 */
 	public void setLabelledGroup(URI label);
+
+	/**
+	 * Binds a variable of the query to a value for the following executions.
+	 * The query is parsed once and the variable is replaced by the value when
+	 * it is executed, so a query can be executed repeatedly with different
+	 * values and without building the query text. A bound variable is a
+	 * constant of the query and is not part of the results of a SELECT query.
+	 * 
+	 * @param name
+	 *            name of the variable, without '?'
+	 * @param value
+	 *            the value of the variable, or null to unbind it
+	 */
+	public void setBinding(String name, Value value);
+
+	/**
+	 * Unbinds all variables of the query.
+	 */
+	public void clearBindings();
+
+	/**
+	 * Gets the bound variables of the query.
+	 * 
+	 * @return the values of the bound variables by name (may be empty)
+	 */
+	public Map<String, Value> getBindings();
 	
 	/**
 	 * Returns an RDF representation of the query
@@ -21,13 +21,19 @@ package eu.larkc.core.query;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OptionalDataException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.openrdf.model.BNode;
 import org.openrdf.model.Statement;
 import org.openrdf.model.URI;
+import org.openrdf.model.Value;
 import org.openrdf.model.ValueFactory;
 import org.openrdf.model.impl.ContextStatementImpl;
 import org.openrdf.model.impl.LiteralImpl;
@@ -36,12 +42,24 @@ import org.openrdf.model.impl.URIImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.model.vocabulary.RDF;
 import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.algebra.EmptySet;
+import org.openrdf.query.algebra.Extension;
+import org.openrdf.query.algebra.ExtensionElem;
+import org.openrdf.query.algebra.Join;
+import org.openrdf.query.algebra.Projection;
+import org.openrdf.query.algebra.ProjectionElem;
+import org.openrdf.query.algebra.SingletonSet;
+import org.openrdf.query.algebra.TupleExpr;
+import org.openrdf.query.algebra.Union;
+import org.openrdf.query.algebra.ValueConstant;
+import org.openrdf.query.algebra.evaluation.impl.BindingAssigner;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
 import org.openrdf.query.impl.DatasetImpl;
+import org.openrdf.query.impl.MapBindingSet;
 import org.openrdf.query.parser.ParsedBooleanQuery;
 import org.openrdf.query.parser.ParsedGraphQuery;
 import org.openrdf.query.parser.ParsedQuery;
 import org.openrdf.query.parser.ParsedTupleQuery;
-import org.openrdf.query.parser.sparql.SPARQLParser;
 
 import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.DataFactory;
@@ -62,10 +80,10 @@ import eu.larkc.core.util.RDFConstants;
 public class SPARQLQueryImpl implements SPARQLQuery {
 
 	private ParsedQuery query;
-	private static SPARQLParser parser = new SPARQLParser();
 	private String originalQuery;
 	private String originalNS;
 	private URI label;
+	private Map<String, Value> bindings = new HashMap<String, Value>();
 	private static final long serialVersionUID = 1L;
 
 	/**
@@ -81,7 +99,7 @@ public class SPARQLQueryImpl implements SPARQLQuery {
 			throw new IllegalArgumentException("null!");
 		}
 		try {
-			this.query = parser.parseQuery(query, ns);
+			this.query = ParsedQueryCache.parse(query, ns);
 			this.originalQuery = query;
 			this.originalNS = ns;
 		} catch (MalformedQueryException mqe) {
@@ -169,8 +187,119 @@ public class SPARQLQueryImpl implements SPARQLQuery {
 		this.label = label;
 	}
 
+	public void setBinding(String name, Value value) {
+		if (name == null) {
+			throw new IllegalArgumentException("null!");
+		}
+		if (value == null) {
+			bindings.remove(name);
+		} else {
+			bindings.put(name, value);
+		}
+	}
+
+	public void clearBindings() {
+		bindings.clear();
+	}
+
+	public Map<String, Value> getBindings() {
+		return Collections.unmodifiableMap(bindings);
+	}
+
+	/**
+	 * Returns a copy of the parsed query, in which the bound variables are
+	 * replaced by their values. The copy is not affected by later bindings, and
+	 * may be optimised by its evaluation while the query is evaluated
+	 * elsewhere concurrently.
+	 * 
+	 * @return the parsed query
+	 */
 	public ParsedQuery getParsedQuery() {
-		return query;
+		return getBoundQuery();
+	}
+
+	/**
+	 * Returns a copy of this SELECT query that is evaluated for several rows
+	 * of input bindings at once, like a query with a VALUES clause. The rows
+	 * are joined with the pattern of the query, in addition to the variables
+	 * bound with {@link #setBinding(String, Value)}, and the index of the
+	 * input row of every result is returned in an additional variable. The
+	 * solution modifiers, such as LIMIT, apply to all rows together.
+	 * 
+	 * @param rows
+	 *            the input bindings
+	 * @param rowVariable
+	 *            name of the variable for the index of the input row
+	 * @return the parsed query
+	 */
+	ParsedQuery getParsedQuery(List<Map<String, Value>> rows,
+			String rowVariable) {
+		if (isSelect() == false) {
+			throw new IllegalArgumentException(
+					"Only SELECT queries are supported!");
+		}
+		ParsedQuery result = getBoundQuery();
+		final Projection[] projection = new Projection[1];
+		result.getTupleExpr().visit(
+				new QueryModelVisitorBase<RuntimeException>() {
+					@Override
+					public void meet(Projection node) {
+						if (projection[0] == null) {
+							projection[0] = node;
+						}
+					}
+				});
+		if (projection[0] == null) {
+			throw new IllegalArgumentException("No projection in " + this);
+		}
+		TupleExpr values = rows.isEmpty() ? new EmptySet() : createValues(
+				rows, rowVariable, 0, rows.size());
+		projection[0].setArg(new Join(values, projection[0].getArg()));
+		projection[0].getProjectionElemList().addElement(
+				new ProjectionElem(rowVariable));
+		return result;
+	}
+
+	/**
+	 * Creates the table of the input rows from index from to index to, as a
+	 * balanced union of single rows.
+	 */
+	private static TupleExpr createValues(List<Map<String, Value>> rows,
+			String rowVariable, int from, int to) {
+		if (to - from > 1) {
+			int middle = (from + to) >>> 1;
+			return new Union(createValues(rows, rowVariable, from, middle),
+					createValues(rows, rowVariable, middle, to));
+		}
+		Extension row = new Extension(new SingletonSet());
+		for (Map.Entry<String, Value> binding : rows.get(from).entrySet()) {
+			row.addElement(new ExtensionElem(new ValueConstant(binding
+					.getValue()), binding.getKey()));
+		}
+		row.addElement(new ExtensionElem(new ValueConstant(ValueFactoryImpl
+				.getInstance().createLiteral(from)), rowVariable));
+		return row;
+	}
+
+	/**
+	 * Copies the query and replaces the bound variables by their values.
+	 */
+	private ParsedQuery getBoundQuery() {
+		ParsedQuery result = ParsedQueryCache.copy(query);
+		if (result == null) {
+			throw new UnsupportedOperationException(
+					"The query model of this query cannot be copied!");
+		}
+		if (bindings.isEmpty()) {
+			return result;
+		}
+		MapBindingSet values = new MapBindingSet(bindings.size());
+		for (Map.Entry<String, Value> binding : bindings.entrySet()) {
+			values.addBinding(binding.getKey(), binding.getValue());
+		}
+		new BindingAssigner().optimize(result.getTupleExpr(), result
+				.getDataset(), values);
+		return result;
 	}
 
 	public String toString() {
@@ -201,6 +330,7 @@ public class SPARQLQueryImpl implements SPARQLQuery {
 	private void writeObject(ObjectOutputStream out) throws IOException {
 		out.writeObject(originalQuery);
 		out.writeObject(originalNS);
+		out.writeObject(new HashMap<String, Value>(bindings));
 	}
 
 	@SuppressWarnings("unchecked")
@@ -209,7 +339,13 @@ public class SPARQLQueryImpl implements SPARQLQuery {
 		originalQuery = (String) in.readObject();
 		originalNS = (String) in.readObject();
 		try {
-			this.query = parser.parseQuery(originalQuery, originalNS);
+			bindings = (Map<String, Value>) in.readObject();
+		} catch (OptionalDataException e) {
+			// written without bindings
+			bindings = new HashMap<String, Value>();
+		}
+		try {
+			this.query = ParsedQueryCache.parse(originalQuery, originalNS);
 		} catch (MalformedQueryException mqe) {
 			throw new RuntimeException("Invalid internal validation!");
 		}
@@ -101,13 +101,7 @@ public class SelectXMLVariableBinding extends VariableBindingBase {
 				bindNames = varNames.toArray(new String[varNames.size()]);
 				notifySuper();
 			} else if (qname.equals("result")) {
-				while (true) {
-					try {
-						results.put(new ListBindingSet(varNames, values));
-						return;
-					} catch (InterruptedException ie) {
-					}
-				}
+				results.put(new ListBindingSet(varNames, values));
 			} else if (qname.equals("uri")) {
 				values[pos] = new URIImpl(buffer.toString());
 				buffer.delete(0, buffer.length());
@@ -138,13 +132,7 @@ public class SelectXMLVariableBinding extends VariableBindingBase {
 		}
 
 		public void endDocument() {
-			while (true) {
-				try {
-					results.put(new FinalBindingSet());
-					return;
-				} catch (InterruptedException ie) {
-				}
-			}
+			results.finish();
 		}
 	}
 }
@@ -18,15 +18,13 @@
  */
 package eu.larkc.core.query;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.RandomAccess;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.openrdf.model.BNode;
@@ -41,20 +39,23 @@ import org.openrdf.model.impl.URIImpl;
 import org.openrdf.model.impl.ValueFactoryImpl;
 import org.openrdf.query.BindingSet;
 
-import eu.larkc.core.data.CheatingInMemoryObjectStore;
 import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.DataFactory;
+import eu.larkc.core.data.ImmutableSetOfStatements;
+import eu.larkc.core.data.ObjectHandleRegistry;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.SetOfStatementsImpl;
 import eu.larkc.core.data.VariableBinding;
 import eu.larkc.core.data.VariableBindingValue;
+import eu.larkc.core.queue.BatchQueue;
 import eu.larkc.core.util.RDFConstants;
 
 /**
  * VariableBindingBase is an abstract class to implement asynchronous streaming
  * of RDF variable bindings. All implementing classes must: 1. Invoke
  * super.notifyAll() after setting bindNames 2. Put next the next binding
- * results with results.put(X).
+ * results with results.put(X) 3. Call results.finish() after the last
+ * binding.
  * 
  * @author vassil
  * 
@@ -63,24 +64,55 @@ public class VariableBindingBase implements VariableBinding {
 
 	protected transient AtomicBoolean isClosed = new AtomicBoolean(false);
 	protected transient String[] bindNames;
-	protected transient BlockingQueue<BindingSet> results;
+	protected transient BatchQueue<BindingSet> results;
 	protected transient CloseableIterator<Binding> iterator;
+	/** Why the producer stopped before the end of the results, or null. */
+	private transient volatile Throwable failure;
 	private final static long serialVersionUID = 1L;
 
 	public VariableBindingBase() {
-		this.results = new ArrayBlockingQueue<BindingSet>(1024);
+		this.results = new BatchQueue<BindingSet>();
 	}
 
 	public synchronized List<String> getVariables() {
-		if (bindNames == null) {
+		if (bindNames == null && failure == null) {
 			try {
 				wait();
 			} catch (InterruptedException ie) {
 			}
 		}
+		if (bindNames == null && failure != null) {
+			throw new RuntimeException("Query evaluation failed", failure);
+		}
 		return Collections.unmodifiableList(Arrays.asList(bindNames));
 	}
 
+	/**
+	 * Ends the results with a failure of the producer. The iterator returns
+	 * the results received before, and then throws the failure instead of
+	 * reporting the end of the results. Called by the producer thread.
+	 * 
+	 * @param cause
+	 *            why the producer stopped
+	 */
+	public void fail(Throwable cause) {
+		synchronized (this) {
+			failure = cause;
+			notifyAll();
+		}
+		// not synchronized, the producer may wait for space in the queue
+		results.finish();
+	}
+
+	/**
+	 * Checks whether the consumer has closed the results.
+	 * 
+	 * @return true if the results are closed
+	 */
+	public boolean isClosed() {
+		return isClosed.get();
+	}
+
 	public synchronized CloseableIterator<Binding> iterator() {
 		if (iterator == null) {
 			iterator = new BindingIterator();
@@ -88,9 +120,30 @@ public class VariableBindingBase implements VariableBinding {
 		return iterator;
 	}
 
+	/**
+	 * Returns the bindings as a cursor: the cursor returns itself as the
+	 * binding of every row, and its values are a view of the current row. No
+	 * object is created per row, but the values of a row are only valid until
+	 * the next call of next(), so the consumer has to copy the values it
+	 * keeps. The cursor takes the bindings from {@link #iterator()}, so only
+	 * one of them should be used.
+	 * 
+	 * @return the cursor
+	 */
+	public synchronized CloseableIterator<Binding> cursor() {
+		CloseableIterator<Binding> i = iterator();
+		if (i instanceof BindingIterator == false) {
+			// the rows are materialised already, e.g. after deserialization
+			return i;
+		}
+		return new RowCursor((BindingIterator) i);
+	}
+
 	/**
 	 * This class iterates an asynchronous blocking and returns back the results
-	 * on demand. It works as a local result cache.
+	 * on demand. It works as a local result cache. The results are taken from
+	 * the queue in batches, so the iterator is meant for a single consumer
+	 * thread.
 	 * 
 	 * @author vassil
 	 * 
@@ -99,24 +152,25 @@ public class VariableBindingBase implements VariableBinding {
 
 		private BindingSet next;
 
-		public synchronized boolean hasNext() {
-			while (next == null) {
-				try {
-					next = results.take();
-				} catch (InterruptedException ie) {
-				}
+		public boolean hasNext() {
+			if (next == null) {
+				next = results.take();
 			}
-			if (next instanceof FinalBindingSet) {
-				return false;
+			if (next == null && failure != null && isClosed.get() == false) {
+				throw new RuntimeException("Query evaluation failed", failure);
 			}
-			return true;
+			return next != null;
+		}
+
+		public Binding next() {
+			return new WrappedBinding(nextBindingSet());
 		}
 
-		public synchronized Binding next() {
+		BindingSet nextBindingSet() {
 			if (hasNext() == false) {
 				throw new NoSuchElementException();
 			}
-			WrappedBinding result = new WrappedBinding(next);
+			BindingSet result = next;
 			next = null;
 			return result;
 		}
@@ -126,6 +180,8 @@ public class VariableBindingBase implements VariableBinding {
 
 		public void close() {
 			isClosed.set(true);
+			// stops a producer that waits for space in the queue
+			results.close();
 		}
 
 		public boolean isClosed() {
@@ -134,33 +190,75 @@ public class VariableBindingBase implements VariableBinding {
 	}
 
 	/**
-	 * Helper class to transform a Sesame to LarKC binding.
+	 * The binding of the rows returned by {@link VariableBindingBase#cursor()}.
+	 */
+	private class RowCursor implements CloseableIterator<Binding>, Binding {
+
+		private final BindingIterator rows;
+		private final RowValues values = new RowValues();
+
+		RowCursor(BindingIterator rows) {
+			this.rows = rows;
+		}
+
+		public boolean hasNext() {
+			return rows.hasNext();
+		}
+
+		public Binding next() {
+			values.row = rows.nextBindingSet();
+			return this;
+		}
+
+		public void remove() {
+		}
+
+		public void close() {
+			rows.close();
+		}
+
+		public boolean isClosed() {
+			return rows.isClosed();
+		}
+
+		public List<Value> getValues() {
+			return values;
+		}
+
+		public String toString() {
+			return values.toString();
+		}
+	}
+
+	/**
+	 * Helper class to transform a Sesame to LarKC binding. The read-only list
+	 * of values is a view of the Sesame binding, which is not copied.
 	 * 
 	 * @author vassil
 	 * 
 	 */
 	public class WrappedBinding implements Binding {
 
-		public List<Value> values = new ArrayList<Value>();
+		public final List<Value> values;
 
 		public WrappedBinding(BindingSet bs) {
 			if (bs == null) {
 				throw new IllegalArgumentException("null!");
 			}
-			for (int i = 0; i < bs.size(); i++) {
-				values.add(bs.getValue(bindNames[i]));
-			}
+			RowValues row = new RowValues();
+			row.row = bs;
+			this.values = row;
 		}
 
 		public WrappedBinding(List<Value> values) {
 			if (values == null) {
 				throw new IllegalArgumentException("null!");
 			}
-			this.values = values;
+			this.values = Collections.unmodifiableList(values);
 		}
 
 		public List<Value> getValues() {
-			return Collections.unmodifiableList(values);
+			return values;
 		}
 
 		public String toString() {
@@ -183,35 +281,22 @@ public class VariableBindingBase implements VariableBinding {
 	}
 
 	/**
-	 * Helper class to denote the end of the streamed solutions.
-	 * 
-	 * @author vassil
-	 * 
+	 * Read-only list view of the values of a Sesame binding, in the order of
+	 * the variables. Unbound variables have null values.
 	 */
-	public class FinalBindingSet implements BindingSet {
-
-		public Iterator<org.openrdf.query.Binding> iterator() {
-			throw new UnsupportedOperationException();
-		}
-
-		public Set<String> getBindingNames() {
-			throw new UnsupportedOperationException();
-		}
-
-		public org.openrdf.query.Binding getBinding(String s) {
-			throw new UnsupportedOperationException();
-		}
+	private class RowValues extends AbstractList<Value> implements
+			RandomAccess {
 
-		public boolean hasBinding(String s) {
-			throw new UnsupportedOperationException();
-		}
+		BindingSet row;
 
-		public Value getValue(String s) {
-			throw new UnsupportedOperationException();
+		@Override
+		public Value get(int index) {
+			return row.getValue(bindNames[index]);
 		}
 
+		@Override
 		public int size() {
-			throw new UnsupportedOperationException();
+			return bindNames.length;
 		}
 	}
 
@@ -220,22 +305,34 @@ public class VariableBindingBase implements VariableBinding {
 	public static final BNode vbbBNode = new BNodeImpl(
 			RDFConstants.LARKC_NAMESPACE + "vbbPredicate");
 
+	/** Rough memory used by a buffered binding value, in bytes. */
+	private static final long ESTIMATED_VALUE_BYTES = 64;
+
 	/**
 	 * 
 	 * Return an RDF representation of this object TODO:This should be fixed to
-	 * really use RDF and not the CheatingInMemoryObjectStore
+	 * really use RDF and not the {@link ObjectHandleRegistry}
 	 * 
-	 * @return
+	 * @return a single statement with the handle of this object
 	 */
 	public SetOfStatements toRDF() {
-		String objectID = CheatingInMemoryObjectStore.getInstance()
-				.storeObject(this);
+		String objectID = ObjectHandleRegistry.getInstance().register(this,
+				estimateBytes());
 		StatementImpl statement = new StatementImpl(vbbBNode, vbbPredicate,
 				new LiteralImpl(objectID));
 
 		ArrayList<Statement> list = new ArrayList<Statement>();
 		list.add(statement);
-		return new SetOfStatementsImpl(list);
+		return new ImmutableSetOfStatements(list);
+	}
+
+	/**
+	 * Estimates the memory used by the buffered bindings.
+	 */
+	private long estimateBytes() {
+		String[] names = bindNames;
+		return results.size() * (names == null ? 1 : names.length)
+				* ESTIMATED_VALUE_BYTES;
 	}
 
 	/*
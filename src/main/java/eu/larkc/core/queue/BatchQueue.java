@@ -0,0 +1,303 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.queue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded queue that streams the results of a query from one producer
+ * thread to one consumer thread. Unlike {@link Queue}, the elements are not
+ * handed over one by one: the producer collects them in a batch, and the
+ * consumer takes a whole batch per lock acquisition and is signalled once per
+ * batch rather than once per element.
+ * 
+ * The size of the batches adapts to the consumer. A batch is published when
+ * it is full or, while the consumer waits for elements, with every element,
+ * so a consumer that keeps up with the producer gets small batches without
+ * delay, while a slower consumer gets batches of up to
+ * {@value #MAX_BATCH_SIZE} elements. A consumer that finds the queue empty
+ * takes the batch the producer is collecting, so no element waits for the
+ * next one. If the queue holds its capacity, the producer blocks until the
+ * consumer has taken a batch.
+ * 
+ * The end of the stream is signalled with {@link #finish()}; null elements
+ * are not allowed. The consumer may {@link #close()} the queue to stop the
+ * producer.
+ * 
+ * @param <E>
+ *            The class of objects passed along the queue.
+ */
+public class BatchQueue<E> {
+
+	/** Capacity of a queue that never blocks its producer. */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/** Capacity used if none is given, in elements. */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** The maximum number of elements published at once. */
+	public static final int MAX_BATCH_SIZE = 256;
+
+	private static final Object[] EMPTY = new Object[0];
+
+	private final int capacity;
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+
+	/** The published batches; guarded by the lock. */
+	private final ArrayDeque<Object[]> batches;
+	/** The number of elements in the published batches; guarded by the lock. */
+	private int count;
+	/** Whether the producer has finished; guarded by the lock. */
+	private boolean finished;
+	/** Whether the consumer waits for elements; guarded by the lock. */
+	private boolean consumerWaiting;
+
+	private volatile boolean closed;
+
+	/** The batch the producer collects; guarded by the lock. */
+	private Object[] batch;
+	private int batchLength;
+
+	/** The batch the consumer takes from. */
+	private Object[] current;
+	private int position;
+
+	/**
+	 * Constructor that creates a queue holding at most
+	 * {@value #DEFAULT_CAPACITY} elements.
+	 */
+	public BatchQueue() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor that creates a queue holding at most the given number of
+	 * elements.
+	 * 
+	 * @param theCapacity
+	 *            the maximum number of elements in the queue
+	 * @throws IllegalArgumentException
+	 *             if the capacity is smaller than 1
+	 */
+	public BatchQueue(int theCapacity) {
+		if (theCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be >= 1: "
+					+ theCapacity);
+		}
+		this.capacity = theCapacity;
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.notFull = lock.newCondition();
+		this.batches = new ArrayDeque<Object[]>();
+		this.batch = new Object[Math.min(theCapacity, MAX_BATCH_SIZE)];
+		this.current = EMPTY;
+	}
+
+	/**
+	 * Adds an element to the current batch of the producer, and publishes the
+	 * batch if it is full or the consumer is waiting. Blocks while the queue
+	 * is full.
+	 * 
+	 * @param item
+	 *            The item to put in the queue.
+	 * @return false if the consumer has closed the queue, and the item was
+	 *         discarded
+	 */
+	public boolean put(E item) {
+		if (item == null) {
+			throw new IllegalArgumentException("null!");
+		}
+		if (closed) {
+			return false;
+		}
+		lock.lock();
+		try {
+			if (closed) {
+				return false;
+			}
+			batch[batchLength++] = item;
+			if (batchLength == batch.length || consumerWaiting) {
+				publish();
+			}
+			return closed == false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Publishes the remaining elements and marks the end of the stream. Called
+	 * by the producer once.
+	 */
+	public void finish() {
+		lock.lock();
+		try {
+			publish();
+			finished = true;
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the next element. Blocks until an element is available or the
+	 * producer has finished. An interrupt does not stop the waiting.
+	 * 
+	 * @return the next element, or null at the end of the stream
+	 */
+	@SuppressWarnings("unchecked")
+	public E take() {
+		if (position == current.length && nextBatch() == false) {
+			return null;
+		}
+		E item = (E) current[position];
+		current[position++] = null;
+		return item;
+	}
+
+	/**
+	 * Discards the elements and stops the producer: the following elements
+	 * are not added to the queue. Called by the consumer.
+	 */
+	public void close() {
+		closed = true;
+		lock.lock();
+		try {
+			batches.clear();
+			count = 0;
+			Arrays.fill(batch, 0, batchLength, null);
+			batchLength = 0;
+			notFull.signal();
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		current = EMPTY;
+		position = 0;
+	}
+
+	/**
+	 * Checks whether the consumer has closed the queue.
+	 * 
+	 * @return true if the queue is closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns the number of published elements that the consumer did not take
+	 * a batch of yet.
+	 * 
+	 * @return The size of the queue.
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the maximum number of elements this queue holds.
+	 * 
+	 * @return the capacity of the queue
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Hands the batch of the producer over to the consumer. Called with the
+	 * lock held.
+	 */
+	private void publish() {
+		// a batch is always accepted by an empty queue
+		while (batchLength > 0 && count > 0
+				&& count > capacity - batchLength && closed == false) {
+			notFull.awaitUninterruptibly();
+		}
+		// the consumer may have taken the batch while the producer waited
+		if (batchLength == 0 || closed) {
+			return;
+		}
+		Object[] items = detachBatch();
+		batches.add(items);
+		count += items.length;
+		notEmpty.signal();
+	}
+
+	/**
+	 * Removes the elements from the batch of the producer. Called with the
+	 * lock held.
+	 */
+	private Object[] detachBatch() {
+		Object[] items;
+		if (batchLength == batch.length) {
+			items = batch;
+			batch = new Object[batch.length];
+		} else {
+			items = Arrays.copyOf(batch, batchLength);
+			Arrays.fill(batch, 0, batchLength, null);
+		}
+		batchLength = 0;
+		return items;
+	}
+
+	/**
+	 * Takes the next batch for the consumer. If no batch is published, the
+	 * elements the producer has collected so far are taken.
+	 * 
+	 * @return false at the end of the stream
+	 */
+	private boolean nextBatch() {
+		lock.lock();
+		try {
+			Object[] next = batches.poll();
+			while (next == null && batchLength == 0 && finished == false
+					&& closed == false) {
+				consumerWaiting = true;
+				notEmpty.awaitUninterruptibly();
+				next = batches.poll();
+			}
+			consumerWaiting = false;
+			if (next != null) {
+				count -= next.length;
+				notFull.signal();
+			} else if (batchLength > 0) {
+				next = detachBatch();
+			} else {
+				return false;
+			}
+			current = next;
+			position = 0;
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -18,67 +18,240 @@
  */
 package eu.larkc.core.queue;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * A blocking queue. Not as good as Queue1 (which uses one of Doug Lea's nifty
- * queue classes), but this one does allow the putting of 'null' on the queue.
- * Of course, this doesn't make much sense if the consumer is polling, but it's
- * useful in the short term.
+ * A bounded blocking queue backed by a circular array. Unlike the queues in
+ * java.util.concurrent this one does allow the putting of 'null' on the queue,
+ * which the plug-in managers use to signal that a plug-in did not compute any
+ * results.
+ * 
+ * If the queue is full, {@link #put(Object)} blocks the producer until a
+ * consumer has taken an element, so a fast plug-in cannot flood the heap
+ * before a slow plug-in further down the pipeline drains it. Producers that
+ * must not block can use {@link #offer(Object)} or
+ * {@link #offer(Object, long, TimeUnit)} instead.
  * 
  * @param <E>
  *            The class of objects passed along the queue.
  */
 public class Queue<E> {
 
-	private List<QueueListener<E>> listeners;
-	private final List<E> mQueue = new LinkedList<E>();
+	/** Capacity of a queue that never blocks its producers. */
+	public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+	/** Capacity used for the queues between two plug-ins if none is given. */
+	public static final int DEFAULT_CAPACITY = 16;
+
+	/** Initial size of the backing array; it grows up to the capacity. */
+	private static final int INITIAL_ARRAY_SIZE = 16;
+
+	private final List<QueueListener<E>> listeners;
+
+	private final int capacity;
+	private Object[] items;
+	private int head;
+	private int count;
+
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
 
 	/**
-	 * Constructor that initializes listeners.
+	 * Constructor that creates an unbounded queue. Used for control messages,
+	 * where blocking the sender could dead-lock two plug-in managers.
 	 */
 	public Queue() {
-		this.listeners = new ArrayList<QueueListener<E>>();
+		this(UNBOUNDED);
+	}
+
+	/**
+	 * Constructor that creates a queue holding at most the given number of
+	 * elements.
+	 * 
+	 * @param theCapacity
+	 *            the maximum number of elements in the queue
+	 * @throws IllegalArgumentException
+	 *             if the capacity is smaller than 1
+	 */
+	public Queue(int theCapacity) {
+		if (theCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be >= 1: "
+					+ theCapacity);
+		}
+		this.capacity = theCapacity;
+		this.items = new Object[Math.min(theCapacity, INITIAL_ARRAY_SIZE)];
+		this.head = 0;
+		this.count = 0;
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.notFull = lock.newCondition();
+		this.listeners = new CopyOnWriteArrayList<QueueListener<E>>();
 	}
 
 	/**
-	 * Returns one element of the queue and deletes it.
+	 * Returns one element of the queue and deletes it. Blocks until an element
+	 * is available. An interrupt does not stop the waiting; the interrupt
+	 * status of the thread is still set when the element is returned. Use
+	 * {@link #takeInterruptibly()} or {@link #take(long, TimeUnit)} to wait
+	 * for an element that may never arrive.
 	 * 
 	 * @return The first element of the queue.
 	 */
-	public synchronized E take() {
+	public E take() {
+		lock.lock();
 		try {
-			while (mQueue.isEmpty()) {
-				wait();
+			while (count == 0) {
+				notEmpty.awaitUninterruptibly();
 			}
-			return mQueue.remove(0);
-		} catch (InterruptedException e) {
-			// We never call interrupt, so this exception can be ignored
-			return null;
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns one element of the queue and deletes it. Blocks until an element
+	 * is available or the thread is interrupted.
+	 * 
+	 * @return The first element of the queue.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public E takeInterruptibly() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
 		}
 	}
 
 	/**
-	 * Puts one element to the queue.
+	 * Returns one element of the queue and deletes it, waiting up to the given
+	 * time for an element to become available.
+	 * 
+	 * @param timeout
+	 *            how long to wait before giving up
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return The first element of the queue.
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 * @throws TimeoutException
+	 *             if the queue stayed empty
+	 */
+	public E take(long timeout, TimeUnit unit) throws InterruptedException,
+			TimeoutException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0) {
+					throw new TimeoutException("Queue stayed empty for "
+							+ timeout + " " + unit);
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Puts one element to the queue. Blocks while the queue is full.
 	 * 
 	 * @param item
 	 *            The item to put in the queue.
 	 */
-	public synchronized void put(E item) {
-		mQueue.add(item);
-		notify();
+	public void put(E item) {
+		lock.lock();
+		try {
+			while (count == capacity) {
+				notFull.awaitUninterruptibly();
+			}
+			enqueue(item);
+		} finally {
+			lock.unlock();
+		}
 		fireElementAdded(item);
 	}
 
+	/**
+	 * Puts one element to the queue if there is space left.
+	 * 
+	 * @param item
+	 *            The item to put in the queue.
+	 * @return true if the item was added, false if the queue is full
+	 */
+	public boolean offer(E item) {
+		lock.lock();
+		try {
+			if (count == capacity) {
+				return false;
+			}
+			enqueue(item);
+		} finally {
+			lock.unlock();
+		}
+		fireElementAdded(item);
+		return true;
+	}
+
+	/**
+	 * Puts one element to the queue, waiting up to the given time for space to
+	 * become available.
+	 * 
+	 * @param item
+	 *            The item to put in the queue.
+	 * @param timeout
+	 *            how long to wait before giving up
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return true if the item was added, false if the queue stayed full
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean offer(E item, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == capacity) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull.awaitNanos(nanos);
+			}
+			enqueue(item);
+		} finally {
+			lock.unlock();
+		}
+		fireElementAdded(item);
+		return true;
+	}
+
 	/**
 	 * Returns the size of the queue.
 	 * 
 	 * @return The size of the queue.
 	 */
-	public synchronized int size() {
-		return mQueue.size();
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -86,8 +259,32 @@ public class Queue<E> {
 	 * 
 	 * @return True if the queue is empty, false otherwise.
 	 */
-	public synchronized boolean isEmpty() {
-		return mQueue.isEmpty();
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the maximum number of elements this queue holds.
+	 * 
+	 * @return the capacity of the queue
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of elements that can be put on the queue without
+	 * blocking.
+	 * 
+	 * @return the remaining capacity
+	 */
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - count;
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -95,11 +292,17 @@ public class Queue<E> {
 	 * 
 	 * @return The first element of the queue.
 	 */
-	public synchronized E poll() {
-		if (!mQueue.isEmpty()) {
-			return mQueue.get(0);
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		lock.lock();
+		try {
+			if (count > 0) {
+				return (E) items[head];
+			}
+			return null;
+		} finally {
+			lock.unlock();
 		}
-		return null;
 	}
 
 	/**
@@ -108,19 +311,59 @@ public class Queue<E> {
 	 * @param theQueueListener
 	 *            The listener to add.
 	 */
-	public synchronized void addListener(QueueListener<E> theQueueListener) {
+	public void addListener(QueueListener<E> theQueueListener) {
 		this.listeners.add(theQueueListener);
 	}
 
 	/**
-	 * Informs all listener that a element was added.
+	 * Informs all listener that a element was added. Called without holding
+	 * the lock of the queue, so listeners may safely access the queue.
 	 * 
 	 * @param e
 	 *            The added element.
 	 */
-	public synchronized void fireElementAdded(E e) {
+	public void fireElementAdded(E e) {
 		for (QueueListener<E> l : listeners) {
 			l.elementAdded(e);
 		}
 	}
+
+	/**
+	 * Appends an element; the lock has to be held by the caller.
+	 */
+	private void enqueue(E item) {
+		if (count == items.length) {
+			grow();
+		}
+		items[(head + count) % items.length] = item;
+		count++;
+		notEmpty.signal();
+	}
+
+	/**
+	 * Removes the first element; the lock has to be held by the caller.
+	 */
+	@SuppressWarnings("unchecked")
+	private E dequeue() {
+		E item = (E) items[head];
+		items[head] = null;
+		head = (head + 1) % items.length;
+		count--;
+		notFull.signal();
+		return item;
+	}
+
+	/**
+	 * Doubles the backing array (up to the capacity) and unwraps the elements
+	 * to its start; the lock has to be held by the caller.
+	 */
+	private void grow() {
+		int newLength = (int) Math.min((long) items.length * 2, capacity);
+		Object[] newItems = new Object[newLength];
+		for (int i = 0; i < count; i++) {
+			newItems[i] = items[(head + i) % items.length];
+		}
+		items = newItems;
+		head = 0;
+	}
 }
@@ -0,0 +1,96 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the numeric system properties that tune the platform. A property that
+ * is not a number or out of range is logged and replaced by its default, so
+ * that a typo does not keep the platform from starting.
+ */
+public final class SystemProperties {
+
+	private static Logger logger = LoggerFactory
+			.getLogger(SystemProperties.class);
+
+	private SystemProperties() {
+	}
+
+	/**
+	 * Returns the value of a system property that has to be a positive int.
+	 * 
+	 * @param name
+	 *            the name of the property
+	 * @param defaultValue
+	 *            the value if the property is not set or invalid
+	 * @return the value of the property
+	 */
+	public static int getInt(String name, int defaultValue) {
+		return (int) getLong(name, defaultValue, 1, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns the value of a system property that has to be a positive long.
+	 * 
+	 * @param name
+	 *            the name of the property
+	 * @param defaultValue
+	 *            the value if the property is not set or invalid
+	 * @return the value of the property
+	 */
+	public static long getLong(String name, long defaultValue) {
+		return getLong(name, defaultValue, 1);
+	}
+
+	/**
+	 * Returns the value of a system property that has to be a long of at least
+	 * the given minimum.
+	 * 
+	 * @param name
+	 *            the name of the property
+	 * @param defaultValue
+	 *            the value if the property is not set or invalid
+	 * @param minimum
+	 *            the smallest valid value
+	 * @return the value of the property
+	 */
+	public static long getLong(String name, long defaultValue, long minimum) {
+		return getLong(name, defaultValue, minimum, Long.MAX_VALUE);
+	}
+
+	private static long getLong(String name, long defaultValue, long minimum,
+			long maximum) {
+		String value = System.getProperty(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			long result = Long.parseLong(value.trim());
+			if (result >= minimum && result <= maximum) {
+				return result;
+			}
+		} catch (NumberFormatException e) {
+			// logged below
+		}
+		logger.warn("Invalid value for {}: {}", name, value);
+		return defaultValue;
+	}
+}
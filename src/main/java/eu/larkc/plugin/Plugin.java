@@ -32,6 +32,7 @@ import eu.larkc.core.data.CloseableIterator;
 import eu.larkc.core.data.DataFactory;
 import eu.larkc.core.data.SetOfStatements;
 import eu.larkc.core.data.SetOfStatementsImpl;
+import eu.larkc.core.data.StatementSink;
 import eu.larkc.core.data.workflow.WorkflowDescriptionPredicates;
 import eu.larkc.core.util.RDFUtilities;
 
@@ -69,6 +70,16 @@ public abstract class Plugin {
 	 */
 	private int inputBehavior;
 
+	/**
+	 * Default number of statements in the chunks a streaming plug-in emits.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+	/**
+	 * Maximum number of statements in the chunks a streaming plug-in emits.
+	 */
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
 	/**
 	 * Getter. Retrieves the inputBehavior.
 	 * 
@@ -88,6 +99,29 @@ public abstract class Plugin {
 		inputBehavior = ib;
 	}
 
+	/**
+	 * Getter. Retrieves the maximum number of statements in the chunks this
+	 * plug-in emits when it is invoked in streaming mode.
+	 * 
+	 * @return the chunkSize
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Whether this plug-in processes its input chunk by chunk. Streaming
+	 * plug-ins override this method to return true and implement
+	 * {@link #invokeStreamingInternal(SetOfStatements, boolean, StatementSink)}
+	 * ; the plug-in manager then calls them as soon as the first chunk of
+	 * their input is available, instead of waiting for the whole input.
+	 * 
+	 * @return true if the plug-in supports streaming, false otherwise
+	 */
+	public boolean isStreaming() {
+		return false;
+	}
+
 	/**
 	 * Constructs and gives the name to the plug-in.
 	 * 
@@ -124,6 +158,8 @@ public abstract class Plugin {
 		inputBehavior = extractInputBehavior(pluginParameters);
 		logger.debug("Input behavior set to: {}", this.inputBehavior);
 
+		chunkSize = extractChunkSize(pluginParameters);
+
 		initialiseInternal(parameters);
 	}
 
@@ -178,6 +214,38 @@ public abstract class Plugin {
 		return ib;
 	}
 
+	/**
+	 * Returns the chunk size of the plugin if it is contained in the workflow
+	 * description, otherwise the default value is used.
+	 * 
+	 * @param pluginParameters
+	 *            The plugin parameters.
+	 * @return The maximum number of statements in a chunk.
+	 */
+	private int extractChunkSize(SetOfStatements pluginParameters) {
+		if (pluginParameters == null)
+			return DEFAULT_CHUNK_SIZE;
+
+		int size = DEFAULT_CHUNK_SIZE;
+		CloseableIterator<Statement> statements = pluginParameters
+				.getStatements();
+		Statement stmt;
+		while (statements.hasNext()) {
+			stmt = statements.next();
+			if (stmt.getPredicate().equals(
+					WorkflowDescriptionPredicates.HAS_CHUNK_SIZE)) {
+				try {
+					size = Integer.parseInt(stmt.getObject().stringValue());
+				} catch (NumberFormatException nfe) {
+					size = DEFAULT_CHUNK_SIZE;
+				}
+			}
+		}
+		statements.close();
+
+		return size < 1 ? DEFAULT_CHUNK_SIZE : size;
+	}
+
 	/**
 	 * Override this method to initialise a plugin based on parameters from the
 	 * workflow. Note that the initialiseInternal is the only method that may
@@ -199,6 +267,30 @@ public abstract class Plugin {
 	 */
 	protected abstract SetOfStatements invokeInternal(SetOfStatements input);
 
+	/**
+	 * This is the method where the work of a streaming plug-in should be done.
+	 * It is called once for every chunk of the input, in order, as soon as the
+	 * chunk is available. Results can be emitted to the sink at any time; they
+	 * are passed on to the next plug-ins in bounded chunks. Like
+	 * {@link #invokeInternal(SetOfStatements)}, this method is not allowed to
+	 * change the state of the plugin.
+	 * 
+	 * The default implementation throws an UnsupportedOperationException;
+	 * plug-ins that override it must also override {@link #isStreaming()}.
+	 * 
+	 * @param chunk
+	 *            the next chunk of the input of the plugin
+	 * @param isLastChunk
+	 *            true if no more chunks follow for this invocation
+	 * @param output
+	 *            the sink to emit the output of the plugin to
+	 */
+	protected void invokeStreamingInternal(SetOfStatements chunk,
+			boolean isLastChunk, StatementSink output) {
+		throw new UnsupportedOperationException("Plug-in " + pluginName
+				+ " does not support streaming");
+	}
+
 	/**
 	 * Called by the platform to allow the plug-in to do any final resource
 	 * clean up. The plug-in should not be used after this has been invoked.
@@ -251,6 +343,25 @@ public abstract class Plugin {
 		return output;
 	}
 
+	/**
+	 * Called by the plug-in manager for every chunk of the input of a
+	 * streaming plug-in. Results are not cached. Delegates to
+	 * invokeStreamingInternal.
+	 * 
+	 * @param chunk
+	 *            the next chunk of the input
+	 * @param isLastChunk
+	 *            true if no more chunks follow for this invocation
+	 * @param output
+	 *            the sink to emit the output to
+	 */
+	public final void invokeStreaming(SetOfStatements chunk,
+			boolean isLastChunk, StatementSink output) {
+		logger.debug("Plugin {} called with a chunk (last: {})",
+				pluginName, isLastChunk);
+		invokeStreamingInternal(chunk, isLastChunk, output);
+	}
+
 	/**
 	 * Insert calculated result into cache. If you desire no caching
 	 * functionality, override this method and make it empty
@@ -0,0 +1,115 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.iterator.SimpleCloseableIterator;
+
+/**
+ * Tests that graphs survive the binary encoding unchanged.
+ */
+public class BinaryGraphEncodingTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final URI NAME = new URIImpl(NS + "name");
+
+	private static final URI AGE = new URIImpl(NS + "age");
+
+	private static final URI INTEGER = new URIImpl(
+			"http://www.w3.org/2001/XMLSchema#integer");
+
+	private static final URI GRAPH = new URIImpl(NS + "graph");
+
+	private List<Statement> createStatements() {
+		List<Statement> statements = new ArrayList<Statement>();
+		for (int i = 0; i < 100; i++) {
+			URI person = new URIImpl(NS + "person" + i);
+			statements.add(new StatementImpl(person, NAME, new LiteralImpl(
+					"Person " + i)));
+			statements.add(new ContextStatementImpl(person, NAME,
+					new LiteralImpl("Person " + i, "en"), GRAPH));
+			statements.add(new ContextStatementImpl(person, AGE,
+					new LiteralImpl(String.valueOf(20 + i % 50), INTEGER),
+					GRAPH));
+			statements.add(new StatementImpl(new BNodeImpl("node" + i), NAME,
+					person));
+		}
+		return statements;
+	}
+
+	private void testRoundTrip(boolean deflate) {
+		List<Statement> statements = createStatements();
+		String encoded = BinaryGraphEncoding.encode(GRAPH,
+				new SimpleCloseableIterator<Statement>(statements.iterator()),
+				deflate);
+		List<Statement> decoded = new ArrayList<Statement>();
+		Assert.assertEquals(GRAPH, BinaryGraphEncoding.decode(encoded,
+				decoded));
+		Assert.assertEquals(statements, decoded);
+		for (int i = 0; i < statements.size(); i++) {
+			Assert.assertEquals(statements.get(i).getContext(), decoded.get(i)
+					.getContext());
+		}
+	}
+
+	/**
+	 * Encodes and decodes without compression.
+	 */
+	@Test
+	public void testRoundTrip() {
+		testRoundTrip(false);
+	}
+
+	/**
+	 * Encodes and decodes with compression, which makes the encoding smaller.
+	 */
+	@Test
+	public void testDeflatedRoundTrip() {
+		testRoundTrip(true);
+		List<Statement> statements = createStatements();
+		int plain = BinaryGraphEncoding.encode(GRAPH,
+				new SimpleCloseableIterator<Statement>(statements.iterator()),
+				false).length();
+		int deflated = BinaryGraphEncoding.encode(GRAPH,
+				new SimpleCloseableIterator<Statement>(statements.iterator()),
+				true).length();
+		Assert.assertTrue(deflated < plain);
+	}
+
+	/**
+	 * Rejects data that is not a binary graph.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupported() {
+		BinaryGraphEncoding.decode("AAAA", new ArrayList<Statement>());
+	}
+}
@@ -0,0 +1,259 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.query.VariableBindingBase;
+import eu.larkc.core.util.RDFConstants;
+
+/**
+ * Tests decoding each kind of payload from the input of an invocation, for
+ * the statements without a context and for those of an invocation.
+ */
+public class DecodedInputTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final URI INVOCATION = new URIImpl(
+			"http://larkc.eu/invocation/test");
+
+	private static URI uri(String name) {
+		return new URIImpl(NS + name);
+	}
+
+	/**
+	 * Returns a payload statement in the given context, or without a context
+	 * for null.
+	 */
+	private static Statement payload(URI predicate, Value object, URI context) {
+		Resource subject = new BNodeImpl("payload");
+		if (context == null) {
+			return new StatementImpl(subject, predicate, object);
+		}
+		return new ContextStatementImpl(subject, predicate, object, context);
+	}
+
+	/**
+	 * Returns an input holding a payload for the statements without a context
+	 * and one for the invocation, whose objects are given in this order.
+	 */
+	private static SetOfStatements input(URI predicate, Value withoutContext,
+			Value ofInvocation) {
+		List<Statement> statements = new ArrayList<Statement>();
+		statements.add(payload(predicate, withoutContext, null));
+		statements.add(payload(predicate, ofInvocation, INVOCATION));
+		return new SetOfStatementsImpl(statements);
+	}
+
+	private static DecodedInput decode(SetOfStatements input, URI invocationID) {
+		return DataFactory.INSTANCE.decode(input, invocationID);
+	}
+
+	private static List<Statement> graph(String subject) {
+		List<Statement> statements = new ArrayList<Statement>();
+		statements.add(new StatementImpl(uri(subject), uri("p"), uri("o")));
+		return statements;
+	}
+
+	private static Value binary(String subject) {
+		return new LiteralImpl(BinaryGraphEncoding.encode(uri("graph"),
+				new SetOfStatementsImpl(graph(subject)).getStatements(), true));
+	}
+
+	private static Set<Resource> subjects(RdfGraph graph) {
+		Set<Resource> result = new HashSet<Resource>();
+		CloseableIterator<Statement> i = graph.getStatements();
+		while (i.hasNext()) {
+			result.add(i.next().getSubject());
+		}
+		i.close();
+		return result;
+	}
+
+	private static Set<Resource> set(Resource... resources) {
+		Set<Resource> result = new HashSet<Resource>();
+		for (Resource resource : resources) {
+			result.add(resource);
+		}
+		return result;
+	}
+
+	/**
+	 * TriG embeddings are taken from the context of the invocation.
+	 */
+	@Test
+	public void testTrigGraph() {
+		SetOfStatements input = input(RdfGraphInMemory.TRIG_PREDICATE,
+				new LiteralImpl("<" + NS + "graph> { <" + NS + "a> <" + NS
+						+ "p> <" + NS + "o> . }"), new LiteralImpl("<" + NS
+						+ "graph> { <" + NS + "b> <" + NS + "p> <" + NS
+						+ "o> . }"));
+		Assert.assertEquals(set(uri("a")), subjects(decode(input, null)
+				.getRdfGraph()));
+		Assert.assertEquals(set(uri("b")), subjects(decode(input, INVOCATION)
+				.getRdfGraph()));
+	}
+
+	/**
+	 * Binary embeddings are taken from the context of the invocation.
+	 */
+	@Test
+	public void testBinaryGraph() {
+		SetOfStatements input = input(RdfGraphInMemory.BINARY_PREDICATE,
+				binary("a"), binary("b"));
+		RdfGraph graph = decode(input, null).getRdfGraph();
+		Assert.assertEquals(uri("graph"), graph.getName());
+		Assert.assertEquals(set(uri("a")), subjects(graph));
+		Assert.assertEquals(set(uri("b")), subjects(decode(input, INVOCATION)
+				.getRdfGraph()));
+		Assert.assertNull(decode(input, uri("other")).getRdfGraph());
+	}
+
+	/**
+	 * A single graph handle gives the registered graph itself.
+	 */
+	@Test
+	public void testGraphHandle() {
+		RdfGraph a = new RdfGraphInMemory(uri("graph"), graph("a"));
+		RdfGraph b = new RdfGraphInMemory(uri("graph"), graph("b"));
+		ObjectHandleRegistry registry = ObjectHandleRegistry.getInstance();
+		SetOfStatements input = input(RdfGraphInMemory.HANDLE_PREDICATE,
+				new LiteralImpl(registry.register(a)), new LiteralImpl(
+						registry.register(b)));
+		Assert.assertSame(a, decode(input, null).getRdfGraph());
+		Assert.assertSame(b, decode(input, INVOCATION).getRdfGraph());
+	}
+
+	/**
+	 * The statements of several embedded graphs of the invocation are merged.
+	 */
+	@Test
+	public void testSeveralGraphs() {
+		List<Statement> statements = new ArrayList<Statement>();
+		for (URI context : new URI[] { null, INVOCATION }) {
+			statements.add(payload(RdfGraphInMemory.BINARY_PREDICATE,
+					binary("a"), context));
+			statements.add(payload(RdfGraphInMemory.HANDLE_PREDICATE,
+					new LiteralImpl(ObjectHandleRegistry.getInstance()
+							.register(
+									new RdfGraphInMemory(uri("graph"),
+											graph("b")))), context));
+		}
+		SetOfStatements input = new SetOfStatementsImpl(statements);
+		Assert.assertEquals(set(uri("a"), uri("b")), subjects(decode(input,
+				null).getRdfGraph()));
+		Assert.assertEquals(set(uri("a"), uri("b")), subjects(decode(input,
+				INVOCATION).getRdfGraph()));
+	}
+
+	/**
+	 * Remote graphs are only taken from the statements without a context.
+	 */
+	@Test
+	public void testRemoteGraph() {
+		SetOfStatements input = input(new URIImpl(DataFactory.LARKC_NS
+				+ "RDFGraphRemote"), new URIImpl("http://larkc.eu/a"),
+				new URIImpl("http://larkc.eu/b"));
+		Assert.assertEquals(new URIImpl("http://larkc.eu/a"), decode(input,
+				null).getRdfGraph().getName());
+		Assert.assertNull(decode(input, INVOCATION).getRdfGraph());
+	}
+
+	/**
+	 * Queries are taken from the context of the invocation.
+	 */
+	@Test
+	public void testQuery() {
+		String a = "SELECT ?a WHERE { ?a ?p ?o }";
+		String b = "SELECT ?b WHERE { ?b ?p ?o }";
+		SetOfStatements input = input(RDFConstants.LARKC_HASSERIALIZEDFORM,
+				new LiteralImpl(a), new LiteralImpl(b));
+		Assert.assertEquals(a, decode(input, null).getSPARQLQuery().toString());
+		Assert.assertEquals(b, decode(input, INVOCATION).getSPARQLQuery()
+				.toString());
+		Assert.assertNull(decode(input, uri("other")).getSPARQLQuery());
+	}
+
+	/**
+	 * Attribute/value pairs are taken from the context of the invocation.
+	 */
+	@Test
+	public void testAttributeValues() {
+		SetOfStatements input = input(RDFConstants.LARKC_ATTVALUE,
+				new LiteralImpl("a->1"), new LiteralImpl("b->2"));
+		AttributeValueMap withoutContext = decode(input, null)
+				.getAttributeValueMap();
+		Assert.assertEquals(1, withoutContext.size());
+		Assert.assertEquals("1", withoutContext.get("a"));
+		AttributeValueMap ofInvocation = decode(input, INVOCATION)
+				.getAttributeValueMap();
+		Assert.assertEquals(1, ofInvocation.size());
+		Assert.assertEquals("2", ofInvocation.get("b"));
+		Assert.assertTrue(decode(input, uri("other")).getAttributeValueMap()
+				.isEmpty());
+	}
+
+	/**
+	 * Variable binding handles are found in any context, and a dropped handle
+	 * fails.
+	 */
+	@Test
+	public void testBindingHandle() {
+		for (URI context : new URI[] { null, INVOCATION }) {
+			VariableBindingBase bindings = new VariableBindingBase();
+			Statement handle = bindings.toRDF().getStatements().next();
+			List<Statement> statements = new ArrayList<Statement>();
+			statements.add(context == null ? handle : new ContextStatementImpl(
+					handle.getSubject(), handle.getPredicate(), handle
+							.getObject(), context));
+			SetOfStatements input = new SetOfStatementsImpl(statements);
+			Assert.assertSame(bindings, decode(input, null)
+					.getVariableBindingBase());
+			Assert.assertSame(bindings, decode(input, INVOCATION)
+					.getVariableBindingBase());
+
+			ObjectHandleRegistry.getInstance().release(
+					handle.getObject().stringValue());
+			try {
+				decode(input, context).getVariableBindingBase();
+				Assert.fail();
+			} catch (RuntimeException e) {
+				// expected
+			}
+		}
+		Assert.assertNull(decode(new SetOfStatementsImpl(), null)
+				.getVariableBindingBase());
+	}
+}
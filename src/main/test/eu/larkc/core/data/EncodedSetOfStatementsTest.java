@@ -0,0 +1,154 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.BNodeImpl;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * Tests the dictionary encoded set of statements.
+ */
+public class EncodedSetOfStatementsTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private List<Statement> createStatements() {
+		URI knows = new URIImpl(NS + "knows");
+		URI name = new URIImpl(NS + "name");
+		List<Statement> statements = new ArrayList<Statement>();
+		for (int i = 0; i < 100; i++) {
+			URI person = new URIImpl(NS + "person" + i);
+			statements.add(new StatementImpl(person, knows, new BNodeImpl("b"
+					+ i)));
+			statements.add(new StatementImpl(person, name, new LiteralImpl(
+					"Person " + i, "en")));
+		}
+		statements.add(new ContextStatementImpl(new URIImpl(NS + "person0"),
+				name, new LiteralImpl("1", new URIImpl(
+						"http://www.w3.org/2001/XMLSchema#int")), new URIImpl(
+						NS + "graph")));
+		return statements;
+	}
+
+	private List<Statement> toList(SetOfStatements set) {
+		List<Statement> list = new ArrayList<Statement>();
+		CloseableIterator<Statement> iter = set.getStatements();
+		while (iter.hasNext()) {
+			list.add(iter.next());
+		}
+		iter.close();
+		return list;
+	}
+
+	/**
+	 * The statements are returned in order, with their contexts, and the
+	 * terms they share are stored once.
+	 */
+	@Test
+	public void testRoundTrip() {
+		TermDictionary dictionary = new TermDictionary();
+		List<Statement> statements = createStatements();
+		EncodedSetOfStatements set = new EncodedSetOfStatements(statements,
+				dictionary);
+
+		Assert.assertEquals(statements.size(), set.size());
+		List<Statement> decoded = toList(set);
+		Assert.assertEquals(statements, decoded);
+		Assert.assertNull(decoded.get(0).getContext());
+		Assert.assertEquals(new URIImpl(NS + "graph"), decoded.get(
+				decoded.size() - 1).getContext());
+		// 100 persons, 100 blank nodes, 100 names, 2 predicates, the typed
+		// literal and the context
+		Assert.assertEquals(304, dictionary.size());
+
+		new EncodedSetOfStatements(statements, dictionary);
+		Assert.assertEquals(304, dictionary.size());
+	}
+
+	/**
+	 * The statistics are known without iterating; a concatenation knows its
+	 * size only if all of its parts do.
+	 */
+	@Test
+	public void testStatistics() {
+		EncodedSetOfStatements set = new EncodedSetOfStatements(
+				createStatements(), new TermDictionary());
+		Assert.assertEquals(201, set.getStatementCount());
+		Assert.assertEquals(100, set.getDistinctSubjectCount());
+		Assert.assertEquals(2, set.getDistinctPredicateCount());
+
+		List<SetOfStatements> parts = new ArrayList<SetOfStatements>();
+		parts.add(set);
+		parts.add(new SetOfStatementsImpl(createStatements()));
+		Assert.assertEquals(402, new ConcatenatedSetOfStatements(parts)
+				.getStatementCount());
+		parts.add(new SetOfStatements() {
+			private static final long serialVersionUID = 1L;
+
+			public CloseableIterator<Statement> getStatements() {
+				throw new UnsupportedOperationException();
+			}
+
+			public SetOfStatements toRDF(SetOfStatements data) {
+				throw new UnsupportedOperationException();
+			}
+		});
+		Assert.assertEquals(StatementStatistics.UNKNOWN,
+				new ConcatenatedSetOfStatements(parts).getStatementCount());
+	}
+
+	/**
+	 * A serialised set is read back with the same statements.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		List<Statement> statements = createStatements();
+		EncodedSetOfStatements set = new EncodedSetOfStatements(statements,
+				new TermDictionary());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		EncodedSetOfStatements read = (EncodedSetOfStatements) in.readObject();
+
+		Assert.assertNotSame(set.getDictionary(), read.getDictionary());
+		Assert.assertEquals(set.getDictionary().size(), read.getDictionary()
+				.size());
+		Assert.assertEquals(statements, toList(read));
+	}
+}
@@ -0,0 +1,128 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * Tests the immutable set of statements and the sets derived from it.
+ */
+public class ImmutableSetOfStatementsTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final URI NAME = new URIImpl(NS + "name");
+
+	private static final URI AGE = new URIImpl(NS + "age");
+
+	private List<Statement> createStatements() {
+		List<Statement> statements = new ArrayList<Statement>();
+		for (int i = 0; i < 10; i++) {
+			URI person = new URIImpl(NS + "person" + i);
+			statements.add(new StatementImpl(person, NAME, new LiteralImpl(
+					"Person " + i)));
+			statements.add(new StatementImpl(person, AGE, new LiteralImpl(
+					String.valueOf(20 + i))));
+		}
+		return statements;
+	}
+
+	/**
+	 * Derived sets contain the right statements, and the statement objects
+	 * are shared with the parent set.
+	 */
+	@Test
+	public void testDerivedSets() {
+		List<Statement> statements = createStatements();
+		ImmutableSetOfStatements set = new ImmutableSetOfStatements(
+				statements);
+
+		ImmutableSetOfStatements names = set.match(null, NAME, null);
+		Assert.assertEquals(10, names.size());
+		Assert.assertSame(statements.get(2), names.get(1));
+
+		ImmutableSetOfStatements range = set.subSet(4, 8);
+		Assert.assertEquals(statements.subList(4, 8), Arrays.asList(range.get(
+				0), range.get(1), range.get(2), range.get(3)));
+		ImmutableSetOfStatements ages = range.match(null, AGE, null);
+		Assert.assertEquals(2, ages.size());
+		Assert.assertSame(statements.get(5), ages.get(0));
+		Assert.assertSame(statements.get(7), ages.get(1));
+		Assert.assertSame(range, range.match(null, null, null));
+	}
+
+	/**
+	 * Immutable sets are not copied for sharing; mutable ones are.
+	 */
+	@Test
+	public void testCopyOf() {
+		List<Statement> statements = createStatements();
+		ImmutableSetOfStatements set = new ImmutableSetOfStatements(
+				statements);
+		Assert.assertSame(set, ImmutableSetOfStatements.copyOf(set));
+		List<SetOfStatements> parts = new ArrayList<SetOfStatements>();
+		parts.add(set);
+		parts.add(set.subSet(0, 2));
+		SetOfStatements concatenated = new ConcatenatedSetOfStatements(parts);
+		Assert.assertSame(concatenated, ImmutableSetOfStatements
+				.copyOf(concatenated));
+
+		SetOfStatementsImpl mutable = new SetOfStatementsImpl(statements);
+		SetOfStatements copy = ImmutableSetOfStatements.copyOf(mutable);
+		mutable.getData().clear();
+		Assert.assertEquals(set, copy);
+	}
+
+	/**
+	 * A derived set is serialised without the statements of its parent.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		ImmutableSetOfStatements set = new ImmutableSetOfStatements(
+				createStatements()).subSet(2, 4);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		ImmutableSetOfStatements read = (ImmutableSetOfStatements) in
+				.readObject();
+
+		Assert.assertEquals(set, read);
+		Assert.assertEquals(2, read.size());
+	}
+}
@@ -0,0 +1,118 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+/**
+ * Tests the triple pattern lookups of the indexed graph against a scan.
+ */
+public class IndexedRdfGraphTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final URI GRAPH = new URIImpl(NS + "graph");
+
+	private URI uri(String name) {
+		return new URIImpl(NS + name);
+	}
+
+	private List<Statement> scan(List<Statement> statements, Resource s,
+			URI p, Value o, URI g) {
+		List<Statement> result = new ArrayList<Statement>();
+		for (Statement st : statements) {
+			if ((s == null || s.equals(st.getSubject()))
+					&& (p == null || p.equals(st.getPredicate()))
+					&& (o == null || o.equals(st.getObject()))
+					&& (g == null || g.equals(st.getContext()))) {
+				result.add(st);
+			}
+		}
+		return result;
+	}
+
+	private Set<Statement> search(IndexedRdfGraph graph, Resource s, URI p,
+			Value o, URI g) {
+		Set<Statement> result = new HashSet<Statement>();
+		CloseableIterator<Statement> iter = graph.search(s, p, o, g);
+		while (iter.hasNext()) {
+			result.add(iter.next());
+		}
+		iter.close();
+		return result;
+	}
+
+	/**
+	 * Every combination of bound and unbound terms finds the same statements
+	 * as a scan.
+	 */
+	@Test
+	public void testSearchPatterns() {
+		Random random = new Random(42);
+		List<Statement> statements = new ArrayList<Statement>();
+		for (int i = 0; i < 2000; i++) {
+			URI s = uri("s" + random.nextInt(50));
+			URI p = uri("p" + random.nextInt(5));
+			Value o = random.nextBoolean() ? uri("s" + random.nextInt(50))
+					: new LiteralImpl(String.valueOf(random.nextInt(20)));
+			if (i % 10 == 0) {
+				statements.add(new ContextStatementImpl(s, p, o, GRAPH));
+			} else {
+				statements.add(new StatementImpl(s, p, o));
+			}
+		}
+		IndexedRdfGraph graph = new IndexedRdfGraph(uri("g"), statements,
+				new TermDictionary());
+		Assert.assertEquals(2000, graph.getStatementCount());
+		Assert.assertEquals(5, graph.getDistinctPredicateCount());
+
+		for (int i = 0; i < 200; i++) {
+			Statement st = statements.get(random.nextInt(statements.size()));
+			Resource s = random.nextBoolean() ? st.getSubject() : null;
+			URI p = random.nextBoolean() ? st.getPredicate() : null;
+			Value o = random.nextBoolean() ? st.getObject() : null;
+			URI g = i % 4 == 0 ? GRAPH : null;
+			List<Statement> expected = scan(statements, s, p, o, g);
+			Assert.assertEquals(new HashSet<Statement>(expected), search(
+					graph, s, p, o, g));
+			if (g == null) {
+				Assert.assertEquals(expected.size(), graph.count(s, p, o));
+			}
+		}
+
+		Assert.assertTrue(search(graph, uri("unknown"), null, null, null)
+				.isEmpty());
+		Assert.assertEquals(0, graph.count(null, uri("s1"), null));
+	}
+}
@@ -0,0 +1,146 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Literal;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.VariableBinding.Binding;
+import eu.larkc.core.query.SPARQLQueryImpl;
+
+/**
+ * Tests executing a SELECT query for a batch of input rows at once.
+ */
+public class InputRowsSelectTest extends ORDITestCase {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final String QUERY = "SELECT ?o WHERE { ?s <" + NS
+			+ "p> ?o }";
+
+	private RdfStoreConnection con;
+
+	private static URI uri(String name) {
+		return new URIImpl(NS + name);
+	}
+
+	/**
+	 * Adds two values for the first subject, one for the second and none for
+	 * the third.
+	 */
+	@Before
+	public void addStatements() {
+		con = df.createRdfStoreConnection();
+		URI graph = uri("graph");
+		con.addStatement(uri("a"), uri("p"), new LiteralImpl("1"), graph);
+		con.addStatement(uri("a"), uri("p"), new LiteralImpl("2"), graph);
+		con.addStatement(uri("b"), uri("p"), new LiteralImpl("3"), graph);
+		con.addStatement(uri("c"), uri("q"), new LiteralImpl("4"), graph);
+	}
+
+	private static List<Map<String, Value>> rows(String... subjects) {
+		List<Map<String, Value>> rows = new ArrayList<Map<String, Value>>();
+		for (String subject : subjects) {
+			Map<String, Value> row = new HashMap<String, Value>();
+			row.put("s", uri(subject));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * Returns the values of the results by the index of their input row.
+	 */
+	private static Map<Integer, Set<String>> byRow(VariableBinding result) {
+		List<String> variables = result.getVariables();
+		int value = variables.indexOf("o");
+		int row = variables.indexOf(RdfStoreConnection.INPUT_ROW_VARIABLE);
+		Assert.assertTrue(value >= 0);
+		Assert.assertTrue(row >= 0);
+		Map<Integer, Set<String>> values = new HashMap<Integer, Set<String>>();
+		CloseableIterator<Binding> i = result.iterator();
+		while (i.hasNext()) {
+			List<Value> binding = i.next().getValues();
+			Integer index = ((Literal) binding.get(row)).intValue();
+			if (values.containsKey(index) == false) {
+				values.put(index, new HashSet<String>());
+			}
+			values.get(index).add(binding.get(value).stringValue());
+		}
+		i.close();
+		return values;
+	}
+
+	private static Set<String> set(String... values) {
+		Set<String> result = new HashSet<String>();
+		for (String value : values) {
+			result.add(value);
+		}
+		return result;
+	}
+
+	/**
+	 * Every result is attributed to the input row it was found for.
+	 */
+	@Test
+	public void testRowAttribution() {
+		Map<Integer, Set<String>> values = byRow(con.executeSelect(
+				new SPARQLQueryImpl(QUERY), rows("c", "a", "b")));
+		Assert.assertEquals(2, values.size());
+		Assert.assertEquals(set("1", "2"), values.get(1));
+		Assert.assertEquals(set("3"), values.get(2));
+	}
+
+	/**
+	 * No input rows give no results, but the variables are still known.
+	 */
+	@Test
+	public void testEmptyRows() {
+		Assert.assertTrue(byRow(
+				con.executeSelect(new SPARQLQueryImpl(QUERY),
+						new ArrayList<Map<String, Value>>())).isEmpty());
+	}
+
+	/**
+	 * LIMIT applies to the results of all rows together.
+	 */
+	@Test
+	public void testLimitAcrossRows() {
+		Map<Integer, Set<String>> values = byRow(con.executeSelect(
+				new SPARQLQueryImpl(QUERY + " LIMIT 2"), rows("a", "b")));
+		int count = 0;
+		for (Set<String> row : values.values()) {
+			count += row.size();
+		}
+		Assert.assertEquals(2, count);
+	}
+}
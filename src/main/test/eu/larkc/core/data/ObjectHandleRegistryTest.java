@@ -0,0 +1,132 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the registration, expiry and eviction of object handles.
+ */
+public class ObjectHandleRegistryTest {
+
+	/**
+	 * Registered objects are resolved until they are released.
+	 */
+	@Test
+	public void testResolve() {
+		ObjectHandleRegistry registry = new ObjectHandleRegistry(10, 60000);
+		Object first = new Object();
+		Object second = new Object();
+		String firstHandle = registry.register(first, 100);
+		String secondHandle = registry.register(second, 50);
+		Assert.assertFalse(firstHandle.equals(secondHandle));
+		Assert.assertSame(first, registry.resolve(firstHandle));
+		Assert.assertSame(second, registry.resolve(secondHandle));
+		Assert.assertEquals(2, registry.getLiveHandleCount());
+		Assert.assertEquals(150, registry.getEstimatedBytes());
+
+		registry.release(firstHandle);
+		Assert.assertNull(registry.resolve(firstHandle));
+		Assert.assertEquals(1, registry.getLiveHandleCount());
+		Assert.assertEquals(50, registry.getEstimatedBytes());
+		Assert.assertNull(registry.resolve("unknown"));
+		Assert.assertEquals("", registry.register(null));
+	}
+
+	/**
+	 * Handles in flight are kept above the maximum size, and the first
+	 * resolved handles are dropped.
+	 */
+	@Test
+	public void testMaxSize() {
+		ObjectHandleRegistry registry = new ObjectHandleRegistry(3, 60000);
+		List<Object> objects = new ArrayList<Object>();
+		List<String> handles = new ArrayList<String>();
+		for (int i = 0; i < 5; i++) {
+			objects.add(new Object());
+			handles.add(registry.register(objects.get(i), 10));
+		}
+		Assert.assertEquals(5, registry.getLiveHandleCount());
+		Assert.assertEquals(5, registry.getInFlightHandleCount());
+		Assert.assertEquals(50, registry.getEstimatedBytes());
+		for (int i = 0; i < 5; i++) {
+			Assert.assertSame(objects.get(i), registry.resolve(handles.get(i)));
+		}
+		Assert.assertEquals(3, registry.getLiveHandleCount());
+		Assert.assertEquals(0, registry.getInFlightHandleCount());
+		Assert.assertEquals(30, registry.getEstimatedBytes());
+		Assert.assertNull(registry.resolve(handles.get(0)));
+		Assert.assertNull(registry.resolve(handles.get(1)));
+		for (int i = 2; i < 5; i++) {
+			Assert.assertSame(objects.get(i), registry.resolve(handles.get(i)));
+		}
+	}
+
+	/**
+	 * Handles cannot be resolved after their lifetime, whether they were
+	 * resolved before or are still in flight.
+	 */
+	@Test
+	public void testExpiry() throws InterruptedException {
+		ObjectHandleRegistry registry = new ObjectHandleRegistry(10, 20);
+		Object object = new Object();
+		String handle = registry.register(object);
+		String unresolved = registry.register(new Object());
+		Assert.assertSame(object, registry.resolve(handle));
+		Assert.assertSame(object, registry.resolve(handle));
+		Thread.sleep(50);
+		Assert.assertNull(registry.resolve(handle));
+		Assert.assertNull(registry.resolve(unresolved));
+		Assert.assertEquals(0, registry.getLiveHandleCount());
+		Assert.assertEquals(0, registry.getInFlightHandleCount());
+	}
+
+	/**
+	 * Handles in flight that were never resolved are dropped once they
+	 * expire, when further objects are registered.
+	 */
+	@Test
+	public void testInFlightExpiry() throws InterruptedException {
+		ObjectHandleRegistry registry = new ObjectHandleRegistry(3, 20);
+		for (int i = 0; i < 5; i++) {
+			registry.register(new Object(), 10);
+		}
+		Assert.assertEquals(5, registry.getInFlightHandleCount());
+		Thread.sleep(50);
+		registry.register(new Object(), 10);
+		Assert.assertEquals(1, registry.getInFlightHandleCount());
+		Assert.assertEquals(10, registry.getEstimatedBytes());
+	}
+
+	/**
+	 * The object of a handle in flight is not garbage collected, even if
+	 * nothing else references it.
+	 */
+	@Test
+	public void testInFlightIsStronglyReferenced() {
+		ObjectHandleRegistry registry = new ObjectHandleRegistry(10, 60000);
+		String handle = registry.register(new int[1024]);
+		System.gc();
+		Assert.assertNotNull(registry.resolve(handle));
+	}
+}
@@ -0,0 +1,185 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.iterator.SimpleCloseableIterator;
+
+/**
+ * Tests the set of statements kept outside of the heap.
+ */
+public class OffHeapSetOfStatementsTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final File TMP = new File(System
+			.getProperty("java.io.tmpdir"));
+
+	private List<Statement> createStatements(int count) {
+		URI value = new URIImpl(NS + "value");
+		URI graph = new URIImpl(NS + "graph");
+		List<Statement> statements = new ArrayList<Statement>();
+		for (int i = 0; i < count; i++) {
+			URI subject = new URIImpl(NS + "s" + (i % 1000));
+			if (i % 2 == 0) {
+				statements.add(new StatementImpl(subject, value,
+						new LiteralImpl(String.valueOf(i))));
+			} else {
+				statements.add(new ContextStatementImpl(subject, value,
+						new LiteralImpl(String.valueOf(i)), graph));
+			}
+		}
+		return statements;
+	}
+
+	private List<Statement> toList(SetOfStatements set) {
+		List<Statement> list = new ArrayList<Statement>();
+		CloseableIterator<Statement> iter = set.getStatements();
+		while (iter.hasNext()) {
+			list.add(iter.next());
+		}
+		iter.close();
+		return list;
+	}
+
+	/**
+	 * Statements beyond the memory limit are spilled to a file and read back
+	 * in order.
+	 */
+	@Test
+	public void testSpill() {
+		List<Statement> statements = createStatements(100000);
+		OffHeapSetOfStatements set = new OffHeapSetOfStatements(
+				new SimpleCloseableIterator<Statement>(statements.iterator()),
+				1024 * 1024, TMP);
+
+		Assert.assertTrue(set.isSpilled());
+		Assert.assertEquals(statements.size(), set.size());
+		List<Statement> read = toList(set);
+		Assert.assertEquals(statements, read);
+		Assert.assertNull(read.get(0).getContext());
+		Assert.assertEquals(new URIImpl(NS + "graph"), read.get(1)
+				.getContext());
+	}
+
+	/**
+	 * Small sets stay in direct memory; a serialised set is read back as an
+	 * encoded set with the same statements.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		List<Statement> statements = createStatements(1000);
+		OffHeapSetOfStatements set = new OffHeapSetOfStatements(
+				new SimpleCloseableIterator<Statement>(statements.iterator()),
+				1024 * 1024, TMP);
+		Assert.assertFalse(set.isSpilled());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(set);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+				bytes.toByteArray()));
+		SetOfStatements read = (SetOfStatements) in.readObject();
+
+		Assert.assertTrue(read instanceof EncodedSetOfStatements);
+		Assert.assertEquals(statements, toList(read));
+	}
+
+	/**
+	 * Closing a set deletes its spill file; the statements cannot be read
+	 * afterwards.
+	 */
+	@Test
+	public void testClose() {
+		File directory = new File(TMP, "larkc-offheap-" + System.nanoTime());
+		Assert.assertTrue(directory.mkdir());
+		try {
+			OffHeapSetOfStatements set = new OffHeapSetOfStatements(
+					new SimpleCloseableIterator<Statement>(createStatements(
+							100000).iterator()), 1024 * 1024, directory);
+			Assert.assertTrue(set.isSpilled());
+			Assert.assertEquals(1, directory.list().length);
+
+			set.close();
+			Assert.assertTrue(set.isClosed());
+			Assert.assertEquals(0, directory.list().length);
+			try {
+				set.getStatements();
+				Assert.fail();
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			set.close();
+		} finally {
+			for (File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+
+	/**
+	 * An iterator opened before the owner closed the set keeps the statements
+	 * readable until it is exhausted, as does a reference taken with
+	 * retain().
+	 */
+	@Test
+	public void testReferences() {
+		List<Statement> statements = createStatements(1000);
+		OffHeapSetOfStatements set = new OffHeapSetOfStatements(
+				new SimpleCloseableIterator<Statement>(statements.iterator()),
+				1024 * 1024, TMP);
+		CloseableIterator<Statement> iter = set.getStatements();
+		set.retain();
+		set.close();
+		set.close();
+		Assert.assertFalse(set.isClosed());
+
+		List<Statement> read = new ArrayList<Statement>();
+		while (iter.hasNext()) {
+			read.add(iter.next());
+		}
+		Assert.assertEquals(statements, read);
+		Assert.assertFalse(set.isClosed());
+		iter.close();
+		Assert.assertFalse(set.isClosed());
+
+		set.release();
+		Assert.assertTrue(set.isClosed());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data.iterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.CloseableIterator;
+
+/**
+ * Tests the lazy iterator operators and the propagation of close().
+ */
+public class IteratorsTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final URI NAME = new URIImpl(NS + "name");
+
+	private static final URI AGE = new URIImpl(NS + "age");
+
+	private static final URI GRAPH = new URIImpl(NS + "graph");
+
+	private static <T> List<T> toList(CloseableIterator<T> iterator) {
+		List<T> result = new ArrayList<T>();
+		while (iterator.hasNext()) {
+			result.add(iterator.next());
+		}
+		return result;
+	}
+
+	private static CloseableIterator<Integer> numbers(Integer... numbers) {
+		return new SimpleCloseableIterator<Integer>(Arrays.asList(numbers)
+				.iterator());
+	}
+
+	/**
+	 * Filters statements by pattern and context and projects their objects.
+	 */
+	@Test
+	public void testMatchAndProject() {
+		List<Statement> statements = new ArrayList<Statement>();
+		URI person = new URIImpl(NS + "person");
+		statements.add(new StatementImpl(person, NAME, new LiteralImpl("Ann")));
+		statements.add(new StatementImpl(person, AGE, new LiteralImpl("30")));
+		statements.add(new ContextStatementImpl(person, NAME, new LiteralImpl(
+				"Anna"), GRAPH));
+
+		CloseableIterator<Value> names = Iterators.objects(Iterators.match(
+				Iterators.inContext(Iterators.of(statements.iterator()), null),
+				null, NAME, null));
+		Assert.assertEquals(Arrays.asList(new LiteralImpl("Ann")),
+				toList(names));
+
+		names = Iterators.objects(Iterators.match(Iterators.inContext(
+				Iterators.of(statements.iterator()), GRAPH), person, NAME,
+				null));
+		Assert.assertEquals(Arrays.asList(new LiteralImpl("Anna")),
+				toList(names));
+	}
+
+	/**
+	 * Slices, removes duplicates and concatenates.
+	 */
+	@Test
+	public void testSliceDistinctConcat() {
+		Assert.assertEquals(Arrays.asList(3, 4), toList(Iterators.slice(
+				numbers(1, 2, 3, 4, 5), 2, 2)));
+		Assert.assertEquals(Arrays.asList(4, 5), toList(Iterators.slice(
+				numbers(1, 2, 3, 4, 5), 3, -1)));
+		Assert.assertEquals(Arrays.asList(1, 2, 3), toList(Iterators.distinct(
+				numbers(1, 2, 1, 3, 2, 3), 10)));
+		// only the last distinct item is remembered
+		Assert.assertEquals(Arrays.asList(1, 2, 1), toList(Iterators.distinct(
+				numbers(1, 1, 2, 2, 1), 1)));
+		Assert.assertEquals(Arrays.asList(1, 2, 3), toList(Iterators.concat(
+				numbers(1), numbers(), numbers(2, 3))));
+	}
+
+	/**
+	 * Closing an operator closes its sources, and so does exhausting it.
+	 */
+	@Test
+	public void testClose() {
+		CloseableIterator<Integer> source = numbers(1, 2, 3);
+		CloseableIterator<Integer> limited = Iterators.limit(source, 1);
+		Assert.assertEquals(Arrays.asList(1), toList(limited));
+		Assert.assertTrue(source.isClosed());
+		Assert.assertFalse(limited.hasNext());
+
+		CloseableIterator<Integer> first = numbers(1, 2);
+		CloseableIterator<Integer> second = numbers(3);
+		CloseableIterator<Integer> concatenated = Iterators.concat(first,
+				second);
+		Assert.assertEquals(Integer.valueOf(1), concatenated.next());
+		concatenated.close();
+		Assert.assertTrue(first.isClosed());
+		Assert.assertTrue(second.isClosed());
+		Assert.assertTrue(concatenated.isClosed());
+		try {
+			concatenated.hasNext();
+			Assert.fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+}
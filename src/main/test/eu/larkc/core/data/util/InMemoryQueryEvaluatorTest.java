@@ -0,0 +1,179 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.data.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.ContextStatementImpl;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.IndexedRdfGraph;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.TermDictionary;
+import eu.larkc.core.data.VariableBinding;
+import eu.larkc.core.data.VariableBinding.Binding;
+import eu.larkc.core.query.SPARQLQueryImpl;
+
+/**
+ * Tests the evaluation of SPARQL queries over an indexed graph.
+ */
+public class InMemoryQueryEvaluatorTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final String PREFIX = "PREFIX t: <" + NS + "> ";
+
+	private InMemoryQueryEvaluator evaluator;
+
+	private static URI uri(String name) {
+		return new URIImpl(NS + name);
+	}
+
+	/**
+	 * Creates a graph with one statement in the default context and one in
+	 * each of two named graphs.
+	 */
+	@Before
+	public void setUp() {
+		List<Statement> statements = new ArrayList<Statement>();
+		statements.add(new StatementImpl(uri("s1"), uri("p"), uri("o1")));
+		statements.add(new StatementImpl(uri("s1"), uri("q"), new LiteralImpl(
+				"a")));
+		statements.add(new ContextStatementImpl(uri("s2"), uri("p"),
+				uri("o2"), uri("g1")));
+		statements.add(new ContextStatementImpl(uri("s3"), uri("p"),
+				uri("o3"), uri("g2")));
+		evaluator = new InMemoryQueryEvaluator(new IndexedRdfGraph(uri("g"),
+				statements, new TermDictionary()));
+	}
+
+	private Set<Value> select(String query) {
+		VariableBinding result = evaluator.executeSelect(new SPARQLQueryImpl(
+				PREFIX + query));
+		Assert.assertEquals(1, result.getVariables().size());
+		Set<Value> values = new HashSet<Value>();
+		CloseableIterator<Binding> rows = result.iterator();
+		while (rows.hasNext()) {
+			values.add(rows.next().getValues().get(0));
+		}
+		rows.close();
+		return values;
+	}
+
+	private Set<Value> set(Value... values) {
+		Set<Value> result = new HashSet<Value>();
+		for (Value value : values) {
+			result.add(value);
+		}
+		return result;
+	}
+
+	/**
+	 * ASK is true exactly when the pattern matches.
+	 */
+	@Test
+	public void testAsk() {
+		Assert.assertTrue(evaluator.executeAsk(new SPARQLQueryImpl(PREFIX
+				+ "ASK { t:s1 t:p ?o }")));
+		Assert.assertFalse(evaluator.executeAsk(new SPARQLQueryImpl(PREFIX
+				+ "ASK { t:s2 t:q ?o }")));
+	}
+
+	/**
+	 * SELECT returns the values of the projected variables, also over a join.
+	 */
+	@Test
+	public void testSelect() {
+		VariableBinding result = evaluator.executeSelect(new SPARQLQueryImpl(
+				PREFIX + "SELECT ?s ?v WHERE { ?s t:p ?o . ?s t:q ?v }"));
+		Assert.assertEquals(2, result.getVariables().size());
+		int s = result.getVariables().indexOf("s");
+		int v = result.getVariables().indexOf("v");
+		CloseableIterator<Binding> rows = result.iterator();
+		Assert.assertTrue(rows.hasNext());
+		List<Value> row = rows.next().getValues();
+		Assert.assertEquals(uri("s1"), row.get(s));
+		Assert.assertEquals(new LiteralImpl("a"), row.get(v));
+		Assert.assertFalse(rows.hasNext());
+		rows.close();
+
+		Assert.assertEquals(set(uri("s1"), uri("s2"), uri("s3")),
+				select("SELECT ?s WHERE { ?s t:p ?o }"));
+	}
+
+	/**
+	 * A GRAPH pattern only matches the statements of the named graph, and
+	 * FROM restricts the default graph to the given graphs.
+	 */
+	@Test
+	public void testNamedGraphs() {
+		Assert.assertEquals(set(uri("s2")),
+				select("SELECT ?s WHERE { GRAPH t:g1 { ?s t:p ?o } }"));
+		Assert.assertEquals(set(uri("s3")),
+				select("SELECT ?s FROM t:g2 WHERE { ?s t:p ?o }"));
+		Assert.assertEquals(set(uri("s2"), uri("s3")),
+				select("SELECT ?s FROM t:g1 FROM t:g2 WHERE { ?s t:p ?o }"));
+		Assert.assertEquals(set(uri("g1"), uri("g2")),
+				select("SELECT ?g FROM NAMED t:g1 FROM NAMED t:g2 "
+						+ "WHERE { GRAPH ?g { ?s t:p ?o } }"));
+	}
+
+	/**
+	 * Without a dataset the default graph holds the statements of all
+	 * contexts, including those without a context.
+	 */
+	@Test
+	public void testDefaultContext() {
+		Assert.assertEquals(set(uri("s1"), uri("s2"), uri("s3")),
+				select("SELECT ?s WHERE { ?s t:p ?o }"));
+		Assert.assertEquals(set(uri("o1")),
+				select("SELECT ?o WHERE { t:s1 t:p ?o }"));
+	}
+
+	/**
+	 * CONSTRUCT only creates the statements whose template is completely
+	 * bound.
+	 */
+	@Test
+	public void testConstructDropsPartialMatches() {
+		SetOfStatements result = evaluator.executeConstruct(new SPARQLQueryImpl(
+				PREFIX + "CONSTRUCT { ?s t:r ?v } "
+						+ "WHERE { ?s t:p ?o OPTIONAL { ?s t:q ?v } }"));
+		CloseableIterator<Statement> statements = result.getStatements();
+		Assert.assertTrue(statements.hasNext());
+		Statement statement = statements.next();
+		Assert.assertEquals(uri("s1"), statement.getSubject());
+		Assert.assertEquals(uri("r"), statement.getPredicate());
+		Assert.assertEquals(new LiteralImpl("a"), statement.getObject());
+		Assert.assertFalse(statements.hasNext());
+		statements.close();
+	}
+}
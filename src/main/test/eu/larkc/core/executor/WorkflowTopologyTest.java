@@ -0,0 +1,81 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.larkc.core.data.workflow.IllegalWorkflowGraphException;
+
+/**
+ * Tests the computation of the plug-ins of a path from the workflow graph.
+ */
+public class WorkflowTopologyTest {
+
+	/**
+	 * Two identifiers fed by the same input are joined by a selecter; a
+	 * plug-in that does not lead to the output is not part of the path.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testFanOutAndJoin() throws Exception {
+		WorkflowTopology topology = new WorkflowTopology();
+		topology.addEdge("transformer", "identifier1");
+		topology.addEdge("transformer", "identifier2");
+		topology.addEdge("identifier1", "selecter");
+		topology.addEdge("identifier2", "selecter");
+		topology.addEdge("transformer", "other");
+
+		List<String> nodes = topology.getPathNodes(
+				Arrays.asList("transformer"), "selecter");
+		Assert.assertEquals(Arrays.asList("transformer", "identifier1",
+				"identifier2", "selecter"), nodes);
+
+		List<Set<String>> stages = topology.getStages(nodes);
+		Assert.assertEquals(3, stages.size());
+		Assert.assertEquals(2, stages.get(1).size());
+
+		Assert.assertEquals(2, topology.getConsumers("transformer", nodes,
+				"selecter"));
+		Assert.assertEquals(1, topology.getConsumers("identifier1", nodes,
+				"selecter"));
+		Assert.assertEquals(1, topology.getConsumers("selecter", nodes,
+				"selecter"));
+	}
+
+	/**
+	 * Cycles are rejected.
+	 */
+	@Test(expected = IllegalWorkflowGraphException.class)
+	public void testCycle() throws Exception {
+		WorkflowTopology topology = new WorkflowTopology();
+		topology.addEdge("a", "b");
+		topology.addEdge("b", "c");
+		topology.addEdge("c", "b");
+		List<String> nodes = new ArrayList<String>(Arrays.asList("a", "b",
+				"c"));
+		topology.getStages(nodes);
+	}
+}
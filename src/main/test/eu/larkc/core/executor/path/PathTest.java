@@ -0,0 +1,384 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.executor.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.SetOfStatementsImpl;
+import eu.larkc.core.data.StatementChunk;
+import eu.larkc.core.pluginManager.ControlMessage;
+import eu.larkc.core.pluginManager.Message;
+import eu.larkc.core.pluginManager.NodeSchedule;
+import eu.larkc.core.pluginManager.PluginManager;
+import eu.larkc.core.qos.QoSParametersImpl;
+import eu.larkc.core.query.GraphResultBase;
+import eu.larkc.core.queue.Queue;
+
+/**
+ * Tests that concurrent invocations on a path receive their own results.
+ */
+public class PathTest {
+
+	/**
+	 * Plug-in manager that answers every NEXT message with the query it takes
+	 * from its input queue, once it is released.
+	 */
+	private static class EchoPluginManager implements PluginManager {
+
+		private final Queue<SetOfStatements> input;
+		private final Queue<SetOfStatements> output;
+		private final List<ControlMessage> messages = new ArrayList<ControlMessage>();
+
+		EchoPluginManager(Queue<SetOfStatements> input,
+				Queue<SetOfStatements> output) {
+			this.input = input;
+			this.output = output;
+		}
+
+		public synchronized void accept(ControlMessage message) {
+			messages.add(message);
+		}
+
+		synchronized void release() {
+			List<ControlMessage> released = new ArrayList<ControlMessage>(
+					messages);
+			messages.clear();
+			for (ControlMessage message : released) {
+				if (message.getMessage().equals(Message.NEXT)) {
+					output.put(input.take());
+				}
+			}
+		}
+
+		synchronized List<ControlMessage> getMessages() {
+			return new ArrayList<ControlMessage>(messages);
+		}
+
+		public void addPrevious(PluginManager thePluginManager) {
+		}
+
+		public List<Queue<SetOfStatements>> getInputQueues(String pathId) {
+			return null;
+		}
+
+		public void setInputQueues(
+				List<Queue<SetOfStatements>> theInputQueues, String pathId) {
+		}
+
+		public void addInputQueue(Queue<SetOfStatements> inputQueue,
+				String pathId) {
+		}
+
+		public List<Queue<SetOfStatements>> getOutputQueues(String pathId) {
+			return null;
+		}
+
+		public void setOutputQueues(
+				List<Queue<SetOfStatements>> theOutputQueues, String pathId) {
+		}
+
+		public void addOutputQueue(Queue<SetOfStatements> outputQueue,
+				String pathId) {
+		}
+
+		public void setSchedule(NodeSchedule schedule) {
+		}
+
+		public void start() {
+		}
+
+		public void stopWaiting() {
+		}
+	}
+
+	private EchoPluginManager manager;
+	private Queue<SetOfStatements> pathOutputQueue;
+
+	private Path createPath() {
+		return createPath(1);
+	}
+
+	private Path createPath(int pipelineDepth) {
+		Queue<SetOfStatements> inputQueue = new Queue<SetOfStatements>();
+		Queue<SetOfStatements> outputQueue = new Queue<SetOfStatements>();
+		manager = new EchoPluginManager(inputQueue, outputQueue);
+		pathOutputQueue = outputQueue;
+
+		Input input = new Input();
+		input.addPathInputQueue(inputQueue);
+		Output output = new Output();
+		output.setPathOutputQueue(outputQueue);
+		output.setPluginManager(manager);
+		return new Path("path", input, output, pipelineDepth);
+	}
+
+	/**
+	 * Every invocation carries its own correlation id to the plug-in manager
+	 * and receives the results of its own query, whichever invocation asks
+	 * first.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvocationsReceiveOwnResults() throws Exception {
+		Path path = createPath();
+		SetOfStatements first = new SetOfStatementsImpl();
+		SetOfStatements second = new SetOfStatementsImpl();
+
+		Invocation firstInvocation = path.submit(first);
+		Invocation secondInvocation = path.submit(second);
+		Assert.assertFalse(firstInvocation.getCorrelationId().equals(
+				secondInvocation.getCorrelationId()));
+
+		List<ControlMessage> messages = manager.getMessages();
+		Assert.assertEquals(2, messages.size());
+		Assert.assertEquals(firstInvocation.getCorrelationId(), messages.get(0)
+				.getCorrelationId());
+		Assert.assertEquals(secondInvocation.getCorrelationId(), messages
+				.get(1).getCorrelationId());
+
+		try {
+			secondInvocation.get(10, TimeUnit.MILLISECONDS);
+			Assert.fail("Results arrived before the plug-in computed them");
+		} catch (TimeoutException e) {
+			// expected
+		}
+
+		manager.release();
+		Assert.assertSame(second, secondInvocation.get());
+		Assert.assertSame(first, firstInvocation.get());
+	}
+
+	/**
+	 * Results of a cancelled invocation are dropped without handing them to
+	 * the next invocation.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCancelledInvocationDropsResults() throws Exception {
+		Path path = createPath();
+		SetOfStatements second = new SetOfStatementsImpl();
+
+		Invocation firstInvocation = path.submit(new SetOfStatementsImpl());
+		Invocation secondInvocation = path.submit(second);
+		Assert.assertTrue(firstInvocation.cancel(false));
+		Assert.assertTrue(firstInvocation.isCancelled());
+
+		manager.release();
+		Assert.assertSame(second, secondInvocation.get());
+	}
+
+	/**
+	 * Queries given to execute are answered by getNextResults in order.
+	 */
+	@Test
+	public void testExecuteAndGetNextResults() {
+		Path path = createPath();
+		SetOfStatements first = new SetOfStatementsImpl();
+		SetOfStatements second = new SetOfStatementsImpl();
+
+		path.execute(first);
+		path.execute(second);
+		manager.release();
+		Assert.assertSame(first, path.getNextResults());
+		Assert.assertSame(second, path.getNextResults());
+	}
+
+	/**
+	 * A pipelined path sends at most as many NEXT messages as its depth, and
+	 * sends the next one as soon as the results of an earlier one arrived.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testPipelinedPathBoundsInvocationsInFlight() throws Exception {
+		Path path = createPath(2);
+		SetOfStatements third = new SetOfStatementsImpl();
+
+		path.submit(new SetOfStatementsImpl());
+		path.submit(new SetOfStatementsImpl());
+		Invocation thirdInvocation = path.submit(third);
+
+		List<ControlMessage> messages = manager.getMessages();
+		Assert.assertEquals(2, messages.size());
+		Assert.assertTrue(messages.get(0).isPipelined());
+
+		manager.release();
+		messages = manager.getMessages();
+		Assert.assertEquals(1, messages.size());
+		Assert.assertEquals(thirdInvocation.getCorrelationId(), messages.get(0)
+				.getCorrelationId());
+
+		manager.release();
+		Assert.assertSame(third, thirdInvocation.get());
+	}
+
+	private static List<Statement> statements(int count) {
+		List<Statement> statements = new ArrayList<Statement>();
+		for (int i = 0; i < count; i++) {
+			statements.add(new StatementImpl(new URIImpl("urn:s"), new URIImpl(
+					"urn:p"), new LiteralImpl(Integer.toString(i))));
+		}
+		return statements;
+	}
+
+	/**
+	 * A result stream returns the chunks of the results before the last one
+	 * arrived, cut to the requested window.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testResultStreamReadsChunksBeforeTheEnd() throws Exception {
+		Path path = createPath();
+		Invocation invocation = path.submit(new SetOfStatementsImpl());
+		ResultStream all = invocation.getResults(0, -1);
+		ResultStream window = invocation.getResults(2, 3);
+
+		StatementChunk first = new StatementChunk(statements(4), false);
+		pathOutputQueue.put(first);
+		Assert.assertTrue(all.hasNext());
+		Assert.assertSame(first, all.next());
+		Assert.assertTrue(window.hasNext());
+		Assert.assertEquals(2, toList(window.next()).size());
+		Assert.assertFalse(invocation.isDone());
+
+		pathOutputQueue.put(new StatementChunk(statements(4), true));
+		Assert.assertTrue(window.hasNext());
+		Assert.assertEquals(1, toList(window.next()).size());
+		Assert.assertFalse(window.hasNext());
+		Assert.assertTrue(all.hasNext());
+		all.next();
+		Assert.assertFalse(all.hasNext());
+		Assert.assertEquals(8, toList(invocation.get()).size());
+	}
+
+	/**
+	 * Once the maximum runtime passed, an invocation returns the results that
+	 * arrived so far and is flagged as incomplete; its control messages tell
+	 * the plug-ins to stop working on it.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testExpiredInvocationReturnsPartialResults() throws Exception {
+		Path path = createPath();
+		Invocation invocation = path.submit(new SetOfStatementsImpl(),
+				new QoSParametersImpl(0, 50));
+		ControlMessage message = manager.getMessages().get(0);
+		Assert.assertFalse(message.isExpired());
+
+		pathOutputQueue.put(new StatementChunk(statements(3), false));
+		Assert.assertEquals(3, toList(invocation.get()).size());
+		Assert.assertTrue(invocation.isIncomplete());
+		Assert.assertTrue(message.isExpired());
+	}
+
+	/**
+	 * An invocation that requires a number of answers is complete as soon as
+	 * they arrived; its control messages tell the plug-ins to stop, and later
+	 * chunks are dropped until the end of the stream.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testInvocationCompletesWithRequiredAnswers() throws Exception {
+		Path path = createPath();
+		Invocation invocation = path.submit(new SetOfStatementsImpl(),
+				new QoSParametersImpl(5, 0));
+		SetOfStatements second = new SetOfStatementsImpl();
+		Invocation secondInvocation = path.submit(second);
+		ControlMessage message = manager.getMessages().get(0);
+
+		pathOutputQueue.put(new StatementChunk(statements(3), false));
+		Assert.assertFalse(invocation.isDone());
+		Assert.assertTrue(invocation
+				.getTimeToFirstResult(TimeUnit.NANOSECONDS) >= 0);
+		Assert.assertEquals(-1, invocation
+				.getTimeToRequiredResults(TimeUnit.NANOSECONDS));
+
+		pathOutputQueue.put(new StatementChunk(statements(3), false));
+		Assert.assertTrue(invocation.isDone());
+		Assert.assertEquals(6, toList(invocation.get()).size());
+		Assert.assertFalse(invocation.isIncomplete());
+		Assert.assertTrue(message.isExpired());
+		Assert.assertTrue(invocation
+				.getTimeToRequiredResults(TimeUnit.NANOSECONDS) >= invocation
+				.getTimeToFirstResult(TimeUnit.NANOSECONDS));
+
+		pathOutputQueue.put(new StatementChunk(statements(3), true));
+		Assert.assertEquals(6, toList(invocation.get()).size());
+		pathOutputQueue.put(second);
+		Assert.assertSame(second, secondInvocation.get());
+	}
+
+	/**
+	 * A streamed result that can be read only once reaches the invocation
+	 * unread, also if the invocation counts its answers.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testOnePassResultIsNotRead() throws Exception {
+		Path path = createPath();
+		Invocation invocation = path.submit(new SetOfStatementsImpl(),
+				new QoSParametersImpl(5, 0));
+		SetOfStatements result = new GraphResultBase() {
+			{
+				for (Statement statement : statements(3)) {
+					results.put(statement);
+				}
+				results.finish();
+			}
+
+			public SetOfStatements toRDF(SetOfStatements data) {
+				throw new UnsupportedOperationException();
+			}
+		};
+
+		pathOutputQueue.put(result);
+		Assert.assertTrue(invocation.isDone());
+		Assert.assertTrue(invocation
+				.getTimeToFirstResult(TimeUnit.NANOSECONDS) >= 0);
+		Assert.assertSame(result, invocation.get());
+		Assert.assertEquals(3, toList(invocation.get()).size());
+	}
+
+	private static List<Statement> toList(SetOfStatements statements) {
+		List<Statement> list = new ArrayList<Statement>();
+		CloseableIterator<Statement> it = statements.getStatements();
+		while (it.hasNext()) {
+			list.add(it.next());
+		}
+		return list;
+	}
+}
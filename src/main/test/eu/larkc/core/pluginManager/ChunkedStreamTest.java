@@ -0,0 +1,171 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.model.impl.StatementImpl;
+import org.openrdf.model.impl.URIImpl;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.SetOfStatementsImpl;
+import eu.larkc.core.data.StatementChunk;
+import eu.larkc.core.queue.Queue;
+
+/**
+ * Tests streaming statements between plug-ins in bounded chunks, which are
+ * reassembled by the {@link InputCollector} of the next plug-in.
+ */
+public class ChunkedStreamTest {
+
+	private static final URI SUBJECT = new URIImpl("http://larkc.eu/test#s");
+	private static final URI PREDICATE = new URIImpl("http://larkc.eu/test#p");
+
+	private static Statement statement(int i) {
+		return new StatementImpl(SUBJECT, PREDICATE, new LiteralImpl(
+				Integer.toString(i)));
+	}
+
+	private static List<Statement> toList(SetOfStatements sos) {
+		List<Statement> list = new ArrayList<Statement>();
+		CloseableIterator<Statement> it = sos.getStatements();
+		while (it.hasNext()) {
+			list.add(it.next());
+		}
+		it.close();
+		return list;
+	}
+
+	private static SetOfStatements take(Queue<SetOfStatements> queue) {
+		List<Queue<SetOfStatements>> queues = new ArrayList<Queue<SetOfStatements>>();
+		queues.add(queue);
+		InputCollector collector = new InputCollector(queues, -1, true);
+		Assert.assertTrue(collector.collect());
+		return collector.getInputs().get(0);
+	}
+
+	/**
+	 * Emitted statements arrive in bounded chunks, terminated by a last chunk,
+	 * and are reassembled in order.
+	 */
+	@Test
+	public void testChunksAreBoundedAndReassembled() {
+		Queue<SetOfStatements> queue = new Queue<SetOfStatements>();
+		List<Queue<SetOfStatements>> queues = new ArrayList<Queue<SetOfStatements>>();
+		queues.add(queue);
+
+		ChunkedOutput output = new ChunkedOutput(queues, 3);
+		for (int i = 0; i < 7; i++) {
+			output.emit(statement(i));
+		}
+		output.close();
+
+		// 3 + 3 full chunks and the last one holding the remaining statement
+		Assert.assertEquals(3, queue.size());
+		StatementChunk first = (StatementChunk) queue.poll();
+		Assert.assertEquals(3, first.size());
+		Assert.assertFalse(first.isLast());
+
+		List<Statement> statements = toList(take(queue));
+		Assert.assertEquals(7, statements.size());
+		for (int i = 0; i < 7; i++) {
+			Assert.assertEquals(statement(i), statements.get(i));
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * Closing an output whose statements fill whole chunks still terminates
+	 * the stream with an (empty) last chunk.
+	 */
+	@Test
+	public void testEndOfStreamMarker() {
+		Queue<SetOfStatements> queue = new Queue<SetOfStatements>();
+		List<Queue<SetOfStatements>> queues = new ArrayList<Queue<SetOfStatements>>();
+		queues.add(queue);
+
+		ChunkedOutput output = new ChunkedOutput(queues, 2);
+		output.emit(statement(0));
+		output.emit(statement(1));
+		output.close();
+		output.close();
+
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(2, toList(take(queue)).size());
+	}
+
+	/**
+	 * Plain sets of statements and null elements are passed on unchanged.
+	 */
+	@Test
+	public void testPlainElementsPassThrough() {
+		Queue<SetOfStatements> queue = new Queue<SetOfStatements>();
+		SetOfStatements plain = new SetOfStatementsImpl();
+		queue.put(plain);
+		queue.put(null);
+
+		Assert.assertSame(plain, take(queue));
+		Assert.assertNull(take(queue));
+		Assert.assertTrue(StatementChunk.isEndOfStream(null));
+	}
+
+	/**
+	 * If one input suffices, the input that arrives late for an invocation
+	 * is dropped by the collector of the next invocation, even if it is a
+	 * stream.
+	 */
+	@Test
+	public void testLateInputsAreDropped() {
+		Queue<SetOfStatements> fast = new Queue<SetOfStatements>();
+		Queue<SetOfStatements> slow = new Queue<SetOfStatements>();
+		List<Queue<SetOfStatements>> queues = new ArrayList<Queue<SetOfStatements>>();
+		queues.add(fast);
+		queues.add(slow);
+		Map<Queue<SetOfStatements>, Integer> lateInputs = new HashMap<Queue<SetOfStatements>, Integer>();
+
+		SetOfStatements first = new SetOfStatementsImpl();
+		fast.put(first);
+		InputCollector collector = new InputCollector(queues, 1, false,
+				lateInputs);
+		Assert.assertTrue(collector.collect());
+		Assert.assertSame(first, collector.getInputs().get(0));
+
+		List<Statement> statements = new ArrayList<Statement>();
+		statements.add(statement(0));
+		slow.put(new StatementChunk(statements, false));
+		slow.put(new StatementChunk(statements, true));
+		SetOfStatements second = new SetOfStatementsImpl();
+		slow.put(second);
+
+		collector = new InputCollector(queues, 1, false, lateInputs);
+		Assert.assertTrue(collector.collect());
+		Assert.assertSame(second, collector.getInputs().get(0));
+		Assert.assertTrue(slow.isEmpty());
+		Assert.assertEquals(1, lateInputs.get(fast).intValue());
+	}
+}
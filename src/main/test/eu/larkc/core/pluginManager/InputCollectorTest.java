@@ -0,0 +1,97 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.pluginManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.larkc.core.data.SetOfStatements;
+import eu.larkc.core.data.SetOfStatementsImpl;
+import eu.larkc.core.queue.Queue;
+
+/**
+ * Tests joining the inputs of a plug-in from several input queues.
+ */
+public class InputCollectorTest {
+
+	private final Queue<SetOfStatements> first = new Queue<SetOfStatements>();
+	private final Queue<SetOfStatements> second = new Queue<SetOfStatements>();
+
+	private List<Queue<SetOfStatements>> queues() {
+		List<Queue<SetOfStatements>> queues = new ArrayList<Queue<SetOfStatements>>();
+		queues.add(first);
+		queues.add(second);
+		return queues;
+	}
+
+	/**
+	 * The inputs are taken in the order they arrive, not in the order of the
+	 * queues, and are passed on without copying.
+	 */
+	@Test
+	public void testReverseOrder() {
+		InputCollector collector = new InputCollector(queues(), -1, false);
+		SetOfStatements a = new SetOfStatementsImpl();
+		SetOfStatements b = new SetOfStatementsImpl();
+
+		second.put(b);
+		Assert.assertFalse(collector.collect());
+		first.put(a);
+		Assert.assertTrue(collector.collect());
+
+		Assert.assertEquals(2, collector.getInputs().size());
+		Assert.assertSame(b, collector.getInputs().get(0));
+		Assert.assertSame(a, collector.getInputs().get(1));
+	}
+
+	/**
+	 * An input that arrives after the join completed belongs to the earlier
+	 * invocation, and is dropped by the next collector.
+	 */
+	@Test
+	public void testLateInput() {
+		Map<Queue<SetOfStatements>, Integer> lateInputs = new HashMap<Queue<SetOfStatements>, Integer>();
+		InputCollector collector = new InputCollector(queues(), 1, false,
+				lateInputs);
+		SetOfStatements b1 = new SetOfStatementsImpl();
+		second.put(b1);
+		Assert.assertTrue(collector.collect());
+		Assert.assertSame(b1, collector.getInputs().get(0));
+		Assert.assertEquals(Integer.valueOf(1), lateInputs.get(first));
+
+		collector = new InputCollector(queues(), 1, false, lateInputs);
+		first.put(new SetOfStatementsImpl());
+		Assert.assertFalse(collector.collect());
+		Assert.assertTrue(first.isEmpty());
+		Assert.assertFalse(lateInputs.containsKey(first));
+
+		SetOfStatements a2 = new SetOfStatementsImpl();
+		first.put(a2);
+		Assert.assertTrue(collector.collect());
+		Assert.assertEquals(1, collector.getInputs().size());
+		Assert.assertSame(a2, collector.getInputs().get(0));
+		// the second queue owes an input of this invocation now
+		Assert.assertEquals(Integer.valueOf(1), lateInputs.get(second));
+	}
+}
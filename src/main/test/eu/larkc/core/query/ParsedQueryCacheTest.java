@@ -0,0 +1,74 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.query.MalformedQueryException;
+import org.openrdf.query.parser.ParsedQuery;
+import org.openrdf.query.parser.ParsedTupleQuery;
+
+/**
+ * Tests that repeated queries are parsed once and copied afterwards.
+ */
+public class ParsedQueryCacheTest {
+
+	private static final String NS = "http://larkc.eu/test#";
+
+	private static final String QUERY = "SELECT ?s WHERE { ?s ?p ?o }";
+
+	/**
+	 * The second parse is a hit and returns a separate copy.
+	 */
+	@Test
+	public void testHit() throws Exception {
+		ParsedQueryCache.clear();
+		long hits = ParsedQueryCache.getHits();
+		long misses = ParsedQueryCache.getMisses();
+
+		ParsedQuery first = ParsedQueryCache.parse(QUERY, NS);
+		ParsedQuery second = ParsedQueryCache.parse("  " + QUERY + "\n", NS);
+		Assert.assertEquals(misses + 1, ParsedQueryCache.getMisses());
+		Assert.assertEquals(hits + 1, ParsedQueryCache.getHits());
+		Assert.assertEquals(1, ParsedQueryCache.getSize());
+
+		Assert.assertTrue(second instanceof ParsedTupleQuery);
+		Assert.assertNotSame(first, second);
+		Assert.assertNotSame(first.getTupleExpr(), second.getTupleExpr());
+
+		// another base namespace is another query
+		ParsedQueryCache.parse(QUERY, NS + "other");
+		Assert.assertEquals(misses + 2, ParsedQueryCache.getMisses());
+	}
+
+	/**
+	 * Invalid queries are reported, and not cached.
+	 */
+	@Test
+	public void testMalformed() {
+		ParsedQueryCache.clear();
+		try {
+			ParsedQueryCache.parse("SELEKT nothing", NS);
+			Assert.fail();
+		} catch (MalformedQueryException e) {
+			// expected
+		}
+		Assert.assertEquals(0, ParsedQueryCache.getSize());
+	}
+}
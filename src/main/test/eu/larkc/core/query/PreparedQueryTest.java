@@ -0,0 +1,175 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.algebra.StatementPattern;
+import org.openrdf.query.algebra.helpers.QueryModelVisitorBase;
+import org.openrdf.query.parser.ParsedQuery;
+
+/**
+ * Tests binding the variables of a prepared query.
+ */
+public class PreparedQueryTest {
+
+	private static final String QUERY = "SELECT ?s ?o WHERE { ?s <http://larkc.eu/test#p> ?o }";
+
+	private static final URI A = new URIImpl("http://larkc.eu/test#a");
+
+	private static final URI B = new URIImpl("http://larkc.eu/test#b");
+
+	/**
+	 * Returns the value of the subject of the statement pattern of a query, or
+	 * null if the subject is a free variable.
+	 */
+	private static Value getSubject(ParsedQuery query) {
+		final Value[] subject = new Value[1];
+		query.getTupleExpr().visit(
+				new QueryModelVisitorBase<RuntimeException>() {
+					@Override
+					public void meet(StatementPattern node) {
+						subject[0] = node.getSubjectVar().getValue();
+					}
+				});
+		return subject[0];
+	}
+
+	private static byte[] serialize(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException,
+			ClassNotFoundException {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes))
+				.readObject();
+	}
+
+	/**
+	 * A bound variable is replaced by its value, and unbinding it restores the
+	 * variable.
+	 */
+	@Test
+	public void testBinding() {
+		SPARQLQueryImpl query = new SPARQLQueryImpl(QUERY);
+		Assert.assertNull(getSubject(query.getParsedQuery()));
+
+		query.setBinding("s", A);
+		Assert.assertEquals(A, query.getBindings().get("s"));
+		Assert.assertEquals(A, getSubject(query.getParsedQuery()));
+
+		query.setBinding("s", null);
+		Assert.assertTrue(query.getBindings().isEmpty());
+		Assert.assertNull(getSubject(query.getParsedQuery()));
+
+		query.setBinding("s", A);
+		query.clearBindings();
+		Assert.assertNull(getSubject(query.getParsedQuery()));
+	}
+
+	/**
+	 * Every parsed query is an independent copy, bound or not, which neither
+	 * later bindings nor the evaluation of another copy change.
+	 */
+	@Test
+	public void testIndependentCopy() {
+		SPARQLQueryImpl query = new SPARQLQueryImpl(QUERY);
+		ParsedQuery unbound = query.getParsedQuery();
+		query.setBinding("s", A);
+		ParsedQuery first = query.getParsedQuery();
+		query.setBinding("s", B);
+		ParsedQuery second = query.getParsedQuery();
+
+		Assert.assertNotSame(first, second);
+		Assert.assertNotSame(first.getTupleExpr(), second.getTupleExpr());
+		Assert.assertEquals(A, getSubject(first));
+		Assert.assertEquals(B, getSubject(second));
+		Assert.assertNull(getSubject(unbound));
+		Assert.assertNull(getSubject(new SPARQLQueryImpl(QUERY)
+				.getParsedQuery()));
+		query.clearBindings();
+		Assert.assertNotSame(unbound.getTupleExpr(), query.getParsedQuery()
+				.getTupleExpr());
+	}
+
+	/**
+	 * The bindings are serialized with the query.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testSerialization() throws Exception {
+		SPARQLQueryImpl query = new SPARQLQueryImpl(QUERY);
+		query.setBinding("s", A);
+		SPARQLQueryImpl copy = (SPARQLQueryImpl) deserialize(serialize(query));
+		Assert.assertEquals(QUERY, copy.toString());
+		Assert.assertEquals(query.getBindings(), copy.getBindings());
+		Assert.assertEquals(A, getSubject(copy.getParsedQuery()));
+	}
+
+	/**
+	 * A query serialized without bindings, as by earlier versions, is read
+	 * without bindings.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testOldFormat() throws Exception {
+		byte[] bytes = serialize(new SPARQLQueryImpl(QUERY));
+		// drop the map of bindings, which is the last object in the data
+		// written by writeObject, but keep the end of the data
+		int map = indexOf(bytes, "java.util.HashMap".getBytes("US-ASCII"))
+				- 4;
+		Assert.assertEquals(0x73, bytes[map]); // TC_OBJECT
+		byte[] old = new byte[map + 1];
+		System.arraycopy(bytes, 0, old, 0, map);
+		old[map] = bytes[bytes.length - 1]; // TC_ENDBLOCKDATA
+		Assert.assertEquals(0x78, old[map]);
+
+		SPARQLQueryImpl copy = (SPARQLQueryImpl) deserialize(old);
+		Assert.assertEquals(QUERY, copy.toString());
+		Assert.assertTrue(copy.getBindings().isEmpty());
+		copy.setBinding("s", B);
+		Assert.assertEquals(B, getSubject(copy.getParsedQuery()));
+	}
+
+	private static int indexOf(byte[] bytes, byte[] part) {
+		for (int i = 0; i <= bytes.length - part.length; i++) {
+			if (Arrays.equals(part, Arrays.copyOfRange(bytes, i, i
+					+ part.length))) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Not found");
+	}
+}
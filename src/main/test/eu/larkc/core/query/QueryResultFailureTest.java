@@ -0,0 +1,102 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.VariableBinding.Binding;
+
+/**
+ * Tests that a failed query evaluation reaches the consumer of the results.
+ */
+public class QueryResultFailureTest {
+
+	/**
+	 * The iterator of variable bindings throws the failure at the end of the
+	 * results, instead of reporting complete results.
+	 */
+	@Test
+	public void testBindingsFailure() {
+		ORDIVariableBinding result = new ORDIVariableBinding();
+		result.startQueryResult(Arrays.asList("x"));
+		Exception cause = new Exception("failed");
+		result.fail(cause);
+		CloseableIterator<Binding> i = result.iterator();
+		try {
+			i.hasNext();
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertSame(cause, e.getCause());
+		}
+	}
+
+	/**
+	 * A failure before the variables are known is thrown to a consumer that
+	 * waits for them.
+	 */
+	@Test
+	public void testVariablesFailure() {
+		ORDIVariableBinding result = new ORDIVariableBinding();
+		result.fail(new Exception("failed"));
+		try {
+			result.getVariables();
+			Assert.fail();
+		} catch (RuntimeException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * The iterator of statements throws the failure at the end of the
+	 * results.
+	 */
+	@Test
+	public void testGraphFailure() {
+		ORDIGraphResult result = new ORDIGraphResult();
+		result.startQueryResult(Arrays.asList("subject", "predicate",
+				"object"));
+		Exception cause = new Exception("failed");
+		result.fail(cause);
+		try {
+			result.getStatements().hasNext();
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertSame(cause, e.getCause());
+		}
+	}
+
+	/**
+	 * A consumer that closed the results does not see the failure its closing
+	 * caused.
+	 */
+	@Test
+	public void testClosed() {
+		ORDIVariableBinding result = new ORDIVariableBinding();
+		result.startQueryResult(Arrays.asList("x"));
+		CloseableIterator<Binding> i = result.iterator();
+		i.close();
+		Assert.assertTrue(result.isClosed());
+		result.fail(new Exception("Closed!"));
+		Assert.assertFalse(i.hasNext());
+	}
+}
@@ -0,0 +1,158 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the evaluation of queries on the query pool, the policies for a full
+ * queue and the recorded metrics.
+ */
+public class QuerySchedulerTest {
+
+	/**
+	 * Returns a query that waits until the latch is released.
+	 */
+	private static Runnable blocked(final CountDownLatch started,
+			final CountDownLatch release) {
+		return new Runnable() {
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+	}
+
+	private static void awaitCompleted(QueryScheduler scheduler, long count)
+			throws InterruptedException {
+		long end = System.currentTimeMillis() + 5000;
+		while (scheduler.getCompletedQueries() < count
+				&& System.currentTimeMillis() < end) {
+			Thread.sleep(1);
+		}
+		Assert.assertEquals(count, scheduler.getCompletedQueries());
+	}
+
+	/**
+	 * All queries are evaluated, and their times are recorded.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testExecute() throws InterruptedException {
+		QueryScheduler scheduler = new QueryScheduler(2, 10, false);
+		final CountDownLatch done = new CountDownLatch(5);
+		for (int i = 0; i < 5; i++) {
+			scheduler.execute(new Runnable() {
+				public void run() {
+					try {
+						Thread.sleep(10);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					done.countDown();
+				}
+			});
+		}
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		awaitCompleted(scheduler, 5);
+		Assert.assertEquals(0, scheduler.getRejectedQueries());
+		Assert.assertEquals(0, scheduler.getQueuedQueries());
+		Assert.assertTrue(scheduler.getTotalExecutionTime() >= 50);
+		// the last queries waited for one of the two threads
+		Assert.assertTrue(scheduler.getTotalWaitTime() > 0);
+		scheduler.shutdown();
+	}
+
+	/**
+	 * A query is rejected when the queue is full and queries are rejected.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testReject() throws InterruptedException {
+		QueryScheduler scheduler = new QueryScheduler(1, 1, true);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.execute(blocked(started, release));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		scheduler.execute(blocked(new CountDownLatch(1), release));
+		Assert.assertEquals(1, scheduler.getRunningQueries());
+		Assert.assertEquals(1, scheduler.getQueuedQueries());
+		try {
+			scheduler.execute(blocked(new CountDownLatch(1), release));
+			Assert.fail();
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		Assert.assertEquals(1, scheduler.getRejectedQueries());
+
+		release.countDown();
+		awaitCompleted(scheduler, 2);
+		scheduler.shutdown();
+	}
+
+	/**
+	 * A query waits for a free entry when the queue is full, unless queries
+	 * are rejected.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testWait() throws InterruptedException {
+		final QueryScheduler scheduler = new QueryScheduler(1, 1, false);
+		CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		scheduler.execute(blocked(started, release));
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		scheduler.execute(blocked(new CountDownLatch(1), release));
+
+		Thread submitter = new Thread() {
+			public void run() {
+				scheduler.execute(blocked(new CountDownLatch(1), release));
+			}
+		};
+		submitter.start();
+		submitter.join(200);
+		Assert.assertTrue(submitter.isAlive());
+
+		release.countDown();
+		submitter.join(5000);
+		Assert.assertFalse(submitter.isAlive());
+		awaitCompleted(scheduler, 3);
+		Assert.assertEquals(0, scheduler.getRejectedQueries());
+
+		scheduler.shutdown();
+		try {
+			scheduler.execute(blocked(new CountDownLatch(1), release));
+			Assert.fail();
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+	}
+}
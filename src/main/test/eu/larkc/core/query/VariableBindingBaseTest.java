@@ -0,0 +1,93 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openrdf.model.Value;
+import org.openrdf.model.impl.LiteralImpl;
+import org.openrdf.query.impl.MapBindingSet;
+
+import eu.larkc.core.data.CloseableIterator;
+import eu.larkc.core.data.VariableBinding.Binding;
+
+/**
+ * Tests the views of the rows of variable bindings.
+ */
+public class VariableBindingBaseTest {
+
+	/**
+	 * Returns bindings of the variables x and y with two rows, in the second
+	 * of which y is unbound.
+	 */
+	private static ORDIVariableBinding bindings() throws Exception {
+		ORDIVariableBinding result = new ORDIVariableBinding();
+		result.startQueryResult(Arrays.asList("x", "y"));
+		MapBindingSet first = new MapBindingSet(2);
+		first.addBinding("y", new LiteralImpl("b"));
+		first.addBinding("x", new LiteralImpl("a"));
+		result.handleSolution(first);
+		MapBindingSet second = new MapBindingSet(1);
+		second.addBinding("x", new LiteralImpl("c"));
+		result.handleSolution(second);
+		result.endQueryResult();
+		return result;
+	}
+
+	/**
+	 * The values of a row are in the order of the variables, with null for an
+	 * unbound variable, and remain valid.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testIterator() throws Exception {
+		CloseableIterator<Binding> i = bindings().iterator();
+		List<Value> first = i.next().getValues();
+		List<Value> second = i.next().getValues();
+		Assert.assertFalse(i.hasNext());
+		Assert.assertEquals(Arrays.asList(new LiteralImpl("a"),
+				new LiteralImpl("b")), first);
+		Assert.assertEquals(2, second.size());
+		Assert.assertEquals(new LiteralImpl("c"), second.get(0));
+		Assert.assertNull(second.get(1));
+	}
+
+	/**
+	 * The cursor returns the same binding for every row, whose values change
+	 * with the row.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testCursor() throws Exception {
+		CloseableIterator<Binding> cursor = bindings().cursor();
+		Binding first = cursor.next();
+		List<Value> values = first.getValues();
+		Assert.assertEquals(new LiteralImpl("a"), values.get(0));
+		Assert.assertEquals(new LiteralImpl("b"), values.get(1));
+		Assert.assertSame(first, cursor.next());
+		Assert.assertEquals(new LiteralImpl("c"), values.get(0));
+		Assert.assertNull(values.get(1));
+		Assert.assertFalse(cursor.hasNext());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the batch hand-off of query results.
+ */
+public class BatchQueueTest {
+
+	/**
+	 * All elements arrive in order, also when the producer has to wait for a
+	 * slower consumer.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testStreaming() throws InterruptedException {
+		final BatchQueue<Integer> queue = new BatchQueue<Integer>(100);
+		final int count = 100000;
+		Thread producer = new Thread() {
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					queue.put(i);
+				}
+				queue.finish();
+			}
+		};
+		producer.start();
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals(Integer.valueOf(i), queue.take());
+		}
+		Assert.assertNull(queue.take());
+		Assert.assertNull(queue.take());
+		producer.join(5000);
+		Assert.assertFalse(producer.isAlive());
+	}
+
+	/**
+	 * A waiting consumer gets an element without waiting for a full batch.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testWaitingConsumer() throws InterruptedException {
+		final BatchQueue<String> queue = new BatchQueue<String>();
+		final String[] taken = new String[1];
+		Thread consumer = new Thread() {
+			public void run() {
+				taken[0] = queue.take();
+			}
+		};
+		consumer.start();
+		while (consumer.getState() != Thread.State.WAITING) {
+			Thread.sleep(1);
+		}
+		queue.put("a");
+		consumer.join(5000);
+		Assert.assertEquals("a", taken[0]);
+	}
+
+	/**
+	 * An element put while the consumer was busy reaches the consumer when it
+	 * waits, without a further element or the end of the stream.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testPendingElement() throws InterruptedException {
+		final BatchQueue<String> queue = new BatchQueue<String>();
+		queue.put("a");
+		Assert.assertEquals("a", queue.take());
+
+		// the consumer is busy, so the element is not published
+		queue.put("b");
+		Assert.assertEquals(0, queue.size());
+		final String[] taken = new String[1];
+		Thread consumer = new Thread() {
+			public void run() {
+				taken[0] = queue.take();
+			}
+		};
+		consumer.start();
+		consumer.join(5000);
+		Assert.assertFalse(consumer.isAlive());
+		Assert.assertEquals("b", taken[0]);
+	}
+
+	/**
+	 * Closing the queue releases a producer that waits for space.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testClose() throws InterruptedException {
+		final BatchQueue<Integer> queue = new BatchQueue<Integer>(2);
+		final boolean[] accepted = new boolean[] { true };
+		Thread producer = new Thread() {
+			public void run() {
+				for (int i = 0; i < 10 && accepted[0]; i++) {
+					accepted[0] = queue.put(i);
+				}
+			}
+		};
+		producer.start();
+		producer.join(200);
+		Assert.assertTrue(producer.isAlive());
+
+		queue.close();
+		producer.join(5000);
+		Assert.assertFalse(producer.isAlive());
+		Assert.assertFalse(accepted[0]);
+		Assert.assertNull(queue.take());
+	}
+}
@@ -0,0 +1,138 @@
+/*
+   This file is part of the LarKC platform 
+   http://www.larkc.eu/
+
+   Copyright 2010 LarKC project consortium
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+package eu.larkc.core.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the bounded queue used between plug-in managers.
+ */
+public class QueueTest {
+
+	/**
+	 * Elements come out in the order they were put in, including null
+	 * elements, also after the backing array had to grow.
+	 */
+	@Test
+	public void testFifoOrderWithNullsAndGrowth() {
+		Queue<Integer> queue = new Queue<Integer>(100);
+		for (int i = 0; i < 50; i++) {
+			queue.put(i % 7 == 0 ? null : i);
+		}
+		Assert.assertEquals(50, queue.size());
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(i % 7 == 0 ? null : i, queue.take());
+		}
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * A full queue refuses offers and blocks producers until a consumer has
+	 * taken an element.
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testBackpressure() throws InterruptedException {
+		final Queue<String> queue = new Queue<String>(2);
+		Assert.assertTrue(queue.offer("a"));
+		Assert.assertTrue(queue.offer("b"));
+		Assert.assertFalse(queue.offer("c"));
+		Assert.assertFalse(queue.offer("c", 10, TimeUnit.MILLISECONDS));
+		Assert.assertEquals(0, queue.remainingCapacity());
+
+		Thread producer = new Thread() {
+			public void run() {
+				queue.put("c");
+			}
+		};
+		producer.start();
+		producer.join(200);
+		Assert.assertTrue(producer.isAlive());
+
+		Assert.assertEquals("a", queue.take());
+		producer.join(5000);
+		Assert.assertFalse(producer.isAlive());
+		Assert.assertEquals("b", queue.take());
+		Assert.assertEquals("c", queue.take());
+	}
+
+	/**
+	 * Listeners are informed about added elements and may access the queue.
+	 */
+	@Test
+	public void testListenerMayAccessQueue() {
+		final Queue<String> queue = new Queue<String>(1);
+		final String[] seen = new String[1];
+		queue.addListener(new QueueListener<String>() {
+			public void elementAdded(String e) {
+				seen[0] = queue.take();
+			}
+		});
+		queue.put("x");
+		Assert.assertEquals("x", seen[0]);
+		Assert.assertTrue(queue.isEmpty());
+	}
+
+	/**
+	 * An interrupted take does not return a null element, but keeps waiting
+	 * and preserves the interrupt status; the timed take gives up.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testTakeIsNotEndedByInterrupt() throws Exception {
+		final Queue<String> queue = new Queue<String>();
+		final Object[] taken = new Object[2];
+		Thread consumer = new Thread() {
+			public void run() {
+				taken[0] = queue.take();
+				taken[1] = Thread.currentThread().isInterrupted();
+			}
+		};
+		consumer.start();
+		consumer.interrupt();
+		consumer.join(200);
+		Assert.assertTrue(consumer.isAlive());
+
+		queue.put("a");
+		consumer.join(5000);
+		Assert.assertEquals("a", taken[0]);
+		Assert.assertEquals(Boolean.TRUE, taken[1]);
+
+		try {
+			queue.take(10, TimeUnit.MILLISECONDS);
+			Assert.fail("Took an element from an empty queue");
+		} catch (TimeoutException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Capacities smaller than one are rejected.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new Queue<String>(0);
+	}
+}